@@ -46,7 +46,10 @@ import com.microsoft.identity.common.java.commands.parameters.RemoveAccountComma
 import com.microsoft.identity.common.java.commands.parameters.SilentTokenCommandParameters;
 import com.microsoft.identity.common.java.controllers.BaseController;
 import com.microsoft.identity.common.java.controllers.CommandDispatcher;
+import com.microsoft.identity.common.java.controllers.CommandLane;
+import com.microsoft.identity.common.java.controllers.CommandLaneConfiguration;
 import com.microsoft.identity.common.java.controllers.CommandResult;
+import com.microsoft.identity.common.java.controllers.CommandScheduler;
 import com.microsoft.identity.common.java.result.AcquireTokenResult;
 import com.microsoft.identity.common.java.result.FinalizableResultFuture;
 import com.microsoft.identity.common.java.result.GenerateShrResult;
@@ -66,13 +69,17 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -280,6 +287,70 @@ public class CommandDispatcherTest {
         testLatch.await();
     }
 
+    @Test
+    public void testSubmitAndForgetCompletesWithErrorWhenLaneIsSaturated() throws Exception {
+        final Map<CommandLane, CommandLaneConfiguration> configurations = new EnumMap<>(CommandLane.class);
+        configurations.put(CommandLane.BACKGROUND_REFRESH, CommandLaneConfiguration.builder()
+                .corePoolSize(1)
+                .maxPoolSize(1)
+                .queueCapacity(1)
+                .build());
+        final CommandScheduler scheduler = new CommandScheduler(configurations);
+        CommandDispatcher.setScheduler(scheduler);
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final Runnable block = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        try {
+            // One task on the lane's only thread, one in its queue: the next submission is rejected.
+            scheduler.execute(CommandLane.BACKGROUND_REFRESH, block);
+            scheduler.execute(CommandLane.BACKGROUND_REFRESH, block);
+
+            final CountDownLatch errorLatch = new CountDownLatch(1);
+            final FinalizableResultFuture<CommandResult> future = CommandDispatcher.submitAndForgetReturningFuture(
+                    new TestCommand(getEmptyTestParams(), new CommandCallback<String, Exception>() {
+                        @Override
+                        public void onCancel() {
+                            Assert.fail();
+                        }
+
+                        @Override
+                        public void onError(Exception error) {
+                            errorLatch.countDown();
+                        }
+
+                        @Override
+                        public void onTaskCompleted(String s) {
+                            Assert.fail();
+                        }
+                    }, INTEGER.getAndIncrement()),
+                    CommandLane.BACKGROUND_REFRESH
+            );
+
+            Assert.assertTrue(future.isCleanedUp());
+            try {
+                future.get();
+                Assert.fail("Expected the rejected command to complete with an error.");
+            } catch (final ExecutionException e) {
+                Assert.assertTrue(e.getCause().getCause() instanceof RejectedExecutionException);
+            }
+            Assert.assertTrue(errorLatch.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(1, scheduler.getRejectedCount(CommandLane.BACKGROUND_REFRESH));
+        } finally {
+            release.countDown();
+            CommandDispatcher.clearState();
+        }
+    }
+
     @Test
     public void testSubmitSilentCached() throws Exception {
         final CountDownLatch testLatch = new CountDownLatch(1);
@@ -38,6 +38,8 @@ import com.microsoft.identity.common.crypto.AndroidAuthSdkStorageEncryptionManag
 import com.microsoft.identity.common.crypto.AndroidBrokerStorageEncryptionManager;
 import com.microsoft.identity.common.internal.net.cache.HttpCache;
 import com.microsoft.identity.common.java.cache.IMultiTypeNameValueStorage;
+import com.microsoft.identity.common.java.cache.NameValueSnapshot;
+import com.microsoft.identity.common.java.cache.PersistentMetadataCache;
 import com.microsoft.identity.common.internal.cache.SharedPreferencesFileManager;
 import com.microsoft.identity.common.internal.platform.AndroidDeviceMetadata;
 import com.microsoft.identity.common.internal.platform.AndroidPlatformUtil;
@@ -69,6 +71,7 @@ import java.io.IOException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
@@ -86,6 +89,12 @@ public class AndroidPlatformComponents implements IPlatformComponents {
     private static final String SKEW_PREFERENCES_FILENAME =
             "com.microsoft.identity.client.clock_correction";
 
+    /**
+     * SharedPref filename for persisted authority metadata (OpenID configuration and instance discovery).
+     */
+    private static final String METADATA_PREFERENCES_FILENAME =
+            "com.microsoft.identity.client.authority_metadata";
+
     @NonNull
     protected final Context mContext;
 
@@ -118,6 +127,9 @@ public class AndroidPlatformComponents implements IPlatformComponents {
             } else {
                 Logger.warn(TAG, "Http caching is not enabled because the cache dir is null");
             }
+            PersistentMetadataCache.setStorage(new SharedPrefStringNameValueStorage(
+                    SharedPreferencesFileManager.getSharedPreferences(context, METADATA_PREFERENCES_FILENAME, null)
+            ));
             sInitialized = true;
         }
     }
@@ -295,6 +307,18 @@ public class AndroidPlatformComponents implements IPlatformComponents {
                 return null;
             }
 
+            @Override
+            public NameValueSnapshot<String> getSnapshot(Predicate<String> keyFilter) {
+                final Map<String, String> filtered = new HashMap<>();
+                for (final Map.Entry<String, ?> entry : sharedPreferences.getAll().entrySet()) {
+                    if (keyFilter.test(entry.getKey()) && entry.getValue() instanceof String) {
+                        filtered.put(entry.getKey(), (String) entry.getValue());
+                    }
+                }
+                // Other processes write to this file, so its version cannot be tracked.
+                return new NameValueSnapshot<>(NameValueSnapshot.UNKNOWN_VERSION, filtered);
+            }
+
             @Override
             public boolean contains(String key) {
                 return sharedPreferences.contains(key);
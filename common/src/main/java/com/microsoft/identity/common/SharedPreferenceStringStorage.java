@@ -26,6 +26,7 @@ import android.content.Context;
 
 import com.microsoft.identity.common.internal.cache.SharedPreferencesFileManager;
 import com.microsoft.identity.common.internal.util.AbstractSharedPrefNameValueStorage;
+import com.microsoft.identity.common.java.cache.NameValueSnapshot;
 import com.microsoft.identity.common.java.interfaces.INameValueStorage;
 import com.microsoft.identity.common.java.util.ported.Predicate;
 
@@ -61,6 +62,11 @@ public class SharedPreferenceStringStorage extends AbstractSharedPrefNameValueSt
         return mManager.getAllFilteredByKey(keyPredicate);
     }
 
+    @Override
+    public @NonNull NameValueSnapshot<String> getSnapshot(@NonNull Predicate<String> keyPredicate) {
+        return mManager.getSnapshot(keyPredicate);
+    }
+
     @Override
     public @NonNull Map<String, String> getAll() {
         return mManager.getAll();
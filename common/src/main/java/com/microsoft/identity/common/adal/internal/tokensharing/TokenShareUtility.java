@@ -49,6 +49,7 @@ import com.nimbusds.jwt.JWT;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.PlainJWT;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -375,7 +376,10 @@ public class TokenShareUtility implements ITokenShareInternal {
 
         // In order to get the claims, we need to first parse the token....
         try {
-            final Map<String, ?> tokenClaims = IDToken.parseJWT(idTokenRecord.getSecret());
+            final Map<String, ?> tokenClaims = IDToken.parseJWT(
+                    idTokenRecord.getSecret(),
+                    Collections.singleton(ID_TOKEN_OBJECT_ID)
+            );
             final String oid = (String) tokenClaims.get(ID_TOKEN_OBJECT_ID);
 
             if (null != oid) {
@@ -0,0 +1,187 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.internal.broker.ipc;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.microsoft.identity.common.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+import lombok.NonNull;
+
+/**
+ * Remembers, for the active broker package, which {@link IIpcStrategy} last reached the broker and
+ * which have recently failed to connect, so that calls go straight to a working channel instead
+ * of paying for a failed attempt on every call.
+ * <p>
+ * A strategy that fails with a connection error is backed off exponentially; while backed off it
+ * is only tried after every other strategy. All state is dropped when the active broker package
+ * changes.
+ */
+public class IpcStrategyHealthTracker {
+
+    private static final String TAG = IpcStrategyHealthTracker.class.getSimpleName();
+
+    private static final long DEFAULT_BASE_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    private static final long DEFAULT_MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static class IpcStrategyHealthTrackerHolder {
+        static final IpcStrategyHealthTracker INSTANCE = new IpcStrategyHealthTracker(
+                DEFAULT_BASE_BACKOFF_MILLIS,
+                DEFAULT_MAX_BACKOFF_MILLIS
+        );
+    }
+
+    /**
+     * @return The process-wide tracker.
+     */
+    public static IpcStrategyHealthTracker getInstance() {
+        return IpcStrategyHealthTrackerHolder.INSTANCE;
+    }
+
+    private final long mBaseBackoffMillis;
+    private final long mMaxBackoffMillis;
+
+    // Guarded by this.
+    private String mBrokerPackageName;
+    private IIpcStrategy.Type mPreferredType;
+    private final Map<IIpcStrategy.Type, Health> mHealth = new EnumMap<>(IIpcStrategy.Type.class);
+
+    @VisibleForTesting
+    public IpcStrategyHealthTracker(final long baseBackoffMillis, final long maxBackoffMillis) {
+        mBaseBackoffMillis = baseBackoffMillis;
+        mMaxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Orders the supplied strategies for a call to the supplied broker: the one that last
+     * succeeded first, then the others in their configured order, then any that are backed off.
+     *
+     * @param brokerPackageName The package name of the active broker.
+     * @param strategies        The strategies, in their configured order.
+     * @return A new list of the same strategies.
+     */
+    @NonNull
+    public synchronized List<IIpcStrategy> order(@NonNull final String brokerPackageName,
+                                                 @NonNull final List<IIpcStrategy> strategies) {
+        switchTo(brokerPackageName);
+
+        final long now = now();
+        final List<IIpcStrategy> ordered = new ArrayList<>(strategies);
+
+        // The sort is stable, so strategies with the same rank keep their configured order.
+        Collections.sort(ordered, new Comparator<IIpcStrategy>() {
+            @Override
+            public int compare(final IIpcStrategy lhs, final IIpcStrategy rhs) {
+                return rank(lhs.getType(), now) - rank(rhs.getType(), now);
+            }
+        });
+
+        return ordered;
+    }
+
+    /**
+     * Records that the supplied strategy reached the broker.
+     */
+    public synchronized void onSuccess(@NonNull final String brokerPackageName,
+                                       @NonNull final IIpcStrategy.Type type) {
+        switchTo(brokerPackageName);
+        mHealth.remove(type);
+        mPreferredType = type;
+    }
+
+    /**
+     * Records that the supplied strategy failed to connect to the broker.
+     */
+    public synchronized void onConnectionFailure(@NonNull final String brokerPackageName,
+                                                 @NonNull final IIpcStrategy.Type type) {
+        final String methodName = ":onConnectionFailure";
+        switchTo(brokerPackageName);
+
+        Health health = mHealth.get(type);
+        if (health == null) {
+            health = new Health();
+            mHealth.put(type, health);
+        }
+
+        health.mConsecutiveFailures++;
+        final int exponent = Math.min(health.mConsecutiveFailures - 1, 20);
+        final long backoffMillis = Math.min(mMaxBackoffMillis, mBaseBackoffMillis << exponent);
+        health.mBackedOffUntilMillis = now() + backoffMillis;
+
+        if (type == mPreferredType) {
+            mPreferredType = null;
+        }
+
+        Logger.info(TAG + methodName, "Backing off " + type + " for " + backoffMillis
+                + " ms after " + health.mConsecutiveFailures + " consecutive failure(s).");
+    }
+
+    /**
+     * @return The strategy type that last reached the active broker, if any.
+     */
+    @Nullable
+    public synchronized IIpcStrategy.Type getPreferredType() {
+        return mPreferredType;
+    }
+
+    private void switchTo(@NonNull final String brokerPackageName) {
+        final String methodName = ":switchTo";
+        if (brokerPackageName.equals(mBrokerPackageName)) {
+            return;
+        }
+
+        if (mBrokerPackageName != null) {
+            Logger.info(TAG + methodName, "Active broker changed, discarding IPC strategy health.");
+        }
+
+        mBrokerPackageName = brokerPackageName;
+        mPreferredType = null;
+        mHealth.clear();
+    }
+
+    private int rank(@NonNull final IIpcStrategy.Type type, final long now) {
+        final Health health = mHealth.get(type);
+        if (health != null && health.mBackedOffUntilMillis > now) {
+            return 2;
+        }
+        return type == mPreferredType ? 0 : 1;
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    private static class Health {
+        private int mConsecutiveFailures;
+        private long mBackedOffUntilMillis;
+    }
+}
@@ -32,33 +32,92 @@ import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
 import com.microsoft.identity.common.java.WarningType;
+import com.microsoft.identity.common.java.cache.ICompareAndSetNameValueStorage;
 import com.microsoft.identity.common.java.cache.IMultiTypeNameValueStorage;
+import com.microsoft.identity.common.java.cache.IVersionedNameValueStorage;
+import com.microsoft.identity.common.java.cache.NameValueSnapshot;
 import com.microsoft.identity.common.java.crypto.IKeyAccessor;
 import com.microsoft.identity.common.java.crypto.KeyAccessorStringAdapter;
 import com.microsoft.identity.common.java.exception.ClientException;
+import com.microsoft.identity.common.java.metrics.Counter;
+import com.microsoft.identity.common.java.metrics.MetricNames;
+import com.microsoft.identity.common.java.metrics.MetricsRegistry;
 import com.microsoft.identity.common.java.util.StringUtil;
+import com.microsoft.identity.common.java.util.ThreadUtils;
+import com.microsoft.identity.common.java.util.ported.ObjectUtils;
 import com.microsoft.identity.common.java.util.ported.Predicate;
 import com.microsoft.identity.common.logging.Logger;
 
 import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Convenience class for accessing {@link SharedPreferences}.
+ * <p>
+ * Values are cached in memory in the clear once they have been written or read, so that repeated
+ * reads (including {@link #getAll()} scans) decrypt each value at most once. The cache is bounded
+ * by the approximate size of its contents rather than by its number of entries.
  */
-public class SharedPreferencesFileManager implements IMultiTypeNameValueStorage {
+public class SharedPreferencesFileManager implements IMultiTypeNameValueStorage, IVersionedNameValueStorage,
+        ICompareAndSetNameValueStorage<String> {
 
     private static final String TAG = SharedPreferencesFileManager.class.getSimpleName();
 
+    /**
+     * Upper bound on the size of the cached keys and values, in bytes.
+     */
+    @VisibleForTesting
+    static final int MAX_CACHE_SIZE_BYTES = 1024 * 1024;
+
+    private static final Counter sCacheHits =
+            MetricsRegistry.getInstance().getCounter(MetricNames.SHARED_PREFERENCES_CACHE_HIT);
+
+    private static final Counter sCacheMisses =
+            MetricsRegistry.getInstance().getCounter(MetricNames.SHARED_PREFERENCES_CACHE_MISS);
+
+    /**
+     * Snapshots with at least this many values to decrypt split the work across
+     * {@link #sDecryptionExecutor}.
+     */
+    @VisibleForTesting
+    static final int PARALLEL_DECRYPTION_THRESHOLD = 32;
+
+    // The calling thread decrypts a share of the values too, so leave one processor for it.
+    private static final int DECRYPTION_THREADS =
+            Math.max(0, Math.min(3, Runtime.getRuntime().availableProcessors() - 1));
+
+    private static final ExecutorService sDecryptionExecutor = DECRYPTION_THREADS == 0 ? null :
+            ThreadUtils.getNamedThreadPoolExecutor(
+                    DECRYPTION_THREADS, DECRYPTION_THREADS, -1, 1, TimeUnit.MINUTES,
+                    "SharedPreferencesFileManager-decrypt"
+            );
+
     private final Object cacheLock = new Object();
     @GuardedBy("cacheLock")
-    private final LruCache<String, String> fileCache = new LruCache<>(256);
+    private final LruCache<String, String> fileCache = new LruCache<String, String>(MAX_CACHE_SIZE_BYTES) {
+        @Override
+        protected int sizeOf(final String key, final String value) {
+            // Strings hold two bytes per char.
+            return 2 * (key.length() + value.length());
+        }
+    };
     @GuardedBy("cacheLock")
     private final SharedPreferences mSharedPreferences;
+    // Incremented on every write made through this object; see NameValueSnapshot#getVersion().
+    @GuardedBy("cacheLock")
+    private long mVersion;
     private final KeyAccessorStringAdapter mEncryptionManager;
     @VisibleForTesting
     private final String mSharedPreferencesFileName;
@@ -141,6 +200,7 @@ public class SharedPreferencesFileManager implements IMultiTypeNameValueStorage
             } else {
                 fileCache.remove(key);
             }
+            mVersion++;
             final SharedPreferences.Editor editor = mSharedPreferences.edit();
 
             if (null == mEncryptionManager || StringUtil.isNullOrEmpty(value)) {
@@ -154,14 +214,30 @@ public class SharedPreferencesFileManager implements IMultiTypeNameValueStorage
         }
     }
 
+    @Override
+    public final boolean compareAndSet(final String key,
+                                       @Nullable final String expectedValue,
+                                       @Nullable final String newValue) {
+        synchronized (cacheLock) {
+            if (!ObjectUtils.equals(expectedValue, getString(key))) {
+                return false;
+            }
+
+            putString(key, newValue);
+            return true;
+        }
+    }
+
     @Override
     @Nullable
     public final String getString(final String key) {
         synchronized (cacheLock) {
             String memCache = fileCache.get(key);
             if (memCache != null) {
+                sCacheHits.increment();
                 return memCache;
             }
+            sCacheMisses.increment();
             String restoredValue = mSharedPreferences.getString(key, null);
 
             if (null != mEncryptionManager && !StringUtil.isNullOrEmpty(restoredValue)) {
@@ -172,6 +248,10 @@ public class SharedPreferencesFileManager implements IMultiTypeNameValueStorage
                 }
             }
 
+            if (restoredValue != null) {
+                fileCache.put(key, restoredValue);
+            }
+
             return restoredValue;
         }
     }
@@ -276,6 +356,66 @@ public class SharedPreferencesFileManager implements IMultiTypeNameValueStorage
     }
 
 
+    /**
+     * Reads the matching entries under a single acquisition of the cache lock, so no write made
+     * through this object can interleave with the scan. Values not already in the in-memory cache
+     * are decrypted as one batch (split across a few threads, if there are many of them), and are
+     * cached for later reads. Values that cannot be decrypted are removed, as {@link #getString}
+     * does, and left out of the snapshot.
+     */
+    @Override
+    public final NameValueSnapshot<String> getSnapshot(@NonNull final Predicate<String> keyFilter) {
+        synchronized (cacheLock) {
+            final Map<String, ?> entries = mSharedPreferences.getAll();
+            final Map<String, String> values = new HashMap<>();
+            final List<String> keysToDecrypt = new ArrayList<>();
+            final List<String> valuesToDecrypt = new ArrayList<>();
+
+            for (final Map.Entry<String, ?> entry : entries.entrySet()) {
+                final String key = entry.getKey();
+                if (!keyFilter.test(key) || !(entry.getValue() instanceof String)) {
+                    continue;
+                }
+
+                final String storedValue = (String) entry.getValue();
+                if (null == mEncryptionManager || StringUtil.isNullOrEmpty(storedValue)) {
+                    values.put(key, storedValue);
+                    continue;
+                }
+
+                final String cachedValue = fileCache.get(key);
+                if (cachedValue != null) {
+                    sCacheHits.increment();
+                    values.put(key, cachedValue);
+                } else {
+                    sCacheMisses.increment();
+                    keysToDecrypt.add(key);
+                    valuesToDecrypt.add(storedValue);
+                }
+            }
+
+            final String[] decryptedValues = decryptAll(valuesToDecrypt);
+            for (int i = 0; i < decryptedValues.length; i++) {
+                final String key = keysToDecrypt.get(i);
+                if (StringUtil.isNullOrEmpty(decryptedValues[i])) {
+                    logWarningAndRemoveKey(key);
+                } else {
+                    fileCache.put(key, decryptedValues[i]);
+                    values.put(key, decryptedValues[i]);
+                }
+            }
+
+            return new NameValueSnapshot<>(mVersion, values);
+        }
+    }
+
+    @Override
+    public final long getVersion() {
+        synchronized (cacheLock) {
+            return mVersion;
+        }
+    }
+
     @Override
     public final boolean contains(final String key) {
         return !StringUtil.isNullOrEmpty(getString(key));
@@ -287,6 +427,7 @@ public class SharedPreferencesFileManager implements IMultiTypeNameValueStorage
             final SharedPreferences.Editor editor = mSharedPreferences.edit();
             editor.clear();
             fileCache.evictAll();
+            mVersion++;
             editor.apply();
         }
     }
@@ -299,6 +440,7 @@ public class SharedPreferencesFileManager implements IMultiTypeNameValueStorage
         );
         synchronized (cacheLock) {
             fileCache.remove(key);
+            mVersion++;
             final SharedPreferences.Editor editor = mSharedPreferences.edit();
             editor.remove(key);
             editor.apply();
@@ -322,6 +464,71 @@ public class SharedPreferencesFileManager implements IMultiTypeNameValueStorage
         return encryptDecryptInternal(encryptedBlob, false);
     }
 
+    /**
+     * Decrypts the supplied values, as {@link #decrypt(String)} does, on the calling thread and
+     * (for large batches) on {@link #sDecryptionExecutor}.
+     *
+     * @return The decrypted values, in the same order; null where a value could not be decrypted.
+     */
+    @NonNull
+    private String[] decryptAll(@NonNull final List<String> encryptedBlobs) {
+        final String[] results = new String[encryptedBlobs.size()];
+
+        if (sDecryptionExecutor == null || results.length < PARALLEL_DECRYPTION_THRESHOLD) {
+            decryptRange(encryptedBlobs, results, 0, results.length);
+            return results;
+        }
+
+        final int chunkSize = (results.length + DECRYPTION_THREADS) / (DECRYPTION_THREADS + 1);
+        final List<Future<Void>> futures = new ArrayList<>(DECRYPTION_THREADS);
+        for (int start = chunkSize; start < results.length; start += chunkSize) {
+            final int from = start;
+            final int to = Math.min(start + chunkSize, results.length);
+            futures.add(sDecryptionExecutor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    decryptRange(encryptedBlobs, results, from, to);
+                    return null;
+                }
+            }));
+        }
+
+        decryptRange(encryptedBlobs, results, 0, chunkSize);
+
+        // The other chunks are short-lived, so wait for them even if interrupted.
+        boolean interrupted = false;
+        for (final Future<Void> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                } catch (final ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new IllegalStateException("Failed to decrypt values", e.getCause());
+                }
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        return results;
+    }
+
+    private void decryptRange(@NonNull final List<String> encryptedBlobs,
+                              @NonNull final String[] results,
+                              final int from,
+                              final int to) {
+        for (int i = from; i < to; i++) {
+            results[i] = decrypt(encryptedBlobs.get(i));
+        }
+    }
+
     @Nullable
     private String encryptDecryptInternal(
             @NonNull final String inputText,
@@ -141,7 +141,10 @@ public class BrokerMsalController extends BaseController {
             throw new IllegalStateException("Active Broker not found. This class should not be initialized.");
         }
 
-        mBrokerOperationExecutor = new BrokerOperationExecutor(getIpcStrategies(mApplicationContext, mActiveBrokerPackageName));
+        mBrokerOperationExecutor = new BrokerOperationExecutor(
+                getIpcStrategies(mApplicationContext, mActiveBrokerPackageName),
+                mActiveBrokerPackageName
+        );
         mHelloCache = getHelloCache();
     }
 
@@ -153,7 +156,10 @@ public class BrokerMsalController extends BaseController {
             throw new IllegalStateException("Active Broker not found. This class should not be initialized.");
         }
 
-        mBrokerOperationExecutor = new BrokerOperationExecutor(getIpcStrategies(mApplicationContext, mActiveBrokerPackageName));
+        mBrokerOperationExecutor = new BrokerOperationExecutor(
+                getIpcStrategies(mApplicationContext, mActiveBrokerPackageName),
+                mActiveBrokerPackageName
+        );
         mHelloCache = getHelloCache();
     }
 
@@ -25,11 +25,14 @@ package com.microsoft.identity.common.internal.controllers;
 
 import android.os.Bundle;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.microsoft.identity.common.java.marker.CodeMarkerManager;
 import com.microsoft.identity.common.java.marker.PerfConstants;
 import com.microsoft.identity.common.exception.BrokerCommunicationException;
 import com.microsoft.identity.common.internal.broker.ipc.BrokerOperationBundle;
 import com.microsoft.identity.common.internal.broker.ipc.IIpcStrategy;
+import com.microsoft.identity.common.internal.broker.ipc.IpcStrategyHealthTracker;
 import com.microsoft.identity.common.java.commands.parameters.CommandParameters;
 import com.microsoft.identity.common.internal.telemetry.Telemetry;
 import com.microsoft.identity.common.internal.telemetry.events.ApiEndEvent;
@@ -37,11 +40,14 @@ import com.microsoft.identity.common.internal.telemetry.events.ApiStartEvent;
 import com.microsoft.identity.common.java.exception.BaseException;
 import com.microsoft.identity.common.java.exception.ClientException;
 import com.microsoft.identity.common.java.exception.ErrorStrings;
+import com.microsoft.identity.common.java.metrics.MetricNames;
+import com.microsoft.identity.common.java.metrics.MetricsRegistry;
 import com.microsoft.identity.common.java.util.StringUtil;
 import com.microsoft.identity.common.logging.Logger;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import edu.umd.cs.findbugs.annotations.Nullable;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -53,6 +59,10 @@ import lombok.NonNull;
  * - If the current strategy succeeds, it will return the result right away.
  * - If the service returns an error, it will return the result right away.
  * - If the current strategy fails to connect to the targeted service, it will try the next one until the list is exhausted.
+ * <p>
+ * If the package name of the targeted broker is known, the strategies are tried in the order
+ * given by {@link IpcStrategyHealthTracker}: the one that last reached that broker first, and any
+ * that recently failed to connect last.
  */
 public class BrokerOperationExecutor {
 
@@ -103,12 +113,32 @@ public class BrokerOperationExecutor {
     }
 
     private final List<IIpcStrategy> mStrategies;
+    private final String mBrokerPackageName;
+    private final IpcStrategyHealthTracker mHealthTracker;
 
     /**
-     * @param strategies list of IIpcStrategy to be invoked.
+     * @param strategies list of IIpcStrategy to be invoked, in order.
      */
     public BrokerOperationExecutor(final @NonNull List<IIpcStrategy> strategies) {
+        this(strategies, null, IpcStrategyHealthTracker.getInstance());
+    }
+
+    /**
+     * @param strategies        list of IIpcStrategy to be invoked.
+     * @param brokerPackageName package name of the broker the strategies connect to.
+     */
+    public BrokerOperationExecutor(final @NonNull List<IIpcStrategy> strategies,
+                                   final @Nullable String brokerPackageName) {
+        this(strategies, brokerPackageName, IpcStrategyHealthTracker.getInstance());
+    }
+
+    @VisibleForTesting
+    public BrokerOperationExecutor(final @NonNull List<IIpcStrategy> strategies,
+                                   final @Nullable String brokerPackageName,
+                                   final @NonNull IpcStrategyHealthTracker healthTracker) {
         mStrategies = strategies;
+        mBrokerPackageName = brokerPackageName;
+        mHealthTracker = healthTracker;
     }
 
     /**
@@ -132,17 +162,22 @@ public class BrokerOperationExecutor {
         }
 
         final List<BrokerCommunicationException> communicationExceptionStack = new ArrayList<>();
-        for (final IIpcStrategy strategy : mStrategies) {
+        for (final IIpcStrategy strategy : getOrderedStrategies()) {
+            final long startTime = System.nanoTime();
             try {
                 codeMarkerManager.markCode(PerfConstants.CodeMarkerConstants.BROKER_PROCESS_START);
                 final U result = performStrategy(strategy, operation);
                 codeMarkerManager.markCode(PerfConstants.CodeMarkerConstants.BROKER_PROCESS_END);
+                onStrategyReachedBroker(strategy, operation, startTime);
                 emitOperationSuccessEvent(operation, result);
                 return result;
             } catch (final BrokerCommunicationException communicationException) {
                 // Fails to communicate to the . Try next strategy.
+                onStrategyFailed(strategy, communicationException);
                 communicationExceptionStack.add(communicationException);
             } catch (final BaseException exception) {
+                // The broker was reached, and returned an error.
+                onStrategyReachedBroker(strategy, operation, startTime);
                 emitOperationFailureEvent((BrokerOperation<U>) operation, exception);
                 throw exception;
             }
@@ -163,6 +198,53 @@ public class BrokerOperationExecutor {
         throw exception;
     }
 
+    private List<IIpcStrategy> getOrderedStrategies() {
+        if (StringUtil.isNullOrEmpty(mBrokerPackageName) || hasStrategyWithoutType()) {
+            return mStrategies;
+        }
+        return mHealthTracker.order(mBrokerPackageName, mStrategies);
+    }
+
+    private boolean hasStrategyWithoutType() {
+        for (final IIpcStrategy strategy : mStrategies) {
+            if (strategy.getType() == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private <U> void onStrategyReachedBroker(@NonNull final IIpcStrategy strategy,
+                                             @NonNull final BrokerOperation<U> operation,
+                                             final long startTime) {
+        final long elapsedNanos = System.nanoTime() - startTime;
+        final IIpcStrategy.Type type = strategy.getType();
+
+        Logger.info(
+                TAG + operation.getMethodName(),
+                "Served by IIpcStrategy: " + type + " in "
+                        + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + " ms"
+        );
+        MetricsRegistry.getInstance().getHistogram(MetricNames.BROKER_IPC_CALL + type).record(elapsedNanos);
+
+        if (!StringUtil.isNullOrEmpty(mBrokerPackageName) && type != null) {
+            mHealthTracker.onSuccess(mBrokerPackageName, type);
+        }
+    }
+
+    private void onStrategyFailed(@NonNull final IIpcStrategy strategy,
+                                  @NonNull final BrokerCommunicationException exception) {
+        final IIpcStrategy.Type type = strategy.getType();
+        MetricsRegistry.getInstance().getCounter(MetricNames.BROKER_IPC_CONNECTION_FAILURE + type).increment();
+
+        // An operation that one side does not support says nothing about whether the channel works.
+        if (exception.getCategory() == BrokerCommunicationException.Category.CONNECTION_ERROR
+                && !StringUtil.isNullOrEmpty(mBrokerPackageName)
+                && type != null) {
+            mHealthTracker.onConnectionFailure(mBrokerPackageName, type);
+        }
+    }
+
     private <T extends CommandParameters, U> void emitOperationStartEvent(@Nullable final T parameters,
                                                                           @NonNull final BrokerOperation<U> operation) {
         final String telemetryApiId = operation.getTelemetryApiId();
@@ -28,6 +28,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.WorkerThread;
 
 import com.microsoft.identity.common.java.configuration.LibraryConfiguration;
+import com.microsoft.identity.common.java.controllers.AccessTokenRefreshScheduler;
 import com.microsoft.identity.common.java.controllers.CommandDispatcher;
 import com.microsoft.identity.common.java.eststelemetry.PublicApiId;
 import com.microsoft.identity.common.java.exception.ArgumentException;
@@ -79,6 +80,7 @@ import com.microsoft.identity.common.logging.Logger;
 import java.io.IOException;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
@@ -317,6 +319,7 @@ public class LocalMSALController extends BaseController {
         // subsequent CacheRecords represent other profiles (projections) of this principal in
         // other tenants. Those tokens will be 'sparse', meaning that their AT/RT will not be loaded
         final ICacheRecord fullCacheRecord = cacheRecords.get(0);
+        boolean refreshOnSubmitted = false;
         if (LibraryConfiguration.getInstance().isRefreshInEnabled()
                 && fullCacheRecord.getAccessToken() != null
                 && fullCacheRecord.getAccessToken().refreshOnIsActive()) {
@@ -332,6 +335,7 @@ public class LocalMSALController extends BaseController {
                 setAcquireTokenResult(acquireTokenSilentResult, parametersWithScopes, cacheRecords);
                 final RefreshOnCommand refreshOnCommand = new RefreshOnCommand(parameters, this, PublicApiId.MSAL_REFRESH_ON);
                 CommandDispatcher.submitAndForget(refreshOnCommand);
+                refreshOnSubmitted = true;
             } else {
                 Logger.warn(
                         TAG + methodName,
@@ -404,6 +408,11 @@ public class LocalMSALController extends BaseController {
             setAcquireTokenResult(acquireTokenSilentResult, parametersWithScopes, cacheRecords);
         }
 
+        if (!refreshOnSubmitted) {
+            // Whether the token came from the cache or was just renewed, line up its next refresh.
+            scheduleProactiveRefresh(parameters, acquireTokenSilentResult);
+        }
+
         Telemetry.emit(
                 new ApiEndEvent()
                         .putResult(acquireTokenSilentResult)
@@ -413,6 +422,43 @@ public class LocalMSALController extends BaseController {
         return acquireTokenSilentResult;
     }
 
+    /**
+     * Schedules a background refresh of the cached access token ahead of its refresh_on/expiry,
+     * if enabled, so that subsequent silent requests keep being served from the cache.
+     * <p>
+     * The refresh runs on a copy of the parameters with its own correlation id, so the caller's
+     * parameters are never touched once this request returns.
+     */
+    private void scheduleProactiveRefresh(@NonNull final SilentTokenCommandParameters parameters,
+                                          @NonNull final AcquireTokenResult acquireTokenResult) {
+        if (!LibraryConfiguration.getInstance().isProactiveRefreshEnabled()
+                || !Boolean.TRUE.equals(acquireTokenResult.getSucceeded())
+                || acquireTokenResult.getLocalAuthenticationResult() == null) {
+            return;
+        }
+
+        final List<ICacheRecord> cacheRecords =
+                acquireTokenResult.getLocalAuthenticationResult().getCacheRecordWithTenantProfileData();
+
+        if (cacheRecords == null || cacheRecords.isEmpty()) {
+            return;
+        }
+
+        final ICacheRecord cacheRecord = cacheRecords.get(0);
+
+        if (cacheRecord.getAccessToken() != null && cacheRecord.getRefreshToken() != null) {
+            final SilentTokenCommandParameters refreshParameters = parameters
+                    .toBuilder()
+                    .correlationId(UUID.randomUUID().toString())
+                    .build();
+
+            AccessTokenRefreshScheduler.getInstance().schedule(
+                    cacheRecord.getAccessToken(),
+                    new RefreshOnCommand(refreshParameters, this, PublicApiId.MSAL_REFRESH_ON)
+            );
+        }
+    }
+
     private void setAcquireTokenResult(final AcquireTokenResult acquireTokenSilentResult,
                                        final SilentTokenCommandParameters parametersWithScopes,
                                        final List<ICacheRecord> cacheRecords) throws ClientException {
@@ -501,6 +547,12 @@ public class LocalMSALController extends BaseController {
                         realm
                 ).isEmpty();
 
+        // Don't refresh tokens of an account that is gone.
+        AccessTokenRefreshScheduler.getInstance().cancel(
+                parameters.getClientId(),
+                parameters.getAccount() == null ? null : parameters.getAccount().getHomeAccountId()
+        );
+
         Telemetry.emit(
                 new ApiEndEvent()
                         .put(TelemetryEventStrings.Key.IS_SUCCESSFUL, String.valueOf(localRemoveAccountSuccess))
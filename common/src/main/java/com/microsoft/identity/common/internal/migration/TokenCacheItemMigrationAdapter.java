@@ -23,9 +23,14 @@
 package com.microsoft.identity.common.internal.migration;
 
 
+import androidx.annotation.VisibleForTesting;
+
 import com.microsoft.identity.common.adal.internal.cache.ADALTokenCacheItem;
 import com.microsoft.identity.common.java.foci.FociQueryUtilities;
 import com.microsoft.identity.common.java.logging.Logger;
+import com.microsoft.identity.common.java.metrics.LatencyHistogram;
+import com.microsoft.identity.common.java.metrics.MetricNames;
+import com.microsoft.identity.common.java.metrics.MetricsRegistry;
 import com.microsoft.identity.common.java.providers.microsoft.microsoftsts.MicrosoftStsTokenRequest;
 import com.microsoft.identity.common.java.providers.microsoft.microsoftsts.MicrosoftStsTokenResponse;
 import com.microsoft.identity.common.java.providers.oauth2.TokenErrorResponse;
@@ -45,6 +50,7 @@ import com.microsoft.identity.common.java.providers.microsoft.microsoftsts.Micro
 import com.microsoft.identity.common.java.providers.oauth2.OAuth2StrategyParameters;
 import com.microsoft.identity.common.java.providers.oauth2.TokenResult;
 import com.microsoft.identity.common.java.util.StringUtil;
+import com.microsoft.identity.common.java.util.ThreadUtils;
 
 import java.io.IOException;
 import java.net.URL;
@@ -55,14 +61,22 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static com.microsoft.identity.common.internal.migration.AdalMigrationAdapter.loadCloudDiscoveryMetadata;
 
 import edu.umd.cs.findbugs.annotations.Nullable;
+import lombok.Builder;
+import lombok.Getter;
 import lombok.NonNull;
+import lombok.experimental.Accessors;
 
 public class TokenCacheItemMigrationAdapter {
 
@@ -75,6 +89,83 @@ public class TokenCacheItemMigrationAdapter {
      */
     public static final ExecutorService sBackgroundExecutor = Executors.newCachedThreadPool();
 
+    /**
+     * Default maximum number of token requests in flight during a migration.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+
+    /**
+     * Default time allowed for each token request during a migration.
+     */
+    public static final long DEFAULT_REQUEST_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * Receives progress updates from a migration, on the thread running it.
+     */
+    public interface IMigrationProgressCallback {
+
+        /**
+         * Called each time a token request completes, successfully or not.
+         *
+         * @param completedRequests The number of requests completed so far.
+         * @param totalRequests     The number of requests the migration makes.
+         */
+        void onProgress(int completedRequests, int totalRequests);
+    }
+
+    /**
+     * Settings of a token migration.
+     */
+    @Getter
+    @Accessors(prefix = "m")
+    public static final class MigrationOptions {
+
+        private final int mMaxConcurrentRequests;
+        private final long mRequestTimeoutMillis;
+        @Nullable
+        private final IMigrationProgressCallback mProgressCallback;
+
+        /**
+         * @param maxConcurrentRequests The maximum number of token requests in flight; defaults to
+         *                              {@link #DEFAULT_MAX_CONCURRENT_REQUESTS}.
+         * @param requestTimeoutMillis  The time allowed for each token request; defaults to
+         *                              {@link #DEFAULT_REQUEST_TIMEOUT_MILLIS}.
+         * @param progressCallback      Receives progress updates, may be null.
+         */
+        @Builder
+        public MigrationOptions(final int maxConcurrentRequests,
+                                final long requestTimeoutMillis,
+                                @Nullable final IMigrationProgressCallback progressCallback) {
+            mMaxConcurrentRequests = maxConcurrentRequests > 0
+                    ? maxConcurrentRequests
+                    : DEFAULT_MAX_CONCURRENT_REQUESTS;
+            mRequestTimeoutMillis = requestTimeoutMillis > 0
+                    ? requestTimeoutMillis
+                    : DEFAULT_REQUEST_TIMEOUT_MILLIS;
+            mProgressCallback = progressCallback;
+        }
+    }
+
+    /**
+     * Exchanges an ADAL refresh token for an MSAL account and refresh token.
+     */
+    @VisibleForTesting
+    interface ITokenRenewer {
+
+        @Nullable
+        Map.Entry<MicrosoftAccount, MicrosoftRefreshToken> renew(@Nullable String redirectUri,
+                                                                 @NonNull ADALTokenCacheItem cacheItem);
+    }
+
+    private static final ITokenRenewer DEFAULT_TOKEN_RENEWER = new ITokenRenewer() {
+        @Nullable
+        @Override
+        public Map.Entry<MicrosoftAccount, MicrosoftRefreshToken> renew(@Nullable final String redirectUri,
+                                                                        @NonNull final ADALTokenCacheItem cacheItem) {
+            return renewToken(redirectUri, cacheItem);
+        }
+    };
+
     /**
      * For a list of supplied tokens, filter them to find the 'most preferred' when migrating.
      * Renew those tokens and provide them as the result in the v2 format.
@@ -86,6 +177,22 @@ public class TokenCacheItemMigrationAdapter {
     public static List<Map.Entry<MicrosoftAccount, MicrosoftRefreshToken>> migrateTokens(
             @NonNull final Map<String, String> redirects,
             @NonNull final Collection<ADALTokenCacheItem> cacheItems) {
+        return migrateTokens(redirects, cacheItems, MigrationOptions.builder().build());
+    }
+
+    /**
+     * For a list of supplied tokens, filter them to find the 'most preferred' when migrating.
+     * Renew those tokens and provide them as the result in the v2 format.
+     *
+     * @param redirects  The mapping of clientIds to redirect_uris.
+     * @param cacheItems The cache items to migrate.
+     * @param options    The concurrency limit, timeout and progress callback of the migration.
+     * @return The result.
+     */
+    public static List<Map.Entry<MicrosoftAccount, MicrosoftRefreshToken>> migrateTokens(
+            @NonNull final Map<String, String> redirects,
+            @NonNull final Collection<ADALTokenCacheItem> cacheItems,
+            @NonNull final MigrationOptions options) {
         final List<Map.Entry<MicrosoftAccount, MicrosoftRefreshToken>> result = new ArrayList<>();
 
         final boolean cloudMetadataLoaded = loadCloudDiscoveryMetadata();
@@ -111,60 +218,191 @@ public class TokenCacheItemMigrationAdapter {
                 cacheItemsToRenew.addAll(cacheItemList);
             }
 
-            result.addAll(renewTokens(redirects, cacheItemsToRenew));
+            result.addAll(renewTokens(redirects, cacheItemsToRenew, options, DEFAULT_TOKEN_RENEWER));
         }
 
         return result;
     }
 
 
-    private static List<Map.Entry<MicrosoftAccount, MicrosoftRefreshToken>> renewTokens(
+    /**
+     * Renews the supplied tokens, with at most {@link MigrationOptions#getMaxConcurrentRequests()}
+     * requests in flight.
+     * <p>
+     * Each request is allowed {@link MigrationOptions#getRequestTimeoutMillis()} from the time it
+     * starts; a request still running after that is cancelled and its token is not migrated. A
+     * cancelled request may keep its thread until its connection times out, so the whole renewal is
+     * also bounded by the time the requests would take if each wave of them timed out, and requests
+     * still queued by then are not made.
+     *
+     * @param redirects      The mapping of clientIds to redirect_uris.
+     * @param filteredTokens The tokens to renew.
+     * @param options        The settings of the migration.
+     * @param tokenRenewer   Makes the token requests.
+     * @return The renewed tokens, in the order of the supplied tokens.
+     */
+    @VisibleForTesting
+    static List<Map.Entry<MicrosoftAccount, MicrosoftRefreshToken>> renewTokens(
             @NonNull final Map<String, String> redirects,
-            @NonNull final List<ADALTokenCacheItem> filteredTokens) {
+            @NonNull final List<ADALTokenCacheItem> filteredTokens,
+            @NonNull final MigrationOptions options,
+            @NonNull final ITokenRenewer tokenRenewer) {
+        final String methodName = ":renewTokens";
         final List<Map.Entry<MicrosoftAccount, MicrosoftRefreshToken>> result = new ArrayList<>();
         final int tokenCount = filteredTokens.size();
 
-        // Create a CountDownLatch to parallelize these requests
-        final CountDownLatch latch = new CountDownLatch(tokenCount);
-
-        for (int ii = 0; ii < tokenCount; ii++) {
-            final int subIndex = ii;
-            sBackgroundExecutor.submit(new Runnable() {
-                @Override
-                public void run() {
-                    final ADALTokenCacheItem targetCacheItemToRenew = filteredTokens.get(subIndex);
+        if (tokenCount == 0) {
+            return result;
+        }
 
-                    final Map.Entry<MicrosoftAccount, MicrosoftRefreshToken> renewedKeyValuePair = renewToken(
-                            redirects.get(targetCacheItemToRenew.getClientId()),
-                            targetCacheItemToRenew
-                    );
+        final int concurrency = Math.min(options.getMaxConcurrentRequests(), tokenCount);
+        final ExecutorService executor = ThreadUtils.getNamedThreadPoolExecutor(
+                concurrency, concurrency, -1, 1, TimeUnit.SECONDS, "TokenMigration"
+        );
+        final LatencyHistogram requestLatency =
+                MetricsRegistry.getInstance().getHistogram(MetricNames.TOKEN_MIGRATION_REQUEST);
 
-                    if (null != renewedKeyValuePair) {
-                        result.add(
-                                renewedKeyValuePair
-                        );
-                    }
+        Logger.info(
+                TAG + methodName,
+                "Renewing [" + tokenCount + "] tokens, at most [" + concurrency + "] at a time."
+        );
 
-                    latch.countDown();
-                }
-            });
+        final long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(options.getRequestTimeoutMillis());
+        final int waveCount = (tokenCount + concurrency - 1) / concurrency;
+        final long renewalDeadline = System.nanoTime() + waveCount * timeoutNanos;
+        final List<RenewalRequest> requests = new ArrayList<>(tokenCount);
+
+        for (final ADALTokenCacheItem tokenToRenew : filteredTokens) {
+            final RenewalRequest request = new RenewalRequest(
+                    redirects.get(tokenToRenew.getClientId()),
+                    tokenToRenew,
+                    tokenRenewer,
+                    requestLatency
+            );
+            request.mFuture = executor.submit(request);
+            requests.add(request);
         }
 
+        int completedCount = 0;
+
         try {
-            latch.await();
-        } catch (InterruptedException e) {
-            // Shouldn't happen
+            // Results are gathered on this thread only, in submission order.
+            for (final RenewalRequest request : requests) {
+                final Map.Entry<MicrosoftAccount, MicrosoftRefreshToken> renewedKeyValuePair =
+                        getRenewedToken(request, timeoutNanos, renewalDeadline);
+
+                completedCount++;
+
+                if (null != renewedKeyValuePair) {
+                    result.add(renewedKeyValuePair);
+                }
+
+                if (null != options.getProgressCallback()) {
+                    options.getProgressCallback().onProgress(completedCount, tokenCount);
+                }
+            }
+        } catch (final InterruptedException e) {
             Logger.error(
-                    TAG,
+                    TAG + methodName,
                     "Interrupted while requesting tokens...",
                     e
             );
             Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
         }
 
         return result;
     }
 
+    /**
+     * A token request of a migration, which records when it starts running.
+     */
+    private static final class RenewalRequest
+            implements Callable<Map.Entry<MicrosoftAccount, MicrosoftRefreshToken>> {
+
+        @Nullable
+        private final String mRedirectUri;
+        private final ADALTokenCacheItem mCacheItem;
+        private final ITokenRenewer mTokenRenewer;
+        private final LatencyHistogram mRequestLatency;
+        private final CountDownLatch mStarted = new CountDownLatch(1);
+        private volatile long mStartTime;
+        private Future<Map.Entry<MicrosoftAccount, MicrosoftRefreshToken>> mFuture;
+
+        RenewalRequest(@Nullable final String redirectUri,
+                       @NonNull final ADALTokenCacheItem cacheItem,
+                       @NonNull final ITokenRenewer tokenRenewer,
+                       @NonNull final LatencyHistogram requestLatency) {
+            mRedirectUri = redirectUri;
+            mCacheItem = cacheItem;
+            mTokenRenewer = tokenRenewer;
+            mRequestLatency = requestLatency;
+        }
+
+        @Override
+        public Map.Entry<MicrosoftAccount, MicrosoftRefreshToken> call() {
+            mStartTime = System.nanoTime();
+            mStarted.countDown();
+            try {
+                return mTokenRenewer.renew(mRedirectUri, mCacheItem);
+            } finally {
+                mRequestLatency.recordSince(mStartTime);
+            }
+        }
+    }
+
+    /**
+     * Waits for a token request, cancelling it if it does not complete within its timeout of the
+     * time it started, or by the renewal deadline.
+     *
+     * @return The renewed token, or null if the request failed, timed out or never started.
+     */
+    @Nullable
+    private static Map.Entry<MicrosoftAccount, MicrosoftRefreshToken> getRenewedToken(
+            @NonNull final RenewalRequest request,
+            final long timeoutNanos,
+            final long renewalDeadline)
+            throws InterruptedException {
+        final String methodName = ":getRenewedToken";
+        final Future<Map.Entry<MicrosoftAccount, MicrosoftRefreshToken>> future = request.mFuture;
+
+        try {
+            long deadline = renewalDeadline;
+
+            if (request.mStarted.await(renewalDeadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                deadline = Math.min(request.mStartTime + timeoutNanos, renewalDeadline);
+            }
+
+            final Map.Entry<MicrosoftAccount, MicrosoftRefreshToken> renewedKeyValuePair =
+                    future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+
+            if (null == renewedKeyValuePair) {
+                MetricsRegistry.getInstance().getCounter(MetricNames.TOKEN_MIGRATION_FAILURE).increment();
+            }
+
+            return renewedKeyValuePair;
+        } catch (final ExecutionException e) {
+            Logger.errorPII(
+                    TAG + methodName,
+                    "Failed to request new refresh token...",
+                    e.getCause()
+            );
+            MetricsRegistry.getInstance().getCounter(MetricNames.TOKEN_MIGRATION_FAILURE).increment();
+            return null;
+        } catch (final TimeoutException e) {
+            Logger.warn(
+                    TAG + methodName,
+                    request.mStarted.getCount() == 0
+                            ? "Token request timed out, cancelling it."
+                            : "Token request did not start before the renewal deadline, cancelling it."
+            );
+            future.cancel(true);
+            MetricsRegistry.getInstance().getCounter(MetricNames.TOKEN_MIGRATION_TIMEOUT).increment();
+            return null;
+        }
+    }
+
     @Nullable
     public static Map.Entry<MicrosoftAccount, MicrosoftRefreshToken> renewToken(
             @Nullable final String redirectUri,
@@ -22,7 +22,10 @@
 //  THE SOFTWARE.
 package com.microsoft.identity.common.internal.util;
 
+import com.microsoft.identity.common.java.cache.IBackedNameValueStorage;
 import com.microsoft.identity.common.java.cache.IMultiTypeNameValueStorage;
+import com.microsoft.identity.common.java.cache.IVersionedNameValueStorage;
+import com.microsoft.identity.common.java.cache.NameValueSnapshot;
 import com.microsoft.identity.common.java.interfaces.INameValueStorage;
 
 import java.util.Set;
@@ -34,7 +37,7 @@ import lombok.NonNull;
  * Adapts {@link IMultiTypeNameValueStorage} to {@link INameValueStorage}
  * */
 @AllArgsConstructor
-public abstract class AbstractSharedPrefNameValueStorage<T> implements INameValueStorage<T> {
+public abstract class AbstractSharedPrefNameValueStorage<T> implements INameValueStorage<T>, IVersionedNameValueStorage, IBackedNameValueStorage {
     protected IMultiTypeNameValueStorage mManager;
 
     @Override
@@ -51,4 +54,16 @@ public abstract class AbstractSharedPrefNameValueStorage<T> implements INameValu
     public @NonNull Set<String> keySet() {
         return mManager.getAll().keySet();
     }
+
+    @Override
+    public long getVersion() {
+        return mManager instanceof IVersionedNameValueStorage
+                ? ((IVersionedNameValueStorage) mManager).getVersion()
+                : NameValueSnapshot.UNKNOWN_VERSION;
+    }
+
+    @Override
+    public @NonNull Object getBackingStore() {
+        return mManager;
+    }
 }
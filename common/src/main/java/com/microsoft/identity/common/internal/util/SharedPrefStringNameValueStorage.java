@@ -24,6 +24,7 @@
 package com.microsoft.identity.common.internal.util;
 
 import com.microsoft.identity.common.java.cache.IMultiTypeNameValueStorage;
+import com.microsoft.identity.common.java.cache.NameValueSnapshot;
 import com.microsoft.identity.common.java.util.ported.Predicate;
 
 import java.util.Iterator;
@@ -57,4 +58,9 @@ public class SharedPrefStringNameValueStorage extends AbstractSharedPrefNameValu
     public Iterator<Map.Entry<String, String>> getAllFilteredByKey(Predicate<String> keyFilter) {
         return mManager.getAllFilteredByKey(keyFilter);
     }
+
+    @Override
+    public @NonNull NameValueSnapshot<String> getSnapshot(@NonNull Predicate<String> keyFilter) {
+        return mManager.getSnapshot(keyFilter);
+    }
 }
@@ -23,6 +23,7 @@
 package com.microsoft.identity.common.internal.util;
 
 import com.microsoft.identity.common.java.cache.IMultiTypeNameValueStorage;
+import com.microsoft.identity.common.java.cache.NameValueSnapshot;
 import com.microsoft.identity.common.java.interfaces.INameValueStorage;
 import com.microsoft.identity.common.java.util.ported.Predicate;
 
@@ -61,6 +62,20 @@ public class SharedPreferenceLongStorage extends AbstractSharedPrefNameValueStor
         return allLongs;
     }
 
+    @Override
+    public @NonNull NameValueSnapshot<Long> getSnapshot(final @NonNull Predicate<String> keyFilter) {
+        final NameValueSnapshot<String> snapshot = mManager.getSnapshot(keyFilter);
+        final Map<String, Long> allLongs = new HashMap<>();
+        for (Map.Entry<String, String> e : snapshot.getEntries().entrySet()) {
+            try {
+                allLongs.put(e.getKey(), Long.parseLong(e.getValue()));
+            } catch (final NumberFormatException nfe) {
+                //nothing to do
+            }
+        }
+        return new NameValueSnapshot<>(snapshot.getVersion(), allLongs);
+    }
+
     @Override
     public void put(@NonNull final String name, @Nullable final Long value) {
         if (value == null) {
@@ -0,0 +1,422 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.migration;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.microsoft.identity.common.java.cache.IBackedNameValueStorage;
+import com.microsoft.identity.common.java.cache.ICompareAndSetNameValueStorage;
+import com.microsoft.identity.common.java.crypto.IKeyAccessor;
+import com.microsoft.identity.common.java.crypto.KeyAccessorStringAdapter;
+import com.microsoft.identity.common.java.crypto.StorageEncryptionManager;
+import com.microsoft.identity.common.java.interfaces.INameValueStorage;
+import com.microsoft.identity.common.java.util.TaskCompletedCallback;
+import com.microsoft.identity.common.java.util.ThreadUtils;
+import com.microsoft.identity.common.java.util.ported.ObjectUtils;
+import com.microsoft.identity.common.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Builder;
+
+/**
+ * An {@link IMultiTypeNameValueStorageReencrypter} for large stores that must stay usable while
+ * they are reencrypted.
+ * <p>
+ * Entries are processed in batches, in key order. The entries of a batch are decrypted and
+ * reencrypted in parallel (on at most {@code parallelism} threads), then written back before the
+ * next batch starts, so the store holds a mix of old and new ciphertexts while this runs. Readers
+ * must therefore be able to decrypt both, as a {@link StorageEncryptionManager} does by trying each
+ * of the keys returned by {@link StorageEncryptionManager#getKeyLoaderForDecryption(byte[])}; the
+ * decrypter supplied here must accept both as well if the store is written to concurrently.
+ * <p>
+ * Each entry is written back with {@link ICompareAndSetNameValueStorage#compareAndSet}, of the store
+ * or of the store it adapts ({@link IBackedNameValueStorage}), so an entry that is rewritten while
+ * its batch is being processed is left as rewritten. Stores that support neither are written back
+ * with a check-then-put that is only atomic with respect to this class. After each batch, and when
+ * stopping early, the last key processed is saved in the checkpoint store (if one is supplied),
+ * and a later run skips the keys up to it, so an operation interrupted by process death resumes
+ * after the last completed batch. The checkpoint records the {@code keyIdentifier} of the key
+ * being rotated to, and is ignored by a run for a different key. The checkpoint is deleted once
+ * the whole store has been processed.
+ * <p>
+ * Unlike {@link DefaultMultiTypeNameValueStorageReencrypter}, entries written before an error
+ * remain reencrypted when {@link ReencryptionParams#abortOnError()} aborts the operation.
+ */
+public class BatchedMultiTypeNameValueStorageReencrypter implements IMultiTypeNameValueStorageReencrypter {
+
+    private static final String TAG = BatchedMultiTypeNameValueStorageReencrypter.class.getSimpleName();
+
+    public static final int DEFAULT_BATCH_SIZE = 64;
+    public static final int DEFAULT_PARALLELISM = 2;
+    public static final String DEFAULT_CHECKPOINT_KEY = "reencryption_checkpoint";
+
+    /**
+     * Separates the key identifier from the last completed key in a checkpoint; key identifiers
+     * may not contain it.
+     */
+    private static final char CHECKPOINT_SEPARATOR = '|';
+
+    private static final ExecutorService sAsyncExecutor = ThreadUtils.getNamedThreadPoolExecutor(
+            1, 1, -1, 1, TimeUnit.MINUTES, "BatchedReencrypter-async"
+    );
+
+    /**
+     * Receives progress updates from a reencryption operation, on the thread running it.
+     */
+    public interface IProgressCallback {
+
+        /**
+         * Called after each batch.
+         *
+         * @param completedRecords  The number of records processed so far, including those
+         *                          processed before resuming from a checkpoint.
+         * @param totalRecords      The number of records in the store.
+         * @param recordsPerSecond  The throughput of this run.
+         */
+        void onProgress(int completedRecords, int totalRecords, double recordsPerSecond);
+    }
+
+    @Nullable
+    private final INameValueStorage<String> mCheckpointStore;
+    private final String mCheckpointKey;
+    private final String mKeyIdentifier;
+    private final int mBatchSize;
+    private final int mParallelism;
+    @Nullable
+    private final IProgressCallback mProgressCallback;
+
+    /**
+     * @param checkpointStore  Where to save progress, or null to always start from the beginning.
+     * @param checkpointKey    The key to save progress under; defaults to {@link #DEFAULT_CHECKPOINT_KEY}.
+     * @param keyIdentifier    Identifies the key being rotated to, e.g. its thumbprint. Progress saved
+     *                         for a different identifier is ignored. May be null, which only matches
+     *                         progress saved without one.
+     * @param batchSize        The number of entries per batch; defaults to {@link #DEFAULT_BATCH_SIZE}.
+     * @param parallelism      The number of threads per batch; defaults to {@link #DEFAULT_PARALLELISM}.
+     * @param progressCallback Receives progress updates, may be null.
+     */
+    @Builder
+    public BatchedMultiTypeNameValueStorageReencrypter(@Nullable final INameValueStorage<String> checkpointStore,
+                                                       @Nullable final String checkpointKey,
+                                                       @Nullable final String keyIdentifier,
+                                                       final int batchSize,
+                                                       final int parallelism,
+                                                       @Nullable final IProgressCallback progressCallback) {
+        mCheckpointStore = checkpointStore;
+        mCheckpointKey = checkpointKey == null ? DEFAULT_CHECKPOINT_KEY : checkpointKey;
+        mKeyIdentifier = keyIdentifier == null ? "" : keyIdentifier;
+        if (mKeyIdentifier.indexOf(CHECKPOINT_SEPARATOR) >= 0) {
+            throw new IllegalArgumentException("keyIdentifier may not contain '" + CHECKPOINT_SEPARATOR + "'");
+        }
+        mBatchSize = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+        mParallelism = parallelism > 0 ? parallelism : DEFAULT_PARALLELISM;
+        mProgressCallback = progressCallback;
+    }
+
+    /**
+     * @return An encrypter that encrypts with the current encryption key of the supplied accessor.
+     */
+    public static IStringEncrypter encrypterOf(@NonNull final IKeyAccessor keyAccessor) {
+        final KeyAccessorStringAdapter adapter = new KeyAccessorStringAdapter(keyAccessor);
+        return new IStringEncrypter() {
+            @Override
+            public String encrypt(final String input) throws Exception {
+                return adapter.encrypt(input);
+            }
+        };
+    }
+
+    /**
+     * @return A decrypter that decrypts with any of the keys of the supplied accessor.
+     */
+    public static IStringDecrypter decrypterOf(@NonNull final IKeyAccessor keyAccessor) {
+        final KeyAccessorStringAdapter adapter = new KeyAccessorStringAdapter(keyAccessor);
+        return new IStringDecrypter() {
+            @Override
+            public String decrypt(final String input) throws Exception {
+                return adapter.decrypt(input);
+            }
+        };
+    }
+
+    @Override
+    public IMigrationOperationResult reencrypt(@NonNull final INameValueStorage<String> fileManager,
+                                               @NonNull final IStringEncrypter encrypter,
+                                               @NonNull final IStringDecrypter decrypter,
+                                               @NonNull final ReencryptionParams params) {
+        final String methodName = ":reencrypt (sync)";
+        final long startTime = System.nanoTime();
+
+        final Map<String, String> originalValues = new HashMap<>(fileManager.getAll());
+        final List<String> keys = new ArrayList<>(originalValues.keySet());
+        keys.remove(mCheckpointKey);
+        Collections.sort(keys);
+
+        final MigrationOperationResult result = new MigrationOperationResult();
+        result.setCountOfTotalRecords(keys.size());
+
+        final int startIndex = getResumeIndex(keys);
+        Logger.info(TAG + methodName, "Reencrypting " + (keys.size() - startIndex)
+                + " of " + keys.size() + " cache entries.");
+
+        final ExecutorService executor = ThreadUtils.getNamedThreadPoolExecutor(
+                mParallelism, mParallelism, -1, 1, TimeUnit.MINUTES, "BatchedReencrypter"
+        );
+
+        // The last key whose entry has been written back (or skipped), checkpointed when stopping
+        // mid-batch, so that a later run does not revisit entries already under the new key.
+        String lastCompletedKey = null;
+
+        try {
+            for (int batchStart = startIndex; batchStart < keys.size(); batchStart += mBatchSize) {
+                final List<String> batch = keys.subList(batchStart, Math.min(batchStart + mBatchSize, keys.size()));
+                final List<Future<String>> reencryptedValues = new ArrayList<>(batch.size());
+                for (final String key : batch) {
+                    reencryptedValues.add(executor.submit(
+                            newReencryptionTask(originalValues.get(key), encrypter, decrypter)
+                    ));
+                }
+
+                for (int i = 0; i < batch.size(); i++) {
+                    final String key = batch.get(i);
+                    try {
+                        writeIfUnchanged(fileManager, key, originalValues.get(key), reencryptedValues.get(i).get());
+                    } catch (final ExecutionException e) {
+                        final Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                        if (!onEntryFailed(fileManager, key, cause, result, params, keys)) {
+                            cancelAll(reencryptedValues);
+                            if (!params.eraseAllOnError() && lastCompletedKey != null) {
+                                saveCheckpoint(lastCompletedKey);
+                            }
+                            return result;
+                        }
+                    }
+                    lastCompletedKey = key;
+                }
+
+                saveCheckpoint(lastCompletedKey);
+                reportProgress(batchStart + batch.size(), keys.size(), batchStart + batch.size() - startIndex, startTime);
+            }
+        } catch (final InterruptedException e) {
+            Logger.warn(TAG + methodName, "Interrupted, progress so far is kept.");
+            if (lastCompletedKey != null) {
+                saveCheckpoint(lastCompletedKey);
+            }
+            Thread.currentThread().interrupt();
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+
+        clearCheckpoint();
+        Logger.info(TAG + methodName, "Finished reencrypting cache entries.");
+        return result;
+    }
+
+    @Override
+    public void reencryptAsync(@NonNull final INameValueStorage<String> fileManager,
+                               @NonNull final IStringEncrypter encrypter,
+                               @NonNull final IStringDecrypter decrypter,
+                               @NonNull final ReencryptionParams params,
+                               @NonNull final TaskCompletedCallback<IMigrationOperationResult> callback) {
+        sAsyncExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                callback.onTaskCompleted(reencrypt(fileManager, encrypter, decrypter, params));
+            }
+        });
+    }
+
+    private static Callable<String> newReencryptionTask(@NonNull final String originalValue,
+                                                        @NonNull final IStringEncrypter encrypter,
+                                                        @NonNull final IStringDecrypter decrypter) {
+        return new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return encrypter.encrypt(decrypter.decrypt(originalValue));
+            }
+        };
+    }
+
+    /**
+     * Writes the reencrypted value, unless the entry was rewritten (and so already encrypted
+     * with the new key) or removed since it was read. Where the storage supports it, the check and
+     * the write are one atomic operation of the storage, so a concurrent write is never overwritten.
+     */
+    private static void writeIfUnchanged(@NonNull final INameValueStorage<String> fileManager,
+                                         @NonNull final String key,
+                                         @NonNull final String originalValue,
+                                         @NonNull final String reencryptedValue) {
+        final String methodName = ":writeIfUnchanged";
+        final ICompareAndSetNameValueStorage<String> atomicStorage = getCompareAndSetStorage(fileManager);
+        final boolean written;
+
+        if (null != atomicStorage) {
+            written = atomicStorage.compareAndSet(key, originalValue, reencryptedValue);
+        } else {
+            synchronized (fileManager) {
+                written = ObjectUtils.equals(originalValue, fileManager.get(key));
+                if (written) {
+                    fileManager.put(key, reencryptedValue);
+                }
+            }
+        }
+
+        if (!written) {
+            Logger.info(TAG + methodName, "Entry changed during reencryption, skipping.");
+        }
+    }
+
+    /**
+     * Gets the compare-and-set of the supplied storage, or of the storage it adapts.
+     *
+     * @return The storage to compare-and-set on, or null if neither supports it.
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    private static ICompareAndSetNameValueStorage<String> getCompareAndSetStorage(
+            @NonNull final INameValueStorage<String> fileManager) {
+        if (fileManager instanceof ICompareAndSetNameValueStorage) {
+            return (ICompareAndSetNameValueStorage<String>) fileManager;
+        }
+
+        if (fileManager instanceof IBackedNameValueStorage) {
+            final Object backingStore = ((IBackedNameValueStorage) fileManager).getBackingStore();
+            if (backingStore instanceof ICompareAndSetNameValueStorage) {
+                return (ICompareAndSetNameValueStorage<String>) backingStore;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Applies the error handling switches to a failed entry.
+     *
+     * @return True if the operation should continue.
+     */
+    private boolean onEntryFailed(@NonNull final INameValueStorage<String> fileManager,
+                                  @NonNull final String key,
+                                  @NonNull final Exception exception,
+                                  @NonNull final MigrationOperationResult result,
+                                  @NonNull final ReencryptionParams params,
+                                  @NonNull final List<String> allKeys) {
+        final String methodName = ":onEntryFailed";
+        Logger.error(TAG + methodName, "Error during reencryption", exception);
+        Logger.errorPII(TAG + methodName, "Failed key: " + key, exception);
+        result.addFailure(exception);
+
+        if (params.eraseAllOnError()) {
+            Logger.warn(TAG + methodName, "Removing all entries.");
+            for (final String removedKey : allKeys) {
+                fileManager.remove(removedKey);
+            }
+            clearCheckpoint();
+            return false;
+        }
+
+        if (params.eraseEntryOnError()) {
+            Logger.warn(TAG + methodName, "Removing entry.");
+            fileManager.remove(key);
+        }
+
+        return !params.abortOnError();
+    }
+
+    private int getResumeIndex(@NonNull final List<String> sortedKeys) {
+        final String methodName = ":getResumeIndex";
+        if (mCheckpointStore == null) {
+            return 0;
+        }
+
+        final String checkpoint = mCheckpointStore.get(mCheckpointKey);
+        if (checkpoint == null) {
+            return 0;
+        }
+
+        final int separator = checkpoint.indexOf(CHECKPOINT_SEPARATOR);
+        if (separator < 0 || !mKeyIdentifier.equals(checkpoint.substring(0, separator))) {
+            Logger.warn(TAG + methodName, "Ignoring a checkpoint saved for a different key.");
+            return 0;
+        }
+
+        int index = Collections.binarySearch(sortedKeys, checkpoint.substring(separator + 1));
+        // The checkpointed key itself was completed; if it has since been removed, binarySearch
+        // returns -(insertion point) - 1, and the insertion point is the first key after it.
+        index = index >= 0 ? index + 1 : -index - 1;
+        Logger.info(TAG + methodName, "Resuming reencryption after " + index + " entries.");
+        return index;
+    }
+
+    private void saveCheckpoint(@NonNull final String lastCompletedKey) {
+        if (mCheckpointStore != null) {
+            mCheckpointStore.put(mCheckpointKey, checkpointOf(mKeyIdentifier, lastCompletedKey));
+        }
+    }
+
+    /**
+     * @return The checkpoint value recording that the entries up to {@code lastCompletedKey} have
+     * been reencrypted with the key identified by {@code keyIdentifier}.
+     */
+    @VisibleForTesting
+    static String checkpointOf(@NonNull final String keyIdentifier, @NonNull final String lastCompletedKey) {
+        return keyIdentifier + CHECKPOINT_SEPARATOR + lastCompletedKey;
+    }
+
+    private void clearCheckpoint() {
+        if (mCheckpointStore != null) {
+            mCheckpointStore.remove(mCheckpointKey);
+        }
+    }
+
+    private void reportProgress(final int completedRecords,
+                                final int totalRecords,
+                                final int recordsThisRun,
+                                final long startTime) {
+        if (mProgressCallback == null) {
+            return;
+        }
+
+        final double elapsedSeconds = (System.nanoTime() - startTime) / (double) TimeUnit.SECONDS.toNanos(1);
+        final double recordsPerSecond = elapsedSeconds > 0 ? recordsThisRun / elapsedSeconds : 0;
+        mProgressCallback.onProgress(completedRecords, totalRecords, recordsPerSecond);
+    }
+
+    private static void cancelAll(@NonNull final List<Future<String>> futures) {
+        for (final Future<String> future : futures) {
+            future.cancel(true);
+        }
+    }
+}
@@ -337,6 +337,24 @@ public class CacheKeyValueDelegateTest {
         final AccessTokenRecord record = mDelegate.fromCacheValue(jsonStr, AccessTokenRecord.class);
         assertEquals(authScheme, record.getAccessTokenType());
     }
+
+    @Test
+    public void testAccessTokenTypePropertyRenameKeptInAdditionalFields() {
+        final String jsonStr = "{\"access_token_type\": \"Bearer\", \"realm\": \"" + REALM + "\"}";
+        final AccessTokenRecord record = mDelegate.fromCacheValue(jsonStr, AccessTokenRecord.class);
+        assertEquals("Bearer", record.getAccessTokenType());
+        assertEquals(REALM, record.getRealm());
+        assertEquals(1, record.getAdditionalFields().size());
+        assertEquals("Bearer", record.getAdditionalFields().get("access_token_type").getAsString());
+    }
+
+    @Test
+    public void testFromCacheValueMalformedJson() {
+        assertNull(mDelegate.fromCacheValue("{\"realm\": \"" + REALM + "\"", AccessTokenRecord.class));
+        assertNull(mDelegate.fromCacheValue("{\"realm\": {\"nested\": 1}}", AccessTokenRecord.class));
+        assertNull(mDelegate.fromCacheValue("[]", AccessTokenRecord.class));
+        assertNull(mDelegate.fromCacheValue("", AccessTokenRecord.class));
+    }
     // End AccessTokens
 
     // Accounts
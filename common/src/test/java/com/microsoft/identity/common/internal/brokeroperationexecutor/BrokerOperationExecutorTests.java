@@ -38,6 +38,7 @@ import com.microsoft.identity.common.java.exception.ServiceException;
 import com.microsoft.identity.common.java.exception.UserCancelException;
 import com.microsoft.identity.common.internal.broker.ipc.BrokerOperationBundle;
 import com.microsoft.identity.common.internal.broker.ipc.IIpcStrategy;
+import com.microsoft.identity.common.internal.broker.ipc.IpcStrategyHealthTracker;
 import com.microsoft.identity.common.java.commands.parameters.CommandParameters;
 import com.microsoft.identity.common.internal.controllers.BrokerOperationExecutor;
 import com.microsoft.identity.common.internal.telemetry.events.ApiEndEvent;
@@ -53,6 +54,7 @@ import java.util.List;
 
 import static com.microsoft.identity.common.exception.BrokerCommunicationException.Category.CONNECTION_ERROR;
 import static com.microsoft.identity.common.internal.broker.ipc.IIpcStrategy.Type.BOUND_SERVICE;
+import static com.microsoft.identity.common.internal.broker.ipc.IIpcStrategy.Type.CONTENT_PROVIDER;
 
 @RunWith(RobolectricTestRunner.class)
 @Config(sdk = {Build.VERSION_CODES.N})
@@ -68,6 +70,10 @@ public class BrokerOperationExecutorTests {
 
     final IIpcStrategy.Type MOCK_TYPE = BOUND_SERVICE;
 
+    final String BROKER_PACKAGE_NAME = "com.microsoft.mock.broker";
+    final String OTHER_BROKER_PACKAGE_NAME = "com.microsoft.mock.otherbroker";
+    final long ONE_MINUTE_IN_MILLIS = 60 * 1000;
+
     // No strategy is provided. executor should fail.
     @Test
     public void testZeroStrategy() {
@@ -163,6 +169,110 @@ public class BrokerOperationExecutorTests {
         expectValidResult(strategyList);
     }
 
+    // A strategy that failed to connect is not tried first again while it is backed off.
+    @Test
+    public void testStrategyFailingToConnectIsBackedOff() throws BaseException {
+        final CountingStrategy failing = new CountingStrategy(CONTENT_PROVIDER, false);
+        final CountingStrategy working = new CountingStrategy(BOUND_SERVICE, true);
+        final BrokerOperationExecutor executor = new BrokerOperationExecutor(
+                getStrategyList(failing, working),
+                BROKER_PACKAGE_NAME,
+                new IpcStrategyHealthTracker(ONE_MINUTE_IN_MILLIS, ONE_MINUTE_IN_MILLIS)
+        );
+
+        Assert.assertTrue(executor.execute(getMockParameter(), getBrokerOperation()));
+        Assert.assertTrue(executor.execute(getMockParameter(), getBrokerOperation()));
+
+        Assert.assertEquals(1, failing.mAttempts);
+        Assert.assertEquals(2, working.mAttempts);
+    }
+
+    // Once its backoff has expired, a strategy is tried in its configured position again.
+    @Test
+    public void testStrategyIsRetriedAfterBackoff() throws BaseException {
+        final CountingStrategy failing = new CountingStrategy(CONTENT_PROVIDER, false);
+        final CountingStrategy working = new CountingStrategy(BOUND_SERVICE, true);
+        final BrokerOperationExecutor executor = new BrokerOperationExecutor(
+                getStrategyList(failing, working),
+                BROKER_PACKAGE_NAME,
+                new IpcStrategyHealthTracker(0, 0)
+        );
+
+        Assert.assertTrue(executor.execute(getMockParameter(), getBrokerOperation()));
+        Assert.assertTrue(executor.execute(getMockParameter(), getBrokerOperation()));
+
+        Assert.assertEquals(2, failing.mAttempts);
+    }
+
+    // Backed-off strategies are still tried when nothing else works.
+    @Test
+    public void testBackedOffStrategiesAreTriedAsLastResort() {
+        final List<IIpcStrategy> strategyList = getStrategyList(
+                new CountingStrategy(CONTENT_PROVIDER, false),
+                new CountingStrategy(BOUND_SERVICE, false)
+        );
+        final IpcStrategyHealthTracker tracker = new IpcStrategyHealthTracker(ONE_MINUTE_IN_MILLIS, ONE_MINUTE_IN_MILLIS);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                new BrokerOperationExecutor(strategyList, BROKER_PACKAGE_NAME, tracker)
+                        .execute(getMockParameter(), getBrokerOperation());
+                Assert.fail("Failure is expected.");
+            } catch (final BaseException e) {
+                Assert.assertEquals(ErrorStrings.BROKER_BIND_SERVICE_FAILED, e.getErrorCode());
+                Assert.assertEquals(strategyList.size(), e.getSuppressedException().size());
+            }
+        }
+    }
+
+    // The strategy that last reached the broker is tried first, even by a new executor.
+    @Test
+    public void testLastSuccessfulStrategyIsTriedFirst() throws BaseException {
+        final CountingStrategy contentProvider = new CountingStrategy(CONTENT_PROVIDER, true);
+        final CountingStrategy boundService = new CountingStrategy(BOUND_SERVICE, true);
+        final IpcStrategyHealthTracker tracker = new IpcStrategyHealthTracker(ONE_MINUTE_IN_MILLIS, ONE_MINUTE_IN_MILLIS);
+        tracker.onSuccess(BROKER_PACKAGE_NAME, BOUND_SERVICE);
+
+        final BrokerOperationExecutor executor = new BrokerOperationExecutor(
+                getStrategyList(contentProvider, boundService),
+                BROKER_PACKAGE_NAME,
+                tracker
+        );
+        Assert.assertTrue(executor.execute(getMockParameter(), getBrokerOperation()));
+
+        Assert.assertEquals(0, contentProvider.mAttempts);
+        Assert.assertEquals(1, boundService.mAttempts);
+        Assert.assertEquals(BOUND_SERVICE, tracker.getPreferredType());
+    }
+
+    // Health recorded for one broker package does not apply to another.
+    @Test
+    public void testBrokerPackageChangeDiscardsHealth() throws BaseException {
+        final CountingStrategy contentProvider = new CountingStrategy(CONTENT_PROVIDER, true);
+        final CountingStrategy boundService = new CountingStrategy(BOUND_SERVICE, true);
+        final IpcStrategyHealthTracker tracker = new IpcStrategyHealthTracker(ONE_MINUTE_IN_MILLIS, ONE_MINUTE_IN_MILLIS);
+        tracker.onConnectionFailure(BROKER_PACKAGE_NAME, CONTENT_PROVIDER);
+        tracker.onSuccess(BROKER_PACKAGE_NAME, BOUND_SERVICE);
+
+        final BrokerOperationExecutor executor = new BrokerOperationExecutor(
+                getStrategyList(contentProvider, boundService),
+                OTHER_BROKER_PACKAGE_NAME,
+                tracker
+        );
+        Assert.assertTrue(executor.execute(getMockParameter(), getBrokerOperation()));
+
+        Assert.assertEquals(1, contentProvider.mAttempts);
+        Assert.assertEquals(0, boundService.mAttempts);
+    }
+
+    private List<IIpcStrategy> getStrategyList(final IIpcStrategy... strategies) {
+        final List<IIpcStrategy> strategyList = new ArrayList<>();
+        for (final IIpcStrategy strategy : strategies) {
+            strategyList.add(strategy);
+        }
+        return strategyList;
+    }
+
     private void expectValidResult(final List<IIpcStrategy> strategyList) {
         try {
             final BrokerOperationExecutor executor = new BrokerOperationExecutor(strategyList);
@@ -302,6 +412,35 @@ public class BrokerOperationExecutorTests {
         };
     }
 
+    // Either returns a valid result or fails to connect, and counts how often it was used.
+    private class CountingStrategy implements IIpcStrategy {
+        private final Type mType;
+        private final boolean mConnects;
+        private int mAttempts;
+
+        CountingStrategy(final Type type, final boolean connects) {
+            mType = type;
+            mConnects = connects;
+        }
+
+        @Override
+        public @Nullable Bundle communicateToBroker(final @NonNull BrokerOperationBundle bundle) throws BrokerCommunicationException {
+            mAttempts++;
+            if (!mConnects) {
+                throw new BrokerCommunicationException(CONNECTION_ERROR, mType, "Some connection error", null);
+            }
+
+            final Bundle result = new Bundle();
+            result.putBoolean(SUCCESS_BUNDLE_KEY, true);
+            return result;
+        }
+
+        @Override
+        public Type getType() {
+            return mType;
+        }
+    }
+
     // This will throw if the result is corrupted..
     private BrokerOperationExecutor.BrokerOperation<Boolean> getBrokerOperation() {
         return new BrokerOperationExecutor.BrokerOperation<Boolean>() {
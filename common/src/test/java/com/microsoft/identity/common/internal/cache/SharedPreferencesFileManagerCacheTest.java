@@ -0,0 +1,264 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.internal.cache;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.microsoft.identity.common.crypto.AndroidAuthSdkStorageEncryptionManager;
+import com.microsoft.identity.common.internal.util.SharedPrefStringNameValueStorage;
+import com.microsoft.identity.common.java.cache.CacheKeyValueDelegate;
+import com.microsoft.identity.common.java.cache.NameValueSnapshot;
+import com.microsoft.identity.common.java.cache.SharedPreferencesAccountCredentialCache;
+import com.microsoft.identity.common.java.dto.AccessTokenRecord;
+import com.microsoft.identity.common.java.dto.CredentialType;
+import com.microsoft.identity.common.java.exception.ClientException;
+import com.microsoft.identity.common.java.metrics.MetricNames;
+import com.microsoft.identity.common.java.metrics.MetricsRegistry;
+import com.microsoft.identity.common.java.util.ported.Predicate;
+import com.microsoft.identity.common.shadows.ShadowAndroidSdkStorageEncryptionManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the in-memory decrypted-value cache and the snapshots of {@link SharedPreferencesFileManager}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = {ShadowAndroidSdkStorageEncryptionManager.class})
+public class SharedPreferencesFileManagerCacheTest {
+
+    private static final String TEST_SHARED_PREFS_NAME = "com.microsoft.test.decrypted_value_cache";
+    private static final int CREDENTIAL_COUNT = 50;
+
+    private static final Predicate<String> ALL_KEYS = new Predicate<String>() {
+        @Override
+        public boolean test(String key) {
+            return true;
+        }
+    };
+
+    private Context mContext;
+    private CountingEncryptionManager mEncryptionManager;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        mEncryptionManager = new CountingEncryptionManager(mContext);
+    }
+
+    @After
+    public void tearDown() {
+        new SharedPreferencesFileManager(mContext, TEST_SHARED_PREFS_NAME, mEncryptionManager).clear();
+    }
+
+    @Test
+    public void testWarmCredentialScanDoesNotDecrypt() {
+        final CacheKeyValueDelegate delegate = new CacheKeyValueDelegate();
+        final SharedPreferencesAccountCredentialCache writer = newCredentialCache(newFileManager(), delegate);
+        for (int i = 0; i < CREDENTIAL_COUNT; i++) {
+            writer.saveCredential(createAccessToken("realm-" + i));
+        }
+
+        // A new file manager over the same file starts with an empty cache, as after a process restart.
+        final SharedPreferencesAccountCredentialCache reader = newCredentialCache(newFileManager(), delegate);
+
+        mEncryptionManager.mDecryptCount.set(0);
+        assertEquals(CREDENTIAL_COUNT, reader.getCredentials().size());
+        assertEquals(CREDENTIAL_COUNT, mEncryptionManager.mDecryptCount.get());
+
+        mEncryptionManager.mDecryptCount.set(0);
+        assertEquals(CREDENTIAL_COUNT, reader.getCredentials().size());
+        assertEquals(0, mEncryptionManager.mDecryptCount.get());
+    }
+
+    @Test
+    public void testReadThroughCountsHitsAndMisses() {
+        newFileManager().putString("key", "value");
+        final SharedPreferencesFileManager fileManager = newFileManager();
+
+        final long hits = getCount(MetricNames.SHARED_PREFERENCES_CACHE_HIT);
+        final long misses = getCount(MetricNames.SHARED_PREFERENCES_CACHE_MISS);
+
+        assertEquals("value", fileManager.getString("key"));
+        assertEquals("value", fileManager.getString("key"));
+
+        assertEquals(hits + 1, getCount(MetricNames.SHARED_PREFERENCES_CACHE_HIT));
+        assertEquals(misses + 1, getCount(MetricNames.SHARED_PREFERENCES_CACHE_MISS));
+        assertEquals(1, mEncryptionManager.mDecryptCount.get());
+    }
+
+    @Test
+    public void testRemoveInvalidatesCachedValue() {
+        final SharedPreferencesFileManager fileManager = newFileManager();
+        fileManager.putString("key", "value");
+        assertEquals("value", fileManager.getString("key"));
+
+        fileManager.remove("key");
+        assertNull(fileManager.getString("key"));
+    }
+
+    @Test
+    public void testClearInvalidatesCachedValues() {
+        final SharedPreferencesFileManager fileManager = newFileManager();
+        fileManager.putString("key1", "value1");
+        fileManager.putString("key2", "value2");
+
+        fileManager.clear();
+        assertNull(fileManager.getString("key1"));
+        assertNull(fileManager.getString("key2"));
+    }
+
+    @Test
+    public void testCacheIsBoundedBySize() {
+        final SharedPreferencesFileManager fileManager = newFileManager();
+
+        // Each entry is just over a quarter of the cache, so the oldest are evicted.
+        final char[] chars = new char[SharedPreferencesFileManager.MAX_CACHE_SIZE_BYTES / 8];
+        Arrays.fill(chars, 'a');
+        final String value = new String(chars);
+        for (int i = 0; i < 5; i++) {
+            fileManager.putString("key" + i, value + i);
+        }
+
+        mEncryptionManager.mDecryptCount.set(0);
+        assertEquals(value + 4, fileManager.getString("key4"));
+        assertEquals(0, mEncryptionManager.mDecryptCount.get());
+
+        assertEquals(value + 0, fileManager.getString("key0"));
+        assertEquals(1, mEncryptionManager.mDecryptCount.get());
+    }
+
+    @Test
+    public void testSnapshotDecryptsLargeBatchOnce() {
+        final int count = SharedPreferencesFileManager.PARALLEL_DECRYPTION_THRESHOLD * 3;
+        final SharedPreferencesFileManager writer = newFileManager();
+        for (int i = 0; i < count; i++) {
+            writer.putString("key" + i, "value" + i);
+        }
+
+        final SharedPreferencesFileManager reader = newFileManager();
+        final NameValueSnapshot<String> snapshot = reader.getSnapshot(ALL_KEYS);
+        assertEquals(count, snapshot.size());
+        assertEquals(count, mEncryptionManager.mDecryptCount.get());
+        for (int i = 0; i < count; i++) {
+            assertEquals("value" + i, snapshot.get("key" + i));
+        }
+
+        mEncryptionManager.mDecryptCount.set(0);
+        assertEquals(snapshot.getEntries(), reader.getSnapshot(ALL_KEYS).getEntries());
+        assertEquals(0, mEncryptionManager.mDecryptCount.get());
+    }
+
+    @Test
+    public void testSnapshotIsFilteredAndUnaffectedByLaterWrites() {
+        final SharedPreferencesFileManager fileManager = newFileManager();
+        fileManager.putString("included.1", "value1");
+        fileManager.putString("excluded", "value2");
+
+        final NameValueSnapshot<String> snapshot = fileManager.getSnapshot(new Predicate<String>() {
+            @Override
+            public boolean test(String key) {
+                return key.startsWith("included.");
+            }
+        });
+        fileManager.putString("included.2", "value3");
+        fileManager.remove("included.1");
+
+        assertEquals(1, snapshot.size());
+        assertEquals("value1", snapshot.get("included.1"));
+    }
+
+    @Test
+    public void testSnapshotVersionChangesOnWrite() {
+        final SharedPreferencesFileManager fileManager = newFileManager();
+        fileManager.putString("key", "value");
+
+        final NameValueSnapshot<String> first = fileManager.getSnapshot(ALL_KEYS);
+        assertTrue(first.isSameVersionAs(fileManager.getSnapshot(ALL_KEYS)));
+
+        fileManager.putString("key", "other value");
+        final NameValueSnapshot<String> second = fileManager.getSnapshot(ALL_KEYS);
+        assertFalse(first.isSameVersionAs(second));
+        assertEquals("other value", second.get("key"));
+    }
+
+    private SharedPreferencesFileManager newFileManager() {
+        return new SharedPreferencesFileManager(mContext, TEST_SHARED_PREFS_NAME, mEncryptionManager);
+    }
+
+    private static SharedPreferencesAccountCredentialCache newCredentialCache(
+            @NonNull final SharedPreferencesFileManager fileManager,
+            @NonNull final CacheKeyValueDelegate delegate) {
+        return new SharedPreferencesAccountCredentialCache(
+                delegate,
+                new SharedPrefStringNameValueStorage(fileManager)
+        );
+    }
+
+    private static long getCount(@NonNull final String counterName) {
+        return MetricsRegistry.getInstance().getCounter(counterName).getCount();
+    }
+
+    private static AccessTokenRecord createAccessToken(@NonNull final String realm) {
+        final AccessTokenRecord accessToken = new AccessTokenRecord();
+        accessToken.setHomeAccountId("29f3807a-4fb0-42f2-a44a-236aa0cb3f97.0287f963-2d72-4363-9e3a-5705c5b0f031");
+        accessToken.setEnvironment("login.microsoftonline.com");
+        accessToken.setCredentialType(CredentialType.AccessToken.name());
+        accessToken.setClientId("0287f963-2d72-4363-9e3a-5705c5b0f031");
+        accessToken.setRealm(realm);
+        accessToken.setTarget("user.read user.write");
+        accessToken.setCachedAt("0");
+        accessToken.setExpiresOn("0");
+        accessToken.setSecret("3642fe2f-2c46-4824-9f27-e44b0e3e1278");
+        return accessToken;
+    }
+
+    private static class CountingEncryptionManager extends AndroidAuthSdkStorageEncryptionManager {
+        private final AtomicInteger mDecryptCount = new AtomicInteger();
+
+        CountingEncryptionManager(@NonNull final Context context) {
+            super(context, null);
+        }
+
+        @Override
+        public byte[] decrypt(final byte[] cipherText) throws ClientException {
+            mDecryptCount.incrementAndGet();
+            return super.decrypt(cipherText);
+        }
+    }
+}
@@ -0,0 +1,366 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+package com.microsoft.identity.common.internal.migration;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.microsoft.identity.common.adal.internal.cache.ADALTokenCacheItem;
+import com.microsoft.identity.common.java.providers.microsoft.MicrosoftAccount;
+import com.microsoft.identity.common.java.providers.microsoft.MicrosoftRefreshToken;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the concurrency and timeout handling of
+ * {@link TokenCacheItemMigrationAdapter#renewTokens}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TokenCacheItemMigrationAdapterRenewalTest {
+
+    private static final String AUTHORITY = "https://login.microsoftonline.com/common";
+    private static final String REDIRECT_URI = "msauth://com.example/hash";
+    private static final int CLIENT_COUNT = 20;
+
+    @Test
+    public void testRenewsAllTokensWithinConcurrencyLimit() {
+        final int maxConcurrentRequests = 3;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+
+        final List<Map.Entry<MicrosoftAccount, MicrosoftRefreshToken>> result =
+                TokenCacheItemMigrationAdapter.renewTokens(
+                        redirectsFor(CLIENT_COUNT),
+                        tokensFor(CLIENT_COUNT),
+                        TokenCacheItemMigrationAdapter.MigrationOptions.builder()
+                                .maxConcurrentRequests(maxConcurrentRequests)
+                                .build(),
+                        new TokenCacheItemMigrationAdapter.ITokenRenewer() {
+                            @Override
+                            public Map.Entry<MicrosoftAccount, MicrosoftRefreshToken> renew(
+                                    @Nullable final String redirectUri,
+                                    @NonNull final ADALTokenCacheItem cacheItem) {
+                                final int current = inFlight.incrementAndGet();
+                                updateMax(maxInFlight, current);
+                                sleep(10);
+                                inFlight.decrementAndGet();
+                                return renewed();
+                            }
+                        }
+                );
+
+        assertEquals(CLIENT_COUNT, result.size());
+        assertTrue(maxInFlight.get() <= maxConcurrentRequests);
+    }
+
+    @Test
+    public void testRequestsEveryTokenWithItsClientRedirect() {
+        // Selecting which tokens to renew is left to preferentiallySelectTokens.
+        final List<ADALTokenCacheItem> tokens = new ArrayList<>(tokensFor(CLIENT_COUNT));
+        tokens.addAll(tokensFor(CLIENT_COUNT));
+        final Map<String, String> redirects = redirectsFor(CLIENT_COUNT);
+        redirects.remove(clientIdOf(0));
+
+        final List<String> requestRedirects = Collections.synchronizedList(new ArrayList<String>());
+
+        final List<Map.Entry<MicrosoftAccount, MicrosoftRefreshToken>> result =
+                TokenCacheItemMigrationAdapter.renewTokens(
+                        redirects,
+                        tokens,
+                        TokenCacheItemMigrationAdapter.MigrationOptions.builder().build(),
+                        new TokenCacheItemMigrationAdapter.ITokenRenewer() {
+                            @Override
+                            public Map.Entry<MicrosoftAccount, MicrosoftRefreshToken> renew(
+                                    @Nullable final String redirectUri,
+                                    @NonNull final ADALTokenCacheItem cacheItem) {
+                                requestRedirects.add(redirectUri);
+                                return redirectUri == null ? null : renewed();
+                            }
+                        }
+                );
+
+        assertEquals(2 * CLIENT_COUNT, requestRedirects.size());
+        assertEquals(2, Collections.frequency(requestRedirects, null));
+        assertEquals(2 * (CLIENT_COUNT - 1), result.size());
+    }
+
+    @Test
+    public void testAbandonsRequestsThatTimeOut() {
+        final CountDownLatch release = new CountDownLatch(1);
+        final long startTime = System.nanoTime();
+
+        final List<Map.Entry<MicrosoftAccount, MicrosoftRefreshToken>> result =
+                TokenCacheItemMigrationAdapter.renewTokens(
+                        redirectsFor(CLIENT_COUNT),
+                        tokensFor(CLIENT_COUNT),
+                        TokenCacheItemMigrationAdapter.MigrationOptions.builder()
+                                .maxConcurrentRequests(CLIENT_COUNT)
+                                .requestTimeoutMillis(200)
+                                .build(),
+                        new TokenCacheItemMigrationAdapter.ITokenRenewer() {
+                            @Override
+                            public Map.Entry<MicrosoftAccount, MicrosoftRefreshToken> renew(
+                                    @Nullable final String redirectUri,
+                                    @NonNull final ADALTokenCacheItem cacheItem) {
+                                if (clientIdOf(0).equals(cacheItem.getClientId())) {
+                                    awaitUninterruptibly(release);
+                                }
+                                return renewed();
+                            }
+                        }
+                );
+        release.countDown();
+
+        assertEquals(CLIENT_COUNT - 1, result.size());
+        assertTrue(System.nanoTime() - startTime < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    public void testTimesOutEachRequestSeparately() {
+        final CountDownLatch release = new CountDownLatch(1);
+        final long timeoutMillis = 200;
+        final long startTime = System.nanoTime();
+
+        // One request at a time, so the stuck requests run one after the other.
+        final List<Map.Entry<MicrosoftAccount, MicrosoftRefreshToken>> result =
+                TokenCacheItemMigrationAdapter.renewTokens(
+                        redirectsFor(4),
+                        tokensFor(4),
+                        TokenCacheItemMigrationAdapter.MigrationOptions.builder()
+                                .maxConcurrentRequests(1)
+                                .requestTimeoutMillis(timeoutMillis)
+                                .build(),
+                        new TokenCacheItemMigrationAdapter.ITokenRenewer() {
+                            @Override
+                            public Map.Entry<MicrosoftAccount, MicrosoftRefreshToken> renew(
+                                    @Nullable final String redirectUri,
+                                    @NonNull final ADALTokenCacheItem cacheItem) {
+                                if (clientIdOf(0).equals(cacheItem.getClientId())
+                                        || clientIdOf(1).equals(cacheItem.getClientId())) {
+                                    try {
+                                        // Cancelling a timed out request interrupts it.
+                                        release.await();
+                                    } catch (final InterruptedException e) {
+                                        return null;
+                                    }
+                                }
+                                return renewed();
+                            }
+                        }
+                );
+        release.countDown();
+
+        assertEquals(2, result.size());
+        assertTrue(System.nanoTime() - startTime >= TimeUnit.MILLISECONDS.toNanos(2 * timeoutMillis));
+        assertTrue(System.nanoTime() - startTime < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    public void testTimesOutQueuedRequestsFromWhenTheyStart() {
+        final CountDownLatch release = new CountDownLatch(1);
+        final long timeoutMillis = 300;
+        final int tokenCount = 6;
+        final long startTime = System.nanoTime();
+
+        // Two waves of stuck requests share the pool, then a wave that completes.
+        final List<Map.Entry<MicrosoftAccount, MicrosoftRefreshToken>> result =
+                TokenCacheItemMigrationAdapter.renewTokens(
+                        redirectsFor(tokenCount),
+                        tokensFor(tokenCount),
+                        TokenCacheItemMigrationAdapter.MigrationOptions.builder()
+                                .maxConcurrentRequests(2)
+                                .requestTimeoutMillis(timeoutMillis)
+                                .build(),
+                        new TokenCacheItemMigrationAdapter.ITokenRenewer() {
+                            @Override
+                            public Map.Entry<MicrosoftAccount, MicrosoftRefreshToken> renew(
+                                    @Nullable final String redirectUri,
+                                    @NonNull final ADALTokenCacheItem cacheItem) {
+                                if (!clientIdOf(4).equals(cacheItem.getClientId())
+                                        && !clientIdOf(5).equals(cacheItem.getClientId())) {
+                                    try {
+                                        release.await();
+                                    } catch (final InterruptedException e) {
+                                        return null;
+                                    }
+                                }
+                                return renewed();
+                            }
+                        }
+                );
+        release.countDown();
+
+        // Each wave times out together, rather than each request in turn.
+        assertEquals(2, result.size());
+        assertTrue(System.nanoTime() - startTime < TimeUnit.MILLISECONDS.toNanos(3 * timeoutMillis));
+    }
+
+    @Test
+    public void testDoesNotWaitForQueuedRequestsBehindRequestsThatIgnoreCancellation() {
+        final CountDownLatch release = new CountDownLatch(1);
+        final long timeoutMillis = 300;
+        final int tokenCount = 6;
+        final long startTime = System.nanoTime();
+
+        // The first two requests hold both threads, as a blocking read would.
+        final List<Map.Entry<MicrosoftAccount, MicrosoftRefreshToken>> result =
+                TokenCacheItemMigrationAdapter.renewTokens(
+                        redirectsFor(tokenCount),
+                        tokensFor(tokenCount),
+                        TokenCacheItemMigrationAdapter.MigrationOptions.builder()
+                                .maxConcurrentRequests(2)
+                                .requestTimeoutMillis(timeoutMillis)
+                                .build(),
+                        new TokenCacheItemMigrationAdapter.ITokenRenewer() {
+                            @Override
+                            public Map.Entry<MicrosoftAccount, MicrosoftRefreshToken> renew(
+                                    @Nullable final String redirectUri,
+                                    @NonNull final ADALTokenCacheItem cacheItem) {
+                                if (clientIdOf(0).equals(cacheItem.getClientId())
+                                        || clientIdOf(1).equals(cacheItem.getClientId())) {
+                                    awaitUninterruptibly(release);
+                                }
+                                return renewed();
+                            }
+                        }
+                );
+        final long elapsed = System.nanoTime() - startTime;
+        release.countDown();
+
+        // Bounded by three waves of timeouts.
+        assertEquals(0, result.size());
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(3 * timeoutMillis));
+        assertTrue(elapsed < TimeUnit.MILLISECONDS.toNanos(3 * timeoutMillis) + TimeUnit.MILLISECONDS.toNanos(500));
+    }
+
+    @Test
+    public void testReportsProgressForFailedRequests() {
+        final List<Integer> progress = Collections.synchronizedList(new ArrayList<Integer>());
+
+        final List<Map.Entry<MicrosoftAccount, MicrosoftRefreshToken>> result =
+                TokenCacheItemMigrationAdapter.renewTokens(
+                        redirectsFor(CLIENT_COUNT),
+                        tokensFor(CLIENT_COUNT),
+                        TokenCacheItemMigrationAdapter.MigrationOptions.builder()
+                                .progressCallback(new TokenCacheItemMigrationAdapter.IMigrationProgressCallback() {
+                                    @Override
+                                    public void onProgress(final int completedRequests, final int totalRequests) {
+                                        assertEquals(CLIENT_COUNT, totalRequests);
+                                        progress.add(completedRequests);
+                                    }
+                                })
+                                .build(),
+                        new TokenCacheItemMigrationAdapter.ITokenRenewer() {
+                            @Override
+                            public Map.Entry<MicrosoftAccount, MicrosoftRefreshToken> renew(
+                                    @Nullable final String redirectUri,
+                                    @NonNull final ADALTokenCacheItem cacheItem) {
+                                if (clientIdOf(1).equals(cacheItem.getClientId())) {
+                                    throw new IllegalStateException("Request failed.");
+                                }
+                                return clientIdOf(2).equals(cacheItem.getClientId()) ? null : renewed();
+                            }
+                        }
+                );
+
+        assertEquals(CLIENT_COUNT - 2, result.size());
+        assertEquals(CLIENT_COUNT, progress.size());
+        for (int i = 0; i < CLIENT_COUNT; i++) {
+            assertEquals(i + 1, (int) progress.get(i));
+        }
+    }
+
+    private static List<ADALTokenCacheItem> tokensFor(final int clientCount) {
+        final List<ADALTokenCacheItem> tokens = new ArrayList<>();
+        for (int i = 0; i < clientCount; i++) {
+            final ADALTokenCacheItem token = new ADALTokenCacheItem();
+            token.setClientId(clientIdOf(i));
+            token.setAuthority(AUTHORITY);
+            token.setResource("https://graph.windows.net");
+            token.setRefreshToken("refresh_token_" + i);
+            tokens.add(token);
+        }
+        return tokens;
+    }
+
+    private static Map<String, String> redirectsFor(final int clientCount) {
+        final Map<String, String> redirects = new HashMap<>();
+        for (int i = 0; i < clientCount; i++) {
+            redirects.put(clientIdOf(i), REDIRECT_URI);
+        }
+        return redirects;
+    }
+
+    private static String clientIdOf(final int index) {
+        return "client_id_" + index;
+    }
+
+    private static Map.Entry<MicrosoftAccount, MicrosoftRefreshToken> renewed() {
+        return new AbstractMap.SimpleEntry<>(null, null);
+    }
+
+    private static void updateMax(final AtomicInteger max, final int value) {
+        int current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitUninterruptibly(final CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (final InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
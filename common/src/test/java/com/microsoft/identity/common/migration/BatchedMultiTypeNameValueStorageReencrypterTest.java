@@ -0,0 +1,317 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.migration;
+
+import androidx.annotation.NonNull;
+
+import com.microsoft.identity.common.java.cache.NameValueSnapshot;
+import com.microsoft.identity.common.java.interfaces.INameValueStorage;
+import com.microsoft.identity.common.java.util.ported.InMemoryStorage;
+import com.microsoft.identity.common.java.util.ported.Predicate;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link BatchedMultiTypeNameValueStorageReencrypter}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BatchedMultiTypeNameValueStorageReencrypterTest {
+
+    private static final String OLD_PREFIX = "old:";
+    private static final String NEW_PREFIX = "new:";
+    private static final String CHECKPOINT_KEY = "checkpoint";
+    private static final String KEY_IDENTIFIER = "new-key";
+    private static final int ENTRY_COUNT = 100;
+    private static final int BATCH_SIZE = 8;
+
+    private static final IMultiTypeNameValueStorageReencrypter.ReencryptionParams CONTINUE_ON_ERROR =
+            new IMultiTypeNameValueStorageReencrypter.ReencryptionParams(false, false, false);
+
+    private static final IMultiTypeNameValueStorageReencrypter.ReencryptionParams ABORT_ON_ERROR =
+            new IMultiTypeNameValueStorageReencrypter.ReencryptionParams(true, false, false);
+
+    private static final IMultiTypeNameValueStorageReencrypter.IStringEncrypter ENCRYPTER =
+            new IMultiTypeNameValueStorageReencrypter.IStringEncrypter() {
+                @Override
+                public String encrypt(final String input) {
+                    return NEW_PREFIX + input;
+                }
+            };
+
+    private static final IMultiTypeNameValueStorageReencrypter.IStringDecrypter DECRYPTER =
+            new IMultiTypeNameValueStorageReencrypter.IStringDecrypter() {
+                @Override
+                public String decrypt(final String input) throws Exception {
+                    if (input.startsWith(OLD_PREFIX)) {
+                        return input.substring(OLD_PREFIX.length());
+                    }
+                    throw new IllegalArgumentException("Not encrypted with the old key.");
+                }
+            };
+
+    private InMemoryStorage<String> mStorage;
+    private InMemoryStorage<String> mCheckpointStore;
+
+    @Before
+    public void setUp() {
+        mStorage = new InMemoryStorage<>();
+        mCheckpointStore = new InMemoryStorage<>();
+        for (int i = 0; i < ENTRY_COUNT; i++) {
+            mStorage.put(keyOf(i), OLD_PREFIX + i);
+        }
+    }
+
+    @Test
+    public void testReencryptsAllEntries() {
+        final IMigrationOperationResult result = newReencrypter(null)
+                .reencrypt(mStorage, ENCRYPTER, DECRYPTER, CONTINUE_ON_ERROR);
+
+        assertEquals(ENTRY_COUNT, result.getCountOfTotalRecords());
+        assertEquals(0, result.getCountOfFailedRecords());
+        for (int i = 0; i < ENTRY_COUNT; i++) {
+            assertEquals(NEW_PREFIX + i, mStorage.get(keyOf(i)));
+        }
+        assertNull(mCheckpointStore.get(CHECKPOINT_KEY));
+    }
+
+    @Test
+    public void testResumesAfterCheckpoint() {
+        final int completed = 40;
+        for (int i = 0; i < completed; i++) {
+            mStorage.put(keyOf(i), NEW_PREFIX + i);
+        }
+        mCheckpointStore.put(CHECKPOINT_KEY,
+                BatchedMultiTypeNameValueStorageReencrypter.checkpointOf(KEY_IDENTIFIER, keyOf(completed - 1)));
+
+        // The decrypter rejects entries already under the new key, so any revisited entry fails.
+        final IMigrationOperationResult result = newReencrypter(null)
+                .reencrypt(mStorage, ENCRYPTER, DECRYPTER, ABORT_ON_ERROR);
+
+        assertEquals(0, result.getCountOfFailedRecords());
+        for (int i = 0; i < ENTRY_COUNT; i++) {
+            assertEquals(NEW_PREFIX + i, mStorage.get(keyOf(i)));
+        }
+        assertNull(mCheckpointStore.get(CHECKPOINT_KEY));
+    }
+
+    @Test
+    public void testIgnoresCheckpointOfAnotherKey() {
+        // Progress of an earlier rotation, to a key that is no longer the target.
+        mCheckpointStore.put(CHECKPOINT_KEY,
+                BatchedMultiTypeNameValueStorageReencrypter.checkpointOf("previous-key", keyOf(ENTRY_COUNT / 2)));
+
+        final IMigrationOperationResult result = newReencrypter(null)
+                .reencrypt(mStorage, ENCRYPTER, DECRYPTER, ABORT_ON_ERROR);
+
+        assertEquals(0, result.getCountOfFailedRecords());
+        for (int i = 0; i < ENTRY_COUNT; i++) {
+            assertEquals(NEW_PREFIX + i, mStorage.get(keyOf(i)));
+        }
+        assertNull(mCheckpointStore.get(CHECKPOINT_KEY));
+    }
+
+    @Test
+    public void testAbortCheckpointsCompletedEntries() {
+        final int failingEntry = 50;
+        mStorage.put(keyOf(failingEntry), "corrupt");
+
+        final IMigrationOperationResult result = newReencrypter(null)
+                .reencrypt(mStorage, ENCRYPTER, DECRYPTER, ABORT_ON_ERROR);
+
+        assertEquals(1, result.getCountOfFailedRecords());
+        assertEquals(BatchedMultiTypeNameValueStorageReencrypter.checkpointOf(KEY_IDENTIFIER, keyOf(failingEntry - 1)),
+                mCheckpointStore.get(CHECKPOINT_KEY));
+        assertEquals(NEW_PREFIX + (failingEntry - 1), mStorage.get(keyOf(failingEntry - 1)));
+        assertEquals("corrupt", mStorage.get(keyOf(failingEntry)));
+        assertEquals(OLD_PREFIX + (ENTRY_COUNT - 1), mStorage.get(keyOf(ENTRY_COUNT - 1)));
+    }
+
+    @Test
+    public void testEraseEntryOnError() {
+        final int failingEntry = 10;
+        mStorage.put(keyOf(failingEntry), "corrupt");
+
+        final IMigrationOperationResult result = newReencrypter(null).reencrypt(
+                mStorage, ENCRYPTER, DECRYPTER,
+                new IMultiTypeNameValueStorageReencrypter.ReencryptionParams(false, true, false)
+        );
+
+        assertEquals(1, result.getCountOfFailedRecords());
+        assertNull(mStorage.get(keyOf(failingEntry)));
+        assertEquals(ENTRY_COUNT - 1, mStorage.getAll().size());
+    }
+
+    @Test
+    public void testEraseAllOnError() {
+        mStorage.put(keyOf(ENTRY_COUNT - 1), "corrupt");
+
+        newReencrypter(null).reencrypt(
+                mStorage, ENCRYPTER, DECRYPTER,
+                new IMultiTypeNameValueStorageReencrypter.ReencryptionParams(false, false, true)
+        );
+
+        assertTrue(mStorage.getAll().isEmpty());
+        assertNull(mCheckpointStore.get(CHECKPOINT_KEY));
+    }
+
+    @Test
+    public void testSkipsEntriesRewrittenDuringReencryption() {
+        final String rewrittenKey = keyOf(3);
+        final String rewrittenValue = NEW_PREFIX + "rewritten";
+
+        final IMultiTypeNameValueStorageReencrypter.IStringDecrypter rewritingDecrypter =
+                new IMultiTypeNameValueStorageReencrypter.IStringDecrypter() {
+                    @Override
+                    public String decrypt(final String input) throws Exception {
+                        if (input.equals(OLD_PREFIX + 3)) {
+                            // A concurrent writer stores a value under the new key.
+                            mStorage.put(rewrittenKey, rewrittenValue);
+                        }
+                        return DECRYPTER.decrypt(input);
+                    }
+                };
+
+        final IMigrationOperationResult result = newReencrypter(null)
+                .reencrypt(mStorage, ENCRYPTER, rewritingDecrypter, CONTINUE_ON_ERROR);
+
+        assertEquals(0, result.getCountOfFailedRecords());
+        assertEquals(rewrittenValue, mStorage.get(rewrittenKey));
+        assertEquals(NEW_PREFIX + 4, mStorage.get(keyOf(4)));
+    }
+
+    @Test
+    public void testReencryptsStorageWithoutCompareAndSet() {
+        final IMigrationOperationResult result = newReencrypter(null)
+                .reencrypt(new PlainStorage(mStorage), ENCRYPTER, DECRYPTER, CONTINUE_ON_ERROR);
+
+        assertEquals(0, result.getCountOfFailedRecords());
+        for (int i = 0; i < ENTRY_COUNT; i++) {
+            assertEquals(NEW_PREFIX + i, mStorage.get(keyOf(i)));
+        }
+    }
+
+    @Test
+    public void testReportsProgressAfterEachBatch() {
+        final List<Integer> progress = new ArrayList<>();
+        final BatchedMultiTypeNameValueStorageReencrypter.IProgressCallback callback =
+                new BatchedMultiTypeNameValueStorageReencrypter.IProgressCallback() {
+                    @Override
+                    public void onProgress(final int completedRecords,
+                                           final int totalRecords,
+                                           final double recordsPerSecond) {
+                        assertEquals(ENTRY_COUNT, totalRecords);
+                        assertFalse(recordsPerSecond < 0);
+                        progress.add(completedRecords);
+                    }
+                };
+
+        newReencrypter(callback).reencrypt(mStorage, ENCRYPTER, DECRYPTER, CONTINUE_ON_ERROR);
+
+        assertEquals((ENTRY_COUNT + BATCH_SIZE - 1) / BATCH_SIZE, progress.size());
+        assertEquals(BATCH_SIZE, (int) progress.get(0));
+        assertEquals(ENTRY_COUNT, (int) progress.get(progress.size() - 1));
+    }
+
+    private BatchedMultiTypeNameValueStorageReencrypter newReencrypter(
+            final BatchedMultiTypeNameValueStorageReencrypter.IProgressCallback callback) {
+        return BatchedMultiTypeNameValueStorageReencrypter.builder()
+                .checkpointStore(mCheckpointStore)
+                .checkpointKey(CHECKPOINT_KEY)
+                .keyIdentifier(KEY_IDENTIFIER)
+                .batchSize(BATCH_SIZE)
+                .parallelism(4)
+                .progressCallback(callback)
+                .build();
+    }
+
+    @NonNull
+    private static String keyOf(final int index) {
+        // Zero-padded, so that key order matches index order.
+        return String.format("key-%03d", index);
+    }
+
+    /**
+     * A storage that supports none of the optional storage interfaces.
+     */
+    private static final class PlainStorage implements INameValueStorage<String> {
+        private final INameValueStorage<String> mDelegate;
+
+        PlainStorage(@NonNull final INameValueStorage<String> delegate) {
+            mDelegate = delegate;
+        }
+
+        @Override
+        public String get(final String name) {
+            return mDelegate.get(name);
+        }
+
+        @Override
+        public Map<String, String> getAll() {
+            return mDelegate.getAll();
+        }
+
+        @Override
+        public void put(final String name, final String value) {
+            mDelegate.put(name, value);
+        }
+
+        @Override
+        public void remove(final String name) {
+            mDelegate.remove(name);
+        }
+
+        @Override
+        public void clear() {
+            mDelegate.clear();
+        }
+
+        @Override
+        public Set<String> keySet() {
+            return mDelegate.keySet();
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, String>> getAllFilteredByKey(final Predicate<String> keyFilter) {
+            return mDelegate.getAllFilteredByKey(keyFilter);
+        }
+
+        @Override
+        public NameValueSnapshot<String> getSnapshot(final Predicate<String> keyFilter) {
+            return mDelegate.getSnapshot(keyFilter);
+        }
+    }
+}
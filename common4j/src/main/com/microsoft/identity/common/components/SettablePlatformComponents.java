@@ -419,7 +419,7 @@ public class SettablePlatformComponents implements IPlatformComponents {
 
         @Override
         public long getNanosecondTime() {
-            throw new UnsupportedOperationException();
+            return System.nanoTime();
         }
 
         @Override
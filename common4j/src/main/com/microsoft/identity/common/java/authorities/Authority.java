@@ -40,8 +40,12 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import edu.umd.cs.findbugs.annotations.Nullable;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -55,6 +59,8 @@ public abstract class Authority {
     private static final String B2C_PATH_SEGMENT = "tfp";
     public static final String B2C = "B2C";
 
+    private static final int PARSED_AUTHORITY_URL_CACHE_SIZE = 64;
+
     protected boolean mKnownToMicrosoft = false;
     protected boolean mKnownToDeveloper = false;
 
@@ -128,14 +134,8 @@ public abstract class Authority {
      */
     public static Authority getAuthorityFromAuthorityUrl(String authorityUrl) {
         final String methodName = ":getAuthorityFromAuthorityUrl";
-        final CommonURIBuilder authorityCommonUriBuilder;
-        try {
-            authorityCommonUriBuilder = new CommonURIBuilder(authorityUrl);
-        } catch (final URISyntaxException e) {
-            throw new IllegalArgumentException("Invalid authority URL");
-        }
-
-        final List<String> pathSegments = authorityCommonUriBuilder.getPathSegments();
+        final ParsedAuthorityUrl parsedAuthorityUrl = parseAuthorityUrl(authorityUrl);
+        final List<String> pathSegments = parsedAuthorityUrl.mPathSegments;
 
         if (pathSegments.size() == 0) {
             return new UnknownAuthority();
@@ -143,14 +143,15 @@ public abstract class Authority {
 
         Authority authority = null; // Our result object...
 
-        if (authorityIsKnownFromConfiguration(authorityUrl)) {
-            final Authority configuredAuthority = getEquivalentConfiguredAuthority(authorityUrl);
+        final Authority configuredAuthority = getEquivalentConfiguredAuthority(parsedAuthorityUrl);
+
+        if (configuredAuthority != null) {
             final String authorityTypeStr = configuredAuthority.mAuthorityTypeString;
 
             if (B2C.equalsIgnoreCase(authorityTypeStr)) {
                 authority = new AzureActiveDirectoryB2CAuthority(authorityUrl);
             } else {
-                authority = createAadAuthority(authorityCommonUriBuilder, pathSegments);
+                authority = createAadAuthority(parsedAuthorityUrl);
             }
         } else {
             String authorityType = pathSegments.get(0);
@@ -177,7 +178,7 @@ public abstract class Authority {
                             TAG + methodName,
                             "Authority type default: AAD"
                     );
-                    authority = createAadAuthority(authorityCommonUriBuilder, pathSegments);
+                    authority = createAadAuthority(parsedAuthorityUrl);
                     break;
             }
         }
@@ -185,28 +186,28 @@ public abstract class Authority {
         return authority;
     }
 
-    @Nullable
-    private static Authority getEquivalentConfiguredAuthority(@NonNull final String authorityStr) {
-        Authority result = null;
+    /**
+     * Parses the supplied authority url, or returns the result of parsing it before.
+     */
+    private static ParsedAuthorityUrl parseAuthorityUrl(final String authorityUrl) {
+        synchronized (sParsedAuthorityUrls) {
+            final ParsedAuthorityUrl cached = sParsedAuthorityUrls.get(authorityUrl);
+            if (cached != null) {
+                return cached;
+            }
+        }
 
+        final CommonURIBuilder authorityCommonUriBuilder;
         try {
-            final URL authorityUrl = new URL(authorityStr);
-            final String httpAuthority = authorityUrl.getAuthority();
-
-            // Iterate over all of the developer trusted authorities and check if the authorities
-            // are the same...
-            for (final Authority currentAuthority : knownAuthorities) {
-                if (!StringUtil.isNullOrEmpty(currentAuthority.mAuthorityUrlString)) {
-                    final URL currentAuthorityUrl = new URL(currentAuthority.mAuthorityUrlString);
-                    final String currentHttpAuthority = currentAuthorityUrl.getAuthority();
+            authorityCommonUriBuilder = new CommonURIBuilder(authorityUrl);
+        } catch (final URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid authority URL");
+        }
 
-                    if (httpAuthority.equalsIgnoreCase(currentHttpAuthority)) {
-                        result = currentAuthority;
-                        break;
-                    }
-                }
-            }
-        } catch (MalformedURLException e) {
+        String httpAuthority = null;
+        try {
+            httpAuthority = new URL(authorityUrl).getAuthority();
+        } catch (final MalformedURLException e) {
             // Shouldn't happen
             Logger.errorPII(
                     TAG,
@@ -215,18 +216,32 @@ public abstract class Authority {
             );
         }
 
-        return result;
+        final ParsedAuthorityUrl parsed = new ParsedAuthorityUrl(
+                authorityCommonUriBuilder.getScheme() + "://" + authorityCommonUriBuilder.getHost(),
+                httpAuthority,
+                Collections.unmodifiableList(new ArrayList<>(authorityCommonUriBuilder.getPathSegments()))
+        );
+
+        synchronized (sParsedAuthorityUrls) {
+            sParsedAuthorityUrls.put(authorityUrl, parsed);
+        }
+
+        return parsed;
     }
 
-    private static boolean authorityIsKnownFromConfiguration(@NonNull final String authorityStr) {
-        return null != getEquivalentConfiguredAuthority(authorityStr);
+    @Nullable
+    private static Authority getEquivalentConfiguredAuthority(@NonNull final ParsedAuthorityUrl authorityUrl) {
+        if (authorityUrl.mHttpAuthority == null) {
+            return null;
+        }
+
+        return sKnownAuthoritiesByHttpAuthority.get(authorityUrl.mHttpAuthority.toLowerCase(Locale.ROOT));
     }
 
-    private static Authority createAadAuthority(@NonNull final CommonURIBuilder authorityCommonUriBuilder,
-                                                @NonNull final List<String> pathSegments) {
+    private static Authority createAadAuthority(@NonNull final ParsedAuthorityUrl authorityUrl) {
         AzureActiveDirectoryAudience audience = AzureActiveDirectoryAudience.getAzureActiveDirectoryAudience(
-                authorityCommonUriBuilder.getScheme() + "://" + authorityCommonUriBuilder.getHost(),
-                pathSegments.get(0)
+                authorityUrl.mCloudUrl,
+                authorityUrl.mPathSegments.get(0)
         );
 
         return new AzureActiveDirectoryAuthority(audience);
@@ -292,6 +307,19 @@ public abstract class Authority {
     private static List<Authority> knownAuthorities = new ArrayList<>();
     private static Object sLock = new Object();
 
+    // The developer-configured authorities keyed by the lowercased host[:port] of their url; the
+    // first configured authority for a host wins. Replaced, never modified, when authorities are added.
+    private static volatile Map<String, Authority> sKnownAuthoritiesByHttpAuthority = Collections.emptyMap();
+
+    // The results of parsing the most recently used authority urls.
+    private static final Map<String, ParsedAuthorityUrl> sParsedAuthorityUrls =
+            new LinkedHashMap<String, ParsedAuthorityUrl>(PARSED_AUTHORITY_URL_CACHE_SIZE + 1, .75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, ParsedAuthorityUrl> eldest) {
+                    return size() > PARSED_AUTHORITY_URL_CACHE_SIZE;
+                }
+            };
+
     private static void performCloudDiscovery()
             throws IOException, URISyntaxException {
         final String methodName = ":performCloudDiscovery";
@@ -312,6 +340,30 @@ public abstract class Authority {
     public static void addKnownAuthorities(List<Authority> authorities) {
         synchronized (sLock) {
             knownAuthorities.addAll(authorities);
+
+            final Map<String, Authority> index = new HashMap<>(sKnownAuthoritiesByHttpAuthority);
+            for (final Authority authority : authorities) {
+                if (StringUtil.isNullOrEmpty(authority.mAuthorityUrlString)) {
+                    continue;
+                }
+
+                try {
+                    final String httpAuthority = new URL(authority.mAuthorityUrlString).getAuthority();
+                    if (httpAuthority != null) {
+                        final String key = httpAuthority.toLowerCase(Locale.ROOT);
+                        if (!index.containsKey(key)) {
+                            index.put(key, authority);
+                        }
+                    }
+                } catch (final MalformedURLException e) {
+                    Logger.errorPII(
+                            TAG,
+                            "Error parsing authority",
+                            e
+                    );
+                }
+            }
+            sKnownAuthoritiesByHttpAuthority = Collections.unmodifiableMap(index);
         }
     }
 
@@ -418,6 +470,25 @@ public abstract class Authority {
         return new KnownAuthorityResult(known, clientException);
     }
 
+    /**
+     * The parts of an authority url that are needed to determine its authority type.
+     */
+    private static final class ParsedAuthorityUrl {
+        // scheme://host
+        private final String mCloudUrl;
+        // host[:port], or null if the url could not be parsed as a URL.
+        private final String mHttpAuthority;
+        private final List<String> mPathSegments;
+
+        ParsedAuthorityUrl(@NonNull final String cloudUrl,
+                           @Nullable final String httpAuthority,
+                           @NonNull final List<String> pathSegments) {
+            mCloudUrl = cloudUrl;
+            mHttpAuthority = httpAuthority;
+            mPathSegments = pathSegments;
+        }
+    }
+
     public static class KnownAuthorityResult {
         private boolean mKnown;
         private ClientException mClientException;
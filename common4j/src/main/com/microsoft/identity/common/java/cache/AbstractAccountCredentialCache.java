@@ -30,17 +30,15 @@ import com.microsoft.identity.common.java.dto.IdTokenRecord;
 import com.microsoft.identity.common.java.dto.PrimaryRefreshTokenRecord;
 import com.microsoft.identity.common.java.dto.RefreshTokenRecord;
 import com.microsoft.identity.common.java.logging.Logger;
+import com.microsoft.identity.common.java.util.ScopeUtil;
 import com.microsoft.identity.common.java.util.StringUtil;
-import com.microsoft.identity.common.java.logging.Logger;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.EnumMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
-import static com.microsoft.identity.common.java.AuthenticationConstants.DEFAULT_SCOPES;
-
 import edu.umd.cs.findbugs.annotations.Nullable;
 import lombok.NonNull;
 
@@ -163,6 +161,11 @@ public abstract class AbstractAccountCredentialCache implements IAccountCredenti
                         + "Credential lookup filtered by requested claims? [" + mustMatchOnRequestedClaims + "]"
         );
 
+        // Tokenize the sought target once, rather than once per inspected credential
+        final Set<String> soughtScopes = mustMatchOnTarget
+                ? ScopeUtil.toNormalizedScopeSet(target)
+                : null;
+
         final List<Credential> matchingCredentials = new ArrayList<>();
 
         for (final Credential credential : allCredentials) {
@@ -197,10 +200,10 @@ public abstract class AbstractAccountCredentialCache implements IAccountCredenti
             if (mustMatchOnTarget) {
                 if (credential instanceof AccessTokenRecord) {
                     final AccessTokenRecord accessToken = (AccessTokenRecord) credential;
-                    matches = matches && targetsIntersect(target, accessToken.getTarget(), true);
+                    matches = matches && ScopeUtil.containsAllScopes(accessToken.getNormalizedTargetScopes(), soughtScopes, true);
                 } else if (credential instanceof RefreshTokenRecord) {
                     final RefreshTokenRecord refreshToken = (RefreshTokenRecord) credential;
-                    matches = matches && targetsIntersect(target, refreshToken.getTarget(), true);
+                    matches = matches && ScopeUtil.containsAllScopes(refreshToken.getNormalizedTargetScopes(), soughtScopes, true);
                 } else {
                     Logger.verbose(TAG, "Query specified target-match, but no target to match.");
                 }
@@ -234,6 +237,64 @@ public abstract class AbstractAccountCredentialCache implements IAccountCredenti
         return matchingCredentials;
     }
 
+    @NonNull
+    protected Map<CredentialType, List<Credential>> getCredentialsGroupedByTypeInternal(@Nullable final String homeAccountId,
+                                                                                        @Nullable final String environment,
+                                                                                        @NonNull final Set<CredentialType> credentialTypes,
+                                                                                        @Nullable final String clientId,
+                                                                                        @NonNull final List<Credential> allCredentials) {
+        final boolean mustMatchOnHomeAccountId = !StringUtil.isNullOrEmpty(homeAccountId);
+        final boolean mustMatchOnEnvironment = !StringUtil.isNullOrEmpty(environment);
+        final boolean mustMatchOnClientId = !StringUtil.isNullOrEmpty(clientId);
+
+        Logger.verbose(
+                TAG,
+                "Grouped credential lookup filtered by home_account_id? [" + mustMatchOnHomeAccountId + "]"
+                        + NEW_LINE
+                        + "Grouped credential lookup filtered by clientId? [" + mustMatchOnClientId + "]"
+                        + NEW_LINE
+                        + "Grouped credential lookup credential types: " + credentialTypes
+        );
+
+        final Map<CredentialType, List<Credential>> matchingCredentials = new EnumMap<>(CredentialType.class);
+
+        for (final CredentialType type : credentialTypes) {
+            matchingCredentials.put(type, new ArrayList<Credential>());
+        }
+
+        for (final Credential credential : allCredentials) {
+            final String credentialTypeStr = credential.getCredentialType();
+            final CredentialType type = null == credentialTypeStr
+                    ? null
+                    : CredentialType.fromString(credentialTypeStr.trim());
+            final List<Credential> matchesForType = null == type ? null : matchingCredentials.get(type);
+
+            if (null == matchesForType) {
+                continue;
+            }
+
+            boolean matches = true;
+
+            if (mustMatchOnHomeAccountId) {
+                matches = StringUtil.equalsIgnoreCaseTrimBoth(homeAccountId, credential.getHomeAccountId());
+            }
+
+            if (mustMatchOnEnvironment) {
+                matches = matches && StringUtil.equalsIgnoreCaseTrimBoth(environment, credential.getEnvironment());
+            }
+
+            if (mustMatchOnClientId) {
+                matches = matches && StringUtil.equalsIgnoreCaseTrimBoth(clientId, credential.getClientId());
+            }
+
+            if (matches) {
+                matchesForType.add(credential);
+            }
+        }
+
+        return matchingCredentials;
+    }
+
     /**
      * Examines the intersections of the provided targets (scopes).
      *
@@ -250,28 +311,10 @@ public abstract class AbstractAccountCredentialCache implements IAccountCredenti
         // The credentialTarget must contain all of the scopes in the targetToMatch
         // It may contain more, but it must contain minimally those
         // Matching is case-insensitive
-        final String splitCriteria = "\\s+";
-        final String[] targetToMatchArray = targetToMatch.trim().split(splitCriteria);
-        final String[] credentialTargetArray = credentialTarget.trim().split(splitCriteria);
-
-        // Declare Sets to contain these scopes
-        final Set<String> soughtTargetSet = new HashSet<>();
-        final Set<String> credentialTargetSet = new HashSet<>();
-
-        // Add the array values to these sets, lowercasing them
-        for (final String target : targetToMatchArray) {
-            soughtTargetSet.add(target.toLowerCase(Locale.ROOT));
-        }
-
-        for (final String target : credentialTargetArray) {
-            credentialTargetSet.add(target.toLowerCase(Locale.ROOT));
-        }
-
-        if (omitDefaultScopes) {
-            soughtTargetSet.removeAll(DEFAULT_SCOPES);
-            credentialTargetSet.removeAll(DEFAULT_SCOPES);
-        }
-
-        return credentialTargetSet.containsAll(soughtTargetSet);
+        return ScopeUtil.containsAllScopes(
+                ScopeUtil.toNormalizedScopeSet(credentialTarget),
+                ScopeUtil.toNormalizedScopeSet(targetToMatch),
+                omitDefaultScopes
+        );
     }
 }
@@ -0,0 +1,118 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.cache;
+
+import com.microsoft.identity.common.java.interfaces.INameValueStorage;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import lombok.NonNull;
+
+/**
+ * Locks guarding a single {@link INameValueStorage} used as an account/credential cache.
+ * <p>
+ * Operations that read or write individual entries share {@link #storageLock()}'s read lock, so
+ * they run in parallel; whole-store operations (e.g. clearing it) take its write lock.
+ * Read-modify-write sequences on one entry additionally hold the stripe returned by
+ * {@link #stripeFor(String)}, so writes to different keys do not wait on each other.
+ * <p>
+ * Lock ordering: storage lock first, then at most one stripe.
+ * <p>
+ * The {@link AccountCredentialMemoryIndex} of the storage lives here too, as it is guarded by
+ * these locks.
+ */
+final class AccountCredentialCacheLocks {
+
+    private static final int STRIPE_COUNT = 32;
+
+    // Keyed on the identity of the store holding the entries (see IBackedNameValueStorage), as
+    // adapters over it are created per call; SharedPreferencesFileManager instances are singletons
+    // per file.
+    private static final Map<Object, AccountCredentialCacheLocks> sLocks = new WeakHashMap<>();
+
+    private final ReentrantReadWriteLock mStorageLock = new ReentrantReadWriteLock();
+
+    private final Lock[] mStripes = new Lock[STRIPE_COUNT];
+
+    private final AccountCredentialMemoryIndex mIndex = new AccountCredentialMemoryIndex();
+
+    private AccountCredentialCacheLocks() {
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            mStripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Gets the locks for the supplied storage. Every cache instance created over the same storage
+     * object, or over adapters of the same {@link IBackedNameValueStorage#getBackingStore()},
+     * shares the same locks.
+     *
+     * @param storage The backing storage.
+     * @return The locks for that storage.
+     */
+    @NonNull
+    static AccountCredentialCacheLocks forStorage(@NonNull final INameValueStorage<?> storage) {
+        final Object key = storage instanceof IBackedNameValueStorage
+                ? ((IBackedNameValueStorage) storage).getBackingStore()
+                : storage;
+
+        synchronized (sLocks) {
+            AccountCredentialCacheLocks locks = sLocks.get(key);
+
+            if (null == locks) {
+                locks = new AccountCredentialCacheLocks();
+                sLocks.put(key, locks);
+            }
+
+            return locks;
+        }
+    }
+
+    @NonNull
+    ReentrantReadWriteLock storageLock() {
+        return mStorageLock;
+    }
+
+    @NonNull
+    AccountCredentialMemoryIndex index() {
+        return mIndex;
+    }
+
+    /**
+     * Gets the stripe lock guarding the supplied cache key.
+     *
+     * @param cacheKey The cache key.
+     * @return The stripe for that key.
+     */
+    @NonNull
+    Lock stripeFor(@NonNull final String cacheKey) {
+        // Spread the hash bits; STRIPE_COUNT is a power of two.
+        int hash = cacheKey.hashCode();
+        hash ^= (hash >>> 16);
+        return mStripes[hash & (STRIPE_COUNT - 1)];
+    }
+}
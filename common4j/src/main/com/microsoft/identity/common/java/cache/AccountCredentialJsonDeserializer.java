@@ -0,0 +1,300 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.cache;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.microsoft.identity.common.java.dto.AccountCredentialBase;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+import lombok.NonNull;
+
+/**
+ * Single-pass deserializer for cache values of {@link AccountCredentialBase} subclasses.
+ * <p>
+ * Reads the JSON with a {@link JsonReader}, setting the record's fields and collecting unknown
+ * keys into its additionalFields as it goes, rather than parsing the value once into the record
+ * and a second time into a tree to find the leftovers.
+ * <p>
+ * Field binding follows Gson's reflective rules (non-static, non-transient fields, named by
+ * {@link SerializedName} or by the field name). Per-class metadata depends only on the class, so it
+ * is computed once per process and shared by every instance; type adapters come from the Gson
+ * instance supplied, which caches them itself.
+ */
+class AccountCredentialJsonDeserializer {
+
+    private final Gson mGson;
+    private final TypeAdapter<JsonElement> mJsonElementAdapter;
+    private static final ConcurrentMap<Class<?>, ClassMetadata> sMetadataCache = new ConcurrentHashMap<>();
+
+    AccountCredentialJsonDeserializer(@NonNull final Gson gson) {
+        mGson = gson;
+        mJsonElementAdapter = gson.getAdapter(JsonElement.class);
+    }
+
+    /**
+     * Deserializes the supplied cache value into a new instance of the supplied class.
+     *
+     * @param json  The cache value.
+     * @param clazz The class to deserialize into.
+     * @return The deserialized record, or null if the value is a JSON null.
+     * @throws IOException        If the value is not well-formed JSON.
+     * @throws JsonSyntaxException If the value does not match the shape of the class.
+     */
+    @Nullable
+    AccountCredentialBase deserialize(@NonNull final String json,
+                                      @NonNull final Class<? extends AccountCredentialBase> clazz)
+            throws IOException {
+        final JsonReader reader = new JsonReader(new StringReader(json));
+        reader.setLenient(true);
+
+        final JsonToken firstToken = reader.peek();
+        if (firstToken == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+
+        final ClassMetadata metadata = getMetadata(clazz);
+        final AccountCredentialBase result = metadata.newInstance();
+        final Map<String, JsonElement> additionalFields = new HashMap<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            final FieldBinding binding = metadata.mBindings.get(name);
+
+            if (metadata.mExpectedFields.contains(name)) {
+                if (binding == null) {
+                    reader.skipValue();
+                } else {
+                    binding.set(result, mGson.getAdapter(binding.mType).read(reader));
+                }
+            } else {
+                // Unknown keys, and keys only matched through an alternate name, are preserved
+                // in additionalFields so that they survive a round trip.
+                final JsonElement element = mJsonElementAdapter.read(reader);
+                additionalFields.put(name, element);
+
+                if (binding != null) {
+                    binding.set(result, mGson.getAdapter(binding.mType).fromJsonTree(element));
+                }
+            }
+        }
+        reader.endObject();
+
+        if (reader.peek() != JsonToken.END_DOCUMENT) {
+            throw new JsonSyntaxException("Unexpected content after cache value.");
+        }
+
+        result.setAdditionalFields(additionalFields);
+        return result;
+    }
+
+    private static ClassMetadata getMetadata(@NonNull final Class<? extends AccountCredentialBase> clazz) {
+        ClassMetadata metadata = sMetadataCache.get(clazz);
+
+        if (metadata == null) {
+            metadata = new ClassMetadata(
+                    getConstructor(clazz),
+                    getBindings(clazz),
+                    getExpectedJsonFields(clazz)
+            );
+            final ClassMetadata existing = sMetadataCache.putIfAbsent(clazz, metadata);
+            if (existing != null) {
+                metadata = existing;
+            }
+        }
+
+        return metadata;
+    }
+
+    private static Constructor<? extends AccountCredentialBase> getConstructor(
+            @NonNull final Class<? extends AccountCredentialBase> clazz) {
+        try {
+            final Constructor<? extends AccountCredentialBase> constructor = clazz.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (final NoSuchMethodException e) {
+            throw new JsonSyntaxException("No no-args constructor for " + clazz.getName(), e);
+        }
+    }
+
+    /**
+     * Binds every JSON name (including {@link SerializedName#alternate()} names) that Gson would
+     * deserialize into a field of the supplied class.
+     */
+    private static Map<String, FieldBinding> getBindings(@NonNull final Class<?> clazz) {
+        final Map<String, FieldBinding> bindings = new HashMap<>();
+
+        for (final Field field : getFieldsUpTo(clazz, null)) {
+            final int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+                continue;
+            }
+
+            field.setAccessible(true);
+            final FieldBinding binding = new FieldBinding(
+                    field,
+                    TypeToken.get(field.getGenericType())
+            );
+
+            final SerializedName serializedName = field.getAnnotation(SerializedName.class);
+            if (serializedName == null) {
+                putIfAbsent(bindings, field.getName(), binding);
+            } else {
+                putIfAbsent(bindings, serializedName.value(), binding);
+                for (final String alternate : serializedName.alternate()) {
+                    putIfAbsent(bindings, alternate, binding);
+                }
+            }
+        }
+
+        return Collections.unmodifiableMap(bindings);
+    }
+
+    /**
+     * Fields are visited subclass first, so a subclass field shadows a superclass field that
+     * declares the same JSON name.
+     */
+    private static void putIfAbsent(@NonNull final Map<String, FieldBinding> bindings,
+                                    @NonNull final String name,
+                                    @NonNull final FieldBinding binding) {
+        if (!bindings.containsKey(name)) {
+            bindings.put(name, binding);
+        }
+    }
+
+    /**
+     * For the supplied Class, return a Set of expected JSON values as dictated by @SerializedName
+     * declared on its Fields.
+     *
+     * @param clazz The Class to inspect.
+     * @return A Set of expected JSON values, as Strings.
+     */
+    private static Set<String> getExpectedJsonFields(final Class<? extends AccountCredentialBase> clazz) {
+        final Set<String> serializedNames = new HashSet<>();
+
+        for (final Field field : getFieldsUpTo(clazz, AccountCredentialBase.class)) {
+            final SerializedName serializedName = field.getAnnotation(SerializedName.class);
+            if (null != serializedName) {
+                serializedNames.add(serializedName.value());
+            }
+        }
+
+        return Collections.unmodifiableSet(serializedNames);
+    }
+
+    /**
+     * Recursively inspect the supplied Class to obtain its Fields up the inheritance hierarchy
+     * to supplied upper-bound Class.
+     *
+     * @param startClass The base Class to inspect.
+     * @param upperBound The Class' upper-bounded inheritor or null, if Object should be used.
+     * @return A List of Fields on the supplied object and its superclasses.
+     */
+    private static List<Field> getFieldsUpTo(
+            final Class<?> startClass,
+            @Nullable Class<?> upperBound) {
+        List<Field> currentClassFields = new ArrayList<>(Arrays.asList(startClass.getDeclaredFields()));
+        Class<?> parentClass = startClass.getSuperclass();
+
+        if (parentClass != null && (upperBound == null || !(parentClass.equals(upperBound)))) {
+            List<Field> parentClassFields = getFieldsUpTo(parentClass, upperBound);
+            currentClassFields.addAll(parentClassFields);
+        }
+
+        return currentClassFields;
+    }
+
+    private static final class ClassMetadata {
+        private final Constructor<? extends AccountCredentialBase> mConstructor;
+        private final Map<String, FieldBinding> mBindings;
+        private final Set<String> mExpectedFields;
+
+        ClassMetadata(@NonNull final Constructor<? extends AccountCredentialBase> constructor,
+                      @NonNull final Map<String, FieldBinding> bindings,
+                      @NonNull final Set<String> expectedFields) {
+            mConstructor = constructor;
+            mBindings = bindings;
+            mExpectedFields = expectedFields;
+        }
+
+        AccountCredentialBase newInstance() {
+            try {
+                return mConstructor.newInstance();
+            } catch (final InstantiationException e) {
+                throw new JsonSyntaxException("Failed to instantiate " + mConstructor.getName(), e);
+            } catch (final IllegalAccessException e) {
+                throw new JsonSyntaxException("Failed to instantiate " + mConstructor.getName(), e);
+            } catch (final InvocationTargetException e) {
+                throw new JsonSyntaxException("Failed to instantiate " + mConstructor.getName(), e);
+            }
+        }
+    }
+
+    private static final class FieldBinding {
+        private final Field mField;
+        private final TypeToken<?> mType;
+
+        FieldBinding(@NonNull final Field field, @NonNull final TypeToken<?> type) {
+            mField = field;
+            mType = type;
+        }
+
+        void set(@NonNull final Object target, @Nullable final Object value) {
+            // Mirror Gson: a JSON null leaves a primitive field at its default.
+            if (value == null && mField.getType().isPrimitive()) {
+                return;
+            }
+
+            try {
+                mField.set(target, value);
+            } catch (final IllegalAccessException e) {
+                throw new JsonSyntaxException("Failed to set " + mField.getName(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,325 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.cache;
+
+import com.microsoft.identity.common.java.dto.AccessTokenRecord;
+import com.microsoft.identity.common.java.dto.AccountRecord;
+import com.microsoft.identity.common.java.dto.Credential;
+import com.microsoft.identity.common.java.dto.CredentialType;
+import com.microsoft.identity.common.java.dto.IdTokenRecord;
+import com.microsoft.identity.common.java.util.StringUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+import lombok.NonNull;
+
+/**
+ * An in-memory index of the Accounts and Credentials held by a single backing store.
+ * <p>
+ * The index holds the serialized cache value of every entry, and buckets the keys of Credentials by
+ * home_account_id, environment, credential_type, client_id and realm (and those of Accounts by
+ * home_account_id), so filtered lookups only deserialize the (usually tiny) bucket of the most
+ * selective supplied criterion instead of the whole store. Callers get the cache values and
+ * deserialize their own copies; no record instance is shared.
+ * <p>
+ * The index is guarded by the {@link AccountCredentialCacheLocks} of its store: entries are
+ * updated under the stripe of their key (with the storage read lock held), and the index is only
+ * {@link #clear() cleared} or reloaded under the storage write lock. It is current while its
+ * version equals the version of the store (see {@link NameValueSnapshot#getVersion()}), so writes
+ * made to the store without going through {@link SharedPreferencesAccountCredentialCache} are
+ * detected and cause a reload.
+ */
+class AccountCredentialMemoryIndex {
+
+    private static final long NOT_LOADED = Long.MIN_VALUE;
+
+    private final AtomicLong mVersion = new AtomicLong(NOT_LOADED);
+
+    private final ConcurrentMap<String, String> mAccounts = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Set<String>> mAccountsByHomeAccountId = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, String> mCredentials = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Set<String>> mCredentialsByHomeAccountId = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Set<String>> mCredentialsByEnvironment = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Set<String>> mCredentialsByType = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Set<String>> mCredentialsByClientId = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Set<String>> mCredentialsByRealm = new ConcurrentHashMap<>();
+
+    /**
+     * Keys of credentials which do not carry a realm (RTs, PRTs). Realm filtering is only applied
+     * to ATs and IdTokens, so these must always be considered when a realm is supplied.
+     */
+    private final Set<String> mCredentialsWithoutRealm = newKeySet();
+
+    /**
+     * @param storageVersion The current version of the backing store.
+     * @return True if this index reflects every write made to the store.
+     */
+    boolean isCurrent(final long storageVersion) {
+        return storageVersion != NameValueSnapshot.UNKNOWN_VERSION && mVersion.get() == storageVersion;
+    }
+
+    /**
+     * Marks this index as reflecting the supplied version of the store. Requires the storage write
+     * lock.
+     */
+    void setVersion(final long storageVersion) {
+        mVersion.set(storageVersion);
+    }
+
+    /**
+     * Records a single write made through this index: if the store moved by exactly one version and
+     * the index was current before it, it is current after it too. Otherwise another write happened
+     * in between, and the index will be reloaded before it is next read.
+     *
+     * @param versionBefore The version of the store before the write.
+     * @param versionAfter  The version of the store after the write.
+     */
+    void onWritten(final long versionBefore, final long versionAfter) {
+        if (versionAfter == versionBefore + 1) {
+            mVersion.compareAndSet(versionBefore, versionAfter);
+        }
+    }
+
+    /**
+     * Empties this index and marks it stale. Requires the storage write lock.
+     */
+    void clear() {
+        mVersion.set(NOT_LOADED);
+        mAccounts.clear();
+        mAccountsByHomeAccountId.clear();
+        mCredentials.clear();
+        mCredentialsByHomeAccountId.clear();
+        mCredentialsByEnvironment.clear();
+        mCredentialsByType.clear();
+        mCredentialsByClientId.clear();
+        mCredentialsByRealm.clear();
+        mCredentialsWithoutRealm.clear();
+    }
+
+    void putAccount(@NonNull final String cacheKey,
+                    @NonNull final String cacheValue,
+                    @NonNull final AccountRecord account) {
+        mAccounts.put(cacheKey, cacheValue);
+        addToBucket(mAccountsByHomeAccountId, account.getHomeAccountId(), cacheKey);
+    }
+
+    void putCredential(@NonNull final String cacheKey,
+                       @NonNull final String cacheValue,
+                       @NonNull final Credential credential) {
+        mCredentials.put(cacheKey, cacheValue);
+        addToBucket(mCredentialsByHomeAccountId, credential.getHomeAccountId(), cacheKey);
+        addToBucket(mCredentialsByEnvironment, credential.getEnvironment(), cacheKey);
+        addToBucket(mCredentialsByType, credential.getCredentialType(), cacheKey);
+        addToBucket(mCredentialsByClientId, credential.getClientId(), cacheKey);
+
+        if (hasRealm(credential)) {
+            addToBucket(mCredentialsByRealm, getRealm(credential), cacheKey);
+        } else {
+            mCredentialsWithoutRealm.add(cacheKey);
+        }
+    }
+
+    /**
+     * Removes the Account or Credential stored under the supplied key.
+     * <p>
+     * Its key is left in the buckets, where lookups skip it: a key always lands in the same
+     * buckets, and pruning them would race with writes to other keys of the same bucket.
+     */
+    void remove(@NonNull final String cacheKey) {
+        mAccounts.remove(cacheKey);
+        mCredentials.remove(cacheKey);
+    }
+
+    /**
+     * Returns the cache values of the Accounts which could possibly match the supplied
+     * home_account_id. The result is a superset of the matches; callers must still apply the
+     * full filter.
+     */
+    @NonNull
+    Map<String, String> getAccountCandidates(@Nullable final String homeAccountId) {
+        if (StringUtil.isNullOrEmpty(homeAccountId)) {
+            return new HashMap<>(mAccounts);
+        }
+
+        return collect(mAccounts, getBucket(mAccountsByHomeAccountId, homeAccountId), null);
+    }
+
+    /**
+     * Returns the cache values of the Credentials which could possibly match the supplied criteria,
+     * taken from the smallest index bucket among the supplied (non-empty) criteria. The result is
+     * a superset of the matches; callers must still apply the full filter.
+     */
+    @NonNull
+    Map<String, String> getCredentialCandidates(@Nullable final String homeAccountId,
+                                                @Nullable final String environment,
+                                                @Nullable final CredentialType credentialType,
+                                                @Nullable final String clientId,
+                                                @Nullable final String realm) {
+        Set<String> smallest = null;
+        Set<String> realmless = null;
+
+        final List<Set<String>> buckets = new ArrayList<>();
+
+        if (!StringUtil.isNullOrEmpty(homeAccountId)) {
+            buckets.add(getBucket(mCredentialsByHomeAccountId, homeAccountId));
+        }
+
+        if (!StringUtil.isNullOrEmpty(environment)) {
+            buckets.add(getBucket(mCredentialsByEnvironment, environment));
+        }
+
+        if (null != credentialType) {
+            buckets.add(getBucket(mCredentialsByType, credentialType.name()));
+        }
+
+        if (!StringUtil.isNullOrEmpty(clientId)) {
+            buckets.add(getBucket(mCredentialsByClientId, clientId));
+        }
+
+        for (final Set<String> bucket : buckets) {
+            if (null == smallest || bucket.size() < smallest.size()) {
+                smallest = bucket;
+            }
+        }
+
+        if (!StringUtil.isNullOrEmpty(realm)) {
+            final Set<String> realmBucket = getBucket(mCredentialsByRealm, realm);
+
+            if (null == smallest
+                    || realmBucket.size() + mCredentialsWithoutRealm.size() < smallest.size()) {
+                smallest = realmBucket;
+                realmless = mCredentialsWithoutRealm;
+            }
+        }
+
+        if (null == smallest) {
+            return new HashMap<>(mCredentials);
+        }
+
+        return collect(mCredentials, smallest, realmless);
+    }
+
+    @NonNull
+    private static Map<String, String> collect(@NonNull final Map<String, String> values,
+                                               @NonNull final Set<String> keys,
+                                               @Nullable final Set<String> moreKeys) {
+        final Map<String, String> result = new HashMap<>();
+        addValues(values, keys, result);
+
+        if (null != moreKeys) {
+            addValues(values, moreKeys, result);
+        }
+
+        return result;
+    }
+
+    private static void addValues(@NonNull final Map<String, String> values,
+                                  @NonNull final Set<String> keys,
+                                  @NonNull final Map<String, String> result) {
+        for (final String key : keys) {
+            final String value = values.get(key);
+
+            // Null for keys that have been removed.
+            if (null != value) {
+                result.put(key, value);
+            }
+        }
+    }
+
+    private static boolean hasRealm(@NonNull final Credential credential) {
+        return credential instanceof AccessTokenRecord || credential instanceof IdTokenRecord;
+    }
+
+    @Nullable
+    private static String getRealm(@NonNull final Credential credential) {
+        if (credential instanceof AccessTokenRecord) {
+            return ((AccessTokenRecord) credential).getRealm();
+        }
+
+        if (credential instanceof IdTokenRecord) {
+            return ((IdTokenRecord) credential).getRealm();
+        }
+
+        return null;
+    }
+
+    @NonNull
+    private static Set<String> getBucket(@NonNull final Map<String, Set<String>> index,
+                                         @NonNull final String value) {
+        final Set<String> bucket = index.get(normalize(value));
+        return null == bucket ? Collections.<String>emptySet() : bucket;
+    }
+
+    private static void addToBucket(@NonNull final ConcurrentMap<String, Set<String>> index,
+                                    @Nullable final String value,
+                                    @NonNull final String cacheKey) {
+        // Records lacking a value for this dimension can never match a query on it.
+        if (null == value) {
+            return;
+        }
+
+        final String normalized = normalize(value);
+        Set<String> bucket = index.get(normalized);
+
+        if (null == bucket) {
+            final Set<String> newBucket = newKeySet();
+            bucket = index.putIfAbsent(normalized, newBucket);
+
+            if (null == bucket) {
+                bucket = newBucket;
+            }
+        }
+
+        bucket.add(cacheKey);
+    }
+
+    @NonNull
+    private static Set<String> newKeySet() {
+        return Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    }
+
+    /**
+     * Mirrors the comparison done by {@link StringUtil#equalsIgnoreCaseTrimBoth(String, String)}.
+     */
+    @NonNull
+    private static String normalize(@NonNull final String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -1331,112 +1331,22 @@ public class BrokerOAuth2TokenCache
     public List<ICacheRecord> getFociCacheRecords() {
         final String methodName = ":getFociCacheRecords";
 
-        final List<ICacheRecord> result = new ArrayList<>();
-
         final List<BrokerApplicationMetadata> allFociApplicationMetadata =
                 mApplicationMetadataCache.getAllFociApplicationMetadata();
 
-        for (final BrokerApplicationMetadata fociAppMetadata : allFociApplicationMetadata) {
-            // Load all the accounts
-            final List<AccountRecord> accounts = mFociCache.getAccounts(
-                    fociAppMetadata.getEnvironment(),
-                    fociAppMetadata.getClientId()
-            );
-
-            // For each account, load the RT
-            for (final AccountRecord account : accounts) {
-                final String homeAccountId = account.getHomeAccountId();
-                final String environment = account.getEnvironment();
-                final String clientId = fociAppMetadata.getClientId();
-                final String realm = account.getRealm();
-
-                // Load the refresh token (1 per user per environment)
-                final List<Credential> refreshTokens =
-                        mFociCache
-                                .getAccountCredentialCache()
-                                .getCredentialsFilteredBy(
-                                        homeAccountId,
-                                        environment,
-                                        CredentialType.RefreshToken,
-                                        clientId,
-                                        null, // wildcard (*)
-                                        null, // wildcard (*)
-                                        null // Not applicable
-                                );
-
-                // Load the V1IdToken (v1 if adal used)
-                final List<Credential> v1IdTokens =
-                        mFociCache
-                                .getAccountCredentialCache()
-                                .getCredentialsFilteredBy(
-                                        homeAccountId,
-                                        environment,
-                                        CredentialType.V1IdToken,
-                                        clientId,
-                                        realm,
-                                        null,
-                                        null // Not applicable
-                                );
-
-                // Load the IdToken
-                final List<Credential> idTokens =
-                        mFociCache
-                                .getAccountCredentialCache()
-                                .getCredentialsFilteredBy(
-                                        homeAccountId,
-                                        environment,
-                                        CredentialType.IdToken,
-                                        clientId,
-                                        realm,
-                                        null,
-                                        null // not applicable
-                                );
-
-                // Construct the ICacheRecord
-                if (!refreshTokens.isEmpty()) {
-                    final CacheRecord.CacheRecordBuilder cacheRecord = CacheRecord.builder();
-                    cacheRecord.account(account);
-                    cacheRecord.refreshToken((RefreshTokenRecord) refreshTokens.get(0));
-
-                    // Add the V1IdToken (if exists, should have 1 if ADAL used)
-                    if (!v1IdTokens.isEmpty()) {
-                        Logger.verbose(
-                                TAG + methodName,
-                                "Found ["
-                                        + v1IdTokens.size()
-                                        + "] V1IdTokens"
-                        );
-
-                        cacheRecord.v1IdToken((IdTokenRecord) v1IdTokens.get(0));
-                    } else {
-                        Logger.warn(
-                                TAG + methodName,
-                                "No V1IdTokens exist for this account."
-                        );
-                    }
-
-                    // Add the IdTokens (if exists, should have 1 if MSAL used)
-                    if (!idTokens.isEmpty()) {
-                        Logger.verbose(
-                                TAG + methodName,
-                                "Found ["
-                                        + idTokens.size()
-                                        + "] IdTokens"
-                        );
+        if (allFociApplicationMetadata.isEmpty()) {
+            return new ArrayList<>();
+        }
 
-                        cacheRecord.idToken((IdTokenRecord) idTokens.get(0));
-                    } else {
-                        Logger.warn(
-                                TAG + methodName,
-                                "No IdTokens exist for this account."
-                        );
-                    }
+        // Read the FoCI cache once, rather than once per app, account and token type.
+        final List<ICacheRecord> result = new FociCacheRecordAssembler(
+                mFociCache.getAccountCredentialCache()
+        ).assemble(allFociApplicationMetadata);
 
-                    // Add it to the result
-                    result.add(cacheRecord.build());
-                }
-            }
-        }
+        Logger.verbose(
+                TAG + methodName,
+                "Found [" + result.size() + "] FoCI cache records."
+        );
 
         return result;
     }
@@ -0,0 +1,248 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.cache;
+
+import com.microsoft.identity.common.java.dto.AccountRecord;
+import com.microsoft.identity.common.java.dto.Credential;
+import com.microsoft.identity.common.java.dto.CredentialType;
+import com.microsoft.identity.common.java.dto.IdTokenRecord;
+import com.microsoft.identity.common.java.dto.RefreshTokenRecord;
+import com.microsoft.identity.common.java.logging.Logger;
+import com.microsoft.identity.common.java.util.StringUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+import lombok.NonNull;
+
+/**
+ * Builds the {@link ICacheRecord}s of every FoCI app from a single read of the FoCI cache.
+ * <p>
+ * Accounts and refresh/id tokens are loaded once and the tokens are grouped by
+ * (homeAccountId, environment, clientId[, realm]), so each app/account pair is resolved with hash
+ * lookups rather than with a scan of the whole store per token type. Matching follows
+ * {@link MsalOAuth2TokenCache#getAccounts(String, String)} and
+ * {@link IAccountCredentialCache#getCredentialsFilteredBy}: ids are compared ignoring case and
+ * surrounding whitespace, and the first matching token in store order wins.
+ */
+final class FociCacheRecordAssembler {
+
+    private static final String TAG = FociCacheRecordAssembler.class.getSimpleName();
+
+    private final IAccountCredentialCache mCredentialCache;
+    private final List<AccountRecord> mAccounts;
+    private final List<Credential> mCredentials = new ArrayList<>();
+
+    // (exact homeAccountId, exact environment, normalized clientId) of every RT and id token, which
+    // is what MsalOAuth2TokenCache#getAccounts() uses to tell whether an account belongs to an app.
+    private final Set<List<String>> mAccountsWithAppCredentials = new HashSet<>();
+
+    private final Map<List<String>, RefreshTokenRecord> mRefreshTokens = new HashMap<>();
+    private final Map<List<String>, IdTokenRecord> mIdTokens = new HashMap<>();
+    private final Map<List<String>, IdTokenRecord> mV1IdTokens = new HashMap<>();
+
+    FociCacheRecordAssembler(@NonNull final IAccountCredentialCache credentialCache) {
+        mCredentialCache = credentialCache;
+        mAccounts = credentialCache.getAccounts();
+
+        for (final Credential credential : credentialCache.getCredentials()) {
+            final CredentialType type = getCredentialType(credential);
+
+            if (type != CredentialType.RefreshToken
+                    && type != CredentialType.IdToken
+                    && type != CredentialType.V1IdToken) {
+                continue;
+            }
+
+            mCredentials.add(credential);
+            mAccountsWithAppCredentials.add(Arrays.asList(
+                    credential.getHomeAccountId(),
+                    credential.getEnvironment(),
+                    normalize(credential.getClientId())
+            ));
+
+            if (type == CredentialType.RefreshToken && credential instanceof RefreshTokenRecord) {
+                putIfAbsent(mRefreshTokens, Arrays.asList(
+                        normalize(credential.getHomeAccountId()),
+                        normalize(credential.getEnvironment()),
+                        normalize(credential.getClientId())
+                ), (RefreshTokenRecord) credential);
+            } else if (credential instanceof IdTokenRecord) {
+                putIfAbsent(type == CredentialType.IdToken ? mIdTokens : mV1IdTokens, Arrays.asList(
+                        normalize(credential.getHomeAccountId()),
+                        normalize(credential.getEnvironment()),
+                        normalize(credential.getClientId()),
+                        normalize(((IdTokenRecord) credential).getRealm())
+                ), (IdTokenRecord) credential);
+            }
+        }
+    }
+
+    /**
+     * Builds a record for each account of each supplied app that has a refresh token.
+     *
+     * @param fociApplicationMetadata The FoCI apps.
+     * @return The records, in app then account order.
+     */
+    @NonNull
+    List<ICacheRecord> assemble(@NonNull final List<BrokerApplicationMetadata> fociApplicationMetadata) {
+        final String methodName = ":assemble";
+        final List<ICacheRecord> result = new ArrayList<>();
+
+        for (final BrokerApplicationMetadata fociAppMetadata : fociApplicationMetadata) {
+            final String clientId = fociAppMetadata.getClientId();
+            final String appEnvironment = fociAppMetadata.getEnvironment();
+
+            for (final AccountRecord account : mAccounts) {
+                if (!StringUtil.isNullOrEmpty(appEnvironment)
+                        && !StringUtil.equalsIgnoreCaseTrimBoth(appEnvironment, account.getEnvironment())) {
+                    continue;
+                }
+
+                if (!mAccountsWithAppCredentials.contains(Arrays.asList(
+                        account.getHomeAccountId(),
+                        account.getEnvironment(),
+                        normalize(clientId)))) {
+                    continue;
+                }
+
+                final RefreshTokenRecord refreshToken = getRefreshToken(account, clientId);
+
+                if (null == refreshToken) {
+                    continue;
+                }
+
+                final CacheRecord.CacheRecordBuilder cacheRecord = CacheRecord.builder();
+                cacheRecord.account(account);
+                cacheRecord.refreshToken(refreshToken);
+
+                // Add the V1IdToken (if exists, should have 1 if ADAL used)
+                final IdTokenRecord v1IdToken = getIdToken(CredentialType.V1IdToken, account, clientId);
+                if (null != v1IdToken) {
+                    Logger.verbose(TAG + methodName, "Found V1IdToken");
+                    cacheRecord.v1IdToken(v1IdToken);
+                } else {
+                    Logger.warn(TAG + methodName, "No V1IdTokens exist for this account.");
+                }
+
+                // Add the IdTokens (if exists, should have 1 if MSAL used)
+                final IdTokenRecord idToken = getIdToken(CredentialType.IdToken, account, clientId);
+                if (null != idToken) {
+                    Logger.verbose(TAG + methodName, "Found IdToken");
+                    cacheRecord.idToken(idToken);
+                } else {
+                    Logger.warn(TAG + methodName, "No IdTokens exist for this account.");
+                }
+
+                result.add(cacheRecord.build());
+            }
+        }
+
+        return result;
+    }
+
+    @Nullable
+    private RefreshTokenRecord getRefreshToken(@NonNull final AccountRecord account,
+                                               @NonNull final String clientId) {
+        if (isWildcard(account.getHomeAccountId(), account.getEnvironment())) {
+            // Empty ids match anything; filter the loaded credentials the slow way.
+            final List<Credential> matches = filter(CredentialType.RefreshToken, account, clientId, null);
+            return matches.isEmpty() ? null : (RefreshTokenRecord) matches.get(0);
+        }
+
+        return mRefreshTokens.get(Arrays.asList(
+                normalize(account.getHomeAccountId()),
+                normalize(account.getEnvironment()),
+                normalize(clientId)
+        ));
+    }
+
+    @Nullable
+    private IdTokenRecord getIdToken(@NonNull final CredentialType type,
+                                     @NonNull final AccountRecord account,
+                                     @NonNull final String clientId) {
+        if (isWildcard(account.getHomeAccountId(), account.getEnvironment(), account.getRealm())) {
+            final List<Credential> matches = filter(type, account, clientId, account.getRealm());
+            return matches.isEmpty() ? null : (IdTokenRecord) matches.get(0);
+        }
+
+        return (type == CredentialType.IdToken ? mIdTokens : mV1IdTokens).get(Arrays.asList(
+                normalize(account.getHomeAccountId()),
+                normalize(account.getEnvironment()),
+                normalize(clientId),
+                normalize(account.getRealm())
+        ));
+    }
+
+    private List<Credential> filter(@NonNull final CredentialType type,
+                                    @NonNull final AccountRecord account,
+                                    @NonNull final String clientId,
+                                    @Nullable final String realm) {
+        return mCredentialCache.getCredentialsFilteredBy(
+                account.getHomeAccountId(),
+                account.getEnvironment(),
+                type,
+                clientId,
+                realm,
+                null, // wildcard (*)
+                null, // Not applicable
+                mCredentials
+        );
+    }
+
+    private static boolean isWildcard(@Nullable final String... values) {
+        for (final String value : values) {
+            if (StringUtil.isNullOrEmpty(value)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Nullable
+    private static CredentialType getCredentialType(@NonNull final Credential credential) {
+        final String type = credential.getCredentialType();
+        return null == type ? null : CredentialType.fromString(type.trim());
+    }
+
+    @Nullable
+    private static String normalize(@Nullable final String value) {
+        return null == value ? null : value.trim().toLowerCase(Locale.US);
+    }
+
+    private static <V> void putIfAbsent(@NonNull final Map<List<String>, V> map,
+                                        @NonNull final List<String> key,
+                                        @NonNull final V value) {
+        if (!map.containsKey(key)) {
+            map.put(key, value);
+        }
+    }
+}
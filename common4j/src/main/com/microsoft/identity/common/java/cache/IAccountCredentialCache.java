@@ -27,6 +27,7 @@ import com.microsoft.identity.common.java.dto.Credential;
 import com.microsoft.identity.common.java.dto.CredentialType;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -183,6 +184,28 @@ public interface IAccountCredentialCache {
             final String requestedClaims
     );
 
+    /**
+     * Returns all of the Credentials of the supplied types matching the supplied criteria, grouped
+     * by CredentialType.
+     * <p>
+     * Implementations should serve this from a single pass over the underlying storage, so that
+     * callers needing several credential types for one account (e.g. AT + RT + IdTokens) do not
+     * re-read the cache once per type.
+     *
+     * @param homeAccountId   The homeAccountId used to match Credential cache keys.
+     * @param environment     The environment used to match Credential cache keys.
+     * @param credentialTypes The sought CredentialTypes.
+     * @param clientId        The clientId used to match Credential cache keys.
+     * @return A Map containing each sought CredentialType, mapped to a mutable List of its matching
+     * Credentials.
+     */
+    Map<CredentialType, List<Credential>> getCredentialsGroupedByType(
+            final String homeAccountId,
+            final String environment,
+            final Set<CredentialType> credentialTypes,
+            final String clientId
+    );
+
     /**
      * Removes the supplied Account from the cache.
      *
@@ -0,0 +1,49 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.cache;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+import lombok.NonNull;
+
+/**
+ * A name-value store that can replace a value only if it is unchanged.
+ * <p>
+ * Implemented next to {@link com.microsoft.identity.common.java.interfaces.INameValueStorage} or
+ * {@link IMultiTypeNameValueStorage} by the stores that can do so atomically; callers should fall
+ * back to their own locking for stores that do not implement it.
+ *
+ * @param <T> The type of the values (String for an {@link IMultiTypeNameValueStorage}).
+ */
+public interface ICompareAndSetNameValueStorage<T> {
+
+    /**
+     * Replaces a value in the storage if it currently holds the expected value, as one atomic
+     * operation with respect to other writes made in this process.
+     *
+     * @param name          A name associated to the value.
+     * @param expectedValue The value the entry must hold, or null if it must be absent.
+     * @param newValue      The value to persist, or null to remove the entry.
+     * @return true if the value was replaced.
+     */
+    boolean compareAndSet(@NonNull String name, @Nullable T expectedValue, @Nullable T newValue);
+}
@@ -83,6 +83,15 @@ public interface IMultiTypeNameValueStorage {
      */
     Iterator<Map.Entry<String, String>> getAllFilteredByKey(Predicate<String> keyFilter);
 
+    /**
+     * Returns an immutable snapshot of the entries whose key the predicate evaluates to true on,
+     * read (and decrypted, if the store is encrypted) as one batch.
+     *
+     * @param keyFilter A predicate to use to evaluate the key, return true to include key value pair.
+     * @return a snapshot of the matching entries.
+     */
+    NameValueSnapshot<String> getSnapshot(Predicate<String> keyFilter);
+
     /**
      * Tests if the store backed by the named resource contains an entry for the supplied key.
      *
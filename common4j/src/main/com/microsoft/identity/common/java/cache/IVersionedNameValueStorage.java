@@ -0,0 +1,42 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.cache;
+
+/**
+ * A name-value store that counts the writes made through it, so that callers can tell whether it
+ * changed without reading any of its entries.
+ * <p>
+ * Implemented next to {@link com.microsoft.identity.common.java.interfaces.INameValueStorage} or
+ * {@link IMultiTypeNameValueStorage} by the stores that can track their versions; stores that do not
+ * implement it are treated as having an {@link NameValueSnapshot#UNKNOWN_VERSION}.
+ */
+public interface IVersionedNameValueStorage {
+
+    /**
+     * Gets the current version of the store, in constant time.
+     *
+     * @return The version a snapshot taken now would carry (see {@link NameValueSnapshot#getVersion()}),
+     * or {@link NameValueSnapshot#UNKNOWN_VERSION} if it cannot be tracked.
+     */
+    long getVersion();
+}
@@ -22,11 +22,13 @@
 //  THE SOFTWARE.
 package com.microsoft.identity.common.java.cache;
 
+import com.microsoft.identity.common.java.util.ported.ObjectUtils;
 import com.microsoft.identity.common.java.util.ported.Predicate;
 
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import lombok.Builder;
 import lombok.RequiredArgsConstructor;
@@ -39,15 +41,19 @@ import lombok.experimental.Accessors;
  * A SharedPreferencesFileManager backed by a HashMap.  This is mainly for testing purposes,
  * where it doesn't make sense to instantiate shared preferences files.
  */
-public class MapBackedPreferencesManager implements IMultiTypeNameValueStorage {
+public class MapBackedPreferencesManager implements IMultiTypeNameValueStorage, IVersionedNameValueStorage,
+        ICompareAndSetNameValueStorage<String> {
 
     private final String mName;
 
     private final Map<String, String> mBackingStore = new HashMap<>();
 
+    private final AtomicLong mVersion = new AtomicLong();
+
     @Override
     public void putString(String key, String value) {
         mBackingStore.put(key, value);
+        mVersion.incrementAndGet();
     }
 
     @Override
@@ -55,9 +61,24 @@ public class MapBackedPreferencesManager implements IMultiTypeNameValueStorage {
         return mBackingStore.get(key);
     }
 
+    @Override
+    public boolean compareAndSet(String key, String expectedValue, String newValue) {
+        if (!ObjectUtils.equals(expectedValue, mBackingStore.get(key))) {
+            return false;
+        }
+
+        if (newValue == null) {
+            remove(key);
+        } else {
+            putString(key, newValue);
+        }
+        return true;
+    }
+
     @Override
     public void putLong(String key, long value) {
         mBackingStore.put(key, Long.toString(value));
+        mVersion.incrementAndGet();
     }
 
     @Override
@@ -82,6 +103,22 @@ public class MapBackedPreferencesManager implements IMultiTypeNameValueStorage {
         return newMap.entrySet().iterator();
     }
 
+    @Override
+    public NameValueSnapshot<String> getSnapshot(Predicate<String> keyFilter) {
+        Map<String, String> newMap = new HashMap<>();
+        for (Map.Entry<String, String> entry: mBackingStore.entrySet()) {
+            if (keyFilter.test(entry.getKey())) {
+                newMap.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return new NameValueSnapshot<>(mVersion.get(), newMap);
+    }
+
+    @Override
+    public long getVersion() {
+        return mVersion.get();
+    }
+
     @Override
     public boolean contains(String key) {
         return mBackingStore.containsKey(key);
@@ -90,10 +127,12 @@ public class MapBackedPreferencesManager implements IMultiTypeNameValueStorage {
     @Override
     public void clear() {
         mBackingStore.clear();
+        mVersion.incrementAndGet();
     }
 
     @Override
     public void remove(String key) {
         mBackingStore.remove(key);
+        mVersion.incrementAndGet();
     }
 }
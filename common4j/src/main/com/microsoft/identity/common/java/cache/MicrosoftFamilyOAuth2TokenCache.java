@@ -39,11 +39,12 @@ import com.microsoft.identity.common.java.providers.oauth2.AuthorizationRequest;
 import com.microsoft.identity.common.java.providers.oauth2.RefreshToken;
 import com.microsoft.identity.common.java.providers.oauth2.TokenResponse;
 import com.microsoft.identity.common.java.logging.Logger;
+import com.microsoft.identity.common.java.util.ScopeUtil;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
-import static com.microsoft.identity.common.java.cache.AbstractAccountCredentialCache.targetsIntersect;
 
 import edu.umd.cs.findbugs.annotations.Nullable;
 import lombok.NonNull;
@@ -148,6 +149,8 @@ public class MicrosoftFamilyOAuth2TokenCache
         }
 
         if (null != target && null != authenticationScheme) {
+            final Set<String> soughtScopes = ScopeUtil.toNormalizedScopeSet(target);
+
             for (final Credential credential : allCredentials) {
                 if (credential instanceof AccessTokenRecord) {
                     final AccessTokenRecord atRecord = (AccessTokenRecord) credential;
@@ -156,7 +159,7 @@ public class MicrosoftFamilyOAuth2TokenCache
                             && accountRecord.getEnvironment().equals(atRecord.getEnvironment())
                             && accountRecord.getHomeAccountId().equals(atRecord.getHomeAccountId())
                             && accountRecord.getRealm().equals(atRecord.getRealm())
-                            && targetsIntersect(target, atRecord.getTarget(), true)) {
+                            && ScopeUtil.containsAllScopes(atRecord.getNormalizedTargetScopes(), soughtScopes, true)) {
                         if (CredentialType.AccessToken.name().equalsIgnoreCase(atRecord.getCredentialType())
                                 && BearerAuthenticationSchemeInternal.SCHEME_BEARER.equalsIgnoreCase(authenticationScheme.getName())) {
                             atRecordToReturn = atRecord;
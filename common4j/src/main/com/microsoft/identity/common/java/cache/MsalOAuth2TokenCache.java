@@ -30,7 +30,6 @@ import static com.microsoft.identity.common.java.dto.CredentialType.V1IdToken;
 import static com.microsoft.identity.common.java.exception.ErrorStrings.ACCOUNT_IS_SCHEMA_NONCOMPLIANT;
 import static com.microsoft.identity.common.java.exception.ErrorStrings.CREDENTIAL_IS_SCHEMA_NONCOMPLIANT;
 
-import com.microsoft.identity.common.java.AuthenticationConstants;
 import com.microsoft.identity.common.java.BaseAccount;
 import com.microsoft.identity.common.java.WarningType;
 import com.microsoft.identity.common.java.authscheme.AbstractAuthenticationScheme;
@@ -56,6 +55,7 @@ import com.microsoft.identity.common.java.providers.oauth2.TokenResponse;
 import com.microsoft.identity.common.java.telemetry.Telemetry;
 import com.microsoft.identity.common.java.telemetry.events.CacheEndEvent;
 import com.microsoft.identity.common.java.telemetry.events.CacheStartEvent;
+import com.microsoft.identity.common.java.util.ScopeUtil;
 import com.microsoft.identity.common.java.util.StringUtil;
 
 import java.util.ArrayList;
@@ -63,6 +63,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import edu.umd.cs.findbugs.annotations.Nullable;
@@ -511,12 +512,18 @@ public class MsalOAuth2TokenCache
      */
     ICacheRecord getSparseCacheRecordForAccount(@NonNull final String clientId,
                                                 @NonNull final AccountRecord acct) {
-        final String methodName = ":getSparseCacheRecordForAccount";
-
-        final List<IdTokenRecord> acctIdTokens = getIdTokensForAccountRecord(
-                clientId,
-                acct
+        return getSparseCacheRecordForAccount(
+                acct,
+                getIdTokensForAccountRecord(
+                        clientId,
+                        acct
+                )
         );
+    }
+
+    private ICacheRecord getSparseCacheRecordForAccount(@NonNull final AccountRecord acct,
+                                                        @NonNull final List<IdTokenRecord> acctIdTokens) {
+        final String methodName = ":getSparseCacheRecordForAccount";
 
         if (acctIdTokens.size() > ID_TOKEN_TYPES.size()) {
             // We shouldn't have more idtokens than types of idtokens... 1 each
@@ -683,25 +690,63 @@ public class MsalOAuth2TokenCache
                              @Nullable final String target,
                              @NonNull final AccountRecord account,
                              @NonNull final AbstractAuthenticationScheme authScheme) {
+        return load(
+                clientId,
+                target,
+                account,
+                authScheme,
+                getCredentialsForAccountGroupedByType(account, authScheme)
+        );
+    }
+
+    /**
+     * Loads, in a single cache query, every AT (of the type used by the supplied scheme), RT and
+     * IdToken belonging to the supplied account - regardless of client_id, as the FRT fallback
+     * in {@link #load} may pick up an RT issued to another (FoCI) client.
+     */
+    private Map<CredentialType, List<Credential>> getCredentialsForAccountGroupedByType(
+            @NonNull final AccountRecord account,
+            @NonNull final AbstractAuthenticationScheme authScheme) {
+        final Set<CredentialType> credentialTypes = new HashSet<>(
+                Arrays.asList(
+                        getAccessTokenCredentialTypeForAuthenticationScheme(authScheme),
+                        RefreshToken,
+                        IdToken,
+                        V1IdToken
+                )
+        );
+
+        return mAccountCredentialCache.getCredentialsGroupedByType(
+                account.getHomeAccountId(),
+                account.getEnvironment(),
+                credentialTypes,
+                null // wildcard (*)
+        );
+    }
+
+    private ICacheRecord load(@NonNull final String clientId,
+                              @Nullable final String target,
+                              @NonNull final AccountRecord account,
+                              @NonNull final AbstractAuthenticationScheme authScheme,
+                              @NonNull final Map<CredentialType, List<Credential>> accountCredentials) {
         Telemetry.emit(new CacheStartEvent());
 
         final boolean isMultiResourceCapable = MicrosoftAccount.AUTHORITY_TYPE_MS_STS.equals(
                 account.getAuthorityType()
         );
 
-        // 'Preloading' our credentials to avoid repeated expensive cache hits
-        final List<Credential> allCredentials = mAccountCredentialCache.getCredentials();
+        final CredentialType accessTokenType = getAccessTokenCredentialTypeForAuthenticationScheme(authScheme);
 
         // Load the AccessTokens
         final List<Credential> accessTokens = mAccountCredentialCache.getCredentialsFilteredBy(
                 account.getHomeAccountId(),
                 account.getEnvironment(),
-                getAccessTokenCredentialTypeForAuthenticationScheme(authScheme),
+                accessTokenType,
                 clientId,
                 account.getRealm(),
                 target,
                 authScheme.getName(),
-                allCredentials
+                accountCredentials.get(accessTokenType)
         );
 
         // Load the RefreshTokens
@@ -717,7 +762,7 @@ public class MsalOAuth2TokenCache
                         ? null // wildcard (*)
                         : target,
                 null, // not applicable
-                allCredentials
+                accountCredentials.get(RefreshToken)
         );
 
         if (refreshTokens.isEmpty()) {
@@ -742,7 +787,18 @@ public class MsalOAuth2TokenCache
             // into same binary. If you do this, you'll get confusing errors that the RT used doesn't
             // match the client app registration. This assumption means we don't need to implement
             // "FoCI probing" and/or track FoCI app meta
-            final Credential fallbackFrt = getFamilyRefreshTokenForAccount(account);
+            final Credential fallbackFrt = getFamilyRefreshToken(
+                    mAccountCredentialCache.getCredentialsFilteredBy(
+                            account.getHomeAccountId(),
+                            account.getEnvironment(),
+                            CredentialType.RefreshToken,
+                            null, // wildcard (*)
+                            null, // wildcard (*) -- all FRTs are MRRTs by definition
+                            null, // wildcard (*) -- all FRTs are MRRTs by definition
+                            null, // not applicable
+                            accountCredentials.get(RefreshToken)
+                    )
+            );
 
             if (null != fallbackFrt) {
                 refreshTokens = new ArrayList<>();
@@ -759,7 +815,7 @@ public class MsalOAuth2TokenCache
                 account.getRealm(),
                 null, // wildcard (*),
                 null, // not applicable
-                allCredentials
+                accountCredentials.get(IdToken)
         );
 
         // Load the v1 IdTokens
@@ -771,7 +827,7 @@ public class MsalOAuth2TokenCache
                 account.getRealm(),
                 null, // wildcard (*)
                 null, // not applicable
-                allCredentials
+                accountCredentials.get(V1IdToken)
         );
 
         final CacheRecord.CacheRecordBuilder result = CacheRecord.builder();
@@ -793,11 +849,6 @@ public class MsalOAuth2TokenCache
      */
     @Nullable
     private RefreshTokenRecord getFamilyRefreshTokenForAccount(@NonNull final AccountRecord account) {
-        final String methodName = ":getFamilyRefreshTokensForAccount";
-
-        // Our eventual result - init to null, will assign if valid FRT is found
-        RefreshTokenRecord result = null;
-
         // Look for an arbitrary RT matching the current user.
         // If we find one, check that it is FoCI, if it is, assume it works.
         final List<Credential> fallbackRts = mAccountCredentialCache.getCredentialsFilteredBy(
@@ -810,6 +861,22 @@ public class MsalOAuth2TokenCache
                 null // not applicable
         );
 
+        return getFamilyRefreshToken(fallbackRts);
+    }
+
+    /**
+     * Returns the first FRT among the supplied RTs.
+     *
+     * @param fallbackRts The RTs of the account for which an FRT is sought.
+     * @return A matching FRT credential, if exists. May be null.
+     */
+    @Nullable
+    private RefreshTokenRecord getFamilyRefreshToken(@NonNull final List<Credential> fallbackRts) {
+        final String methodName = ":getFamilyRefreshToken";
+
+        // Our eventual result - init to null, will assign if valid FRT is found
+        RefreshTokenRecord result = null;
+
         if (!fallbackRts.isEmpty()) {
             Logger.verbose(
                     TAG + methodName,
@@ -867,15 +934,26 @@ public class MsalOAuth2TokenCache
         synchronized (this) {
             final List<ICacheRecord> result = new ArrayList<>();
 
-            final ICacheRecord primaryCacheRecord = load(clientId, target, account, authScheme);
+            // A single cache query serves both the primary record and the corollary (other tenant)
+            // records, as they all share this account's home_account_id and environment.
+            final Map<CredentialType, List<Credential>> accountCredentials =
+                    getCredentialsForAccountGroupedByType(account, authScheme);
+
+            final ICacheRecord primaryCacheRecord = load(
+                    clientId,
+                    target,
+                    account,
+                    authScheme,
+                    accountCredentials
+            );
 
             // Set this result as the 0th entry in the result...
             result.add(primaryCacheRecord);
 
             final List<ICacheRecord> corollaryCacheRecords = getAccountsWithAggregatedAccountData(
-                    account.getEnvironment(),
                     clientId,
-                    account.getHomeAccountId()
+                    account,
+                    accountCredentials
             );
 
             // corollaryCacheRecords will contain the original element that we've already added to
@@ -890,14 +968,85 @@ public class MsalOAuth2TokenCache
         }
     }
 
+    /**
+     * Equivalent to {@link #getAccountsWithAggregatedAccountData(String, String, String)} for the
+     * supplied account's environment and home_account_id, but evaluated against credentials already
+     * loaded by {@link #getCredentialsForAccountGroupedByType(AccountRecord, AbstractAuthenticationScheme)}
+     * rather than by re-querying the cache.
+     */
+    private List<ICacheRecord> getAccountsWithAggregatedAccountData(
+            @NonNull final String clientId,
+            @NonNull final AccountRecord account,
+            @NonNull final Map<CredentialType, List<Credential>> accountCredentials) {
+        final List<ICacheRecord> result = new ArrayList<>();
+
+        // The credentials of this app, used to determine which tenant accounts belong to it
+        final List<Credential> appCredentials = new ArrayList<>();
+        final List<Credential> idTokenCandidates = new ArrayList<>();
+
+        for (final CredentialType type : Arrays.asList(IdToken, V1IdToken, RefreshToken)) {
+            appCredentials.addAll(
+                    mAccountCredentialCache.getCredentialsFilteredBy(
+                            null, // homeAccountId
+                            account.getEnvironment(),
+                            type,
+                            clientId,
+                            null, // realm
+                            null, // target
+                            null, // authScheme
+                            accountCredentials.get(type)
+                    )
+            );
+        }
+
+        for (final CredentialType type : ID_TOKEN_TYPES) {
+            idTokenCandidates.addAll(accountCredentials.get(type));
+        }
+
+        final List<AccountRecord> tenantAccounts = new ArrayList<>();
+        boolean hasAccountForHomeAccountId = false;
+
+        for (final AccountRecord tenantAccount : mAccountCredentialCache.getAccountsFilteredBy(
+                account.getHomeAccountId(),
+                account.getEnvironment(),
+                null // wildcard (*) realm
+        )) {
+            if (accountHasCredential(tenantAccount, appCredentials)) {
+                tenantAccounts.add(tenantAccount);
+                hasAccountForHomeAccountId |= account.getHomeAccountId().equals(tenantAccount.getHomeAccountId());
+            }
+        }
+
+        if (hasAccountForHomeAccountId) {
+            for (final AccountRecord tenantAccount : tenantAccounts) {
+                result.add(
+                        getSparseCacheRecordForAccount(
+                                tenantAccount,
+                                getIdTokensForAccountRecord(clientId, tenantAccount, idTokenCandidates)
+                        )
+                );
+            }
+        }
+
+        return Collections.unmodifiableList(result);
+    }
+
     @Override
     public List<IdTokenRecord> getIdTokensForAccountRecord(@Nullable String clientId,
                                                            @NonNull AccountRecord accountRecord) {
-        final List<IdTokenRecord> result = new ArrayList<>();
-
         // Load all the credentials to inspect once, such that we don't need to requery the cache
         // pass these into the new getCredentialsFilteredBy overload, rather than hit disk again
-        final List<Credential> allCredentials = mAccountCredentialCache.getCredentials();
+        return getIdTokensForAccountRecord(
+                clientId,
+                accountRecord,
+                mAccountCredentialCache.getCredentials()
+        );
+    }
+
+    private List<IdTokenRecord> getIdTokensForAccountRecord(@Nullable final String clientId,
+                                                            @NonNull final AccountRecord accountRecord,
+                                                            @NonNull final List<Credential> allCredentials) {
+        final List<IdTokenRecord> result = new ArrayList<>();
 
         final List<Credential> idTokens = mAccountCredentialCache.getCredentialsFilteredBy(
                 accountRecord.getHomeAccountId(),
@@ -1685,43 +1834,24 @@ public class MsalOAuth2TokenCache
                                     boolean omitDefaultScopes) {
         final String methodName = "scopesIntersect";
 
-        final Set<String> token1Scopes = scopesAsSet(token1);
-        final Set<String> token2Scopes = scopesAsSet(token2);
-
-        if (omitDefaultScopes) {
-            // Remove the default scopes (if present), do not consider them in lookup criteria
-            token1Scopes.removeAll(AuthenticationConstants.DEFAULT_SCOPES);
-            token2Scopes.removeAll(AuthenticationConstants.DEFAULT_SCOPES);
-        }
+        // Scopes are compared case-insensitively, consistent with AT lookup and cache keys
+        final boolean result = ScopeUtil.scopesIntersect(
+                token1.getNormalizedTargetScopes(),
+                token2.getNormalizedTargetScopes(),
+                omitDefaultScopes
+        );
 
-        boolean result = false;
-        for (final String scope : token2Scopes) {
-            if (token1Scopes.contains(scope)) {
-                Logger.info(TAG + ":" + methodName, "Scopes intersect.");
-                Logger.infoPII(
-                        TAG + ":" + methodName,
-                        token1Scopes.toString() + " contains [" + scope + "]"
-                );
-                result = true;
-                break;
-            }
+        if (result) {
+            Logger.info(TAG + ":" + methodName, "Scopes intersect.");
+            Logger.infoPII(
+                    TAG + ":" + methodName,
+                    token1.getTarget() + " intersects [" + token2.getTarget() + "]"
+            );
         }
 
         return result;
     }
 
-    private Set<String> scopesAsSet(final AccessTokenRecord token) {
-        final Set<String> scopeSet = new HashSet<>();
-        final String scopeString = token.getTarget();
-
-        if (!StringUtil.isNullOrEmpty(scopeString)) {
-            final String[] scopeArray = scopeString.split("\\s+");
-            scopeSet.addAll(Arrays.asList(scopeArray));
-        }
-
-        return scopeSet;
-    }
-
     private static boolean isSchemaCompliant(final Class<?> clazz, final String[][] params) {
         final String methodName = "isSchemaCompliant";
 
@@ -0,0 +1,108 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.cache;
+
+import com.microsoft.identity.common.java.interfaces.INameValueStorage;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+import lombok.NonNull;
+
+/**
+ * An immutable copy of (some of) the entries of a name-value store, taken at one point in time.
+ * <p>
+ * Values are decrypted, if the store is encrypted. The snapshot carries the version of the store
+ * it was taken from, which changes whenever the store is written to through the same object, so
+ * callers can tell whether two snapshots may differ without comparing their entries.
+ *
+ * @param <T> The type of the values.
+ * @see INameValueStorage#getSnapshot(com.microsoft.identity.common.java.util.ported.Predicate)
+ * @see IMultiTypeNameValueStorage#getSnapshot(com.microsoft.identity.common.java.util.ported.Predicate)
+ */
+public final class NameValueSnapshot<T> {
+
+    /**
+     * The version of snapshots taken from stores that cannot track their changes, e.g. because
+     * other processes write to them. Such snapshots are never known to be current.
+     */
+    public static final long UNKNOWN_VERSION = -1;
+
+    private final long mVersion;
+    private final Map<String, T> mEntries;
+
+    /**
+     * Constructs a snapshot, copying the supplied entries.
+     *
+     * @param version The version of the store the entries were read from.
+     * @param entries The entries.
+     */
+    public NameValueSnapshot(final long version, @NonNull final Map<String, T> entries) {
+        mVersion = version;
+        mEntries = Collections.unmodifiableMap(new HashMap<>(entries));
+    }
+
+    /**
+     * @return The version of the store when this snapshot was taken.
+     */
+    public long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Tests whether the store had no writes between this snapshot and the supplied one, which
+     * must have been taken from the same store.
+     *
+     * @param other Another snapshot of the same store.
+     * @return True if both snapshots were taken at the same, known version.
+     */
+    public boolean isSameVersionAs(@NonNull final NameValueSnapshot<?> other) {
+        return mVersion != UNKNOWN_VERSION && mVersion == other.mVersion;
+    }
+
+    /**
+     * @return The entries, by key. The map cannot be modified.
+     */
+    @NonNull
+    public Map<String, T> getEntries() {
+        return mEntries;
+    }
+
+    /**
+     * @param key The key.
+     * @return The value of the key when this snapshot was taken, or null if it had none.
+     */
+    @Nullable
+    public T get(@NonNull final String key) {
+        return mEntries.get(key);
+    }
+
+    /**
+     * @return The number of entries.
+     */
+    public int size() {
+        return mEntries.size();
+    }
+}
@@ -30,14 +30,27 @@ import com.microsoft.identity.common.java.util.StringUtil;
 
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import edu.umd.cs.findbugs.annotations.Nullable;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import lombok.NonNull;
 
+/**
+ * Broker application metadata.
+ * <p>
+ * Lookups are served from an in-memory {@link MetadataIndex} rather than by parsing the stored
+ * entries on every call. The index is shared by all instances of this class, is updated directly
+ * by {@link #insert(BrokerApplicationMetadata)} and {@link #remove(BrokerApplicationMetadata)},
+ * and is rebuilt whenever the store's version no longer matches the one it was built at (e.g.
+ * after {@link #clear()} or a write through a different storage).
+ */
 @SuppressFBWarnings(value = SpotbugsWarning.RCN_REDUNDANT_NULLCHECK_WOULD_HAVE_BEEN_A_NPE, justification = "Lombok inserts more null checks than we need")
 public class NameValueStorageBrokerApplicationMetadataCache
         extends NameValueStorageFileManagerSimpleCacheImpl<BrokerApplicationMetadata>
@@ -49,19 +62,22 @@ public class NameValueStorageBrokerApplicationMetadataCache
 
     private static final String KEY_CACHE_LIST = "app-meta-cache";
 
+    private static volatile MetadataIndex sIndex;
+
     public NameValueStorageBrokerApplicationMetadataCache(@NonNull final IPlatformComponents context) {
         super(context, DEFAULT_APP_METADATA_CACHE_NAME, KEY_CACHE_LIST, true);
     }
 
+    @Override
+    public List<BrokerApplicationMetadata> getAll() {
+        return copyOf(getIndex().mAll);
+    }
+
     @Override
     public Set<String> getAllClientIds() {
         final String methodName = ":getAllClientIds";
 
-        final Set<String> allClientIds = new HashSet<>();
-
-        for (final BrokerApplicationMetadata metadata : getAll()) {
-            allClientIds.add(metadata.getClientId());
-        }
+        final Set<String> allClientIds = new HashSet<>(getIndex().mClientIds);
 
         Logger.verbose(
                 TAG + methodName,
@@ -85,19 +101,23 @@ public class NameValueStorageBrokerApplicationMetadataCache
 
     @Override
     public List<BrokerApplicationMetadata> getAllFociApplicationMetadata() {
-        final Set<String> fociClientIds = getAllFociClientIds();
-
-        final List<BrokerApplicationMetadata> result = new ArrayList<>();
+        return copyOf(getIndex().mFociApplicationMetadata);
+    }
 
-        final List<BrokerApplicationMetadata> allMetadata = getAll();
+    /**
+     * Returns the metadata of the FoCI family with the supplied id.
+     *
+     * @param familyId The family id.
+     * @return The metadata of every app in that family. Empty if there are none.
+     */
+    public List<BrokerApplicationMetadata> getFamilyApplicationMetadata(@NonNull final String familyId) {
+        final List<BrokerApplicationMetadata> family = getIndex().mByFamily.get(familyId);
 
-        for (final BrokerApplicationMetadata metadata : allMetadata) {
-            if (fociClientIds.contains(metadata.getClientId())) {
-                result.add(metadata);
-            }
+        if (null == family) {
+            return new ArrayList<>();
         }
 
-        return result;
+        return copyOf(family);
     }
 
     /**
@@ -109,19 +129,10 @@ public class NameValueStorageBrokerApplicationMetadataCache
     private Set<String> getAllFociClientIds(final boolean inverseMatch) {
         final String methodName = ":getAllFociClientIds";
 
-        final Set<String> allFociClientIds = new HashSet<>();
-
-        for (final BrokerApplicationMetadata metadata : getAll()) {
-            if (!inverseMatch) { // match FoCI
-                if (!StringUtil.isNullOrEmpty(metadata.getFoci())) {
-                    allFociClientIds.add(metadata.getClientId());
-                }
-            } else { // match non FoCI
-                if (StringUtil.isNullOrEmpty(metadata.getFoci())) {
-                    allFociClientIds.add(metadata.getClientId());
-                }
-            }
-        }
+        final MetadataIndex index = getIndex();
+        final Set<String> allFociClientIds = new HashSet<>(
+                inverseMatch ? index.mNonFociClientIds : index.mFociClientIds
+        );
 
         Logger.verbose(
                 TAG + methodName,
@@ -140,24 +151,10 @@ public class NameValueStorageBrokerApplicationMetadataCache
                                                  final int processUid) {
         final String methodName = ":getMetadata";
 
-        final List<BrokerApplicationMetadata> allMetadata = getAll();
-        BrokerApplicationMetadata result = null;
-
-        for (final BrokerApplicationMetadata metadata : allMetadata) {
-            if (clientId.equals(metadata.getClientId())
-                    && environment.equals(metadata.getEnvironment())
-                    && processUid == metadata.getUid()) {
-                Logger.verbose(
-                        TAG + metadata,
-                        "Metadata located."
-                );
-
-                result = metadata;
-                break;
-            }
-        }
+        final BrokerApplicationMetadata metadata =
+                getIndex().mByKey.get(new MetadataKey(clientId, environment, processUid));
 
-        if (null == result) {
+        if (null == metadata) {
             Logger.warn(
                     TAG + methodName,
                     "Metadata could not be found for clientId, environment: ["
@@ -166,25 +163,219 @@ public class NameValueStorageBrokerApplicationMetadataCache
                             + environment
                             + "]"
             );
+            return null;
         }
 
-        return result;
+        Logger.verbose(
+                TAG + methodName,
+                "Metadata located."
+        );
+
+        return copyOf(metadata);
     }
 
     public void remove(@NonNull final String clientId,
                        final int processUid) {
-        final List<BrokerApplicationMetadata> allMetadata = getAll();
+        final List<BrokerApplicationMetadata> byUid = getIndex().mByUid.get(processUid);
+
+        if (null == byUid) {
+            return;
+        }
 
-        for (final BrokerApplicationMetadata metadata : allMetadata) {
-            if (clientId.equalsIgnoreCase(metadata.getClientId())
-                    && processUid == metadata.getUid()) {
+        for (final BrokerApplicationMetadata metadata : byUid) {
+            if (clientId.equalsIgnoreCase(metadata.getClientId())) {
                 remove(metadata);
             }
         }
     }
 
+    @Override
+    protected void onEntryInserted(@Nullable final String previousVersion,
+                                   @NonNull final String version,
+                                   @NonNull final BrokerApplicationMetadata entry) {
+        final MetadataIndex current = sIndex;
+
+        if (null != current && isSameVersion(previousVersion, current.mVersion)) {
+            final List<BrokerApplicationMetadata> entries = new ArrayList<>(current.mAll);
+            // Inserts replace an equal entry, as this cache forces reinsertion of duplicates.
+            entries.remove(entry);
+            // Index a copy, so later changes to the caller's object do not leak into the index.
+            entries.add(copyOf(entry));
+            sIndex = new MetadataIndex(version, entries);
+        } else {
+            sIndex = null;
+        }
+    }
+
+    @Override
+    protected void onEntryRemoved(@Nullable final String previousVersion,
+                                  @NonNull final String version,
+                                  @NonNull final BrokerApplicationMetadata entry) {
+        final MetadataIndex current = sIndex;
+
+        if (null != current && isSameVersion(previousVersion, current.mVersion)) {
+            final List<BrokerApplicationMetadata> entries = new ArrayList<>(current.mAll);
+            entries.remove(entry);
+            sIndex = new MetadataIndex(version, entries);
+        } else {
+            sIndex = null;
+        }
+    }
+
     @Override
     public Type getListTypeToken() {
         return TypeToken.getParameterized(List.class, BrokerApplicationMetadata.class).getType();
     }
+
+    /**
+     * Gets the index, rebuilding it if the stored entries have changed since it was built.
+     */
+    @NonNull
+    private MetadataIndex getIndex() {
+        final String methodName = ":getIndex";
+        final String version = getVersion();
+        final MetadataIndex current = sIndex;
+
+        if (null != current && isSameVersion(version, current.mVersion)) {
+            return current;
+        }
+
+        Logger.verbose(
+                TAG + methodName,
+                "Rebuilding application metadata index."
+        );
+
+        final MetadataIndex rebuilt = new MetadataIndex(version, loadAll());
+        sIndex = rebuilt;
+        return rebuilt;
+    }
+
+    private static boolean isSameVersion(@Nullable final String version,
+                                         @Nullable final String otherVersion) {
+        return version == null ? otherVersion == null : version.equals(otherVersion);
+    }
+
+    private static List<BrokerApplicationMetadata> copyOf(
+            @NonNull final Collection<BrokerApplicationMetadata> metadata) {
+        final List<BrokerApplicationMetadata> result = new ArrayList<>(metadata.size());
+
+        for (final BrokerApplicationMetadata entry : metadata) {
+            result.add(copyOf(entry));
+        }
+
+        return result;
+    }
+
+    // Entries are mutable; hand out copies so callers cannot change the index.
+    private static BrokerApplicationMetadata copyOf(@NonNull final BrokerApplicationMetadata metadata) {
+        final BrokerApplicationMetadata copy = new BrokerApplicationMetadata();
+        copy.setClientId(metadata.getClientId());
+        copy.setEnvironment(metadata.getEnvironment());
+        copy.setUid(metadata.getUid());
+        copy.setFoci(metadata.getFoci());
+        return copy;
+    }
+
+    /**
+     * Immutable lookup tables over one version of the stored entries.
+     */
+    private static final class MetadataIndex {
+        @Nullable
+        private final String mVersion;
+        private final List<BrokerApplicationMetadata> mAll;
+        private final Map<MetadataKey, BrokerApplicationMetadata> mByKey = new HashMap<>();
+        private final Map<Integer, List<BrokerApplicationMetadata>> mByUid = new HashMap<>();
+        private final Map<String, List<BrokerApplicationMetadata>> mByFamily = new HashMap<>();
+        private final Set<String> mClientIds = new HashSet<>();
+        private final Set<String> mFociClientIds = new HashSet<>();
+        private final Set<String> mNonFociClientIds = new HashSet<>();
+        private final List<BrokerApplicationMetadata> mFociApplicationMetadata = new ArrayList<>();
+
+        MetadataIndex(@Nullable final String version,
+                      @NonNull final List<BrokerApplicationMetadata> entries) {
+            mVersion = version;
+            mAll = Collections.unmodifiableList(entries);
+
+            for (final BrokerApplicationMetadata metadata : entries) {
+                final MetadataKey key = new MetadataKey(
+                        metadata.getClientId(),
+                        metadata.getEnvironment(),
+                        metadata.getUid()
+                );
+                // Keep the first match, as the linear scan this replaces did.
+                if (!mByKey.containsKey(key)) {
+                    mByKey.put(key, metadata);
+                }
+
+                addTo(mByUid, metadata.getUid(), metadata);
+                mClientIds.add(metadata.getClientId());
+
+                if (StringUtil.isNullOrEmpty(metadata.getFoci())) {
+                    mNonFociClientIds.add(metadata.getClientId());
+                } else {
+                    mFociClientIds.add(metadata.getClientId());
+                    addTo(mByFamily, metadata.getFoci(), metadata);
+                }
+            }
+
+            for (final BrokerApplicationMetadata metadata : entries) {
+                if (mFociClientIds.contains(metadata.getClientId())) {
+                    mFociApplicationMetadata.add(metadata);
+                }
+            }
+        }
+
+        private static <K> void addTo(@NonNull final Map<K, List<BrokerApplicationMetadata>> map,
+                                      @NonNull final K key,
+                                      @NonNull final BrokerApplicationMetadata metadata) {
+            List<BrokerApplicationMetadata> values = map.get(key);
+
+            if (null == values) {
+                values = new ArrayList<>();
+                map.put(key, values);
+            }
+
+            values.add(metadata);
+        }
+    }
+
+    /**
+     * The (clientId, environment, uid) identity of an entry.
+     */
+    private static final class MetadataKey {
+        private final String mClientId;
+        private final String mEnvironment;
+        private final int mUid;
+
+        MetadataKey(@Nullable final String clientId,
+                    @Nullable final String environment,
+                    final int uid) {
+            mClientId = clientId;
+            mEnvironment = environment;
+            mUid = uid;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MetadataKey)) {
+                return false;
+            }
+
+            final MetadataKey that = (MetadataKey) o;
+            return mUid == that.mUid
+                    && (mClientId == null ? that.mClientId == null : mClientId.equals(that.mClientId))
+                    && (mEnvironment == null ? that.mEnvironment == null : mEnvironment.equals(that.mEnvironment));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mClientId != null ? mClientId.hashCode() : 0;
+            result = 31 * result + (mEnvironment != null ? mEnvironment.hashCode() : 0);
+            result = 31 * result + mUid;
+            return result;
+        }
+    }
 }
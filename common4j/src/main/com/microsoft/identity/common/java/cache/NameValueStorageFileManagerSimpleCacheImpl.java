@@ -25,17 +25,29 @@ package com.microsoft.identity.common.java.cache;
 import lombok.NonNull;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import com.microsoft.identity.common.java.interfaces.IPlatformComponents;
 import com.microsoft.identity.common.java.interfaces.INameValueStorage;
 import com.microsoft.identity.common.java.logging.Logger;
+import com.microsoft.identity.common.java.metrics.LatencyHistogram;
+import com.microsoft.identity.common.java.metrics.MetricNames;
+import com.microsoft.identity.common.java.metrics.MetricsRegistry;
 import com.microsoft.identity.common.java.util.StringUtil;
+import com.microsoft.identity.common.java.util.ported.Predicate;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
+import edu.umd.cs.findbugs.annotations.Nullable;
+
 /**
  * A simple metadata store definition that uses INameValueStorage to persist, read,
  * update, and delete data. Please note that all CRUD actions return success, as the underlying
@@ -43,7 +55,13 @@ import java.util.concurrent.TimeUnit;
  * operation was successful, use {@link SharedPreferencesSimpleCacheImpl} which is less performance
  * oriented.
  * <p>
- * Data serializes as JSON.
+ * Data serializes as JSON. Each element is stored in a bucket of its own, keyed by its
+ * {@link Object#hashCode()}, so inserting or removing an element reads and writes only that
+ * bucket. Elements must therefore have a hashCode that is stable across processes. A version key,
+ * rewritten on every change, lets callers that keep a parsed copy tell whether it is current.
+ * <p>
+ * Stores written in the previous layout, a single JSON array under the single key, are migrated
+ * to this layout on first use.
  *
  * @param <T> The type of metadata that will be persisted.
  * @see SharedPreferencesSimpleCacheImpl
@@ -53,12 +71,30 @@ public abstract class NameValueStorageFileManagerSimpleCacheImpl<T> implements I
     private static final String TAG = NameValueStorageFileManagerSimpleCacheImpl.class.getSimpleName();
     private static final String EMTPY_ARRAY = "[]";
     private static final String TIMING_TAG = "execWithTiming";
+    private static final String ENTRY_KEY_INFIX = "-entry-";
+    private static final String VERSION_KEY_SUFFIX = "-version";
+
+    private static final LatencyHistogram sInsertLatency =
+            MetricsRegistry.getInstance().getHistogram(MetricNames.SIMPLE_CACHE_OPERATION + "insert");
+    private static final LatencyHistogram sRemoveLatency =
+            MetricsRegistry.getInstance().getHistogram(MetricNames.SIMPLE_CACHE_OPERATION + "remove");
+    private static final LatencyHistogram sGetAllLatency =
+            MetricsRegistry.getInstance().getHistogram(MetricNames.SIMPLE_CACHE_OPERATION + "getAll");
+    private static final LatencyHistogram sClearLatency =
+            MetricsRegistry.getInstance().getHistogram(MetricNames.SIMPLE_CACHE_OPERATION + "clear");
+
+    // Per-store write locks, keyed by store name and key, as storage wrappers are not singletons.
+    private static final ConcurrentMap<String, Object> sWriteLocks = new ConcurrentHashMap<>();
 
     private final IPlatformComponents mComponents;
     private final INameValueStorage<String> mStorage;
     private final String mKeySingleEntry;
+    private final String mEntryKeyPrefix;
+    private final String mVersionKey;
+    private final Object mWriteLock;
     private final boolean mForceReinsertionOfDuplicates;
     private final Gson mGson = new Gson();
+    private volatile boolean mMigrated = false;
 
     /**
      * Constructs a new NameValueStorageFileManagerSimpleCacheImpl. Convenience class for persisting
@@ -93,14 +129,24 @@ public abstract class NameValueStorageFileManagerSimpleCacheImpl<T> implements I
         mComponents = components;
         mStorage = components.getNameValueStore(name, String.class);
         mKeySingleEntry = singleKey;
+        mEntryKeyPrefix = singleKey + ENTRY_KEY_INFIX;
+        mVersionKey = singleKey + VERSION_KEY_SUFFIX;
+        mWriteLock = getWriteLock(name + "/" + singleKey);
         mForceReinsertionOfDuplicates = forceReinsertionOfDuplicates;
     }
 
+    private static Object getWriteLock(@NonNull final String storeKey) {
+        final Object lock = new Object();
+        final Object existing = sWriteLocks.putIfAbsent(storeKey, lock);
+        return existing == null ? lock : existing;
+    }
+
     private interface NamedRunnable<V> extends Callable<V> {
         String getName();
     }
 
-    private <V> V execWithTiming(@NonNull final NamedRunnable<V> runnable) {
+    private <V> V execWithTiming(@NonNull final LatencyHistogram latency,
+                                 @NonNull final NamedRunnable<V> runnable) {
         final long startTime = mComponents.getPlatformUtil().getNanosecondTime();
 
         V v = null;
@@ -113,6 +159,7 @@ public abstract class NameValueStorageFileManagerSimpleCacheImpl<T> implements I
             Logger.error(TAG + TIMING_TAG, "Error during operation", e);
         } finally {
             final long execTime =  mComponents.getPlatformUtil().getNanosecondTime() - startTime;
+            latency.record(execTime);
             Logger.verbose(TAG + TIMING_TAG,
                     runnable.getName() + " finished in: " + execTime + " " + TimeUnit.NANOSECONDS.name());
         }
@@ -122,7 +169,7 @@ public abstract class NameValueStorageFileManagerSimpleCacheImpl<T> implements I
 
     @Override
     public boolean insert(final T t) {
-        return execWithTiming(new NamedRunnable<Boolean>() {
+        return execWithTiming(sInsertLatency, new NamedRunnable<Boolean>() {
             @Override
             public String getName() {
                 return "insert";
@@ -130,27 +177,37 @@ public abstract class NameValueStorageFileManagerSimpleCacheImpl<T> implements I
 
             @Override
             public Boolean call() {
-                final Set<T> allMetadata = new HashSet<>(getAll());
-
-                if (mForceReinsertionOfDuplicates) {
-                    // This is a bit of workaround for Set's default behavior
-                    // where items already within the Set are not replaced if they are
-                    // inserted but already exist.
-                    // This makes it behave more like a Map.
-                    allMetadata.remove(t);
-                }
+                synchronized (mWriteLock) {
+                    ensureMigrated();
+
+                    final String entryKey = getEntryKey(t);
+                    final List<T> bucket = readBucket(entryKey);
+                    final int existingIndex = bucket.indexOf(t);
+
+                    if (existingIndex >= 0) {
+                        if (!mForceReinsertionOfDuplicates) {
+                            // Like a Set, keep the element already stored.
+                            return true;
+                        }
+
+                        // Replace the stored element, which makes this behave more like a Map.
+                        bucket.set(existingIndex, t);
+                    } else {
+                        bucket.add(t);
+                    }
 
-                allMetadata.add(t);
-                final String json = mGson.toJson(allMetadata);
-                mStorage.put(mKeySingleEntry, json);
-                return true;
+                    mStorage.put(entryKey, mGson.toJson(bucket));
+                    final String previousVersion = mStorage.get(mVersionKey);
+                    onEntryInserted(previousVersion, writeNewVersion(), t);
+                    return true;
+                }
             }
         });
     }
 
     @Override
     public boolean remove(final T t) {
-        return execWithTiming(new NamedRunnable<Boolean>() {
+        return execWithTiming(sRemoveLatency, new NamedRunnable<Boolean>() {
             @Override
             public String getName() {
                 return "remove";
@@ -158,18 +215,33 @@ public abstract class NameValueStorageFileManagerSimpleCacheImpl<T> implements I
 
             @Override
             public Boolean call() {
-                final Set<T> allMetadata = new HashSet<>(getAll());
-                allMetadata.remove(t);
-                final String json = mGson.toJson(allMetadata);
-                mStorage.put(mKeySingleEntry, json);
-                return true;
+                synchronized (mWriteLock) {
+                    ensureMigrated();
+
+                    final String entryKey = getEntryKey(t);
+                    final List<T> bucket = readBucket(entryKey);
+
+                    if (!bucket.remove(t)) {
+                        return true;
+                    }
+
+                    if (bucket.isEmpty()) {
+                        mStorage.remove(entryKey);
+                    } else {
+                        mStorage.put(entryKey, mGson.toJson(bucket));
+                    }
+
+                    final String previousVersion = mStorage.get(mVersionKey);
+                    onEntryRemoved(previousVersion, writeNewVersion(), t);
+                    return true;
+                }
             }
         });
     }
 
     @Override
     public List<T> getAll() {
-        return execWithTiming(new NamedRunnable<List<T>>() {
+        return execWithTiming(sGetAllLatency, new NamedRunnable<List<T>>() {
             @Override
             public String getName() {
                 return "getAll";
@@ -177,22 +249,14 @@ public abstract class NameValueStorageFileManagerSimpleCacheImpl<T> implements I
 
             @Override
             public List<T> call() {
-                String jsonList = mStorage.get(mKeySingleEntry);
-
-                if (StringUtil.isNullOrEmpty(jsonList)) {
-                    jsonList = EMTPY_ARRAY;
-                }
-
-                final List<T> result = mGson.fromJson(jsonList, getListTypeToken());
-
-                return result;
+                return loadAll();
             }
         });
     }
 
     @Override
     public boolean clear() {
-        return execWithTiming(new NamedRunnable<Boolean>() {
+        return execWithTiming(sClearLatency, new NamedRunnable<Boolean>() {
             @Override
             public String getName() {
                 return "clear";
@@ -200,9 +264,157 @@ public abstract class NameValueStorageFileManagerSimpleCacheImpl<T> implements I
 
             @Override
             public Boolean call() {
-                mStorage.clear();
-                return true;
+                synchronized (mWriteLock) {
+                    mStorage.clear();
+                    return true;
+                }
             }
         });
     }
+
+    /**
+     * Reads every element from storage.
+     *
+     * @return The elements.
+     */
+    @NonNull
+    protected final List<T> loadAll() {
+        ensureMigrated();
+
+        final List<T> result = new ArrayList<>();
+        final Iterator<Map.Entry<String, String>> buckets = mStorage.getAllFilteredByKey(
+                new Predicate<String>() {
+                    @Override
+                    public boolean test(final String key) {
+                        return key.startsWith(mEntryKeyPrefix);
+                    }
+                }
+        );
+
+        while (buckets.hasNext()) {
+            result.addAll(deserializeEntries(buckets.next().getValue()));
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a token that changes whenever an element is inserted or removed. Subclasses that
+     * keep a parsed copy of the elements can compare it with the token the copy was built at to
+     * tell whether the copy is still current.
+     *
+     * @return The version, or null if nothing has been written since the store was last cleared.
+     */
+    @Nullable
+    protected final String getVersion() {
+        ensureMigrated();
+        return mStorage.get(mVersionKey);
+    }
+
+    /**
+     * Called after {@link #insert(Object)} has persisted an element.
+     *
+     * @param previousVersion The version before the change.
+     * @param version         The version after the change.
+     * @param entry           The inserted element.
+     */
+    protected void onEntryInserted(@Nullable final String previousVersion,
+                                   @NonNull final String version,
+                                   @NonNull final T entry) {
+        // Nothing by default.
+    }
+
+    /**
+     * Called after {@link #remove(Object)} has removed an element.
+     *
+     * @param previousVersion The version before the change.
+     * @param version         The version after the change.
+     * @param entry           The removed element.
+     */
+    protected void onEntryRemoved(@Nullable final String previousVersion,
+                                  @NonNull final String version,
+                                  @NonNull final T entry) {
+        // Nothing by default.
+    }
+
+    private String getEntryKey(@NonNull final T t) {
+        return mEntryKeyPrefix + Integer.toHexString(t.hashCode());
+    }
+
+    private List<T> readBucket(@NonNull final String entryKey) {
+        return deserializeEntries(mStorage.get(entryKey));
+    }
+
+    @NonNull
+    private List<T> deserializeEntries(@Nullable final String jsonList) {
+        final List<T> result = mGson.fromJson(
+                StringUtil.isNullOrEmpty(jsonList) ? EMTPY_ARRAY : jsonList,
+                getListTypeToken()
+        );
+
+        return result == null ? new ArrayList<T>() : result;
+    }
+
+    /**
+     * @return The new version.
+     */
+    @NonNull
+    private String writeNewVersion() {
+        final String version = UUID.randomUUID().toString();
+        mStorage.put(mVersionKey, version);
+        return version;
+    }
+
+    /**
+     * Moves elements stored in the single-key layout into per-element buckets.
+     */
+    private void ensureMigrated() {
+        if (mMigrated) {
+            return;
+        }
+
+        synchronized (mWriteLock) {
+            if (mMigrated) {
+                return;
+            }
+
+            final String methodName = ":ensureMigrated";
+            final String legacyJson = mStorage.get(mKeySingleEntry);
+
+            if (legacyJson != null) {
+                try {
+                    final Map<String, List<T>> buckets = new HashMap<>();
+
+                    for (final T t : deserializeEntries(legacyJson)) {
+                        final String entryKey = getEntryKey(t);
+                        List<T> bucket = buckets.get(entryKey);
+
+                        if (bucket == null) {
+                            bucket = readBucket(entryKey);
+                            buckets.put(entryKey, bucket);
+                        }
+
+                        if (!bucket.contains(t)) {
+                            bucket.add(t);
+                        }
+                    }
+
+                    for (final Map.Entry<String, List<T>> bucket : buckets.entrySet()) {
+                        mStorage.put(bucket.getKey(), mGson.toJson(bucket.getValue()));
+                    }
+
+                    Logger.info(TAG + methodName,
+                            "Migrated [" + buckets.size() + "] entries to per-entry storage.");
+                } catch (final JsonParseException e) {
+                    Logger.error(TAG + methodName, "Discarding unreadable legacy entries.", e);
+                }
+
+                // Write the version before dropping the old key, so a reader never sees neither.
+                writeNewVersion();
+                mStorage.remove(mKeySingleEntry);
+            }
+
+            mMigrated = true;
+        }
+    }
 }
@@ -0,0 +1,306 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+package com.microsoft.identity.common.java.cache;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.microsoft.identity.common.java.interfaces.INameValueStorage;
+import com.microsoft.identity.common.java.logging.Logger;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+import lombok.NonNull;
+
+/**
+ * Persists network metadata documents (e.g. OpenID provider configuration and AAD instance
+ * discovery responses) across process restarts.
+ * <p>
+ * An entry younger than the time-to-live is fresh and can be used as is. Once it is older, it is
+ * stale: callers may keep serving it for up to the stale window while they revalidate it in the
+ * background (see {@link #tryBeginRefresh(String)}). Past the stale window, it is expired and
+ * callers must fetch the document again before using it.
+ * <p>
+ * Until {@link #setStorage(INameValueStorage)} is called, nothing is persisted.
+ */
+public class PersistentMetadataCache {
+
+    private static final String TAG = PersistentMetadataCache.class.getSimpleName();
+
+    /**
+     * Default time for which a persisted document is fresh.
+     */
+    public static final long DEFAULT_TIME_TO_LIVE_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+    /**
+     * Default time past the time-to-live for which a stale document may still be served.
+     */
+    public static final long DEFAULT_STALE_WINDOW_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    private static final String FETCHED_AT = "fetched_at";
+    private static final String BODY = "body";
+
+    private static final ReentrantReadWriteLock sLock = new ReentrantReadWriteLock();
+
+    private static final Set<String> sRefreshesInFlight =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private static INameValueStorage<String> sStorage;
+
+    private static long sTimeToLiveMillis = DEFAULT_TIME_TO_LIVE_MILLIS;
+
+    private static long sStaleWindowMillis = DEFAULT_STALE_WINDOW_MILLIS;
+
+    /**
+     * A persisted document and the time at which it was fetched.
+     */
+    public static final class Entry {
+        private final String mBody;
+        private final long mFetchedAtMillis;
+
+        Entry(@NonNull final String body, final long fetchedAtMillis) {
+            mBody = body;
+            mFetchedAtMillis = fetchedAtMillis;
+        }
+
+        @NonNull
+        public String getBody() {
+            return mBody;
+        }
+
+        public long getFetchedAtMillis() {
+            return mFetchedAtMillis;
+        }
+
+        /**
+         * @return true if this entry is within its time-to-live.
+         */
+        public boolean isFresh() {
+            return PersistentMetadataCache.isFresh(mFetchedAtMillis);
+        }
+
+        /**
+         * @return true if this entry is past both its time-to-live and the stale window.
+         */
+        public boolean isExpired() {
+            return PersistentMetadataCache.isExpired(mFetchedAtMillis);
+        }
+    }
+
+    /**
+     * Sets the storage that documents are persisted to.
+     *
+     * @param storage The storage, or null to disable persistence.
+     */
+    public static void setStorage(@Nullable final INameValueStorage<String> storage) {
+        sLock.writeLock().lock();
+        try {
+            sStorage = storage;
+        } finally {
+            sLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sets how long persisted documents stay fresh, and for how long after that they may be served
+     * while being revalidated.
+     *
+     * @param timeToLiveMillis  The time-to-live, in milliseconds.
+     * @param staleWindowMillis The stale window, in milliseconds.
+     */
+    public static void setExpiry(final long timeToLiveMillis, final long staleWindowMillis) {
+        if (timeToLiveMillis < 0 || staleWindowMillis < 0) {
+            throw new IllegalArgumentException("Expiry must not be negative.");
+        }
+
+        sLock.writeLock().lock();
+        try {
+            sTimeToLiveMillis = timeToLiveMillis;
+            sStaleWindowMillis = staleWindowMillis;
+        } finally {
+            sLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns true if a document fetched at the supplied time is still within the time-to-live.
+     *
+     * @param fetchedAtMillis The time the document was fetched, in milliseconds since the epoch.
+     * @return true if the document is fresh.
+     */
+    public static boolean isFresh(final long fetchedAtMillis) {
+        final long age = System.currentTimeMillis() - fetchedAtMillis;
+        return age >= 0 && age < getTimeToLiveMillis();
+    }
+
+    /**
+     * Returns true if a document fetched at the supplied time is past both the time-to-live and
+     * the stale window, and so must not be served any more.
+     *
+     * @param fetchedAtMillis The time the document was fetched, in milliseconds since the epoch.
+     * @return true if the document is expired.
+     */
+    public static boolean isExpired(final long fetchedAtMillis) {
+        final long age = System.currentTimeMillis() - fetchedAtMillis;
+        return age < 0 || age >= getTimeToLiveMillis() + getStaleWindowMillis();
+    }
+
+    /**
+     * Reads a persisted document.
+     *
+     * @param key The key of the document, typically the URL it was fetched from.
+     * @return The entry, or null if there is none, it is expired or it cannot be read.
+     */
+    @Nullable
+    public static Entry read(@NonNull final String key) {
+        final String methodName = ":read";
+        final String value;
+
+        sLock.readLock().lock();
+        try {
+            if (sStorage == null) {
+                return null;
+            }
+            value = sStorage.get(key);
+        } finally {
+            sLock.readLock().unlock();
+        }
+
+        if (value == null) {
+            return null;
+        }
+
+        final Entry entry;
+        try {
+            final JsonObject object = new JsonParser().parse(value).getAsJsonObject();
+            final JsonElement body = object.get(BODY);
+            final JsonElement fetchedAt = object.get(FETCHED_AT);
+
+            if (body == null || fetchedAt == null) {
+                Logger.warn(TAG + methodName, "Discarding incomplete metadata entry.");
+                remove(key);
+                return null;
+            }
+
+            entry = new Entry(body.getAsString(), fetchedAt.getAsLong());
+        } catch (final JsonParseException | IllegalStateException
+                | NumberFormatException | UnsupportedOperationException e) {
+            Logger.warn(TAG + methodName, "Discarding unreadable metadata entry.");
+            remove(key);
+            return null;
+        }
+
+        if (entry.isExpired()) {
+            Logger.verbose(TAG + methodName, "Persisted metadata entry is expired.");
+            return null;
+        }
+
+        return entry;
+    }
+
+    /**
+     * Persists a freshly fetched document.
+     *
+     * @param key  The key of the document, typically the URL it was fetched from.
+     * @param body The document.
+     */
+    public static void write(@NonNull final String key, @NonNull final String body) {
+        write(key, body, System.currentTimeMillis());
+    }
+
+    static void write(@NonNull final String key, @NonNull final String body, final long fetchedAtMillis) {
+        final JsonObject object = new JsonObject();
+        object.addProperty(FETCHED_AT, fetchedAtMillis);
+        object.addProperty(BODY, body);
+
+        sLock.readLock().lock();
+        try {
+            if (sStorage != null) {
+                sStorage.put(key, object.toString());
+            }
+        } finally {
+            sLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a persisted document.
+     *
+     * @param key The key of the document.
+     */
+    public static void remove(@NonNull final String key) {
+        sLock.readLock().lock();
+        try {
+            if (sStorage != null) {
+                sStorage.remove(key);
+            }
+        } finally {
+            sLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Claims the background revalidation of a document, so that concurrent callers that found it
+     * stale do not all refetch it. A successful claim must be released with
+     * {@link #endRefresh(String)}.
+     *
+     * @param key The key of the document.
+     * @return true if the caller should revalidate the document, false if another caller already is.
+     */
+    public static boolean tryBeginRefresh(@NonNull final String key) {
+        return sRefreshesInFlight.add(key);
+    }
+
+    /**
+     * Releases a claim taken with {@link #tryBeginRefresh(String)}.
+     *
+     * @param key The key of the document.
+     */
+    public static void endRefresh(@NonNull final String key) {
+        sRefreshesInFlight.remove(key);
+    }
+
+    private static long getTimeToLiveMillis() {
+        sLock.readLock().lock();
+        try {
+            return sTimeToLiveMillis;
+        } finally {
+            sLock.readLock().unlock();
+        }
+    }
+
+    private static long getStaleWindowMillis() {
+        sLock.readLock().lock();
+        try {
+            return sStaleWindowMillis;
+        } finally {
+            sLock.readLock().unlock();
+        }
+    }
+}
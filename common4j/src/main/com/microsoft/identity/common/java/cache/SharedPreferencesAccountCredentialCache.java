@@ -24,6 +24,9 @@ package com.microsoft.identity.common.java.cache;
 
 import com.microsoft.identity.common.java.interfaces.INameValueStorage;
 import com.microsoft.identity.common.java.logging.Logger;
+import com.microsoft.identity.common.java.metrics.LatencyHistogram;
+import com.microsoft.identity.common.java.metrics.MetricNames;
+import com.microsoft.identity.common.java.metrics.MetricsRegistry;
 import com.microsoft.identity.common.java.util.StringUtil;
 import com.microsoft.identity.common.java.util.ported.Predicate;
 import com.microsoft.identity.common.java.dto.AccessTokenRecord;
@@ -37,22 +40,36 @@ import com.microsoft.identity.common.java.dto.RefreshTokenRecord;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
 
 import static com.microsoft.identity.common.java.cache.CacheKeyValueDelegate.CACHE_VALUE_SEPARATOR;
 
 import edu.umd.cs.findbugs.annotations.Nullable;
 import lombok.NonNull;
 
+/**
+ * An {@link IAccountCredentialCache} backed by an {@link INameValueStorage}.
+ * <p>
+ * Reads run concurrently. Saves and removals only serialize with other writes to the same key
+ * stripe, and {@link #clearAll()} excludes everything else. The locks are shared by every instance
+ * created over the same storage object.
+ * <p>
+ * Lookups over many entries are served from an {@link AccountCredentialMemoryIndex}, shared the
+ * same way, when the storage tracks its versions; otherwise they read the storage. Either way, the
+ * returned records are new instances that callers may modify.
+ */
 @SuppressWarnings("PMD.AvoidDuplicateLiterals")
 public class SharedPreferencesAccountCredentialCache extends AbstractAccountCredentialCache {
 
     private static final String TAG = SharedPreferencesAccountCredentialCache.class.getSimpleName();
 
+    private static final LatencyHistogram sLookupLatency =
+            MetricsRegistry.getInstance().getHistogram(MetricNames.CACHE_LOOKUP);
+
     /**
      * The name of the SharedPreferences file on disk.
      */
@@ -86,11 +103,38 @@ public class SharedPreferencesAccountCredentialCache extends AbstractAccountCred
     private static final String ACCOUNT_RECORD_DESERIALIZATION_FAILED = DESERIALIZATION_FAILED + AccountRecord.class.getSimpleName();
     private static final String CREDENTIAL_DESERIALIZATION_FAILED = DESERIALIZATION_FAILED + Credential.class.getSimpleName();
 
+    private static final Predicate<String> ACCOUNT_KEYS = new Predicate<String>() {
+        @Override
+        public boolean test(String value) {
+            return isAccount(value);
+        }
+    };
+
+    private static final Predicate<String> CREDENTIAL_KEYS = new Predicate<String>() {
+        @Override
+        public boolean test(String value) {
+            return isCredential(value);
+        }
+    };
+
+    private static final Predicate<String> ACCOUNT_AND_CREDENTIAL_KEYS = new Predicate<String>() {
+        @Override
+        public boolean test(String value) {
+            return isAccount(value) || isCredential(value);
+        }
+    };
+
     // SharedPreferences used to store Accounts and Credentials
     private final INameValueStorage<String> mSharedPreferencesFileManager;
 
     private final ICacheKeyValueDelegate mCacheValueDelegate;
 
+    // Shared by every instance over the same storage; see AccountCredentialCacheLocks.
+    private final AccountCredentialCacheLocks mLocks;
+
+    // Guarded by mLocks; see AccountCredentialMemoryIndex.
+    private final AccountCredentialMemoryIndex mIndex;
+
     /**
      * Constructor of SharedPreferencesAccountCredentialCache.
      *
@@ -103,73 +147,109 @@ public class SharedPreferencesAccountCredentialCache extends AbstractAccountCred
         Logger.verbose(TAG, "Init: " + TAG);
         mSharedPreferencesFileManager = sharedPreferencesFileManager;
         mCacheValueDelegate = accountCacheValueDelegate;
+        mLocks = AccountCredentialCacheLocks.forStorage(sharedPreferencesFileManager);
+        mIndex = mLocks.index();
     }
 
     @Override
-    public synchronized void saveAccount(@NonNull final AccountRecord accountToSave) {
+    public void saveAccount(@NonNull final AccountRecord accountToSave) {
         Logger.verbose(TAG, "Saving Account...");
         Logger.verbose(TAG, "Account type: [" + accountToSave.getClass().getSimpleName() + "]");
         final String cacheKey = mCacheValueDelegate.generateCacheKey(accountToSave);
-        Logger.verbosePII(TAG, "Generated cache key: [" + cacheKey + "]");
+        if (Logger.isLoggable(Logger.LogLevel.VERBOSE, true)) {
+            Logger.verbosePII(TAG, "Generated cache key: [" + cacheKey + "]");
+        }
 
-        // Perform any necessary field merging on the Account to save...
-        final AccountRecord existingAccount = getAccount(cacheKey);
+        final Lock stripe = mLocks.stripeFor(cacheKey);
+        mLocks.storageLock().readLock().lock();
+        stripe.lock();
+        try {
+            // Perform any necessary field merging on the Account to save...
+            final AccountRecord existingAccount = getAccount(cacheKey);
 
-        if (null != existingAccount) {
-            accountToSave.mergeAdditionalFields(existingAccount);
-        }
+            if (null != existingAccount) {
+                accountToSave.mergeAdditionalFields(existingAccount);
+            }
 
-        final String cacheValue = mCacheValueDelegate.generateCacheValue(accountToSave);
-        mSharedPreferencesFileManager.put(cacheKey, cacheValue);
+            final String cacheValue = mCacheValueDelegate.generateCacheValue(accountToSave);
+            final long versionBefore = getStorageVersion();
+            mSharedPreferencesFileManager.put(cacheKey, cacheValue);
+            mIndex.putAccount(cacheKey, cacheValue, accountToSave);
+            mIndex.onWritten(versionBefore, getStorageVersion());
+        } finally {
+            stripe.unlock();
+            mLocks.storageLock().readLock().unlock();
+        }
     }
 
     @Override
-    public synchronized void saveCredential(@NonNull Credential credentialToSave) {
+    public void saveCredential(@NonNull Credential credentialToSave) {
         Logger.verbose(TAG, "Saving credential...");
         final String cacheKey = mCacheValueDelegate.generateCacheKey(credentialToSave);
-        Logger.verbosePII(TAG, "Generated cache key: [" + cacheKey + "]");
+        if (Logger.isLoggable(Logger.LogLevel.VERBOSE, true)) {
+            Logger.verbosePII(TAG, "Generated cache key: [" + cacheKey + "]");
+        }
 
-        // Perform any necessary field merging on the Credential to save...
-        final Credential existingCredential = getCredential(cacheKey);
+        final Lock stripe = mLocks.stripeFor(cacheKey);
+        mLocks.storageLock().readLock().lock();
+        stripe.lock();
+        try {
+            // Perform any necessary field merging on the Credential to save...
+            final Credential existingCredential = getCredential(cacheKey);
 
-        if (null != existingCredential) {
-            credentialToSave.mergeAdditionalFields(existingCredential);
-        }
+            if (null != existingCredential) {
+                credentialToSave.mergeAdditionalFields(existingCredential);
+            }
 
-        final String cacheValue = mCacheValueDelegate.generateCacheValue(credentialToSave);
-        mSharedPreferencesFileManager.put(cacheKey, cacheValue);
+            final String cacheValue = mCacheValueDelegate.generateCacheValue(credentialToSave);
+            final long versionBefore = getStorageVersion();
+            mSharedPreferencesFileManager.put(cacheKey, cacheValue);
+            mIndex.putCredential(cacheKey, cacheValue, credentialToSave);
+            mIndex.onWritten(versionBefore, getStorageVersion());
+        } finally {
+            stripe.unlock();
+            mLocks.storageLock().readLock().unlock();
+        }
     }
 
     @Override
-    public synchronized AccountRecord getAccount(@NonNull final String cacheKey) {
+    public AccountRecord getAccount(@NonNull final String cacheKey) {
         Logger.verbose(TAG, "Loading Account by key...");
-        AccountRecord account = mCacheValueDelegate.fromCacheValue(
-                mSharedPreferencesFileManager.get(cacheKey),
-                AccountRecord.class
-        );
-
-        if (null == account) {
-            // We could not deserialize the target AccountRecord...
-            // Maybe it was encrypted for another application?
-            Logger.warn(
-                    TAG,
-                    ACCOUNT_RECORD_DESERIALIZATION_FAILED
+        mLocks.storageLock().readLock().lock();
+        try {
+            final String cacheValue = mSharedPreferencesFileManager.get(cacheKey);
+            AccountRecord account = mCacheValueDelegate.fromCacheValue(
+                    cacheValue,
+                    AccountRecord.class
             );
-        } else if (EMPTY_ACCOUNT.equals(account)) {
-            Logger.warn(TAG, "The returned Account was uninitialized. Removing...");
-            mSharedPreferencesFileManager.remove(cacheKey);
-            account = null;
-        }
 
-        return account;
+            if (null == account) {
+                // We could not deserialize the target AccountRecord...
+                // Maybe it was encrypted for another application?
+                Logger.warn(
+                        TAG,
+                        ACCOUNT_RECORD_DESERIALIZATION_FAILED
+                );
+            } else if (EMPTY_ACCOUNT.equals(account)) {
+                Logger.warn(TAG, "The returned Account was uninitialized. Removing...");
+                removeIfUnchanged(cacheKey, cacheValue);
+                account = null;
+            }
+
+            return account;
+        } finally {
+            mLocks.storageLock().readLock().unlock();
+        }
     }
 
     @Override
     @Nullable
-    public synchronized Credential getCredential(@NonNull final String cacheKey) {
+    public Credential getCredential(@NonNull final String cacheKey) {
         // TODO add support for more Credential types...
         Logger.verbose(TAG, "getCredential()");
-        Logger.verbosePII(TAG, "Using cache key: [" + cacheKey + "]");
+        if (Logger.isLoggable(Logger.LogLevel.VERBOSE, true)) {
+            Logger.verbosePII(TAG, "Using cache key: [" + cacheKey + "]");
+        }
 
         final CredentialType type = getCredentialTypeForCredentialCacheKey(cacheKey);
         Class<? extends Credential> clazz = null;
@@ -178,11 +258,24 @@ public class SharedPreferencesAccountCredentialCache extends AbstractAccountCred
             clazz = getTargetClassForCredentialType(cacheKey, type);
         }
 
+        mLocks.storageLock().readLock().lock();
+        try {
+            return getCredential(cacheKey, clazz);
+        } finally {
+            mLocks.storageLock().readLock().unlock();
+        }
+    }
+
+    @Nullable
+    private Credential getCredential(@NonNull final String cacheKey,
+                                     @Nullable final Class<? extends Credential> clazz) {
         Credential credential = null;
+        String cacheValue = null;
 
         if (null != clazz) {
+            cacheValue = mSharedPreferencesFileManager.get(cacheKey);
             credential = mCacheValueDelegate.fromCacheValue(
-                    mSharedPreferencesFileManager.get(cacheKey),
+                    cacheValue,
                     clazz
             );
         }
@@ -200,29 +293,139 @@ public class SharedPreferencesAccountCredentialCache extends AbstractAccountCred
             // The returned credential came back uninitialized...
             // Remove the entry and return null...
             Logger.warn(TAG, "The returned Credential was uninitialized. Removing...");
-            mSharedPreferencesFileManager.remove(cacheKey);
+            removeIfUnchanged(cacheKey, cacheValue);
             credential = null;
         }
 
         return credential;
     }
 
+    /**
+     * Removes the entry for the supplied key, unless a concurrent save has replaced its value
+     * since it was read.
+     *
+     * @param cacheKey      The key of the entry to remove.
+     * @param expectedValue The value previously read for that key.
+     */
+    private void removeIfUnchanged(@NonNull final String cacheKey,
+                                   @NonNull final String expectedValue) {
+        final Lock stripe = mLocks.stripeFor(cacheKey);
+        stripe.lock();
+        try {
+            if (expectedValue.equals(mSharedPreferencesFileManager.get(cacheKey))) {
+                removeFromStorageAndIndex(cacheKey);
+            }
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Gets the current version of the underlying storage, without reading any entry.
+     */
+    private long getStorageVersion() {
+        return mSharedPreferencesFileManager instanceof IVersionedNameValueStorage
+                ? ((IVersionedNameValueStorage) mSharedPreferencesFileManager).getVersion()
+                : NameValueSnapshot.UNKNOWN_VERSION;
+    }
+
+    /**
+     * Acquires the storage read lock and, if the storage tracks its versions, brings the in-memory
+     * index up to date with it. The caller must release the read lock.
+     *
+     * @return True if reads can be served from the index; false if they must go to the storage.
+     */
+    private boolean acquireReadLockWithCurrentIndex() {
+        mLocks.storageLock().readLock().lock();
+        final long version = getStorageVersion();
+
+        if (NameValueSnapshot.UNKNOWN_VERSION == version) {
+            return false;
+        }
+
+        if (mIndex.isCurrent(version)) {
+            return true;
+        }
+
+        // A read lock cannot be upgraded; reload under the write lock, then downgrade.
+        mLocks.storageLock().readLock().unlock();
+        mLocks.storageLock().writeLock().lock();
+        try {
+            if (!mIndex.isCurrent(getStorageVersion())) {
+                reloadIndex();
+            }
+            mLocks.storageLock().readLock().lock();
+        } finally {
+            mLocks.storageLock().writeLock().unlock();
+        }
+
+        return true;
+    }
+
+    /**
+     * Rebuilds the in-memory index from the storage. Requires the storage write lock.
+     */
+    private void reloadIndex() {
+        Logger.verbose(TAG, "Loading in-memory index...");
+        final NameValueSnapshot<String> cacheValues =
+                mSharedPreferencesFileManager.getSnapshot(ACCOUNT_AND_CREDENTIAL_KEYS);
+
+        mIndex.clear();
+
+        for (final Map.Entry<String, String> cacheValue : cacheValues.getEntries().entrySet()) {
+            final String cacheKey = cacheValue.getKey();
+
+            if (isAccount(cacheKey)) {
+                final AccountRecord account = mCacheValueDelegate.fromCacheValue(
+                        cacheValue.getValue(),
+                        AccountRecord.class
+                );
+
+                if (null != account) {
+                    mIndex.putAccount(cacheKey, cacheValue.getValue(), account);
+                }
+            } else {
+                final Credential credential = mCacheValueDelegate.fromCacheValue(
+                        cacheValue.getValue(),
+                        credentialClassForType(cacheKey)
+                );
+
+                if (null != credential) {
+                    mIndex.putCredential(cacheKey, cacheValue.getValue(), credential);
+                }
+            }
+        }
+
+        mIndex.setVersion(cacheValues.getVersion());
+        Logger.verbose(TAG, "In-memory index loaded.");
+    }
+
+    /**
+     * Loads and deserializes the Accounts which could match the supplied home_account_id (all of
+     * them, if it is null), from the in-memory index when possible.
+     *
+     * @return A Map of cache key to the deserialized Account. The Accounts are new instances.
+     */
     @NonNull
-    private Map<String, AccountRecord> getAccountsWithKeys() {
+    private Map<String, AccountRecord> getAccountsWithKeys(@Nullable final String homeAccountId) {
         Logger.verbose(TAG, "Loading Accounts + keys...");
-        final Iterator<Map.Entry<String, String>> cacheValues = mSharedPreferencesFileManager.getAllFilteredByKey(new Predicate<String>() {
-            @Override
-            public boolean test(String value) {
-                return isAccount(value);
-            }
-        });
+        final Map<String, String> cacheValues;
+
+        final boolean indexed = acquireReadLockWithCurrentIndex();
+        try {
+            cacheValues = indexed
+                    ? mIndex.getAccountCandidates(homeAccountId)
+                    : mSharedPreferencesFileManager.getSnapshot(ACCOUNT_KEYS).getEntries();
+        } finally {
+            mLocks.storageLock().readLock().unlock();
+        }
+
         final Map<String, AccountRecord> accounts = new HashMap<>();
 
-        while (cacheValues.hasNext()) {
-            Map.Entry<String, ?> cacheValue = cacheValues.next();
+        for (final Map.Entry<String, String> cacheValue : cacheValues.entrySet()) {
             final String cacheKey = cacheValue.getKey();
             final AccountRecord account = mCacheValueDelegate.fromCacheValue(
-                    cacheValue.getValue().toString(),
+                    cacheValue.getValue(),
                     AccountRecord.class
             );
 
@@ -240,10 +443,9 @@ public class SharedPreferencesAccountCredentialCache extends AbstractAccountCred
 
     @Override
     @NonNull
-    public synchronized List<AccountRecord> getAccounts() {
+    public List<AccountRecord> getAccounts() {
         Logger.verbose(TAG, "Loading Accounts...(no arg)");
-        final Map<String, AccountRecord> allAccounts = getAccountsWithKeys();
-        final List<AccountRecord> accounts = new ArrayList<>(allAccounts.values());
+        final List<AccountRecord> accounts = new ArrayList<>(getAccountsWithKeys(null).values());
         Logger.info(TAG, "Found [" + accounts.size() + "] Accounts...");
         return accounts;
     }
@@ -256,13 +458,15 @@ public class SharedPreferencesAccountCredentialCache extends AbstractAccountCred
             @Nullable final String realm) {
         Logger.verbose(TAG, "Loading Accounts...");
 
-        final List<AccountRecord> allAccounts = getAccounts();
+        final List<AccountRecord> candidateAccounts = new ArrayList<>(
+                getAccountsWithKeys(homeAccountId).values()
+        );
 
         final List<AccountRecord> matchingAccounts = getAccountsFilteredByInternal(
                 homeAccountId,
                 environment,
                 realm,
-                allAccounts
+                candidateAccounts
         );
 
         Logger.verbose(TAG, "Found [" + matchingAccounts.size() + "] matching Accounts...");
@@ -270,22 +474,49 @@ public class SharedPreferencesAccountCredentialCache extends AbstractAccountCred
         return matchingAccounts;
     }
 
+    /**
+     * Loads and deserializes the Credentials which could match the supplied criteria (all of them,
+     * if every criterion is null), from the in-memory index when possible.
+     *
+     * @param keyFilter Further restricts the Credentials to those whose key it accepts; applied
+     *                  before deserializing.
+     * @return A Map of cache key to the deserialized Credential. The Credentials are new instances.
+     */
     @NonNull
-    private Map<String, Credential> getCredentialsWithKeys() {
+    private Map<String, Credential> getCredentialsWithKeys(@Nullable final String homeAccountId,
+                                                           @Nullable final String environment,
+                                                           @Nullable final CredentialType credentialType,
+                                                           @Nullable final String clientId,
+                                                           @Nullable final String realm,
+                                                           @NonNull final Predicate<String> keyFilter) {
         Logger.verbose(TAG, "Loading Credentials with keys...");
+        final Map<String, String> cacheValues;
+
+        final boolean indexed = acquireReadLockWithCurrentIndex();
+        try {
+            cacheValues = indexed
+                    ? mIndex.getCredentialCandidates(homeAccountId, environment, credentialType, clientId, realm)
+                    : mSharedPreferencesFileManager.getSnapshot(new Predicate<String>() {
+                        @Override
+                        public boolean test(String value) {
+                            return isCredential(value) && keyFilter.test(value);
+                        }
+                    }).getEntries();
+        } finally {
+            mLocks.storageLock().readLock().unlock();
+        }
+
         final Map<String, Credential> credentials = new HashMap<>();
-        final Iterator<Map.Entry<String, String>> cacheValues = mSharedPreferencesFileManager.getAllFilteredByKey(new Predicate<String>() {
-            @Override
-            public boolean test(String value) {
-                return isCredential(value);
-            }
-        });
 
-        while (cacheValues.hasNext()) {
-            Map.Entry<String, ?> cacheValue = cacheValues.next();
+        for (final Map.Entry<String, String> cacheValue : cacheValues.entrySet()) {
             final String cacheKey = cacheValue.getKey();
+
+            if (!keyFilter.test(cacheKey)) {
+                continue;
+            }
+
             final Credential credential = mCacheValueDelegate.fromCacheValue(
-                    cacheValue.getValue().toString(),
+                    cacheValue.getValue(),
                     credentialClassForType(cacheKey)
             );
 
@@ -301,13 +532,23 @@ public class SharedPreferencesAccountCredentialCache extends AbstractAccountCred
         return credentials;
     }
 
+    @NonNull
+    private List<Credential> getCredentialCandidates(@Nullable final String homeAccountId,
+                                                     @Nullable final String environment,
+                                                     @Nullable final CredentialType credentialType,
+                                                     @Nullable final String clientId,
+                                                     @Nullable final String realm) {
+        return new ArrayList<>(
+                getCredentialsWithKeys(homeAccountId, environment, credentialType, clientId, realm, CREDENTIAL_KEYS)
+                        .values()
+        );
+    }
+
     @Override
     @NonNull
-    public synchronized List<Credential> getCredentials() {
+    public List<Credential> getCredentials() {
         Logger.verbose(TAG, "Loading Credentials...");
-        final Map<String, Credential> allCredentials = getCredentialsWithKeys();
-        final List<Credential> creds = new ArrayList<>(allCredentials.values());
-        return creds;
+        return getCredentialCandidates(null, null, null, null, null);
     }
 
     @Override
@@ -321,8 +562,15 @@ public class SharedPreferencesAccountCredentialCache extends AbstractAccountCred
             @Nullable final String target,
             @Nullable final String authScheme) {
         Logger.verbose(TAG, "getCredentialsFilteredBy()");
+        final long startTime = System.nanoTime();
 
-        final List<Credential> allCredentials = getCredentials();
+        final List<Credential> candidateCredentials = getCredentialCandidates(
+                homeAccountId,
+                environment,
+                credentialType,
+                clientId,
+                realm
+        );
 
         final List<Credential> matchingCredentials = getCredentialsFilteredByInternal(
                 homeAccountId,
@@ -333,10 +581,11 @@ public class SharedPreferencesAccountCredentialCache extends AbstractAccountCred
                 target,
                 authScheme,
                 null,
-                allCredentials
+                candidateCredentials
         );
 
         Logger.verbose(TAG, "Found [" + matchingCredentials.size() + "] matching Credentials...");
+        sLookupLatency.recordSince(startTime);
 
         return matchingCredentials;
     }
@@ -382,8 +631,15 @@ public class SharedPreferencesAccountCredentialCache extends AbstractAccountCred
             @Nullable final String authScheme,
             @Nullable final String requestedClaims) {
         Logger.verbose(TAG, "getCredentialsFilteredBy()");
+        final long startTime = System.nanoTime();
 
-        final List<Credential> allCredentials = getCredentials();
+        final List<Credential> candidateCredentials = getCredentialCandidates(
+                homeAccountId,
+                environment,
+                credentialType,
+                clientId,
+                realm
+        );
 
         final List<Credential> matchingCredentials = getCredentialsFilteredByInternal(
                 homeAccountId,
@@ -394,10 +650,11 @@ public class SharedPreferencesAccountCredentialCache extends AbstractAccountCred
                 target,
                 authScheme,
                 requestedClaims,
-                allCredentials
+                candidateCredentials
         );
 
         Logger.verbose(TAG, "Found [" + matchingCredentials.size() + "] matching Credentials...");
+        sLookupLatency.recordSince(startTime);
 
         return matchingCredentials;
     }
@@ -411,7 +668,21 @@ public class SharedPreferencesAccountCredentialCache extends AbstractAccountCred
                                                      @Nullable final String target,
                                                      @Nullable final String authScheme,
                                                      @Nullable final String requestedClaims) {
-        final List<Credential> allCredentials = getCredentials();
+        final List<Credential> candidateCredentials = new ArrayList<>(
+                getCredentialsWithKeys(
+                        homeAccountId,
+                        environment,
+                        null,
+                        clientId,
+                        realm,
+                        new Predicate<String>() {
+                            @Override
+                            public boolean test(String value) {
+                                return credentialTypes.contains(getCredentialTypeForCredentialCacheKey(value));
+                            }
+                        }
+                ).values()
+        );
 
         final List<Credential> result = new ArrayList<>();
         for (final CredentialType type : credentialTypes) {
@@ -425,7 +696,7 @@ public class SharedPreferencesAccountCredentialCache extends AbstractAccountCred
                             target,
                             authScheme,
                             requestedClaims,
-                            allCredentials
+                            candidateCredentials
                     )
             );
         }
@@ -433,6 +704,63 @@ public class SharedPreferencesAccountCredentialCache extends AbstractAccountCred
         return result;
     }
 
+    @Override
+    @NonNull
+    public Map<CredentialType, List<Credential>> getCredentialsGroupedByType(
+            @Nullable final String homeAccountId,
+            @Nullable final String environment,
+            @NonNull final Set<CredentialType> credentialTypes,
+            @Nullable final String clientId) {
+        Logger.verbose(TAG, "getCredentialsGroupedByType()");
+
+        // Keys lead with <home_account_id>-<environment>-, so entries belonging to other accounts
+        // can be skipped before they are decrypted and deserialized.
+        final String keyPrefix = getCredentialCacheKeyPrefix(homeAccountId, environment);
+
+        final Map<String, Credential> credentials = getCredentialsWithKeys(
+                homeAccountId,
+                environment,
+                null,
+                clientId,
+                null,
+                new Predicate<String>() {
+                    @Override
+                    public boolean test(String value) {
+                        if (null != keyPrefix && !value.startsWith(keyPrefix)) {
+                            return false;
+                        }
+
+                        final CredentialType type = getCredentialTypeForCredentialCacheKey(value);
+                        return null != type && credentialTypes.contains(type);
+                    }
+                }
+        );
+
+        return getCredentialsGroupedByTypeInternal(
+                homeAccountId,
+                environment,
+                credentialTypes,
+                clientId,
+                new ArrayList<>(credentials.values())
+        );
+    }
+
+    @Nullable
+    private static String getCredentialCacheKeyPrefix(@Nullable final String homeAccountId,
+                                                      @Nullable final String environment) {
+        if (StringUtil.isNullOrEmpty(homeAccountId)) {
+            return null;
+        }
+
+        String prefix = StringUtil.sanitizeNullAndLowercaseAndTrim(homeAccountId) + CACHE_VALUE_SEPARATOR;
+
+        if (!StringUtil.isNullOrEmpty(environment)) {
+            prefix += StringUtil.sanitizeNullAndLowercaseAndTrim(environment) + CACHE_VALUE_SEPARATOR;
+        }
+
+        return prefix;
+    }
+
     @Override
     public boolean removeAccount(@NonNull final AccountRecord accountToRemove) {
         Logger.info(TAG, "Removing Account...");
@@ -440,15 +768,15 @@ public class SharedPreferencesAccountCredentialCache extends AbstractAccountCred
             throw new IllegalArgumentException("Param [accountToRemove] cannot be null.");
         }
 
-        final Map<String, AccountRecord> accounts = getAccountsWithKeys();
-
         boolean accountRemoved = false;
-        for (final Map.Entry<String, AccountRecord> entry : accounts.entrySet()) {
+
+        for (final Map.Entry<String, AccountRecord> entry
+                : getAccountsWithKeys(accountToRemove.getHomeAccountId()).entrySet()) {
             Logger.verbosePII(TAG, "Inspecting: [" + entry.getKey() + "]");
             final IAccountRecord currentAccount = entry.getValue();
 
             if (currentAccount.equals(accountToRemove)) {
-                mSharedPreferencesFileManager.remove(entry.getKey());
+                remove(entry.getKey());
                 accountRemoved = true;
                 break;
             }
@@ -467,15 +795,20 @@ public class SharedPreferencesAccountCredentialCache extends AbstractAccountCred
             throw new IllegalArgumentException("Param [credentialToRemove] cannot be null.");
         }
 
-        final Map<String, Credential> credentials = getCredentialsWithKeys();
-
         boolean credentialRemoved = false;
-        for (final Map.Entry<String, Credential> entry : credentials.entrySet()) {
+
+        for (final Map.Entry<String, Credential> entry : getCredentialsWithKeys(
+                credentialToRemove.getHomeAccountId(),
+                credentialToRemove.getEnvironment(),
+                null,
+                credentialToRemove.getClientId(),
+                null,
+                CREDENTIAL_KEYS).entrySet()) {
             Logger.verbosePII(TAG, "Inspecting: [" + entry.getKey() + "]");
             final Credential currentCredential = entry.getValue();
 
             if (currentCredential.equals(credentialToRemove)) {
-                mSharedPreferencesFileManager.remove(entry.getKey());
+                remove(entry.getKey());
                 credentialRemoved = true;
                 break;
             }
@@ -489,10 +822,39 @@ public class SharedPreferencesAccountCredentialCache extends AbstractAccountCred
     @Override
     public void clearAll() {
         Logger.info(TAG, "Clearing all SharedPreferences entries...");
-        mSharedPreferencesFileManager.clear();
+        mLocks.storageLock().writeLock().lock();
+        try {
+            mSharedPreferencesFileManager.clear();
+            mIndex.clear();
+            mIndex.setVersion(getStorageVersion());
+        } finally {
+            mLocks.storageLock().writeLock().unlock();
+        }
         Logger.info(TAG, "SharedPreferences cleared.");
     }
 
+    private void remove(@NonNull final String cacheKey) {
+        final Lock stripe = mLocks.stripeFor(cacheKey);
+        mLocks.storageLock().readLock().lock();
+        stripe.lock();
+        try {
+            removeFromStorageAndIndex(cacheKey);
+        } finally {
+            stripe.unlock();
+            mLocks.storageLock().readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes an entry. Requires the storage read lock and the stripe of the key.
+     */
+    private void removeFromStorageAndIndex(@NonNull final String cacheKey) {
+        final long versionBefore = getStorageVersion();
+        mSharedPreferencesFileManager.remove(cacheKey);
+        mIndex.remove(cacheKey);
+        mIndex.onWritten(versionBefore, getStorageVersion());
+    }
+
     @Nullable
     private Class<? extends Credential> credentialClassForType(@NonNull final String cacheKey) {
         Logger.verbose(TAG, "Resolving class for key/CredentialType...");
@@ -33,6 +33,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import edu.umd.cs.findbugs.annotations.Nullable;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -100,4 +101,37 @@ public abstract class BaseCommand<T> implements ICommand<T> {
     public boolean willReachTokenEndpoint() {
         return false;
     }
+
+    /**
+     * Gets a canonical fingerprint of the request this command makes. The CommandDispatcher keys
+     * in-flight coalescing and result caching on it, rather than on the (mutable) command itself.
+     * <p>
+     * Returns null by default, in which case the command itself is used as the key. Commands that
+     * are eligible for caching should return {@link #computeRequestFingerprint()}, or a fingerprint
+     * at least as discriminating as their equals().
+     *
+     * @return the fingerprint, or null.
+     */
+    @Nullable
+    public String getRequestFingerprint() {
+        return null;
+    }
+
+    /**
+     * Builds a fingerprint from the command class, its controller classes and
+     * {@link CommandParameters#appendRequestFingerprint(StringBuilder)}.
+     *
+     * @return the fingerprint.
+     */
+    protected final String computeRequestFingerprint() {
+        final StringBuilder builder = new StringBuilder(getClass().getName()).append('|');
+
+        for (final BaseController controller : controllers) {
+            builder.append(controller.getClass().getName()).append(',');
+        }
+
+        builder.append('|');
+        parameters.appendRequestFingerprint(builder);
+        return builder.toString();
+    }
 }
@@ -82,4 +82,9 @@ public class RopcTokenCommand extends TokenCommand {
     public boolean isEligibleForCaching() {
         return true;
     }
+
+    @Override
+    public String getRequestFingerprint() {
+        return computeRequestFingerprint();
+    }
 }
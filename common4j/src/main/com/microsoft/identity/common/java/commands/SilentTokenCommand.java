@@ -110,6 +110,11 @@ public class SilentTokenCommand extends TokenCommand {
         return true;
     }
 
+    @Override
+    public String getRequestFingerprint() {
+        return computeRequestFingerprint();
+    }
+
     @Override
     public boolean isEligibleForEstsTelemetry() {
         return true;
@@ -29,6 +29,7 @@ import com.microsoft.identity.common.java.util.StringUtil;
 
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.NonNull;
 import lombok.experimental.SuperBuilder;
 
 @Getter
@@ -48,6 +49,20 @@ public class BrokerSilentTokenCommandParameters extends SilentTokenCommandParame
 
     private final String negotiatedBrokerProtocolVersion;
 
+    @Override
+    public void appendRequestFingerprint(@NonNull final StringBuilder builder) {
+        super.appendRequestFingerprint(builder);
+        appendFingerprintField(builder, "caller_package_name", callerPackageName);
+        appendFingerprintField(builder, "caller_uid", callerUid);
+        appendFingerprintField(builder, "caller_app_version", callerAppVersion);
+        appendFingerprintField(builder, "broker_version", brokerVersion);
+        appendFingerprintField(builder, "broker_account", brokerAccount == null ? null : brokerAccount.getUsername());
+        appendFingerprintField(builder, "broker_home_account_id", homeAccountId);
+        appendFingerprintField(builder, "broker_local_account_id", localAccountId);
+        appendFingerprintField(builder, "sleep_time_before_prt_acquisition", sleepTimeBeforePrtAcquisition);
+        appendFingerprintField(builder, "negotiated_broker_protocol_version", negotiatedBrokerProtocolVersion);
+    }
+
     @Override
     public void validate() throws ArgumentException {
         if (callerUid == 0) {
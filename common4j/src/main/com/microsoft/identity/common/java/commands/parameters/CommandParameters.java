@@ -86,4 +86,49 @@ public class CommandParameters {
     @EqualsAndHashCode.Exclude
     @Expose()
     private String correlationId;
+
+    /**
+     * Appends the state that distinguishes the request these parameters describe from other
+     * requests, in a canonical form. Used to build the key under which identical in-flight requests
+     * are coalesced (see {@link com.microsoft.identity.common.java.commands.BaseCommand#getRequestFingerprint()}).
+     * <p>
+     * Subclasses adding fields that take part in equality must override this, call super, and
+     * append those fields. Per-request values such as the correlation id must not be appended.
+     *
+     * @param builder the builder to append to.
+     */
+    public void appendRequestFingerprint(@NonNull final StringBuilder builder) {
+        appendFingerprintField(builder, "class", getClass().getName());
+        appendFingerprintField(builder, "application_name", applicationName);
+        appendFingerprintField(builder, "application_version", applicationVersion);
+        appendFingerprintField(builder, "required_broker_protocol_version", requiredBrokerProtocolVersion);
+        appendFingerprintField(builder, "sdk_type", sdkType);
+        appendFingerprintField(builder, "sdk_version", sdkVersion);
+        appendFingerprintField(builder, "client_id", clientId);
+        appendFingerprintField(builder, "redirect_uri", redirectUri);
+        appendFingerprintField(builder, "power_opt_check_enabled", powerOptCheckEnabled);
+    }
+
+    /**
+     * Appends one field to a request fingerprint. Values are length-prefixed, so no value can be
+     * mistaken for a field boundary.
+     *
+     * @param builder the builder to append to.
+     * @param name    the name of the field.
+     * @param value   the value of the field, may be null.
+     */
+    protected static void appendFingerprintField(@NonNull final StringBuilder builder,
+                                                 @NonNull final String name,
+                                                 final Object value) {
+        builder.append(name).append('=');
+
+        if (value == null) {
+            builder.append('-');
+        } else {
+            final String stringValue = value.toString();
+            builder.append(stringValue.length()).append(':').append(stringValue);
+        }
+
+        builder.append(';');
+    }
 }
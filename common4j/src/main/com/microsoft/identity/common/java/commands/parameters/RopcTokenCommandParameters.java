@@ -22,8 +22,17 @@
 //  THE SOFTWARE.
 package com.microsoft.identity.common.java.commands.parameters;
 
+import com.microsoft.identity.common.java.util.StringUtil;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+import static com.microsoft.identity.common.java.AuthenticationConstants.ENCODING_UTF8;
+
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.NonNull;
 import lombok.experimental.Accessors;
 import lombok.experimental.SuperBuilder;
 
@@ -32,6 +41,43 @@ import lombok.experimental.SuperBuilder;
 @SuperBuilder(toBuilder = true)
 @Accessors(prefix = "m")
 public class RopcTokenCommandParameters extends TokenCommandParameters {
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    /**
+     * Random per process, so that the password digest in a fingerprint cannot be matched against
+     * digests of guessed passwords.
+     */
+    private static final byte[] PASSWORD_DIGEST_SALT = newPasswordDigestSalt();
+
     private final String mUsername;
     private final String mPassword;
+
+    /**
+     * Requests with different passwords must not be coalesced, but fingerprints are kept as map
+     * keys and may be logged, so only a salted digest of the password is appended.
+     */
+    @Override
+    public void appendRequestFingerprint(@NonNull final StringBuilder builder) {
+        super.appendRequestFingerprint(builder);
+        appendFingerprintField(builder, "username", mUsername);
+        appendFingerprintField(builder, "password_digest", mPassword == null ? null : digestPassword(mPassword));
+    }
+
+    private static String digestPassword(@NonNull final String password) {
+        try {
+            final MessageDigest digester = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            digester.update(PASSWORD_DIGEST_SALT);
+            digester.update(password.getBytes(ENCODING_UTF8));
+            return StringUtil.encodeUrlSafeString(digester.digest());
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Failed to digest the password", e);
+        }
+    }
+
+    private static byte[] newPasswordDigestSalt() {
+        final byte[] salt = new byte[16];
+        new SecureRandom().nextBytes(salt);
+        return salt;
+    }
 }
@@ -26,6 +26,8 @@ import com.google.gson.annotations.Expose;
 import com.microsoft.identity.common.java.exception.ArgumentException;
 import com.microsoft.identity.common.java.authorities.Authority;
 import com.microsoft.identity.common.java.authscheme.AbstractAuthenticationScheme;
+import com.microsoft.identity.common.java.authscheme.INonced;
+import com.microsoft.identity.common.java.authscheme.IPoPAuthenticationSchemeParams;
 import com.microsoft.identity.common.java.dto.IAccountRecord;
 import com.microsoft.identity.common.java.logging.Logger;
 
@@ -34,9 +36,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.NonNull;
 import lombok.experimental.SuperBuilder;
 
 @Getter
@@ -71,6 +75,58 @@ public class TokenCommandParameters extends CommandParameters {
         return this.scopes == null ? null : new HashSet<>(this.scopes);
     }
 
+    @Override
+    public void appendRequestFingerprint(@NonNull final StringBuilder builder) {
+        super.appendRequestFingerprint(builder);
+
+        if (account == null) {
+            appendFingerprintField(builder, "account", null);
+        } else {
+            appendFingerprintField(builder, "home_account_id", account.getHomeAccountId());
+            appendFingerprintField(builder, "environment", account.getEnvironment());
+            appendFingerprintField(builder, "realm", account.getRealm());
+            appendFingerprintField(builder, "local_account_id", account.getLocalAccountId());
+            appendFingerprintField(builder, "username", account.getUsername());
+        }
+
+        // Order-insensitive, so the same scopes requested in a different order coalesce.
+        if (scopes == null) {
+            appendFingerprintField(builder, "scopes", null);
+        } else {
+            final Set<String> sortedScopes = new TreeSet<>();
+            for (final String scope : scopes) {
+                if (scope != null) {
+                    sortedScopes.add(scope);
+                }
+            }
+            appendFingerprintField(builder, "scopes", sortedScopes);
+        }
+        appendFingerprintField(builder, "authority", authority == null ? null
+                : authority.getClass().getName() + " " + authority.getAuthorityUri());
+        appendFingerprintField(builder, "claims", claimsRequestJson);
+
+        if (authenticationScheme == null) {
+            appendFingerprintField(builder, "auth_scheme", null);
+        } else {
+            appendFingerprintField(builder, "auth_scheme", authenticationScheme.getName());
+
+            if (authenticationScheme instanceof IPoPAuthenticationSchemeParams) {
+                final IPoPAuthenticationSchemeParams popParams = (IPoPAuthenticationSchemeParams) authenticationScheme;
+                appendFingerprintField(builder, "pop_http_method", popParams.getHttpMethod());
+                appendFingerprintField(builder, "pop_url", popParams.getUrl() == null ? null : popParams.getUrl().toExternalForm());
+                appendFingerprintField(builder, "pop_client_claims", popParams.getClientClaims());
+
+                if (authenticationScheme instanceof INonced) {
+                    appendFingerprintField(builder, "pop_nonce", ((INonced) authenticationScheme).getNonce());
+                }
+            }
+        }
+
+        appendFingerprintField(builder, "force_refresh", forceRefresh);
+        appendFingerprintField(builder, "login_hint", loginHint);
+        appendFingerprintField(builder, "extra_options", extraOptions);
+    }
+
     public void validate() throws ArgumentException {
         final String methodName = ":validate";
 
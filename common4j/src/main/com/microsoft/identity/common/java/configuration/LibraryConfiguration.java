@@ -78,4 +78,16 @@ public class LibraryConfiguration {
      */
     private boolean refreshInEnabled;
 
+    /**
+     * Determines whether access tokens are refreshed in the background ahead of their
+     * refresh_on/expiry, see {@link com.microsoft.identity.common.java.controllers.AccessTokenRefreshScheduler}.
+     */
+    private boolean proactiveRefreshEnabled;
+
+    /**
+     * Determines whether successful token responses are decoded as they are read from the
+     * connection, rather than read into a String and parsed afterwards.
+     */
+    private boolean streamingTokenResponseEnabled;
+
 }
@@ -0,0 +1,336 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+package com.microsoft.identity.common.java.controllers;
+
+import com.microsoft.identity.common.java.cache.CacheKeyValueDelegate;
+import com.microsoft.identity.common.java.cache.ICacheKeyValueDelegate;
+import com.microsoft.identity.common.java.commands.BaseCommand;
+import com.microsoft.identity.common.java.dto.AccessTokenRecord;
+import com.microsoft.identity.common.java.logging.Logger;
+import com.microsoft.identity.common.java.util.StringUtil;
+import com.microsoft.identity.common.java.util.ThreadUtils;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+import lombok.NonNull;
+
+/**
+ * Refreshes access tokens in the background shortly before they are due, so that silent requests
+ * are served from the cache instead of waiting on a network round trip.
+ * <p>
+ * A refresh is scheduled for the access token's refresh_on time, or {@link #DEFAULT_REFRESH_MARGIN_MILLIS}
+ * before its expiry if it has none, plus a random jitter so that tokens acquired together are not
+ * all refreshed at the same instant. When due, the refresh command is submitted to the
+ * {@link CommandLane#BACKGROUND_REFRESH} lane of the {@link CommandDispatcher}. At most
+ * {@link #DEFAULT_MAX_REFRESHES_PER_MINUTE} refreshes are submitted per minute; refreshes over that
+ * budget are deferred, and dropped if they could not run before the token expires.
+ * <p>
+ * There is at most one pending refresh per access token cache key.
+ */
+public class AccessTokenRefreshScheduler {
+
+    private static final String TAG = AccessTokenRefreshScheduler.class.getSimpleName();
+
+    /**
+     * How long before expiry a token without a refresh_on is refreshed.
+     */
+    public static final long DEFAULT_REFRESH_MARGIN_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * Upper bound of the random delay added to each refresh.
+     */
+    public static final long MAX_JITTER_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Default number of refreshes submitted per {@link #RATE_LIMIT_WINDOW_MILLIS}.
+     */
+    public static final int DEFAULT_MAX_REFRESHES_PER_MINUTE = 10;
+
+    private static final long RATE_LIMIT_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final int MAX_SCHEDULED_REFRESHES = 256;
+
+    private static final ICacheKeyValueDelegate sCacheKeyDelegate = new CacheKeyValueDelegate();
+
+    private static final AccessTokenRefreshScheduler sInstance = new AccessTokenRefreshScheduler(
+            Executors.newSingleThreadScheduledExecutor(ThreadUtils.getNamedDaemonThreadFactory(TAG)),
+            new ICommandSubmitter() {
+                @Override
+                public void submit(@NonNull final BaseCommand<?> command) {
+                    CommandDispatcher.submitAndForget(command, CommandLane.BACKGROUND_REFRESH);
+                }
+            },
+            new Random(),
+            DEFAULT_MAX_REFRESHES_PER_MINUTE
+    );
+
+    /**
+     * Submits due refresh commands.
+     */
+    public interface ICommandSubmitter {
+        void submit(@NonNull BaseCommand<?> command);
+    }
+
+    private final Object mLock = new Object();
+
+    private final ScheduledExecutorService mTimer;
+
+    private final ICommandSubmitter mSubmitter;
+
+    private final Random mRandom;
+
+    private final int mMaxRefreshesPerWindow;
+
+    //@GuardedBy("mLock")
+    private final Map<String, PendingRefresh> mPendingRefreshes = new HashMap<>();
+
+    //@GuardedBy("mLock")
+    // Submission times, in millis, of the refreshes inside the current rate limit window.
+    private final Deque<Long> mRecentSubmissions = new ArrayDeque<>();
+
+    public static AccessTokenRefreshScheduler getInstance() {
+        return sInstance;
+    }
+
+    //@VisibleForTesting
+    AccessTokenRefreshScheduler(@NonNull final ScheduledExecutorService timer,
+                                @NonNull final ICommandSubmitter submitter,
+                                @NonNull final Random random,
+                                final int maxRefreshesPerWindow) {
+        mTimer = timer;
+        mSubmitter = submitter;
+        mRandom = random;
+        mMaxRefreshesPerWindow = maxRefreshesPerWindow;
+    }
+
+    /**
+     * Schedules a background refresh of the supplied access token. Calling this again for a token
+     * that already has a pending refresh is a no-op; calling it for a newer token with the same
+     * cache key replaces the pending refresh.
+     *
+     * @param accessToken    The access token to refresh.
+     * @param refreshCommand The command that refreshes it. It is submitted as is when due, so it
+     *                       should own its parameters (and correlation id) rather than share the
+     *                       scheduling request's.
+     * @return true if a refresh is pending for the token after this call.
+     */
+    public boolean schedule(@NonNull final AccessTokenRecord accessToken,
+                            @NonNull final BaseCommand<?> refreshCommand) {
+        final String methodName = ":schedule";
+        final long now = System.currentTimeMillis();
+        final long expiresAt;
+        final long refreshAt;
+
+        try {
+            expiresAt = TimeUnit.SECONDS.toMillis(Long.parseLong(accessToken.getExpiresOn()));
+            refreshAt = StringUtil.isNullOrEmpty(accessToken.getRefreshOn()) || !accessToken.refreshOnIsActive()
+                    ? expiresAt - DEFAULT_REFRESH_MARGIN_MILLIS
+                    : TimeUnit.SECONDS.toMillis(Long.parseLong(accessToken.getRefreshOn()));
+        } catch (final NumberFormatException | NullPointerException e) {
+            Logger.warn(TAG + methodName, "Access token has no valid expiry, not scheduling a refresh.");
+            return false;
+        }
+
+        if (expiresAt <= now) {
+            return false;
+        }
+
+        final String key = sCacheKeyDelegate.generateCacheKey(accessToken);
+
+        synchronized (mLock) {
+            final PendingRefresh existing = mPendingRefreshes.get(key);
+
+            if (existing != null) {
+                if (existing.mExpiresAt == expiresAt) {
+                    return true;
+                }
+
+                existing.mFuture.cancel(false);
+                mPendingRefreshes.remove(key);
+            } else if (mPendingRefreshes.size() >= MAX_SCHEDULED_REFRESHES) {
+                Logger.warn(TAG + methodName, "Too many pending refreshes, not scheduling another.");
+                return false;
+            }
+
+            final long delay = Math.max(0, refreshAt - now) + getJitter(Math.max(refreshAt, now), expiresAt);
+            final PendingRefresh pendingRefresh = new PendingRefresh(
+                    key,
+                    accessToken.getClientId(),
+                    accessToken.getHomeAccountId(),
+                    expiresAt,
+                    refreshCommand
+            );
+            pendingRefresh.mFuture = mTimer.schedule(pendingRefresh, delay, TimeUnit.MILLISECONDS);
+            mPendingRefreshes.put(key, pendingRefresh);
+
+            Logger.verbose(TAG + methodName, "Scheduled refresh in [" + delay + "] ms.");
+        }
+
+        return true;
+    }
+
+    /**
+     * Cancels every pending refresh, e.g. when the cache is cleared.
+     */
+    public void cancelAll() {
+        synchronized (mLock) {
+            for (final PendingRefresh pendingRefresh : mPendingRefreshes.values()) {
+                pendingRefresh.mFuture.cancel(false);
+            }
+
+            mPendingRefreshes.clear();
+        }
+    }
+
+    /**
+     * Cancels the pending refreshes of the tokens of an account, e.g. when it is removed or signed
+     * out. Null or empty arguments match every token, as in the cache's own filters.
+     *
+     * @param clientId      The client id of the tokens.
+     * @param homeAccountId The home account id of the tokens.
+     * @return the number of refreshes cancelled.
+     */
+    public int cancel(@Nullable final String clientId, @Nullable final String homeAccountId) {
+        int cancelled = 0;
+
+        synchronized (mLock) {
+            final Iterator<PendingRefresh> iterator = mPendingRefreshes.values().iterator();
+
+            while (iterator.hasNext()) {
+                final PendingRefresh pendingRefresh = iterator.next();
+
+                if ((StringUtil.isNullOrEmpty(clientId)
+                        || StringUtil.equalsIgnoreCaseTrimBoth(clientId, pendingRefresh.mClientId))
+                        && (StringUtil.isNullOrEmpty(homeAccountId)
+                        || StringUtil.equalsIgnoreCaseTrimBoth(homeAccountId, pendingRefresh.mHomeAccountId))) {
+                    pendingRefresh.mFuture.cancel(false);
+                    iterator.remove();
+                    cancelled++;
+                }
+            }
+        }
+
+        return cancelled;
+    }
+
+    /**
+     * @return the number of pending refreshes.
+     */
+    public int getPendingRefreshCount() {
+        synchronized (mLock) {
+            return mPendingRefreshes.size();
+        }
+    }
+
+    /**
+     * Gets a random delay to add to a refresh, bounded by {@link #MAX_JITTER_MILLIS} and by half
+     * of the time left between the refresh and the expiry.
+     */
+    private long getJitter(final long refreshAt, final long expiresAt) {
+        final long bound = Math.min(MAX_JITTER_MILLIS, (expiresAt - refreshAt) / 2);
+        return bound <= 0 ? 0 : (long) (mRandom.nextDouble() * bound);
+    }
+
+    private void onRefreshDue(@NonNull final PendingRefresh pendingRefresh) {
+        final String methodName = ":onRefreshDue";
+        final long now = System.currentTimeMillis();
+
+        synchronized (mLock) {
+            if (mPendingRefreshes.get(pendingRefresh.mKey) != pendingRefresh) {
+                // Replaced or cancelled since it was scheduled.
+                return;
+            }
+
+            if (pendingRefresh.mExpiresAt <= now) {
+                mPendingRefreshes.remove(pendingRefresh.mKey);
+                return;
+            }
+
+            while (!mRecentSubmissions.isEmpty()
+                    && mRecentSubmissions.peekFirst() <= now - RATE_LIMIT_WINDOW_MILLIS) {
+                mRecentSubmissions.pollFirst();
+            }
+
+            if (mRecentSubmissions.size() >= mMaxRefreshesPerWindow) {
+                final long retryAt = mRecentSubmissions.peekFirst() + RATE_LIMIT_WINDOW_MILLIS;
+
+                if (retryAt >= pendingRefresh.mExpiresAt) {
+                    Logger.warn(TAG + methodName, "Refresh budget exhausted, dropping refresh.");
+                    mPendingRefreshes.remove(pendingRefresh.mKey);
+                } else {
+                    final long delay = retryAt - now + getJitter(retryAt, pendingRefresh.mExpiresAt);
+                    pendingRefresh.mFuture = mTimer.schedule(pendingRefresh, delay, TimeUnit.MILLISECONDS);
+                }
+
+                return;
+            }
+
+            mRecentSubmissions.addLast(now);
+            mPendingRefreshes.remove(pendingRefresh.mKey);
+        }
+
+        mSubmitter.submit(pendingRefresh.mCommand);
+    }
+
+    private final class PendingRefresh implements Runnable {
+        private final String mKey;
+        private final String mClientId;
+        private final String mHomeAccountId;
+        private final long mExpiresAt;
+        private final BaseCommand<?> mCommand;
+
+        //@GuardedBy("mLock")
+        private ScheduledFuture<?> mFuture;
+
+        PendingRefresh(@NonNull final String key,
+                       @Nullable final String clientId,
+                       @Nullable final String homeAccountId,
+                       final long expiresAt,
+                       @NonNull final BaseCommand<?> command) {
+            mKey = key;
+            mClientId = clientId;
+            mHomeAccountId = homeAccountId;
+            mExpiresAt = expiresAt;
+            mCommand = command;
+        }
+
+        @Override
+        public void run() {
+            try {
+                onRefreshDue(this);
+            } catch (final RuntimeException e) {
+                Logger.error(TAG, "Failed to submit background refresh.", e);
+            }
+        }
+    }
+}
@@ -53,6 +53,9 @@ import com.microsoft.identity.common.java.logging.DiagnosticContext;
 import com.microsoft.identity.common.java.logging.Logger;
 import com.microsoft.identity.common.java.logging.RequestContext;
 import com.microsoft.identity.common.java.marker.CodeMarkerManager;
+import com.microsoft.identity.common.java.metrics.LatencyHistogram;
+import com.microsoft.identity.common.java.metrics.MetricNames;
+import com.microsoft.identity.common.java.metrics.MetricsRegistry;
 import com.microsoft.identity.common.java.request.SdkType;
 import com.microsoft.identity.common.java.result.AcquireTokenResult;
 import com.microsoft.identity.common.java.result.FinalizableResultFuture;
@@ -76,6 +79,7 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -85,32 +89,47 @@ import lombok.NonNull;
 public class CommandDispatcher {
 
     private static final String TAG = CommandDispatcher.class.getSimpleName();
-    private static final int SILENT_REQUEST_THREAD_POOL_SIZE = 5;
     private static final ExecutorService sInteractiveExecutor = Executors.newSingleThreadExecutor();
-    private static final ExecutorService sSilentExecutor = Executors.newFixedThreadPool(SILENT_REQUEST_THREAD_POOL_SIZE);
+    private static volatile CommandScheduler sScheduler = new CommandScheduler();
     private static final Object sLock = new Object();
     private static InteractiveTokenCommand sCommand = null;
     private static final CommandResultCache sCommandResultCache = new CommandResultCache();
+    private static final LatencyHistogram sSilentTokenAcquisitionLatency =
+            MetricsRegistry.getInstance().getHistogram(MetricNames.SILENT_TOKEN_ACQUISITION);
 
     private static final Object mapAccessLock = new Object();
 
     //@GuardedBy("mapAccessLock")
-    //Suppressing rawtype warnings due to the generic type BaseCommand
-    @SuppressWarnings(WarningType.rawtype_warning)
-    private static ConcurrentMap<BaseCommand, FinalizableResultFuture<CommandResult>> sExecutingCommandMap = new ConcurrentHashMap<>();
+    // Keyed on the request key of each command, see getRequestKey.
+    private static ConcurrentMap<Object, FinalizableResultFuture<CommandResult>> sExecutingCommandMap = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the key under which a command is coalesced with identical in-flight commands and under
+     * which its result is cached: its request fingerprint if it has one, or else the command itself.
+     * The fingerprint is computed once, when the command is submitted, so later changes to the
+     * command cannot orphan its map entry.
+     *
+     * @param command the command.
+     * @return the key.
+     */
+    private static Object getRequestKey(@SuppressWarnings(WarningType.rawtype_warning) @NonNull final BaseCommand command) {
+        final String fingerprint = command.getRequestFingerprint();
+        return fingerprint == null ? command : fingerprint;
+    }
 
     /**
      * Remove all keys that are the command reference from the executing command map.  Since if they key has
      * been changed, remove will not work, construct a new map and add all keys that are not identically
      * that key into the new map.  <strong>MUST</strong> only be used under the mapAccessLock.
+     * Only needed for commands without a request fingerprint, which are keyed on themselves.
      *
      * @param command the command whose identity to use to cleanse the map.
      */
     // Suppressing rawtype warnings due to the generic type BaseCommand
     @SuppressWarnings(WarningType.rawtype_warning)
     private static void cleanMap(BaseCommand command) {
-        ConcurrentMap<BaseCommand, FinalizableResultFuture<CommandResult>> newMap = new ConcurrentHashMap<>();
-        for (Map.Entry<BaseCommand, FinalizableResultFuture<CommandResult>> e : sExecutingCommandMap.entrySet()) {
+        ConcurrentMap<Object, FinalizableResultFuture<CommandResult>> newMap = new ConcurrentHashMap<>();
+        for (Map.Entry<Object, FinalizableResultFuture<CommandResult>> e : sExecutingCommandMap.entrySet()) {
             if (!(command == e.getKey())) {
                 newMap.put(e.getKey(), e.getValue());
             }
@@ -128,8 +147,9 @@ public class CommandDispatcher {
     //@VisibleForTesting(otherwise = VisibleForTesting.NONE)
     public static boolean isCommandOutstanding(BaseCommand c) {
         synchronized (mapAccessLock) {
-            for (Map.Entry<BaseCommand, ?> e : sExecutingCommandMap.entrySet()) {
-                if (e.getKey() == c) {
+            final String fingerprint = c.getRequestFingerprint();
+            for (Map.Entry<Object, ?> e : sExecutingCommandMap.entrySet()) {
+                if (e.getKey() == c || (fingerprint != null && fingerprint.equals(e.getKey()))) {
                     System.out.println("Command out there " + c);
                     return true;
                 }
@@ -143,19 +163,37 @@ public class CommandDispatcher {
         synchronized (mapAccessLock) {
             sExecutingCommandMap.clear();
         }
-        sSilentExecutor.shutdownNow();
+        sScheduler.shutdownNow();
+        sScheduler = new CommandScheduler();
         sInteractiveExecutor.shutdownNow();
-        Field f = CommandDispatcher.class.getDeclaredField("sSilentExecutor");
-        f.setAccessible(true);
-        f.set(null, Executors.newFixedThreadPool(SILENT_REQUEST_THREAD_POOL_SIZE));
-        f.setAccessible(false);
-
-        f = CommandDispatcher.class.getDeclaredField("sInteractiveExecutor");
+        Field f = CommandDispatcher.class.getDeclaredField("sInteractiveExecutor");
         f.setAccessible(true);
         f.set(null, Executors.newSingleThreadExecutor());
         f.setAccessible(false);
     }
 
+    /**
+     * Replaces the scheduler that runs silent and fire-and-forget commands. Work already submitted
+     * to the previous scheduler is allowed to finish.
+     *
+     * @param scheduler the new scheduler.
+     */
+    public static void setScheduler(@NonNull final CommandScheduler scheduler) {
+        final CommandScheduler previous = sScheduler;
+        sScheduler = scheduler;
+        previous.shutdown();
+    }
+
+    /**
+     * Gets the scheduler that runs silent and fire-and-forget commands, e.g. to read its per-lane
+     * queue depth and wait time.
+     *
+     * @return the current scheduler.
+     */
+    public static CommandScheduler getScheduler() {
+        return sScheduler;
+    }
+
     /**
      * submitSilent - Run a command using the silent thread pool.
      *
@@ -204,6 +242,7 @@ public class CommandDispatcher {
     //@VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
     public static FinalizableResultFuture<CommandResult> submitSilentReturningFuture(@SuppressWarnings(WarningType.rawtype_warning)
                                                                                      @NonNull final BaseCommand command) {
+        final long submittedAt = System.nanoTime();
         final CodeMarkerManager codeMarkerManager = CodeMarkerManager.getInstance();
         codeMarkerManager.markCode(ACQUIRE_TOKEN_SILENT_START);
         final String methodName = ":submitSilent";
@@ -218,14 +257,16 @@ public class CommandDispatcher {
 
         logParameters(TAG + methodName, correlationId, commandParameters, command.getPublicApiId());
 
+        final Object requestKey = command.isEligibleForCaching() ? getRequestKey(command) : null;
+
         synchronized (mapAccessLock) {
             final FinalizableResultFuture<CommandResult> finalFuture;
             if (command.isEligibleForCaching()) {
-                FinalizableResultFuture<CommandResult> future = sExecutingCommandMap.get(command);
+                FinalizableResultFuture<CommandResult> future = sExecutingCommandMap.get(requestKey);
 
                 if (null == future) {
                     future = new FinalizableResultFuture<>();
-                    final FinalizableResultFuture<CommandResult> putValue = sExecutingCommandMap.putIfAbsent(command, future);
+                    final FinalizableResultFuture<CommandResult> putValue = sExecutingCommandMap.putIfAbsent(requestKey, future);
 
                     if (null == putValue) {
                         // our value was inserted.
@@ -246,7 +287,7 @@ public class CommandDispatcher {
                 finalFuture.whenComplete(getCommandResultConsumer(command));
             }
 
-            sSilentExecutor.execute(new Runnable() {
+            final Runnable task = new Runnable() {
                 @Override
                 public void run() {
                     codeMarkerManager.markCode(ACQUIRE_TOKEN_SILENT_EXECUTOR_START);
@@ -285,12 +326,11 @@ public class CommandDispatcher {
                     } finally {
                         synchronized (mapAccessLock) {
                             if (command.isEligibleForCaching()) {
-                                final FinalizableResultFuture mapFuture = sExecutingCommandMap.remove(command);
+                                final FinalizableResultFuture mapFuture = sExecutingCommandMap.remove(requestKey);
                                 if (mapFuture == null) {
                                     // If this has happened, the command that we started with has mutated.  We will
                                     // examine every entry in the map, find the one with the same object identity
-                                    // and remove it.
-                                    // ADO:TODO:1153495 - Rekey this map with stable string keys.
+                                    // and remove it.  Only commands keyed on themselves can get here.
                                     Logger.error(TAG, "The command in the map has mutated " + command.getClass().getCanonicalName()
                                             + " the calling application was " + command.getParameters().getApplicationName(), null);
                                     cleanMap(command);
@@ -298,11 +338,23 @@ public class CommandDispatcher {
                             }
                             finalFuture.setCleanedUp();
                         }
+                        sSilentTokenAcquisitionLatency.recordSince(submittedAt);
                         DiagnosticContext.INSTANCE.clear();
                     }
                     codeMarkerManager.markCode(ACQUIRE_TOKEN_SILENT_FUTURE_OBJECT_CREATION_END);
                 }
-            });
+            };
+
+            try {
+                sScheduler.execute(CommandLane.FOREGROUND_SILENT, task);
+            } catch (final RejectedExecutionException e) {
+                Logger.warn(TAG + methodName, "Silent request rejected, dispatcher is saturated. Correlation id : **" + correlationId);
+                if (command.isEligibleForCaching()) {
+                    sExecutingCommandMap.remove(requestKey);
+                }
+                finalFuture.setException(new ExecutionException(e));
+                finalFuture.setCleanedUp();
+            }
             return finalFuture;
         }
     }
@@ -311,8 +363,24 @@ public class CommandDispatcher {
         submitAndForgetReturningFuture(command);
     }
 
+    /**
+     * Run a command on the supplied lane without waiting for its result.
+     *
+     * @param command the command to run.
+     * @param lane    the lane to run it on.
+     */
+    public static void submitAndForget(@NonNull final BaseCommand command, @NonNull final CommandLane lane){
+        submitAndForgetReturningFuture(command, lane);
+    }
+
     //@VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
     public static FinalizableResultFuture<CommandResult> submitAndForgetReturningFuture(@SuppressWarnings(WarningType.rawtype_warning) @NonNull final BaseCommand command){
+        return submitAndForgetReturningFuture(command, CommandLane.BACKGROUND_REFRESH);
+    }
+
+    //@VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
+    public static FinalizableResultFuture<CommandResult> submitAndForgetReturningFuture(@SuppressWarnings(WarningType.rawtype_warning) @NonNull final BaseCommand command,
+                                                                                       @NonNull final CommandLane lane){
         final String methodName = ":submit";
 
         final CommandParameters commandParameters = command.getParameters();
@@ -333,7 +401,7 @@ public class CommandDispatcher {
         synchronized (mapAccessLock) {
             final FinalizableResultFuture<CommandResult> finalFuture = new FinalizableResultFuture<>();
             finalFuture.whenComplete(getCommandResultConsumer(command));
-            sSilentExecutor.execute(new Runnable() {
+            final Runnable task = new Runnable() {
                 @Override
                 public void run() {
 
@@ -355,11 +423,22 @@ public class CommandDispatcher {
                         Logger.info(TAG + methodName, "Request encountered an exception with correlation id : **" + correlationId);
                         finalFuture.setException(new ExecutionException(t));
                     } finally {
+                        finalFuture.setCleanedUp();
                         DiagnosticContext.INSTANCE.clear();
                     }
 
                 }
-            });
+            };
+
+            try {
+                sScheduler.execute(lane, task);
+            } catch (final RejectedExecutionException e) {
+                // Shed background work rather than queue it without bound; the command still
+                // completes, with the rejection as its error.
+                Logger.warn(TAG + methodName, "Request rejected, " + lane + " lane is saturated. Correlation id : **" + correlationId);
+                finalFuture.setException(new ExecutionException(e));
+                finalFuture.setCleanedUp();
+            }
             return finalFuture;
         }
     }
@@ -569,7 +648,7 @@ public class CommandDispatcher {
         (@SuppressWarnings(WarningType.rawtype_warning) BaseCommand command,
                 CommandResult commandResult){
             if (command.isEligibleForCaching() && eligibleToCache(commandResult)) {
-                sCommandResultCache.put(command, commandResult);
+                sCommandResultCache.put(getRequestKey(command), commandResult);
             }
         }
 
@@ -0,0 +1,72 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+package com.microsoft.identity.common.java.controllers;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Sizing of one {@link CommandLane} of the {@link CommandScheduler}.
+ * <p>
+ * A lane keeps {@link #getCorePoolSize()} threads, queues up to {@link #getQueueCapacity()} tasks
+ * and grows to {@link #getMaxPoolSize()} threads only once the queue is full. Tasks submitted
+ * beyond that are rejected.
+ */
+@Getter
+@Builder
+public class CommandLaneConfiguration {
+    @Builder.Default
+    private final int corePoolSize = 1;
+    @Builder.Default
+    private final int maxPoolSize = 1;
+    @Builder.Default
+    private final int queueCapacity = 64;
+    @Builder.Default
+    private final long keepAliveSeconds = 30;
+
+    /**
+     * Gets the default configuration of the supplied lane.
+     *
+     * @param lane The lane.
+     * @return Its default configuration.
+     */
+    public static CommandLaneConfiguration getDefault(@NonNull final CommandLane lane) {
+        switch (lane) {
+            case FOREGROUND_SILENT:
+                // Matches the previous fixed pool of 5, with room to absorb bursts.
+                return CommandLaneConfiguration.builder()
+                        .corePoolSize(5)
+                        .maxPoolSize(10)
+                        .queueCapacity(256)
+                        .build();
+            case BACKGROUND_REFRESH:
+            default:
+                return CommandLaneConfiguration.builder()
+                        .corePoolSize(1)
+                        .maxPoolSize(2)
+                        .queueCapacity(64)
+                        .build();
+        }
+    }
+}
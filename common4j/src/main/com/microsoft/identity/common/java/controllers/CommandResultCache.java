@@ -22,9 +22,6 @@
 //  THE SOFTWARE.
 package com.microsoft.identity.common.java.controllers;
 
-import com.microsoft.identity.common.java.WarningType;
-import com.microsoft.identity.common.java.commands.BaseCommand;
-
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -32,30 +29,29 @@ import java.util.Map;
  * Name: CommandResultCache
  * Responsibilities: Caching results of commands on behalf of the command dispatcher
  */
-// Suppressing rawtype warnings due to the generic type BaseCommand
-@SuppressWarnings(WarningType.rawtype_warning)
 public class CommandResultCache {
 
     private final static int DEFAULT_ITEM_COUNT = 250;
 
     private final Object cacheLock = new Object();
     //Cache items allowed is still TBD... for now using default value of 250
-    private final Map<BaseCommand, CommandResultCacheItem> mCache;
+    // Keyed on the request key of the command, see CommandDispatcher.
+    private final Map<Object, CommandResultCacheItem> mCache;
 
     public CommandResultCache() {
         this(DEFAULT_ITEM_COUNT);
     }
 
     public CommandResultCache(final int maxItemCount) {
-        mCache = new LinkedHashMap<BaseCommand, CommandResultCacheItem>(maxItemCount + 1, .75f, true) {
+        mCache = new LinkedHashMap<Object, CommandResultCacheItem>(maxItemCount + 1, .75f, true) {
             @Override
-            protected boolean removeEldestEntry(Map.Entry<BaseCommand, CommandResultCacheItem> eldest) {
+            protected boolean removeEldestEntry(Map.Entry<Object, CommandResultCacheItem> eldest) {
                 return size() > maxItemCount;
             }
         };
     }
 
-    public CommandResult get(@SuppressWarnings(WarningType.rawtype_warning) BaseCommand key) {
+    public CommandResult get(final Object key) {
         synchronized (cacheLock) {
             CommandResultCacheItem item = mCache.get(key);
             if (item != null) {
@@ -71,7 +67,7 @@ public class CommandResultCache {
         }
     }
 
-    public void put(@SuppressWarnings(WarningType.rawtype_warning) BaseCommand key, CommandResult value) {
+    public void put(final Object key, CommandResult value) {
         synchronized (cacheLock) {
             CommandResultCacheItem cacheItem = new CommandResultCacheItem(value);
             //NOTE: If an existing item using this key already in the cache it will be replaced
@@ -0,0 +1,200 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+package com.microsoft.identity.common.java.controllers;
+
+import com.microsoft.identity.common.java.logging.Logger;
+import com.microsoft.identity.common.java.metrics.Counter;
+import com.microsoft.identity.common.java.metrics.LatencyHistogram;
+import com.microsoft.identity.common.java.metrics.MetricNames;
+import com.microsoft.identity.common.java.metrics.MetricsRegistry;
+import com.microsoft.identity.common.java.util.ThreadUtils;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.NonNull;
+
+/**
+ * Runs {@link CommandDispatcher} work on one bounded pool per {@link CommandLane}.
+ * <p>
+ * Lanes do not share threads or queues, so fire-and-forget work cannot delay silent requests a
+ * caller is waiting on. When a lane's queue and pool are both full, further submissions are
+ * rejected with a {@link RejectedExecutionException} rather than queued without bound.
+ * <p>
+ * Queue depth, queue wait time and rejections are tracked per lane, and wait times and rejections
+ * are also recorded in the {@link MetricsRegistry}.
+ */
+public class CommandScheduler {
+
+    private static final String TAG = CommandScheduler.class.getSimpleName();
+
+    private final Map<CommandLane, Lane> mLanes = new EnumMap<>(CommandLane.class);
+
+    /**
+     * Creates a scheduler with the default configuration for every lane.
+     */
+    public CommandScheduler() {
+        this(new EnumMap<CommandLane, CommandLaneConfiguration>(CommandLane.class));
+    }
+
+    /**
+     * Creates a scheduler.
+     *
+     * @param configurations Per-lane configuration. Lanes without an entry use
+     *                       {@link CommandLaneConfiguration#getDefault(CommandLane)}.
+     */
+    public CommandScheduler(@NonNull final Map<CommandLane, CommandLaneConfiguration> configurations) {
+        for (final CommandLane lane : CommandLane.values()) {
+            CommandLaneConfiguration configuration = configurations.get(lane);
+
+            if (null == configuration) {
+                configuration = CommandLaneConfiguration.getDefault(lane);
+            }
+
+            mLanes.put(lane, new Lane(lane, configuration));
+        }
+    }
+
+    /**
+     * Runs the supplied task on the supplied lane.
+     *
+     * @param lane     The lane to run on.
+     * @param runnable The task.
+     * @throws RejectedExecutionException If the lane is saturated or the scheduler is shut down.
+     */
+    public void execute(@NonNull final CommandLane lane, @NonNull final Runnable runnable) {
+        mLanes.get(lane).execute(runnable);
+    }
+
+    /**
+     * @return The number of tasks waiting for a thread on the supplied lane.
+     */
+    public int getQueueDepth(@NonNull final CommandLane lane) {
+        return mLanes.get(lane).mQueueDepth.get();
+    }
+
+    /**
+     * @return The mean time, in milliseconds, that tasks started on the supplied lane spent queued.
+     */
+    public long getAverageWaitTimeMillis(@NonNull final CommandLane lane) {
+        final Lane l = mLanes.get(lane);
+        final long started = l.mStartedCount.get();
+        return started == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(l.mTotalWaitNanos.get() / started);
+    }
+
+    /**
+     * @return The longest time, in milliseconds, that a task started on the supplied lane spent queued.
+     */
+    public long getMaxWaitTimeMillis(@NonNull final CommandLane lane) {
+        return TimeUnit.NANOSECONDS.toMillis(mLanes.get(lane).mMaxWaitNanos.get());
+    }
+
+    /**
+     * @return The number of tasks rejected by the supplied lane.
+     */
+    public long getRejectedCount(@NonNull final CommandLane lane) {
+        return mLanes.get(lane).mRejectedCount.get();
+    }
+
+    /**
+     * Stops accepting work; queued and running tasks are allowed to finish.
+     */
+    public void shutdown() {
+        for (final Lane lane : mLanes.values()) {
+            lane.mExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Stops accepting work and interrupts running tasks; queued tasks are dropped.
+     */
+    public void shutdownNow() {
+        for (final Lane lane : mLanes.values()) {
+            lane.mExecutor.shutdownNow();
+        }
+    }
+
+    private static final class Lane {
+        private final CommandLane mLane;
+        private final ExecutorService mExecutor;
+        private final AtomicInteger mQueueDepth = new AtomicInteger();
+        private final AtomicLong mStartedCount = new AtomicLong();
+        private final AtomicLong mTotalWaitNanos = new AtomicLong();
+        private final AtomicLong mMaxWaitNanos = new AtomicLong();
+        private final AtomicLong mRejectedCount = new AtomicLong();
+        private final LatencyHistogram mWaitHistogram;
+        private final Counter mRejectedCounter;
+
+        Lane(@NonNull final CommandLane lane, @NonNull final CommandLaneConfiguration configuration) {
+            mLane = lane;
+            mWaitHistogram = MetricsRegistry.getInstance().getHistogram(MetricNames.DISPATCHER_QUEUE_WAIT + lane.name());
+            mRejectedCounter = MetricsRegistry.getInstance().getCounter(MetricNames.DISPATCHER_REJECTED + lane.name());
+            mExecutor = ThreadUtils.getNamedThreadPoolExecutor(
+                    configuration.getCorePoolSize(),
+                    configuration.getMaxPoolSize(),
+                    configuration.getQueueCapacity(),
+                    configuration.getKeepAliveSeconds(),
+                    TimeUnit.SECONDS,
+                    "CommandDispatcher-" + lane.name()
+            );
+        }
+
+        void execute(@NonNull final Runnable runnable) {
+            final long enqueuedAt = System.nanoTime();
+            mQueueDepth.incrementAndGet();
+
+            try {
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        mQueueDepth.decrementAndGet();
+                        recordWait(System.nanoTime() - enqueuedAt);
+                        runnable.run();
+                    }
+                });
+            } catch (final RejectedExecutionException e) {
+                mQueueDepth.decrementAndGet();
+                mRejectedCount.incrementAndGet();
+                mRejectedCounter.increment();
+                Logger.warn(TAG, "Lane " + mLane + " rejected a task, queue depth: " + mQueueDepth.get());
+                throw e;
+            }
+        }
+
+        private void recordWait(final long waitNanos) {
+            mStartedCount.incrementAndGet();
+            mTotalWaitNanos.addAndGet(waitNanos);
+            mWaitHistogram.record(waitNanos);
+
+            long max = mMaxWaitNanos.get();
+            while (waitNanos > max && !mMaxWaitNanos.compareAndSet(max, waitNanos)) {
+                max = mMaxWaitNanos.get();
+            }
+        }
+    }
+}
@@ -27,6 +27,9 @@ import com.microsoft.identity.common.java.crypto.key.KeyUtil;
 import com.microsoft.identity.common.java.exception.ClientException;
 import com.microsoft.identity.common.java.exception.ErrorStrings;
 import com.microsoft.identity.common.java.logging.Logger;
+import com.microsoft.identity.common.java.metrics.LatencyHistogram;
+import com.microsoft.identity.common.java.metrics.MetricNames;
+import com.microsoft.identity.common.java.metrics.MetricsRegistry;
 import com.microsoft.identity.common.java.util.StringUtil;
 
 import java.security.InvalidAlgorithmParameterException;
@@ -34,7 +37,12 @@ import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
@@ -83,6 +91,43 @@ public abstract class StorageEncryptionManager implements IKeyAccessor {
      */
     private static final String ENCODE_VERSION = "E1";
 
+    /**
+     * Time taken by successful {@link #encryptAll(List)} and {@link #decrypt(byte[])} calls.
+     */
+    private static final LatencyHistogram sEncryptionLatency =
+            MetricsRegistry.getInstance().getHistogram(MetricNames.STORAGE_ENCRYPTION);
+    private static final LatencyHistogram sDecryptionLatency =
+            MetricsRegistry.getInstance().getHistogram(MetricNames.STORAGE_DECRYPTION);
+
+    /**
+     * HMAC keys derived from the secret keys that were used, so that the derivation runs once per key.
+     * Secret keys are held weakly. Keys that are their own HMAC key (see {@link #getHMacKey}) are not
+     * cached, as the entry's value would then keep its key alive.
+     */
+    private static final Map<SecretKey, SecretKey> sHmacKeys = new WeakHashMap<>();
+
+    /**
+     * Each thread's Cipher instances, keyed on the cipher algorithm and the class of the key they
+     * are used with (the provider is only picked on the first init, and may not accept other keys).
+     * Ciphers and Macs are re-initialized before each use.
+     */
+    private static final ThreadLocal<Map<String, Cipher>> sCiphers = new ThreadLocal<Map<String, Cipher>>() {
+        @Override
+        protected Map<String, Cipher> initialValue() {
+            return new HashMap<>();
+        }
+    };
+
+    /**
+     * Each thread's Mac instances, keyed on the class of the key they are used with.
+     */
+    private static final ThreadLocal<Map<String, Mac>> sMacs = new ThreadLocal<Map<String, Mac>>() {
+        @Override
+        protected Map<String, Mac> initialValue() {
+            return new HashMap<>();
+        }
+    };
+
     /**
      * IV generator.
      */
@@ -112,10 +157,24 @@ public abstract class StorageEncryptionManager implements IKeyAccessor {
     @NonNull
     public byte[] encrypt(@NonNull final byte[] plaintext)
             throws ClientException {
+        return encryptAll(Collections.singletonList(plaintext)).get(0);
+    }
+
+    /**
+     * Encrypts each of the given plaintexts, loading the encryption key once for all of them.
+     *
+     * @param plaintexts the data to encrypt.
+     * @return the encrypted data, in the same order.
+     * @throws ClientException if the key cannot be loaded or any of the data cannot be encrypted.
+     */
+    @NonNull
+    public List<byte[]> encryptAll(@NonNull final List<byte[]> plaintexts)
+            throws ClientException {
         final String methodName = ":encrypt";
 
         Logger.verbose(TAG + methodName, "Starting encryption");
 
+        final long startTime = System.nanoTime();
         final String errCode;
         final Exception exception;
         try {
@@ -126,41 +185,23 @@ public abstract class StorageEncryptionManager implements IKeyAccessor {
             }
 
             final SecretKey encryptionKey = keyLoader.getKey();
-            final SecretKey encryptionHMACKey = KeyUtil.getHMacKey(encryptionKey);
+            final SecretKey encryptionHMACKey = getHMacKey(encryptionKey);
             final byte[] keyIdentifier = keyLoader.getKeyTypeIdentifier().getBytes(ENCODING_UTF8);
 
-            // IV: Initialization vector that is needed to start CBC
-            final byte[] iv = mGenerator.generate();
-            final IvParameterSpec ivSpec = new IvParameterSpec(iv);
-
-            // Set to encrypt mode
-            final Cipher cipher = Cipher.getInstance(keyLoader.getCipherAlgorithm());
-            final Mac mac = Mac.getInstance(HMAC_ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, encryptionKey, ivSpec);
-
-            final byte[] encrypted = cipher.doFinal(plaintext);
+            final Cipher cipher = getCipher(keyLoader.getCipherAlgorithm(), encryptionKey);
+            final Mac mac = getMac(encryptionHMACKey);
 
-            // Calculate digest from keyIdentifier+encryptedData+IV.
+            // doFinal() resets the Mac to its initialized state, so it can be reused for every entry.
             mac.init(encryptionHMACKey);
-            mac.update(keyIdentifier);
-            mac.update(encrypted);
-            mac.update(iv);
-            final byte[] macDigest = mac.doFinal();
 
-            // Init array to store keyIdentifier, encrypted data, iv, macdigest
-            final byte[] blobVerAndEncryptedDataAndIVAndMacDigest = new byte[keyIdentifier.length
-                    + encrypted.length + iv.length + macDigest.length];
-            System.arraycopy(keyIdentifier, 0, blobVerAndEncryptedDataAndIVAndMacDigest, 0,
-                    keyIdentifier.length);
-            System.arraycopy(encrypted, 0, blobVerAndEncryptedDataAndIVAndMacDigest,
-                    keyIdentifier.length, encrypted.length);
-            System.arraycopy(iv, 0, blobVerAndEncryptedDataAndIVAndMacDigest, keyIdentifier.length
-                    + encrypted.length, iv.length);
-            System.arraycopy(macDigest, 0, blobVerAndEncryptedDataAndIVAndMacDigest, keyIdentifier.length
-                    + encrypted.length + iv.length, macDigest.length);
+            final List<byte[]> result = new ArrayList<>(plaintexts.size());
+            for (final byte[] plaintext : plaintexts) {
+                result.add(encryptWithSecretKey(plaintext, keyIdentifier, encryptionKey, cipher, mac));
+            }
 
+            sEncryptionLatency.recordSince(startTime);
             Logger.verbose(TAG + methodName, "Finished encryption");
-            return prefixWithEncodeVersion(blobVerAndEncryptedDataAndIVAndMacDigest);
+            return result;
         } catch (final NoSuchAlgorithmException e) {
             errCode = NO_SUCH_ALGORITHM;
             exception = e;
@@ -184,6 +225,50 @@ public abstract class StorageEncryptionManager implements IKeyAccessor {
         throw new ClientException(errCode, exception.getMessage(), exception);
     }
 
+    /**
+     * Encrypts the given plaintext.
+     *
+     * @param mac a Mac already initialized with the HMAC key of encryptionKey.
+     * @return [getEncodeVersionLengthPrefix()][ENCODE_VERSION][Base64EncodedEncryptedData]
+     */
+    @NonNull
+    private byte[] encryptWithSecretKey(@NonNull final byte[] plaintext,
+                                        @NonNull final byte[] keyIdentifier,
+                                        @NonNull final SecretKey encryptionKey,
+                                        @NonNull final Cipher cipher,
+                                        @NonNull final Mac mac)
+            throws InvalidKeyException, InvalidAlgorithmParameterException,
+            IllegalBlockSizeException, BadPaddingException {
+        // IV: Initialization vector that is needed to start CBC
+        final byte[] iv = mGenerator.generate();
+        final IvParameterSpec ivSpec = new IvParameterSpec(iv);
+
+        // Set to encrypt mode
+        cipher.init(Cipher.ENCRYPT_MODE, encryptionKey, ivSpec);
+
+        final byte[] encrypted = cipher.doFinal(plaintext);
+
+        // Calculate digest from keyIdentifier+encryptedData+IV.
+        mac.update(keyIdentifier);
+        mac.update(encrypted);
+        mac.update(iv);
+        final byte[] macDigest = mac.doFinal();
+
+        // Init array to store keyIdentifier, encrypted data, iv, macdigest
+        final byte[] blobVerAndEncryptedDataAndIVAndMacDigest = new byte[keyIdentifier.length
+                + encrypted.length + iv.length + macDigest.length];
+        System.arraycopy(keyIdentifier, 0, blobVerAndEncryptedDataAndIVAndMacDigest, 0,
+                keyIdentifier.length);
+        System.arraycopy(encrypted, 0, blobVerAndEncryptedDataAndIVAndMacDigest,
+                keyIdentifier.length, encrypted.length);
+        System.arraycopy(iv, 0, blobVerAndEncryptedDataAndIVAndMacDigest, keyIdentifier.length
+                + encrypted.length, iv.length);
+        System.arraycopy(macDigest, 0, blobVerAndEncryptedDataAndIVAndMacDigest, keyIdentifier.length
+                + encrypted.length + iv.length, macDigest.length);
+
+        return prefixWithEncodeVersion(blobVerAndEncryptedDataAndIVAndMacDigest);
+    }
+
     @Override
     public byte[] decrypt(final byte[] cipherText) throws ClientException {
         final String methodName = ":decrypt";
@@ -198,6 +283,7 @@ public abstract class StorageEncryptionManager implements IKeyAccessor {
             return cipherText;
         }
 
+        final long startTime = System.nanoTime();
         final List<AbstractSecretKeyLoader> keysForDecryption = getKeyLoaderForDecryption(cipherText);
         if (keysForDecryption == null || keysForDecryption.size() == 0) {
             throw new IllegalStateException("KeyLoader list must not be null or empty.");
@@ -213,6 +299,7 @@ public abstract class StorageEncryptionManager implements IKeyAccessor {
             
             try {
                 final byte[] result = decryptWithSecretKey(dataBytes, keyLoader);
+                sDecryptionLatency.recordSince(startTime);
                 Logger.verbose(TAG + methodName, "Finished decryption with key:" + keyLoader.getAlias());
                 return result;
             } catch (final ClientException e) {
@@ -230,6 +317,22 @@ public abstract class StorageEncryptionManager implements IKeyAccessor {
         throw exceptionToThrowIfAllFails;
     }
 
+    /**
+     * Decrypts each of the given cipherTexts, as {@link #decrypt(byte[])} does.
+     *
+     * @param cipherTexts the data to decrypt.
+     * @return the decrypted data, in the same order.
+     * @throws ClientException if any of the data cannot be decrypted.
+     */
+    @NonNull
+    public List<byte[]> decryptAll(@NonNull final List<byte[]> cipherTexts) throws ClientException {
+        final List<byte[]> result = new ArrayList<>(cipherTexts.size());
+        for (final byte[] cipherText : cipherTexts) {
+            result.add(decrypt(cipherText));
+        }
+        return result;
+    }
+
     @Override
     public byte[] sign(byte[] text) {
         throw new UnsupportedOperationException();
@@ -275,7 +378,7 @@ public abstract class StorageEncryptionManager implements IKeyAccessor {
         final Exception exception;
         try {
             final SecretKey secretKey = keyLoader.getKey();
-            final SecretKey hmacKey = KeyUtil.getHMacKey(secretKey);
+            final SecretKey hmacKey = getHMacKey(secretKey);
 
             // byte input array: [keyVersion][encryptedData][IV][macDigest]
             final int ivIndex = encryptedBlobWithoutEncodeVersion.length - IV_LENGTH - MAC_DIGEST_LENGTH;
@@ -286,8 +389,8 @@ public abstract class StorageEncryptionManager implements IKeyAccessor {
             // Calculate digest again and compare to the appended value
             // incoming message: version+encryptedData+IV+Digest
             // Digest of EncryptedData+IV excluding the digest itself.
-            final Cipher cipher = Cipher.getInstance(keyLoader.getCipherAlgorithm());
-            final Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            final Cipher cipher = getCipher(keyLoader.getCipherAlgorithm(), secretKey);
+            final Mac mac = getMac(hmacKey);
             mac.init(hmacKey);
             mac.update(encryptedBlobWithoutEncodeVersion, 0, macDigestIndex);
             final byte[] macDigest = mac.doFinal();
@@ -340,6 +443,64 @@ public abstract class StorageEncryptionManager implements IKeyAccessor {
         throw new ClientException(errCode, exception.getMessage(), exception);
     }
 
+    /**
+     * Gets the HMAC key derived from the given key, deriving it on first use.
+     * <p>
+     * {@link KeyUtil#getHMacKey(SecretKey)} returns the key itself when its encoded form is not
+     * available (e.g. a hardware-backed key); there is nothing to derive then, so it is not cached.
+     */
+    @NonNull
+    private static SecretKey getHMacKey(@NonNull final SecretKey key) throws NoSuchAlgorithmException {
+        synchronized (sHmacKeys) {
+            final SecretKey hmacKey = sHmacKeys.get(key);
+            if (hmacKey != null) {
+                return hmacKey;
+            }
+        }
+
+        final SecretKey hmacKey = KeyUtil.getHMacKey(key);
+        if (hmacKey != key) {
+            synchronized (sHmacKeys) {
+                sHmacKeys.put(key, hmacKey);
+            }
+        }
+        return hmacKey;
+    }
+
+    /**
+     * Gets this thread's Cipher for the given algorithm and key.
+     */
+    @NonNull
+    private static Cipher getCipher(@NonNull final String algorithm,
+                                    @NonNull final SecretKey key)
+            throws NoSuchAlgorithmException, NoSuchPaddingException {
+        final Map<String, Cipher> ciphers = sCiphers.get();
+        final String cacheKey = algorithm + "/" + key.getClass().getName();
+
+        Cipher cipher = ciphers.get(cacheKey);
+        if (cipher == null) {
+            cipher = Cipher.getInstance(algorithm);
+            ciphers.put(cacheKey, cipher);
+        }
+        return cipher;
+    }
+
+    /**
+     * Gets this thread's Mac for the given HMAC key.
+     */
+    @NonNull
+    private static Mac getMac(@NonNull final SecretKey hmacKey) throws NoSuchAlgorithmException {
+        final Map<String, Mac> macs = sMacs.get();
+        final String cacheKey = hmacKey.getClass().getName();
+
+        Mac mac = macs.get(cacheKey);
+        if (mac == null) {
+            mac = Mac.getInstance(HMAC_ALGORITHM);
+            macs.put(cacheKey, mac);
+        }
+        return mac;
+    }
+
     /**
      * A function which is triggered every time a decryption failed.
      *
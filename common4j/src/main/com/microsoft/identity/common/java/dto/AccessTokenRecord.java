@@ -23,9 +23,11 @@
 package com.microsoft.identity.common.java.dto;
 
 import com.google.gson.annotations.SerializedName;
+import com.microsoft.identity.common.java.util.ScopeUtil;
 
 import java.util.Calendar;
 import java.util.Date;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import edu.umd.cs.findbugs.annotations.Nullable;
@@ -142,6 +144,12 @@ public class AccessTokenRecord extends Credential {
     @SerializedName(TARGET)
     private String mTarget;
 
+    /**
+     * Normalized scopes of {@link #mTarget}, built on first use and reused for target matching.
+     * Not serialized.
+     */
+    private transient volatile Set<String> mNormalizedTargetScopes;
+
     /**
      * Token expiry time. This value should be calculated based on the current UTC time measured
      * locally and the value expires_in returned from the service. Measured in milliseconds from
@@ -234,6 +242,24 @@ public class AccessTokenRecord extends Credential {
      */
     public void setTarget(final String target) {
         mTarget = target;
+        mNormalizedTargetScopes = null;
+    }
+
+    /**
+     * Gets the target as a set of lowercased scopes.
+     *
+     * @return An immutable set of the scopes in the target.
+     * @see ScopeUtil#toNormalizedScopeSet(String)
+     */
+    public Set<String> getNormalizedTargetScopes() {
+        Set<String> scopes = mNormalizedTargetScopes;
+
+        if (null == scopes) {
+            scopes = ScopeUtil.toNormalizedScopeSet(mTarget);
+            mNormalizedTargetScopes = scopes;
+        }
+
+        return scopes;
     }
 
     /**
@@ -23,6 +23,9 @@
 package com.microsoft.identity.common.java.dto;
 
 import com.google.gson.annotations.SerializedName;
+import com.microsoft.identity.common.java.util.ScopeUtil;
+
+import java.util.Set;
 
 import static com.microsoft.identity.common.java.dto.RefreshTokenRecord.SerializedNames.FAMILY_ID;
 import static com.microsoft.identity.common.java.dto.RefreshTokenRecord.SerializedNames.TARGET;
@@ -55,6 +58,12 @@ public class RefreshTokenRecord extends Credential {
     @SerializedName(TARGET)
     private String mTarget;
 
+    /**
+     * Normalized scopes of {@link #mTarget}, built on first use and reused for target matching.
+     * Not serialized.
+     */
+    private transient volatile Set<String> mNormalizedTargetScopes;
+
     /**
      * Gets the target.
      *
@@ -71,6 +80,24 @@ public class RefreshTokenRecord extends Credential {
      */
     public void setTarget(final String target) {
         mTarget = target;
+        mNormalizedTargetScopes = null;
+    }
+
+    /**
+     * Gets the target as a set of lowercased scopes.
+     *
+     * @return An immutable set of the scopes in the target.
+     * @see ScopeUtil#toNormalizedScopeSet(String)
+     */
+    public Set<String> getNormalizedTargetScopes() {
+        Set<String> scopes = mNormalizedTargetScopes;
+
+        if (null == scopes) {
+            scopes = ScopeUtil.toNormalizedScopeSet(mTarget);
+            mNormalizedTargetScopes = scopes;
+        }
+
+        return scopes;
     }
 
     /**
@@ -22,6 +22,7 @@
 // THE SOFTWARE.
 package com.microsoft.identity.common.java.interfaces;
 
+import com.microsoft.identity.common.java.cache.NameValueSnapshot;
 import com.microsoft.identity.common.java.util.ported.Predicate;
 
 import java.util.Iterator;
@@ -80,5 +81,16 @@ public interface INameValueStorage<T> {
      *
      */
     Iterator<Map.Entry<String, T>> getAllFilteredByKey(Predicate<String> keyFilter);
+
+    /**
+     * Reads every entry whose key matches the filter in one consistent pass. Unlike
+     * {@link #getAllFilteredByKey(Predicate)}, no write made after this returns is reflected in
+     * the result.
+     *
+     * @param keyFilter A predicate to use to evaluate the key, return true to include key value pair.
+     * @return an immutable snapshot of the matching entries.
+     */
+    @NonNull
+    NameValueSnapshot<T> getSnapshot(@NonNull Predicate<String> keyFilter);
 }
 
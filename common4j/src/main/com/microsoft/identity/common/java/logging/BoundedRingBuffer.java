@@ -0,0 +1,135 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+import lombok.NonNull;
+
+/**
+ * A bounded, lock-free, multi-producer multi-consumer queue backed by a ring of slots.
+ * <p>
+ * Each slot carries a sequence number that tells producers whether it is free and consumers
+ * whether it has been published, so neither side ever takes a lock or allocates per element.
+ *
+ * @param <E> The element type.
+ */
+final class BoundedRingBuffer<E> {
+
+    private final int mMask;
+    private final AtomicReferenceArray<E> mElements;
+    private final AtomicLongArray mSequences;
+    private final AtomicLong mEnqueuePosition = new AtomicLong();
+    private final AtomicLong mDequeuePosition = new AtomicLong();
+
+    /**
+     * @param capacity The number of slots. Must be a power of two.
+     */
+    BoundedRingBuffer(final int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+
+        mMask = capacity - 1;
+        mElements = new AtomicReferenceArray<>(capacity);
+        mSequences = new AtomicLongArray(capacity);
+
+        for (int i = 0; i < capacity; i++) {
+            mSequences.set(i, i);
+        }
+    }
+
+    int capacity() {
+        return mMask + 1;
+    }
+
+    /**
+     * Adds an element, unless the buffer is full.
+     *
+     * @param element The element to add.
+     * @return true if the element was added, false if the buffer was full.
+     */
+    boolean offer(@NonNull final E element) {
+        long position = mEnqueuePosition.get();
+
+        while (true) {
+            final int index = (int) (position & mMask);
+            final long difference = mSequences.get(index) - position;
+
+            if (difference == 0) {
+                if (mEnqueuePosition.compareAndSet(position, position + 1)) {
+                    mElements.set(index, element);
+                    // Publish the slot to consumers.
+                    mSequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                // The slot still holds an element from the previous lap: full.
+                return false;
+            }
+
+            position = mEnqueuePosition.get();
+        }
+    }
+
+    /**
+     * Removes the oldest published element.
+     *
+     * @return The element, or null if there is none.
+     */
+    @Nullable
+    E poll() {
+        long position = mDequeuePosition.get();
+
+        while (true) {
+            final int index = (int) (position & mMask);
+            final long difference = mSequences.get(index) - (position + 1);
+
+            if (difference == 0) {
+                if (mDequeuePosition.compareAndSet(position, position + 1)) {
+                    final E element = mElements.get(index);
+                    mElements.set(index, null);
+                    // Hand the slot back to producers for the next lap.
+                    mSequences.set(index, position + mMask + 1);
+                    return element;
+                }
+            } else if (difference < 0) {
+                // Not yet published: empty.
+                return null;
+            }
+
+            position = mDequeuePosition.get();
+        }
+    }
+
+    /**
+     * @return true if no element has been claimed and not yet removed. Racy by nature; a
+     * false result may refer to an element that is still being published.
+     */
+    boolean isEmpty() {
+        return mEnqueuePosition.get() == mDequeuePosition.get();
+    }
+}
@@ -26,13 +26,20 @@ import com.microsoft.identity.common.java.util.StringUtil;
 import com.microsoft.identity.common.java.util.ThrowableUtil;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import lombok.Getter;
@@ -41,23 +48,89 @@ import lombok.Setter;
 import lombok.Synchronized;
 import lombok.experimental.Accessors;
 
+/**
+ * Common logger.
+ * <p>
+ * Level and PII checks happen on the calling thread before anything is allocated. Records that
+ * pass are put on a bounded lock-free ring buffer and formatted and handed to the
+ * {@link ILoggerCallback}s in batches on a single background thread. What happens when the buffer
+ * is full is set by {@link #setOverflowPolicy(OverflowPolicy)}.
+ */
 public class Logger {
 
+    private static final String TAG = Logger.class.getSimpleName();
+
     private static final ExecutorService sLogExecutor = Executors.newSingleThreadExecutor();
     private static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
     private static final String UNSET = "UNSET";
 
+    /**
+     * Number of records the buffer holds. Must be a power of two.
+     */
+    private static final int BUFFER_CAPACITY = 4096;
+
+    /**
+     * Maximum number of records delivered per acquisition of the loggers lock.
+     */
+    private static final int MAX_BATCH_SIZE = 128;
+
+    /**
+     * Longest a logging thread waits for room under {@link OverflowPolicy#BLOCK} before the
+     * record is dropped, and the bounds of the backoff between checks.
+     */
+    private static final long MAX_BLOCK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MIN_BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+    private static final long MAX_BLOCK_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final BoundedRingBuffer<LogRecord> sBuffer = new BoundedRingBuffer<>(BUFFER_CAPACITY);
+
+    private static final AtomicBoolean sDrainScheduled = new AtomicBoolean(false);
+
+    private static final AtomicLong sDroppedCount = new AtomicLong();
+
+    private static final Runnable sDrainTask = new Runnable() {
+        @Override
+        public void run() {
+            sDrainThread = Thread.currentThread();
+            do {
+                drain();
+                sDrainScheduled.set(false);
+                // A record published after the last poll but before the flag was cleared would
+                // otherwise be stranded until the next log call.
+            } while (!sBuffer.isEmpty() && sDrainScheduled.compareAndSet(false, true));
+        }
+    };
+
+    // The following are only touched by the drain thread.
+    private static volatile Thread sDrainThread;
+    private static final List<LogRecord> sBatch = new ArrayList<>(MAX_BATCH_SIZE + 1);
+    private static SimpleDateFormat sDateFormat;
+    private static long sLastTimestampSecond = -1;
+    private static String sLastTimestamp;
+
     // Turn on the VERBOSE level logging by default.
     @Setter()
     @Getter()
     @Accessors(prefix = "s")
-    private static LogLevel sLogLevel = LogLevel.VERBOSE;
+    private static volatile LogLevel sLogLevel = LogLevel.VERBOSE;
 
     // Disable to log PII by default.
     @Setter()
     @Getter()
     @Accessors(prefix = "s")
-    private static boolean sAllowPii = false;
+    private static volatile boolean sAllowPii = false;
+
+    // Drop the newest record when the buffer is full by default.
+    @Setter()
+    @Getter()
+    @Accessors(prefix = "s")
+    @NonNull
+    private static volatile OverflowPolicy sOverflowPolicy = OverflowPolicy.DROP_NEWEST;
+
+    // Whether any logger is registered, and whether any wants discarded records. Written under
+    // the loggers write lock, read without it on the logging fast path.
+    private static volatile boolean sHasLoggers = false;
+    private static volatile boolean sHasDetailedLoggers = false;
 
     @Accessors(prefix = "s")
     private static String sPlatformString = "";
@@ -102,14 +175,36 @@ public class Logger {
         UNDEFINED,
     }
 
+    /**
+     * What to do with a record when the log buffer is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Discard the record being logged.
+         */
+        DROP_NEWEST,
+        /**
+         * Discard the oldest buffered record to make room.
+         */
+        DROP_OLDEST,
+        /**
+         * Make the logging thread wait for room, for up to 100 ms, after which the record is
+         * dropped. Records logged from a logger callback are dropped straight away, as the
+         * callback thread is the one that makes room.
+         */
+        BLOCK,
+    }
+
     // Visible for testing
     static synchronized void resetLogger() {
         sLoggersLock.writeLock().lock();
         try {
             sLoggers.clear();
+            updateLoggerFlags();
             sAllowPii = false;
             sPlatformString = "";
             sLogLevel = LogLevel.VERBOSE;
+            sOverflowPolicy = OverflowPolicy.DROP_NEWEST;
         } finally {
             sLoggersLock.writeLock().unlock();
         }
@@ -121,6 +216,7 @@ public class Logger {
         try {
             if (callback == null) {
                 sLoggers.remove(identifier);
+                updateLoggerFlags();
                 return true;
             }
 
@@ -129,12 +225,41 @@ public class Logger {
             }
 
             sLoggers.put(identifier, callback);
+            updateLoggerFlags();
             return true;
         } finally {
             sLoggersLock.writeLock().unlock();
         }
     }
 
+    // Must be called with the loggers write lock held.
+    private static void updateLoggerFlags() {
+        boolean hasDetailedLoggers = false;
+        for (final ILoggerCallback callback : sLoggers.values()) {
+            if (callback instanceof IDetailedLoggerCallback) {
+                hasDetailedLoggers = true;
+                break;
+            }
+        }
+
+        sHasLoggers = !sLoggers.isEmpty();
+        sHasDetailedLoggers = hasDetailedLoggers;
+    }
+
+    /**
+     * Returns true if a message of the supplied level would be sent to the loggers. Callers can
+     * use this to skip building expensive messages, e.g. ones containing cache keys.
+     *
+     * @param logLevel    The level of the message.
+     * @param containsPII True if the message contains PII.
+     * @return true if the message would be logged.
+     */
+    public static boolean isLoggable(@NonNull final LogLevel logLevel, final boolean containsPII) {
+        return sHasLoggers
+                && logLevel.compareTo(sLogLevel) <= 0
+                && (sAllowPii || !containsPII);
+    }
+
     /**
      * Get only the required metadata from the DiagnosticContext
      * to plug it in the log lines.
@@ -171,7 +296,7 @@ public class Logger {
     public static void error(final String tag,
                              final String errorMessage,
                              final Throwable exception) {
-        log(tag, LogLevel.ERROR, getDiagnosticContextMetadata(), errorMessage, exception, false);
+        logWithDiagnosticContext(tag, LogLevel.ERROR, errorMessage, exception, false);
     }
 
     /**
@@ -201,7 +326,7 @@ public class Logger {
     public static void errorPII(final String tag,
                                 final String errorMessage,
                                 final Throwable exception) {
-        log(tag, LogLevel.ERROR, getDiagnosticContextMetadata(), errorMessage, exception, true);
+        logWithDiagnosticContext(tag, LogLevel.ERROR, errorMessage, exception, true);
     }
 
     /**
@@ -229,7 +354,7 @@ public class Logger {
      */
     public static void warn(final String tag,
                             final String message) {
-        log(tag, LogLevel.WARN, getDiagnosticContextMetadata(), message, null, false);
+        logWithDiagnosticContext(tag, LogLevel.WARN, message, null, false);
     }
 
     /**
@@ -255,7 +380,7 @@ public class Logger {
      */
     public static void warnPII(final String tag,
                                final String message) {
-        log(tag, LogLevel.WARN, getDiagnosticContextMetadata(), message, null, true);
+        logWithDiagnosticContext(tag, LogLevel.WARN, message, null, true);
     }
 
     /**
@@ -281,7 +406,7 @@ public class Logger {
      */
     public static void info(final String tag,
                             final String message) {
-        log(tag, Logger.LogLevel.INFO, getDiagnosticContextMetadata(), message, null, false);
+        logWithDiagnosticContext(tag, Logger.LogLevel.INFO, message, null, false);
     }
 
     /**
@@ -307,7 +432,7 @@ public class Logger {
      */
     public static void infoPII(final String tag,
                                final String message) {
-        log(tag, LogLevel.INFO, getDiagnosticContextMetadata(), message, null, true);
+        logWithDiagnosticContext(tag, LogLevel.INFO, message, null, true);
     }
 
     /**
@@ -333,7 +458,7 @@ public class Logger {
      */
     public static void verbose(final String tag,
                                final String message) {
-        log(tag, LogLevel.VERBOSE, getDiagnosticContextMetadata(), message, null, false);
+        logWithDiagnosticContext(tag, LogLevel.VERBOSE, message, null, false);
     }
 
     /**
@@ -359,7 +484,7 @@ public class Logger {
      */
     public static void verbosePII(final String tag,
                                   final String message) {
-        log(tag, LogLevel.VERBOSE, getDiagnosticContextMetadata(), message, null, true);
+        logWithDiagnosticContext(tag, LogLevel.VERBOSE, message, null, true);
     }
 
     /**
@@ -376,50 +501,169 @@ public class Logger {
         log(tag, LogLevel.VERBOSE, correlationID, message, null, true);
     }
 
+    private static void logWithDiagnosticContext(final String tag,
+                                                 @NonNull final LogLevel logLevel,
+                                                 final String message,
+                                                 final Throwable throwable,
+                                                 final boolean containsPII) {
+        // Check before reading the diagnostic context, which builds a string.
+        if (!shouldEnqueue(logLevel, containsPII)) {
+            return;
+        }
+
+        log(tag, logLevel, getDiagnosticContextMetadata(), message, throwable, containsPII);
+    }
+
     private static void log(final String tag,
                             @NonNull final LogLevel logLevel,
                             final String correlationID,
                             final String message,
                             final Throwable throwable,
                             final boolean containsPII) {
+        if (!shouldEnqueue(logLevel, containsPII)) {
+            return;
+        }
+
+        enqueue(new LogRecord(tag, logLevel, correlationID, message, throwable, containsPII,
+                System.currentTimeMillis()));
+    }
 
-        final String dateTimeStamp = getUTCDateTimeAsString();
-
-        sLogExecutor.execute(new Runnable() {
-            @Override
-            public void run() {
-                //Format the log message.
-                final String logMessage = formatMessage(correlationID, message, dateTimeStamp, throwable);
-
-                sLoggersLock.readLock().lock();
-                try {
-                    for (final String loggerCallbackKey : sLoggers.keySet()) {
-                        try {
-                            final ILoggerCallback callback = sLoggers.get(loggerCallbackKey);
-                            if (callback != null) {
-                                if (logLevel.compareTo(sLogLevel) > 0) {
-                                    logDiscardedLogIfApplicable(logMessage, callback, tag, logLevel, containsPII);
-                                    return;
-                                }
-
-                                // Developer turns off PII logging, if the log message contains any PII,
-                                // we should not send it.
-                                if (!sAllowPii && containsPII) {
-                                    logDiscardedLogIfApplicable(logMessage, callback, tag, logLevel, containsPII);
-                                    return;
-                                }
-
-                                callback.log(tag, logLevel, logMessage, containsPII);
-                            }
-                        } catch (final Exception e) {
-                            // Do nothing.
+    /**
+     * Discarded records are only of interest to {@link IDetailedLoggerCallback}s, so they are
+     * dropped on the calling thread unless one is registered.
+     */
+    private static boolean shouldEnqueue(@NonNull final LogLevel logLevel, final boolean containsPII) {
+        return isLoggable(logLevel, containsPII) || sHasDetailedLoggers;
+    }
+
+    private static void enqueue(@NonNull final LogRecord record) {
+        if (!sBuffer.offer(record)) {
+            final OverflowPolicy overflowPolicy = sOverflowPolicy;
+
+            if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+                while (!sBuffer.offer(record)) {
+                    if (sBuffer.poll() != null) {
+                        sDroppedCount.incrementAndGet();
+                    }
+                }
+            } else if (overflowPolicy == OverflowPolicy.BLOCK
+                    && Thread.currentThread() != sDrainThread) {
+                scheduleDrain();
+                if (!offerWithBackoff(record)) {
+                    sDroppedCount.incrementAndGet();
+                    return;
+                }
+            } else {
+                sDroppedCount.incrementAndGet();
+                return;
+            }
+        }
+
+        scheduleDrain();
+    }
+
+    /**
+     * Waits for room in the buffer, parking with an exponential backoff, for at most
+     * {@link #MAX_BLOCK_NANOS}.
+     *
+     * @return true if the record was buffered, false if it timed out or the thread was interrupted.
+     */
+    private static boolean offerWithBackoff(@NonNull final LogRecord record) {
+        final long deadline = System.nanoTime() + MAX_BLOCK_NANOS;
+        long parkNanos = MIN_BLOCK_PARK_NANOS;
+
+        while (!sBuffer.offer(record)) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+
+            LockSupport.parkNanos(Math.min(parkNanos, remaining));
+            parkNanos = Math.min(parkNanos * 2, MAX_BLOCK_PARK_NANOS);
+        }
+
+        return true;
+    }
+
+    private static void scheduleDrain() {
+        if (sDrainScheduled.compareAndSet(false, true)) {
+            try {
+                sLogExecutor.execute(sDrainTask);
+            } catch (final RejectedExecutionException e) {
+                sDrainScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Delivers buffered records to the loggers until the buffer is empty, taking the loggers lock
+     * once per batch. Runs on the log executor only.
+     */
+    private static void drain() {
+        while (true) {
+            final long dropped = sDroppedCount.getAndSet(0);
+            if (dropped > 0) {
+                sBatch.add(new LogRecord(TAG, LogLevel.WARN, null,
+                        "Dropped [" + dropped + "] log records because the log buffer was full.",
+                        null, false, System.currentTimeMillis()));
+            }
+
+            LogRecord record;
+            while (sBatch.size() < MAX_BATCH_SIZE && (record = sBuffer.poll()) != null) {
+                sBatch.add(record);
+            }
+
+            if (sBatch.isEmpty()) {
+                return;
+            }
+
+            try {
+                deliver(sBatch);
+            } finally {
+                sBatch.clear();
+            }
+        }
+    }
+
+    private static void deliver(@NonNull final List<LogRecord> batch) {
+        sLoggersLock.readLock().lock();
+        try {
+            for (final LogRecord record : batch) {
+                final boolean isLoggable = isLoggable(record.mLogLevel, record.mContainsPII);
+                String logMessage = null;
+
+                for (final ILoggerCallback callback : sLoggers.values()) {
+                    try {
+                        if (callback == null) {
+                            continue;
                         }
+
+                        // Developer turns off PII logging, or the level is filtered out: the
+                        // message is discarded.
+                        if (!isLoggable && !(callback instanceof IDetailedLoggerCallback)) {
+                            continue;
+                        }
+
+                        // Format the log message, once per record.
+                        if (logMessage == null) {
+                            logMessage = formatMessage(record.mCorrelationId, record.mMessage,
+                                    getUTCDateTimeAsString(record.mTimestampMillis), record.mThrowable);
+                        }
+
+                        if (isLoggable) {
+                            callback.log(record.mTag, record.mLogLevel, logMessage, record.mContainsPII);
+                        } else {
+                            logDiscardedLogIfApplicable(logMessage, callback, record.mTag,
+                                    record.mLogLevel, record.mContainsPII);
+                        }
+                    } catch (final Exception e) {
+                        // Do nothing.
                     }
-                } finally {
-                    sLoggersLock.readLock().unlock();
                 }
             }
-        });
+        } finally {
+            sLoggersLock.readLock().unlock();
+        }
     }
 
     /**
@@ -451,11 +695,52 @@ public class Logger {
                 + (throwable == null ? "" : '\n' + ThrowableUtil.getStackTraceAsString(throwable));
     }
 
-    private static String getUTCDateTimeAsString() {
-        final SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT, Locale.getDefault());
-        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    /**
+     * Formats a timestamp, reusing the previous result within the same second. Runs on the log
+     * executor only, so the format does not need to be thread-safe.
+     */
+    private static String getUTCDateTimeAsString(final long timestampMillis) {
+        final long second = timestampMillis / 1000;
+
+        if (second != sLastTimestampSecond) {
+            if (sDateFormat == null) {
+                sDateFormat = new SimpleDateFormat(DATE_FORMAT, Locale.getDefault());
+                sDateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+            }
+
+            sLastTimestamp = sDateFormat.format(new Date(timestampMillis));
+            sLastTimestampSecond = second;
+        }
 
-        return dateFormat.format(new Date());
+        return sLastTimestamp;
     }
-}
 
+    /**
+     * A log call captured on the calling thread, formatted later on the log executor.
+     */
+    private static final class LogRecord {
+        private final String mTag;
+        private final LogLevel mLogLevel;
+        private final String mCorrelationId;
+        private final String mMessage;
+        private final Throwable mThrowable;
+        private final boolean mContainsPII;
+        private final long mTimestampMillis;
+
+        LogRecord(final String tag,
+                  @NonNull final LogLevel logLevel,
+                  final String correlationId,
+                  final String message,
+                  final Throwable throwable,
+                  final boolean containsPII,
+                  final long timestampMillis) {
+            mTag = tag;
+            mLogLevel = logLevel;
+            mCorrelationId = correlationId;
+            mMessage = message;
+            mThrowable = throwable;
+            mContainsPII = containsPII;
+            mTimestampMillis = timestampMillis;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+package com.microsoft.identity.common.java.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import lombok.NonNull;
+
+/**
+ * The values recorded by a {@link LatencyHistogram} at one point in time. All durations are in
+ * nanoseconds.
+ */
+public final class HistogramSnapshot {
+
+    private final String mName;
+    private final long[] mCounts;
+    private final long mCount;
+    private final long mTotalNanos;
+    private final long mMinNanos;
+    private final long mMaxNanos;
+
+    HistogramSnapshot(@NonNull final String name,
+                      @NonNull final long[] counts,
+                      final long totalNanos,
+                      final long minNanos,
+                      final long maxNanos) {
+        mName = name;
+        mCounts = counts;
+
+        long count = 0;
+        for (final long bucketCount : counts) {
+            count += bucketCount;
+        }
+        mCount = count;
+
+        mTotalNanos = totalNanos;
+        mMinNanos = count == 0 ? 0 : minNanos;
+        mMaxNanos = maxNanos;
+    }
+
+    /**
+     * @return The name of the histogram.
+     */
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * @return The number of values recorded.
+     */
+    public long getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return The smallest value recorded, or 0 if none were.
+     */
+    public long getMinNanos() {
+        return mMinNanos;
+    }
+
+    /**
+     * @return The largest value recorded, or 0 if none were.
+     */
+    public long getMaxNanos() {
+        return mMaxNanos;
+    }
+
+    /**
+     * @return The mean of the values recorded, or 0 if none were.
+     */
+    public long getMeanNanos() {
+        return mCount == 0 ? 0 : mTotalNanos / mCount;
+    }
+
+    /**
+     * Gets the value that the supplied percentage of the recorded values are less than or equal to,
+     * to within the precision of the histogram.
+     *
+     * @param percentile The percentile, from 0 to 100. e.g. 99 for the p99.
+     * @return The value at that percentile, or 0 if no values were recorded.
+     */
+    public long getValueAtPercentileNanos(final double percentile) {
+        if (mCount == 0) {
+            return 0;
+        }
+
+        final double boundedPercentile = Math.min(100, Math.max(0, percentile));
+        final long rank = Math.max(1, (long) Math.ceil(boundedPercentile / 100 * mCount));
+
+        long seen = 0;
+        for (int i = 0; i < mCounts.length; i++) {
+            seen += mCounts[i];
+            if (seen >= rank) {
+                return Math.min(mMaxNanos, LatencyHistogram.getBucketUpperBound(i));
+            }
+        }
+
+        return mMaxNanos;
+    }
+
+    /**
+     * As {@link #getValueAtPercentileNanos(double)}, in milliseconds.
+     */
+    public double getValueAtPercentileMillis(final double percentile) {
+        return getValueAtPercentileNanos(percentile) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return mName
+                + "{count=" + mCount
+                + ", min=" + mMinNanos
+                + ", mean=" + getMeanNanos()
+                + ", p50=" + getValueAtPercentileNanos(50)
+                + ", p90=" + getValueAtPercentileNanos(90)
+                + ", p99=" + getValueAtPercentileNanos(99)
+                + ", max=" + mMaxNanos
+                + "}";
+    }
+}
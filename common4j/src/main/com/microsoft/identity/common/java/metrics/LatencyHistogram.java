@@ -0,0 +1,171 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+package com.microsoft.identity.common.java.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import lombok.NonNull;
+
+/**
+ * A histogram of durations, in nanoseconds, safe to record into from any thread without locking.
+ * <p>
+ * Like an HdrHistogram, values are counted in buckets whose width grows with the value: each power
+ * of two is split into {@link #SUB_BUCKET_COUNT} equal buckets, so any recorded value is reported
+ * within 1/{@link #SUB_BUCKET_COUNT} of its true value, from nanoseconds up to centuries, in a
+ * fixed amount of memory.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /**
+     * The number of buckets each power of two is split into.
+     */
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    // Values below SUB_BUCKET_COUNT each have their own bucket; each power of two from there up to
+    // 2^62 (the largest non-negative long) has SUB_BUCKET_COUNT.
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final String mName;
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mTotalNanos = new AtomicLong();
+    private final AtomicLong mMinNanos = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong mMaxNanos = new AtomicLong();
+
+    LatencyHistogram(@NonNull final String name) {
+        mName = name;
+    }
+
+    /**
+     * @return The name this histogram is registered under.
+     */
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Records a duration. Negative durations are recorded as zero.
+     *
+     * @param nanos The duration, in nanoseconds.
+     */
+    public void record(final long nanos) {
+        final long value = Math.max(0, nanos);
+
+        mCounts.incrementAndGet(getBucketIndex(value));
+        mTotalNanos.addAndGet(value);
+
+        long min = mMinNanos.get();
+        while (value < min && !mMinNanos.compareAndSet(min, value)) {
+            min = mMinNanos.get();
+        }
+
+        long max = mMaxNanos.get();
+        while (value > max && !mMaxNanos.compareAndSet(max, value)) {
+            max = mMaxNanos.get();
+        }
+    }
+
+    /**
+     * Records the time elapsed since the supplied start time.
+     *
+     * @param startNanos The start time, from {@link System#nanoTime()}.
+     */
+    public void recordSince(final long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param duration The duration.
+     * @param unit     The unit of the duration.
+     */
+    public void record(final long duration, @NonNull final TimeUnit unit) {
+        record(unit.toNanos(duration));
+    }
+
+    /**
+     * @return A copy of the values recorded so far.
+     */
+    public HistogramSnapshot getSnapshot() {
+        final long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = mCounts.get(i);
+        }
+
+        return new HistogramSnapshot(
+                mName,
+                counts,
+                mTotalNanos.get(),
+                mMinNanos.get(),
+                mMaxNanos.get()
+        );
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mCounts.set(i, 0);
+        }
+        mTotalNanos.set(0);
+        mMinNanos.set(Long.MAX_VALUE);
+        mMaxNanos.set(0);
+    }
+
+    static int getBucketIndex(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        // For a value whose highest set bit is bit n, the bucket group is n - SUB_BUCKET_BITS + 1,
+        // and the sub bucket is the SUB_BUCKET_BITS bits below the highest set bit.
+        final int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        final int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+        return ((shift + 1) << SUB_BUCKET_BITS) + subBucket;
+    }
+
+    /**
+     * @return The smallest value counted in the supplied bucket.
+     */
+    static long getBucketLowerBound(final int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        final int group = index >>> SUB_BUCKET_BITS;
+        final long subBucket = index & (SUB_BUCKET_COUNT - 1);
+        return (SUB_BUCKET_COUNT + subBucket) << (group - 1);
+    }
+
+    /**
+     * @return The largest value counted in the supplied bucket.
+     */
+    static long getBucketUpperBound(final int index) {
+        if (index + 1 >= BUCKET_COUNT) {
+            return Long.MAX_VALUE;
+        }
+        return getBucketLowerBound(index + 1) - 1;
+    }
+}
@@ -0,0 +1,122 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+package com.microsoft.identity.common.java.metrics;
+
+/**
+ * Names of the metrics recorded by this library.
+ */
+public final class MetricNames {
+
+    private MetricNames() {
+    }
+
+    /**
+     * Prefix of the histograms of the time tasks spend queued on each dispatcher lane; suffixed
+     * with the lane name.
+     */
+    public static final String DISPATCHER_QUEUE_WAIT = "dispatcher.queue_wait.";
+
+    /**
+     * Prefix of the counters of tasks rejected by each dispatcher lane; suffixed with the lane name.
+     */
+    public static final String DISPATCHER_REJECTED = "dispatcher.rejected.";
+
+    /**
+     * Time from submitting a silent token request to its result being available.
+     */
+    public static final String SILENT_TOKEN_ACQUISITION = "silent_token.acquisition";
+
+    /**
+     * Time to find the credentials matching a query in the account/credential cache.
+     */
+    public static final String CACHE_LOOKUP = "cache.lookup";
+
+    /**
+     * Prefix of the histograms of each operation on a simple (list) cache; suffixed with the
+     * operation name.
+     */
+    public static final String SIMPLE_CACHE_OPERATION = "simple_cache.";
+
+    /**
+     * Time to encrypt values for storage.
+     */
+    public static final String STORAGE_ENCRYPTION = "storage.encryption";
+
+    /**
+     * Time to decrypt a stored value.
+     */
+    public static final String STORAGE_DECRYPTION = "storage.decryption";
+
+    /**
+     * Time to send an HTTP request and read its response, including any retries.
+     */
+    public static final String HTTP_REQUEST = "http.request";
+
+    /**
+     * Time to decode the claims of a JWT that was not in the claims cache.
+     */
+    public static final String TOKEN_PARSE = "token.parse";
+
+    /**
+     * The number of JWT claim lookups served from the claims cache.
+     */
+    public static final String TOKEN_PARSE_CACHE_HIT = "token.parse.cache_hit";
+
+    /**
+     * Reads of a SharedPreferences-backed store served from its in-memory value cache.
+     */
+    public static final String SHARED_PREFERENCES_CACHE_HIT = "shared_preferences.cache_hit";
+
+    /**
+     * Reads of a SharedPreferences-backed store that had to go to the file (and decrypt, if
+     * the store is encrypted).
+     */
+    public static final String SHARED_PREFERENCES_CACHE_MISS = "shared_preferences.cache_miss";
+
+    /**
+     * Prefix of the histograms of the time taken by broker calls served by each IPC strategy;
+     * suffixed with the strategy type.
+     */
+    public static final String BROKER_IPC_CALL = "broker.ipc.";
+
+    /**
+     * Prefix of the counters of failed attempts to connect to the broker with each IPC strategy;
+     * suffixed with the strategy type.
+     */
+    public static final String BROKER_IPC_CONNECTION_FAILURE = "broker.ipc_connection_failure.";
+
+    /**
+     * Time taken by each token request made to migrate ADAL tokens.
+     */
+    public static final String TOKEN_MIGRATION_REQUEST = "token_migration.request";
+
+    /**
+     * The number of ADAL token migration requests that did not produce a token.
+     */
+    public static final String TOKEN_MIGRATION_FAILURE = "token_migration.failure";
+
+    /**
+     * The number of ADAL token migration requests abandoned after timing out.
+     */
+    public static final String TOKEN_MIGRATION_TIMEOUT = "token_migration.timeout";
+}
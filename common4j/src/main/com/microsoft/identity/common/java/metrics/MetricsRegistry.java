@@ -0,0 +1,158 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+package com.microsoft.identity.common.java.metrics;
+
+import com.microsoft.identity.common.java.logging.Logger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+import lombok.NonNull;
+
+/**
+ * Process-wide registry of {@link Counter}s and {@link LatencyHistogram}s.
+ * <p>
+ * Recording a value takes a few atomic operations and no locks, so metrics can be recorded on hot
+ * paths. Callers should look a metric up once and keep the reference: metrics are never removed
+ * from the registry, and {@link #reset()} clears their values in place.
+ * <p>
+ * Nothing is reported on its own; call {@link #export()} to pass the current values to the
+ * {@link IMetricsExporter}, or {@link #getSnapshot()} to read them.
+ */
+public final class MetricsRegistry {
+
+    private static final String TAG = MetricsRegistry.class.getSimpleName();
+
+    private final ConcurrentMap<String, Counter> mCounters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> mHistograms = new ConcurrentHashMap<>();
+    private volatile IMetricsExporter mExporter;
+
+    /* package */ MetricsRegistry() {
+    }
+
+    private static class MetricsRegistryHolder {
+        static final MetricsRegistry INSTANCE = new MetricsRegistry();
+    }
+
+    public static MetricsRegistry getInstance() {
+        return MetricsRegistryHolder.INSTANCE;
+    }
+
+    /**
+     * Gets the counter with the supplied name, creating it if needed.
+     */
+    @NonNull
+    public Counter getCounter(@NonNull final String name) {
+        Counter counter = mCounters.get(name);
+
+        if (counter == null) {
+            final Counter newCounter = new Counter();
+            counter = mCounters.putIfAbsent(name, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+
+        return counter;
+    }
+
+    /**
+     * Gets the histogram with the supplied name, creating it if needed.
+     */
+    @NonNull
+    public LatencyHistogram getHistogram(@NonNull final String name) {
+        LatencyHistogram histogram = mHistograms.get(name);
+
+        if (histogram == null) {
+            final LatencyHistogram newHistogram = new LatencyHistogram(name);
+            histogram = mHistograms.putIfAbsent(name, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+            }
+        }
+
+        return histogram;
+    }
+
+    /**
+     * Sets the exporter that {@link #export()} passes metrics to.
+     *
+     * @param exporter The exporter, or null to stop exporting.
+     */
+    public void setExporter(@Nullable final IMetricsExporter exporter) {
+        mExporter = exporter;
+    }
+
+    /**
+     * @return The current value of every metric.
+     */
+    @NonNull
+    public MetricsSnapshot getSnapshot() {
+        final Map<String, Long> counters = new HashMap<>();
+        for (final Map.Entry<String, Counter> entry : mCounters.entrySet()) {
+            counters.put(entry.getKey(), entry.getValue().getCount());
+        }
+
+        final Map<String, HistogramSnapshot> histograms = new HashMap<>();
+        for (final Map.Entry<String, LatencyHistogram> entry : mHistograms.entrySet()) {
+            histograms.put(entry.getKey(), entry.getValue().getSnapshot());
+        }
+
+        return new MetricsSnapshot(counters, histograms);
+    }
+
+    /**
+     * Passes the current value of every metric to the exporter, if one is set. Exceptions thrown
+     * by the exporter are logged and swallowed.
+     */
+    public void export() {
+        final String methodName = ":export";
+        final IMetricsExporter exporter = mExporter;
+
+        if (exporter == null) {
+            return;
+        }
+
+        try {
+            exporter.onExport(getSnapshot());
+        } catch (final RuntimeException e) {
+            Logger.error(TAG + methodName, "Metrics exporter failed", e);
+        }
+    }
+
+    /**
+     * Clears the values of every metric, e.g. after they have been exported.
+     */
+    public void reset() {
+        for (final Counter counter : mCounters.values()) {
+            counter.reset();
+        }
+
+        for (final LatencyHistogram histogram : mHistograms.values()) {
+            histogram.reset();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+package com.microsoft.identity.common.java.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+
+import lombok.NonNull;
+
+/**
+ * The values of every metric in a {@link MetricsRegistry} at one point in time.
+ */
+public final class MetricsSnapshot {
+
+    private final Map<String, Long> mCounters;
+    private final Map<String, HistogramSnapshot> mHistograms;
+
+    MetricsSnapshot(@NonNull final Map<String, Long> counters,
+                    @NonNull final Map<String, HistogramSnapshot> histograms) {
+        mCounters = Collections.unmodifiableMap(counters);
+        mHistograms = Collections.unmodifiableMap(histograms);
+    }
+
+    /**
+     * @return The value of each counter, by name.
+     */
+    public Map<String, Long> getCounters() {
+        return mCounters;
+    }
+
+    /**
+     * @return The snapshot of each histogram, by name.
+     */
+    public Map<String, HistogramSnapshot> getHistograms() {
+        return mHistograms;
+    }
+}
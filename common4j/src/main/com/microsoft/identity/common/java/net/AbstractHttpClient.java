@@ -22,6 +22,9 @@
 // THE SOFTWARE.
 package com.microsoft.identity.common.java.net;
 
+import com.microsoft.identity.common.java.AuthenticationConstants;
+
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URL;
 import java.util.Map;
@@ -53,6 +56,46 @@ public abstract class AbstractHttpClient implements HttpClient {
                                         @Nullable final byte[] requestContent,
                                         @Nullable final SSLContext sslContext) throws IOException;
 
+    /**
+     * Sends an HTTP request and decodes the body of the response with the supplied decoder, if it
+     * accepts the response's status code; see {@link HttpResponse#getDecodedBody()}.
+     * <p>
+     * Clients that can hand the decoder the connection's stream override this; by default, the
+     * body is read into a String as usual and decoded from it.
+     */
+    public HttpResponse method(@NonNull final HttpMethod httpMethod,
+                               @NonNull final URL requestUrl,
+                               @NonNull final Map<String, String> requestHeaders,
+                               @Nullable final byte[] requestContent,
+                               @Nullable final SSLContext sslContext,
+                               @NonNull final IResponseBodyDecoder<?> decoder) throws IOException {
+        final HttpResponse response = method(httpMethod, requestUrl, requestHeaders, requestContent, sslContext);
+        if (response.getBody() == null || !decoder.shouldDecode(response.getStatusCode())) {
+            return response;
+        }
+
+        return new HttpResponse(
+                response.getDate(),
+                response.getStatusCode(),
+                null,
+                response.getHeaders(),
+                decoder.decode(new ByteArrayInputStream(response.getBody().getBytes(AuthenticationConstants.CHARSET_UTF8)))
+        );
+    }
+
+    /**
+     * Sends an HTTP POST request, decoding the body of the response with the supplied decoder.
+     *
+     * @see #method(HttpMethod, URL, Map, byte[], SSLContext, IResponseBodyDecoder)
+     */
+    public HttpResponse post(@NonNull final URL requestUrl,
+                             @NonNull final Map<String, String> requestHeaders,
+                             @Nullable final byte[] requestContent,
+                             @Nullable final SSLContext sslContext,
+                             @NonNull final IResponseBodyDecoder<?> decoder) throws IOException {
+        return method(HttpMethod.POST, requestUrl, requestHeaders, requestContent, sslContext, decoder);
+    }
+
     @Override
     public HttpResponse put(@NonNull final URL requestUrl,
                             @NonNull final Map<String, String> requestHeaders,
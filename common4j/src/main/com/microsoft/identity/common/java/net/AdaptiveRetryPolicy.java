@@ -0,0 +1,387 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.net;
+
+import com.microsoft.identity.common.java.logging.Logger;
+import com.microsoft.identity.common.java.util.ported.Function;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cz.msebera.android.httpclient.client.utils.DateUtils;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.NonNull;
+
+/**
+ * A retry policy for talking to a service that may be overloaded.
+ * <ul>
+ * <li>Waits between attempts follow "decorrelated jitter": each is drawn at random between
+ * {@code baseDelayMs} and three times the previous wait, capped at {@code maxDelayMs}, so clients
+ * that failed together do not retry together.</li>
+ * <li>A Retry-After header on the response replaces the computed wait. If the server asks for more
+ * than {@code maxRetryAfterMs}, the response is returned rather than holding the thread.</li>
+ * <li>A call to {@link #attempt} takes at most about {@code maxTotalTimeMs}: waits are cut short to
+ * the time left, and once it is spent (or the server asks to wait past it) the last response is
+ * returned.</li>
+ * <li>Retries draw from a {@link RetryBudget} shared by every request made with this policy, which
+ * is refilled by requests that succeed; once it is spent, failures are no longer retried, so an
+ * outage does not multiply the request volume.</li>
+ * <li>After {@code failureThreshold} failed attempts in a row to a host, the circuit to that host
+ * opens: requests to it fail fast with a {@link CircuitOpenException} for {@code openCircuitMs}
+ * (or as long as the server's Retry-After asks, if longer). A single request is then let through,
+ * and closes the circuit if it succeeds.</li>
+ * </ul>
+ * Use one instance for all requests to get a process-wide budget and circuits.
+ */
+@AllArgsConstructor
+@Builder
+@ThreadSafe
+public class AdaptiveRetryPolicy implements IPerHostRetryPolicy<HttpResponse> {
+
+    private static final String TAG = AdaptiveRetryPolicy.class.getSimpleName();
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    // Circuits for requests made through attempt(Callable), which does not know the host.
+    private static final String UNKNOWN_HOST = "";
+
+    private static final Random sRandom = new Random();
+
+    /**
+     * Whether a failed attempt may be retried; 429, 500, 503 and 504 by default.
+     */
+    @Builder.Default
+    private final Function<HttpResponse, Boolean> isRetryable = new Function<HttpResponse, Boolean>() {
+        @Override
+        public Boolean apply(HttpResponse response) {
+            return response.getStatusCode() == HTTP_TOO_MANY_REQUESTS
+                    || UrlConnectionHttpClient.isRetryableError(response.getStatusCode());
+        }
+    };
+
+    /**
+     * Whether an attempt that threw may be retried; socket timeouts by default.
+     */
+    @Builder.Default
+    private final Function<Exception, Boolean> isRetryableException = new Function<Exception, Boolean>() {
+        @Override
+        public Boolean apply(Exception e) {
+            return e instanceof SocketTimeoutException;
+        }
+    };
+
+    @Builder.Default
+    private final int maxRetries = 2;
+    @Builder.Default
+    private final long baseDelayMs = 500;
+    @Builder.Default
+    private final long maxDelayMs = 10000;
+    @Builder.Default
+    private final long maxRetryAfterMs = 10000;
+    @Builder.Default
+    private final long maxTotalTimeMs = 30000;
+    @Builder.Default
+    private final int failureThreshold = 5;
+    @Builder.Default
+    private final long openCircuitMs = 30000;
+    @Builder.Default
+    private final RetryBudget retryBudget = new RetryBudget(10, 0.1);
+
+    private final ConcurrentMap<String, Circuit> mCircuits = new ConcurrentHashMap<>();
+
+    @Override
+    public HttpResponse attempt(@NonNull final Callable<HttpResponse> supplier) throws IOException {
+        return attempt(UNKNOWN_HOST, supplier);
+    }
+
+    @Override
+    public HttpResponse attempt(@NonNull final String host,
+                                @NonNull final Callable<HttpResponse> supplier) throws IOException {
+        final String methodName = ":attempt";
+        final Circuit circuit = getCircuit(host);
+        final long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxTotalTimeMs);
+        long previousDelayMs = baseDelayMs;
+        int retriesLeft = maxRetries;
+
+        while (true) {
+            circuit.acquire(host);
+
+            HttpResponse response = null;
+            Exception exception = null;
+            try {
+                response = supplier.call();
+            } catch (final Exception e) {
+                exception = e;
+            }
+
+            final boolean failed = exception != null
+                    ? isRetryableException.apply(exception)
+                    : isRetryable.apply(response);
+            final long retryAfterMs = response == null ? -1 : getRetryAfterMs(response);
+
+            if (!failed) {
+                if (exception == null) {
+                    circuit.onSuccess();
+                    retryBudget.deposit();
+                }
+                return returnOrThrow(response, exception);
+            }
+
+            circuit.onFailure(retryAfterMs);
+
+            if (retriesLeft-- <= 0 || circuit.isOpen()) {
+                return returnOrThrow(response, exception);
+            }
+
+            final long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+            if (remainingMs <= 0) {
+                Logger.info(TAG + methodName, "Not retrying, the request is out of time.");
+                return returnOrThrow(response, exception);
+            }
+
+            final long delayMs;
+            if (retryAfterMs >= 0) {
+                if (retryAfterMs > Math.min(maxRetryAfterMs, remainingMs)) {
+                    Logger.info(TAG + methodName, "Not retrying, server asked to wait " + retryAfterMs + " ms.");
+                    return returnOrThrow(response, exception);
+                }
+                delayMs = retryAfterMs;
+            } else {
+                previousDelayMs = nextDelayMs(previousDelayMs);
+                delayMs = Math.min(previousDelayMs, remainingMs);
+            }
+
+            if (!retryBudget.tryWithdraw()) {
+                Logger.info(TAG + methodName, "Not retrying, the retry budget is spent.");
+                return returnOrThrow(response, exception);
+            }
+
+            if (!sleep(delayMs)) {
+                return returnOrThrow(response, exception);
+            }
+        }
+    }
+
+    /**
+     * Decorrelated jitter: a random wait between the base delay and three times the previous one.
+     */
+    private long nextDelayMs(final long previousDelayMs) {
+        final long upperBound = Math.min(maxDelayMs, previousDelayMs * 3);
+        if (upperBound <= baseDelayMs) {
+            return Math.min(maxDelayMs, baseDelayMs);
+        }
+
+        final double random;
+        synchronized (sRandom) {
+            random = sRandom.nextDouble();
+        }
+        return baseDelayMs + (long) (random * (upperBound - baseDelayMs));
+    }
+
+    private Circuit getCircuit(@NonNull final String host) {
+        Circuit circuit = mCircuits.get(host);
+        if (circuit == null) {
+            final Circuit newCircuit = new Circuit();
+            circuit = mCircuits.putIfAbsent(host, newCircuit);
+            if (circuit == null) {
+                circuit = newCircuit;
+            }
+        }
+        return circuit;
+    }
+
+    private static HttpResponse returnOrThrow(@Nullable final HttpResponse response,
+                                              @Nullable final Exception exception) throws IOException {
+        if (exception == null) {
+            return response;
+        }
+        if (exception instanceof IOException) {
+            throw (IOException) exception;
+        }
+        throw new RetryFailedException(exception);
+    }
+
+    /**
+     * Gets the wait the server asked for in a Retry-After header, either a number of seconds or a
+     * date.
+     *
+     * @return the wait in milliseconds, or -1 if there is no valid header.
+     */
+    static long getRetryAfterMs(@NonNull final HttpResponse response) {
+        final Map<String, List<String>> headers = response.getHeaders();
+        if (headers == null) {
+            return -1;
+        }
+
+        for (final Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (!HttpConstants.HeaderField.RETRY_AFTER.equalsIgnoreCase(header.getKey())
+                    || header.getValue() == null
+                    || header.getValue().isEmpty()) {
+                continue;
+            }
+
+            final String value = header.getValue().get(0).trim();
+            try {
+                return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(value)));
+            } catch (final NumberFormatException e) {
+                final Date date = DateUtils.parseDate(value);
+                if (date != null) {
+                    return Math.max(0, date.getTime() - System.currentTimeMillis());
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Just a sleep function that allows for a return to break the loop.
+     * @return true if we successfully waited, false if interrupted.
+     */
+    private static boolean sleep(final long delayMs) {
+        try {
+            Thread.sleep(delayMs);
+            return true;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * A token bucket limiting retries across all requests. Each retry takes a token; each
+     * successful request returns {@code tokenRatio} of one, up to {@code maxTokens}.
+     */
+    @ThreadSafe
+    public static final class RetryBudget {
+        // Tokens are stored in thousandths.
+        private static final long SCALE = 1000;
+
+        private final long mMaxTokens;
+        private final long mDepositPerSuccess;
+        private final AtomicLong mTokens;
+
+        /**
+         * Constructor.
+         * @param maxTokens the number of retries that can be made back to back; the bucket starts full.
+         * @param tokenRatio the fraction of a retry earned by each successful request.
+         */
+        public RetryBudget(final int maxTokens, final double tokenRatio) {
+            mMaxTokens = maxTokens * SCALE;
+            mDepositPerSuccess = (long) (tokenRatio * SCALE);
+            mTokens = new AtomicLong(mMaxTokens);
+        }
+
+        /**
+         * @return true if a token was taken for a retry, false if the budget is spent.
+         */
+        public boolean tryWithdraw() {
+            while (true) {
+                final long tokens = mTokens.get();
+                if (tokens < SCALE) {
+                    return false;
+                }
+                if (mTokens.compareAndSet(tokens, tokens - SCALE)) {
+                    return true;
+                }
+            }
+        }
+
+        void deposit() {
+            while (true) {
+                final long tokens = mTokens.get();
+                final long newTokens = Math.min(mMaxTokens, tokens + mDepositPerSuccess);
+                if (tokens == newTokens || mTokens.compareAndSet(tokens, newTokens)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * The failure count and open state of the requests to one host.
+     */
+    private final class Circuit {
+        private final AtomicInteger mConsecutiveFailures = new AtomicInteger();
+
+        // When the circuit closes again, from System.nanoTime(); 0 while it is closed.
+        private final AtomicLong mOpenUntilNanos = new AtomicLong();
+
+        /**
+         * Throws if the circuit is open. Once it has been open for long enough, lets exactly one
+         * caller through to probe the host, keeping the circuit open for everyone else.
+         */
+        void acquire(@NonNull final String host) throws CircuitOpenException {
+            while (true) {
+                final long openUntil = mOpenUntilNanos.get();
+                if (openUntil == 0) {
+                    return;
+                }
+
+                final long now = System.nanoTime();
+                if (now - openUntil < 0) {
+                    throw new CircuitOpenException(host, TimeUnit.NANOSECONDS.toMillis(openUntil - now));
+                }
+
+                if (mOpenUntilNanos.compareAndSet(openUntil, now + TimeUnit.MILLISECONDS.toNanos(openCircuitMs))) {
+                    return;
+                }
+            }
+        }
+
+        boolean isOpen() {
+            return mOpenUntilNanos.get() != 0;
+        }
+
+        void onSuccess() {
+            mConsecutiveFailures.set(0);
+            mOpenUntilNanos.set(0);
+        }
+
+        void onFailure(final long retryAfterMs) {
+            if (mConsecutiveFailures.incrementAndGet() >= failureThreshold) {
+                final long openMs = Math.max(openCircuitMs, retryAfterMs);
+                // 0 means closed, so never store it.
+                final long openUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(openMs);
+                mOpenUntilNanos.set(openUntil == 0 ? 1 : openUntil);
+                Logger.warn(TAG + ":onFailure", "Suspending requests for " + openMs + " ms after "
+                        + mConsecutiveFailures.get() + " failures in a row.");
+            }
+        }
+    }
+}
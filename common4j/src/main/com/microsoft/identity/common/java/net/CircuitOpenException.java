@@ -0,0 +1,44 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.net;
+
+import java.io.IOException;
+
+import lombok.NonNull;
+
+/**
+ * Thrown by {@link AdaptiveRetryPolicy} instead of sending a request to a host whose recent
+ * requests kept failing, until the host has had time to recover.
+ */
+public class CircuitOpenException extends IOException {
+    private static final long serialVersionUID = -3519398312485210367L;
+
+    /**
+     * Constructor.
+     * @param host the host requests are not being sent to.
+     * @param retryInMillis how long until a request to the host will be tried again.
+     */
+    public CircuitOpenException(@NonNull final String host, final long retryInMillis) {
+        super("Requests to " + host + " are suspended for another " + retryInMillis + " ms after repeated failures.");
+    }
+}
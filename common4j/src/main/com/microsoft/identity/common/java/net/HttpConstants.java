@@ -48,6 +48,11 @@ public final class HttpConstants {
          * Header used to track SPE Ring for telemetry.
          */
         public static final String X_MS_CLITELEM = "x-ms-clitelem";
+
+        /**
+         * @see <a href="https://tools.ietf.org/html/rfc7231#section-7.1.3">RFC-7231</a>
+         */
+        public static final String RETRY_AFTER = "Retry-After";
     }
 
     /**
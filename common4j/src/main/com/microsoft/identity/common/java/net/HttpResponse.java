@@ -28,6 +28,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
+import edu.umd.cs.findbugs.annotations.Nullable;
 import lombok.NonNull;
 
 /**
@@ -40,6 +41,7 @@ public class HttpResponse {
     private final String mResponseBody;
     private final Map<String, List<String>> mResponseHeaders;
     private final Date mDate;
+    private final Object mDecodedBody;
 
     /**
      * Constructor for {@link HttpResponse}.
@@ -57,10 +59,29 @@ public class HttpResponse {
                         final int statusCode,
                         final String responseBody,
                         final Map<String, List<String>> headerFields) {
+        this(date, statusCode, responseBody, headerFields, null);
+    }
+
+    /**
+     * Constructor for {@link HttpResponse} whose body was decoded by an {@link IResponseBodyDecoder}
+     * while it was read; such a response has no raw body.
+     *
+     * @param date         The date of the server response.
+     * @param statusCode   The status code from the server response.
+     * @param responseBody Raw response body, or null if it was decoded.
+     * @param headerFields Response headers from the connection sent to the server.
+     * @param decodedBody  The decoded response body, if any.
+     */
+    public HttpResponse(@NonNull final Date date,
+                        final int statusCode,
+                        @Nullable final String responseBody,
+                        final Map<String, List<String>> headerFields,
+                        @Nullable final Object decodedBody) {
         mDate = new Date(date.getTime());
         mStatusCode = statusCode;
         mResponseBody = responseBody;
         mResponseHeaders = headerFields;
+        mDecodedBody = decodedBody;
     }
 
     public Date getDate() {
@@ -75,12 +96,21 @@ public class HttpResponse {
     }
 
     /**
-     * @return The raw server response.
+     * @return The raw server response, or null if the body was decoded while it was read.
      */
     public String getBody() {
         return mResponseBody;
     }
 
+    /**
+     * @return The body as decoded by the {@link IResponseBodyDecoder} supplied with the request, or
+     * null if it was not decoded.
+     */
+    @Nullable
+    public Object getDecodedBody() {
+        return mDecodedBody;
+    }
+
     /**
      * @return The unmodified Map of response headers.
      * Response headers is set by {@link java.net.HttpURLConnection#getHeaderFields()} which is an unmodified Map.
@@ -99,6 +129,7 @@ public class HttpResponse {
                 "mStatusCode=" + mStatusCode +
                 ", mResponseBody='" + mResponseBody + '\'' +
                 ", mResponseHeaders=" + mResponseHeaders +
+                ", mDecodedBody=" + (mDecodedBody == null ? null : mDecodedBody.getClass().getSimpleName()) +
                 '}';
     }
     //CHECKSTYLE:ON
@@ -0,0 +1,46 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.net;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+import lombok.NonNull;
+
+/**
+ * A retry policy that keeps track of each host separately, e.g. to stop sending requests to a
+ * host that is failing. Http clients call {@link #attempt(String, Callable)} in place of
+ * {@link IRetryPolicy#attempt(Callable)} when their policy implements this interface.
+ * @param <T> the type of the object on return.
+ */
+public interface IPerHostRetryPolicy<T> extends IRetryPolicy<T> {
+    /**
+     * Evaluate the object returned from a callable sending a request to the given host, and
+     * return the result.
+     * @param host the host the request is sent to.
+     * @param supplier an object to call for a result.
+     * @return the result of calling the supplier.
+     * @throws IOException if an IO error occurs.
+     */
+    T attempt(@NonNull String host, @NonNull Callable<T> supplier) throws IOException;
+}
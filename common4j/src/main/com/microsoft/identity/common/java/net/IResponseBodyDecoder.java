@@ -0,0 +1,54 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import lombok.NonNull;
+
+/**
+ * Decodes a response body straight from the connection's stream, instead of reading it into a
+ * String first. See {@link AbstractHttpClient#method(HttpClient.HttpMethod, java.net.URL,
+ * java.util.Map, byte[], javax.net.ssl.SSLContext, IResponseBodyDecoder)}.
+ *
+ * @param <T> The type of the decoded body.
+ */
+public interface IResponseBodyDecoder<T> {
+
+    /**
+     * @param statusCode The status code of the response.
+     * @return true if the body of a response with this status code should be decoded, false if it
+     * should be read into a String as usual.
+     */
+    boolean shouldDecode(int statusCode);
+
+    /**
+     * Decodes the body. The stream is closed by the caller.
+     *
+     * @param body The response body.
+     * @return The decoded body.
+     * @throws IOException If the body cannot be read, or is not in the expected format.
+     */
+    T decode(@NonNull InputStream body) throws IOException;
+}
@@ -0,0 +1,492 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.net;
+
+import com.microsoft.identity.common.java.AuthenticationConstants;
+import com.microsoft.identity.common.java.logging.Logger;
+import com.microsoft.identity.common.java.util.ported.Supplier;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import cz.msebera.android.httpclient.Header;
+import cz.msebera.android.httpclient.HttpEntity;
+import cz.msebera.android.httpclient.HttpHost;
+import cz.msebera.android.httpclient.client.config.RequestConfig;
+import cz.msebera.android.httpclient.client.methods.CloseableHttpResponse;
+import cz.msebera.android.httpclient.client.methods.HttpUriRequest;
+import cz.msebera.android.httpclient.client.methods.RequestBuilder;
+import cz.msebera.android.httpclient.client.utils.DateUtils;
+import cz.msebera.android.httpclient.config.Registry;
+import cz.msebera.android.httpclient.config.RegistryBuilder;
+import cz.msebera.android.httpclient.conn.socket.ConnectionSocketFactory;
+import cz.msebera.android.httpclient.conn.socket.PlainConnectionSocketFactory;
+import cz.msebera.android.httpclient.conn.socket.LayeredConnectionSocketFactory;
+import cz.msebera.android.httpclient.conn.ssl.SSLConnectionSocketFactory;
+import cz.msebera.android.httpclient.entity.ByteArrayEntity;
+import cz.msebera.android.httpclient.impl.client.CloseableHttpClient;
+import cz.msebera.android.httpclient.impl.client.HttpClients;
+import cz.msebera.android.httpclient.impl.conn.PoolingHttpClientConnectionManager;
+import cz.msebera.android.httpclient.protocol.HttpContext;
+import cz.msebera.android.httpclient.util.EntityUtils;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.NonNull;
+
+import static com.microsoft.identity.common.java.AuthenticationConstants.AAD.CLIENT_REQUEST_ID;
+
+/**
+ * An http client that keeps connections alive and reuses them across requests.
+ * <p>
+ * Unlike {@link UrlConnectionHttpClient}, which opens a new {@link java.net.HttpURLConnection} per
+ * call, this client leases connections from an explicit pool with a bounded number of connections
+ * per host and in total. Idle connections are kept open for {@code idleConnectionTimeoutMs} and
+ * reused by later requests to the same host, so silent token refreshes and discovery calls do not
+ * pay for a TCP and TLS handshake every time.
+ * <p>
+ * One pool is kept per {@link SSLContext} (the default one when the request does not supply any),
+ * and its TLS sockets all come from a single socket factory, so new connections to a host the
+ * client has already talked to resume the cached TLS session instead of running a full handshake.
+ * <p>
+ * HTTP/2 is not supported by the underlying transport; requests are sent over HTTP/1.1.
+ * <p>
+ * Retries are left to the supplied {@link IRetryPolicy}, as in {@link UrlConnectionHttpClient}.
+ */
+@AllArgsConstructor
+@Builder
+@ThreadSafe
+public class PooledConnectionHttpClient extends AbstractHttpClient implements Closeable {
+
+    private static final String TAG = PooledConnectionHttpClient.class.getSimpleName();
+
+    public static final int DEFAULT_MAX_CONNECTIONS_TOTAL = 20;
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 5;
+    public static final int DEFAULT_IDLE_CONNECTION_TIMEOUT_MS = 30000;
+    public static final int DEFAULT_VALIDATE_AFTER_INACTIVITY_MS = 2000;
+
+    private static final String HOST = "Host";
+    private static final String CONTENT_LENGTH = "Content-Length";
+    private static final String DATE = "Date";
+
+    @Builder.Default
+    private final IRetryPolicy<HttpResponse> retryPolicy = new NoRetryPolicy();
+    @Builder.Default
+    private final int connectTimeoutMs = UrlConnectionHttpClient.DEFAULT_CONNECT_TIME_OUT_MS;
+    @Builder.Default
+    private final int readTimeoutMs = UrlConnectionHttpClient.DEFAULT_READ_TIME_OUT_MS;
+    @Builder.Default
+    private final Supplier<Integer> connectTimeoutMsSupplier = null;
+    @Builder.Default
+    private final Supplier<Integer> readTimeoutMsSupplier = null;
+    @Builder.Default
+    private final List<String> supportedSslProtocol = SSLSocketFactoryWrapper.SUPPORTED_SSL_PROTOCOLS;
+
+    /**
+     * The maximum number of connections, leased or idle, across all hosts.
+     */
+    @Builder.Default
+    private final int maxConnectionsTotal = DEFAULT_MAX_CONNECTIONS_TOTAL;
+
+    /**
+     * The maximum number of connections, leased or idle, to a single host. Requests beyond this
+     * limit wait for a connection to be released.
+     */
+    @Builder.Default
+    private final int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+
+    /**
+     * How long a request waits for a connection to be released when the pool is exhausted.
+     */
+    @Builder.Default
+    private final int connectionRequestTimeoutMs = UrlConnectionHttpClient.DEFAULT_CONNECT_TIME_OUT_MS;
+
+    /**
+     * How long an idle connection is kept open for reuse before it is closed.
+     */
+    @Builder.Default
+    private final int idleConnectionTimeoutMs = DEFAULT_IDLE_CONNECTION_TIMEOUT_MS;
+
+    /**
+     * Connections idle for longer than this are checked for being closed by the server before
+     * they are reused.
+     */
+    @Builder.Default
+    private final int validateAfterInactivityMs = DEFAULT_VALIDATE_AFTER_INACTIVITY_MS;
+
+    private final AtomicReference<ConnectionPool> mDefaultPool = new AtomicReference<>(null);
+
+    // Pools for caller-supplied SSLContexts; dropped together with the context.
+    private final Map<SSLContext, ConnectionPool> mSslContextPools = new WeakHashMap<>();
+
+    private static final transient AtomicReference<PooledConnectionHttpClient> defaultReference = new AtomicReference<>(null);
+
+    /**
+     * Obtain a static default instance of the pooled HTTP Client class.
+     *
+     * @return a default-configured PooledConnectionHttpClient.
+     */
+    public static synchronized PooledConnectionHttpClient getDefaultInstance() {
+        PooledConnectionHttpClient reference = defaultReference.get();
+        if (reference == null) {
+            defaultReference.compareAndSet(null, PooledConnectionHttpClient.builder()
+                    .retryPolicy(AdaptiveRetryPolicy.builder().build())
+                    .build());
+            reference = defaultReference.get();
+        }
+        return reference;
+    }
+
+    /**
+     * Sends an HTTP request of the specified method over a pooled connection; applies appropriate
+     * provided arguments where applicable.
+     *
+     * @param httpMethod     One of: GET, POST, HEAD, PUT, DELETE, TRACE, OPTIONS, PATCH.
+     * @param requestUrl     The recipient {@link URL}.
+     * @param requestHeaders Headers used to send the http request.
+     * @param requestContent Optional request body, if applicable.
+     * @param sslContext     an optional {@link SSLContext} object.
+     * @return HttpResponse  The response for this request.
+     * @throws IOException If an error is encountered while servicing this request.
+     */
+    @Override
+    public HttpResponse method(@NonNull final HttpClient.HttpMethod httpMethod,
+                               @NonNull final URL requestUrl,
+                               @NonNull final Map<String, String> requestHeaders,
+                               @Nullable final byte[] requestContent,
+                               @Nullable final SSLContext sslContext) throws IOException {
+        return send(httpMethod, requestUrl, requestHeaders, requestContent, sslContext, null);
+    }
+
+    /**
+     * Sends an HTTP request over a pooled connection, handing the response stream to the supplied
+     * decoder if it accepts the response's status code.
+     */
+    @Override
+    public HttpResponse method(@NonNull final HttpClient.HttpMethod httpMethod,
+                               @NonNull final URL requestUrl,
+                               @NonNull final Map<String, String> requestHeaders,
+                               @Nullable final byte[] requestContent,
+                               @Nullable final SSLContext sslContext,
+                               @NonNull final IResponseBodyDecoder<?> decoder) throws IOException {
+        return send(httpMethod, requestUrl, requestHeaders, requestContent, sslContext, decoder);
+    }
+
+    private HttpResponse send(@NonNull final HttpClient.HttpMethod httpMethod,
+                              @NonNull final URL requestUrl,
+                              @NonNull final Map<String, String> requestHeaders,
+                              @Nullable final byte[] requestContent,
+                              @Nullable final SSLContext sslContext,
+                              @Nullable final IResponseBodyDecoder<?> decoder) throws IOException {
+        UrlConnectionHttpClient.recordHttpTelemetryEventStart(httpMethod.name(), requestUrl, requestHeaders.get(CLIENT_REQUEST_ID));
+        final HttpRequest request = new HttpRequest(
+                requestUrl,
+                requestHeaders,
+                httpMethod.name(),
+                requestContent,
+                null,
+                sslContext
+        );
+        return UrlConnectionHttpClient.attempt(retryPolicy, requestUrl, new Callable<HttpResponse>() {
+            public HttpResponse call() throws IOException {
+                HttpResponse response = null;
+                try {
+                    response = executeHttpSend(request, decoder);
+                } finally {
+                    UrlConnectionHttpClient.recordHttpTelemetryEventEnd(response);
+                }
+                return response;
+            }
+        });
+    }
+
+    /**
+     * Closes every pooled connection. Requests made after this call open a new pool.
+     */
+    @Override
+    public void close() {
+        final ConnectionPool defaultPool = mDefaultPool.getAndSet(null);
+        if (defaultPool != null) {
+            defaultPool.close();
+        }
+
+        synchronized (mSslContextPools) {
+            for (final ConnectionPool pool : mSslContextPools.values()) {
+                pool.close();
+            }
+            mSslContextPools.clear();
+        }
+    }
+
+    private HttpResponse executeHttpSend(@NonNull final HttpRequest request,
+                                         @Nullable final IResponseBodyDecoder<?> decoder) throws IOException {
+        final ConnectionPool pool = getPool(request.getSslContext());
+        pool.closeIdleConnections(idleConnectionTimeoutMs);
+
+        final CloseableHttpResponse httpResponse = pool.mClient.execute(toUriRequest(request));
+        try {
+            final HttpEntity entity = httpResponse.getEntity();
+            final int statusCode = httpResponse.getStatusLine().getStatusCode();
+
+            if (entity != null && decoder != null && decoder.shouldDecode(statusCode)) {
+                final InputStream content = entity.getContent();
+                try {
+                    return new HttpResponse(
+                            getDate(httpResponse),
+                            statusCode,
+                            null,
+                            getHeaderFields(httpResponse),
+                            decoder.decode(content)
+                    );
+                } finally {
+                    // Consumes whatever the decoder left unread, returning the connection to the pool.
+                    EntityUtils.consume(entity);
+                }
+            }
+
+            // Reading the entity to its end is what returns the connection to the pool.
+            final String responseBody = entity == null
+                    ? ""
+                    : new String(EntityUtils.toByteArray(entity), AuthenticationConstants.CHARSET_UTF8);
+
+            return new HttpResponse(
+                    getDate(httpResponse),
+                    statusCode,
+                    responseBody,
+                    getHeaderFields(httpResponse)
+            );
+        } finally {
+            httpResponse.close();
+        }
+    }
+
+    private HttpUriRequest toUriRequest(@NonNull final HttpRequest request) {
+        final RequestBuilder builder = RequestBuilder.create(request.getRequestMethod())
+                .setUri(request.getRequestUrl().toString())
+                .setConfig(RequestConfig.custom()
+                        .setConnectTimeout(getConnectTimeoutMs())
+                        .setSocketTimeout(getReadTimeoutMs())
+                        .setConnectionRequestTimeout(connectionRequestTimeoutMs)
+                        .build());
+
+        for (final Map.Entry<String, String> entry : request.getRequestHeaders().entrySet()) {
+            // Host and Content-Length are derived from the request by the transport itself, and
+            // it rejects requests that already carry them.
+            if (HOST.equalsIgnoreCase(entry.getKey()) || CONTENT_LENGTH.equalsIgnoreCase(entry.getKey())) {
+                continue;
+            }
+            builder.addHeader(entry.getKey(), entry.getValue());
+        }
+
+        final byte[] requestContent = request.getRequestContent();
+        if (requestContent != null) {
+            builder.setEntity(new ByteArrayEntity(requestContent));
+        }
+
+        return builder.build();
+    }
+
+    private static Date getDate(@NonNull final CloseableHttpResponse httpResponse) {
+        // Matches HttpURLConnection.getDate(), which returns 0 when the header is missing.
+        final Header dateHeader = httpResponse.getFirstHeader(DATE);
+        final Date date = dateHeader == null ? null : DateUtils.parseDate(dateHeader.getValue());
+        return date == null ? new Date(0) : date;
+    }
+
+    private static Map<String, List<String>> getHeaderFields(@NonNull final CloseableHttpResponse httpResponse) {
+        final Map<String, List<String>> headerFields = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+        for (final Header header : httpResponse.getAllHeaders()) {
+            List<String> values = headerFields.get(header.getName());
+            if (values == null) {
+                values = new ArrayList<>();
+                headerFields.put(header.getName(), values);
+            }
+            values.add(header.getValue());
+        }
+
+        return headerFields;
+    }
+
+    private ConnectionPool getPool(@Nullable final SSLContext sslContext) {
+        if (sslContext == null) {
+            ConnectionPool pool = mDefaultPool.get();
+            if (pool == null) {
+                final ConnectionPool newPool = new ConnectionPool(
+                        new SSLSocketFactoryWrapper((SSLSocketFactory) SSLSocketFactory.getDefault(), supportedSslProtocol)
+                );
+                if (mDefaultPool.compareAndSet(null, newPool)) {
+                    pool = newPool;
+                } else {
+                    newPool.close();
+                    pool = mDefaultPool.get();
+                }
+            }
+            return pool;
+        }
+
+        synchronized (mSslContextPools) {
+            ConnectionPool pool = mSslContextPools.get(sslContext);
+            if (pool == null) {
+                pool = new ConnectionPool(
+                        new SSLSocketFactoryWrapper(sslContext.getSocketFactory(), supportedSslProtocol)
+                );
+                mSslContextPools.put(sslContext, pool);
+            }
+            return pool;
+        }
+    }
+
+    private int getReadTimeoutMs() {
+        return readTimeoutMsSupplier == null ? readTimeoutMs : readTimeoutMsSupplier.get();
+    }
+
+    private int getConnectTimeoutMs() {
+        return connectTimeoutMsSupplier == null ? connectTimeoutMs : connectTimeoutMsSupplier.get();
+    }
+
+    /**
+     * The connections opened through one TLS socket factory, and the client leasing them.
+     */
+    private final class ConnectionPool implements Closeable {
+        private final PoolingHttpClientConnectionManager mConnectionManager;
+        private final CloseableHttpClient mClient;
+
+        ConnectionPool(@NonNull final SSLSocketFactory sslSocketFactory) {
+            final Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+                    .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                    .register("https", new TlsConnectionSocketFactory(sslSocketFactory))
+                    .build();
+
+            mConnectionManager = new PoolingHttpClientConnectionManager(registry);
+            mConnectionManager.setMaxTotal(maxConnectionsTotal);
+            mConnectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+            mConnectionManager.setValidateAfterInactivity(validateAfterInactivityMs);
+
+            mClient = HttpClients.custom()
+                    .setConnectionManager(mConnectionManager)
+                    .disableAutomaticRetries()
+                    .disableCookieManagement()
+                    .disableAuthCaching()
+                    .build();
+        }
+
+        void closeIdleConnections(final long idleTimeoutMs) {
+            mConnectionManager.closeExpiredConnections();
+            mConnectionManager.closeIdleConnections(idleTimeoutMs, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void close() {
+            try {
+                mClient.close();
+            } catch (final IOException e) {
+                Logger.warn(
+                        TAG + ":close",
+                        "Failed to close pooled connections: " + e.getMessage()
+                );
+            }
+        }
+    }
+
+    /**
+     * Opens TLS connections through the supplied socket factory and verifies the host name of the
+     * peer. Used in place of the transport's own SSL socket factory, which depends on Android
+     * classes when layering TLS over a socket.
+     */
+    private static final class TlsConnectionSocketFactory implements LayeredConnectionSocketFactory {
+        private final SSLSocketFactory mSslSocketFactory;
+        private final HostnameVerifier mHostnameVerifier = SSLConnectionSocketFactory.getDefaultHostnameVerifier();
+
+        TlsConnectionSocketFactory(@NonNull final SSLSocketFactory sslSocketFactory) {
+            mSslSocketFactory = sslSocketFactory;
+        }
+
+        @Override
+        public Socket createSocket(final HttpContext context) {
+            return new Socket();
+        }
+
+        @Override
+        public Socket connectSocket(final int connectTimeout,
+                                    @Nullable final Socket socket,
+                                    @NonNull final HttpHost host,
+                                    @NonNull final InetSocketAddress remoteAddress,
+                                    @Nullable final InetSocketAddress localAddress,
+                                    final HttpContext context) throws IOException {
+            final Socket plainSocket = socket != null ? socket : createSocket(context);
+            if (localAddress != null) {
+                plainSocket.bind(localAddress);
+            }
+
+            try {
+                plainSocket.connect(remoteAddress, connectTimeout);
+            } catch (final IOException e) {
+                plainSocket.close();
+                throw e;
+            }
+
+            return createLayeredSocket(plainSocket, host.getHostName(), remoteAddress.getPort(), context);
+        }
+
+        @Override
+        public Socket createLayeredSocket(@NonNull final Socket socket,
+                                          @NonNull final String target,
+                                          final int port,
+                                          final HttpContext context) throws IOException {
+            // Passing the host and port lets the socket factory resume a cached session.
+            final SSLSocket sslSocket = (SSLSocket) mSslSocketFactory.createSocket(socket, target, port, true);
+            try {
+                sslSocket.startHandshake();
+                if (!mHostnameVerifier.verify(target, sslSocket.getSession())) {
+                    throw new SSLPeerUnverifiedException("Certificate does not match host name " + target);
+                }
+            } catch (final IOException e) {
+                sslSocket.close();
+                throw e;
+            }
+            return sslSocket;
+        }
+    }
+}
@@ -24,6 +24,9 @@ package com.microsoft.identity.common.java.net;
 
 import com.microsoft.identity.common.java.AuthenticationConstants;
 import com.microsoft.identity.common.java.logging.Logger;
+import com.microsoft.identity.common.java.metrics.LatencyHistogram;
+import com.microsoft.identity.common.java.metrics.MetricNames;
+import com.microsoft.identity.common.java.metrics.MetricsRegistry;
 import com.microsoft.identity.common.java.telemetry.Telemetry;
 import com.microsoft.identity.common.java.telemetry.events.HttpEndEvent;
 import com.microsoft.identity.common.java.telemetry.events.HttpStartEvent;
@@ -56,6 +59,7 @@ import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocketFactory;
 
+import edu.umd.cs.findbugs.annotations.Nullable;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.NonNull;
@@ -114,6 +118,9 @@ public class UrlConnectionHttpClient extends AbstractHttpClient {
 
     private static final transient AtomicReference<UrlConnectionHttpClient> defaultReference = new AtomicReference<>(null);
 
+    private static final LatencyHistogram sRequestLatency =
+            MetricsRegistry.getInstance().getHistogram(MetricNames.HTTP_REQUEST);
+
     /**
      * Obtain a static default instance of the HTTP Client class.
      *
@@ -124,38 +131,48 @@ public class UrlConnectionHttpClient extends AbstractHttpClient {
         if (reference == null) {
             defaultReference.compareAndSet(null, UrlConnectionHttpClient.builder()
                     .streamBufferSize(STREAM_BUFFER_SIZE_BYTES)
-                    .retryPolicy(StatusCodeAndExceptionRetry.builder()
-                            .number(1)
-                            .extensionFactor(2)
-                            .isAcceptable(new Function<HttpResponse, Boolean>() {
-                                public Boolean apply(HttpResponse response) {
-                                    return response != null && response.getStatusCode() < 400;
-                                }
-                            })
-                            .initialDelay(RETRY_TIME_WAITING_PERIOD_MSEC)
-                            .isRetryable(new Function<HttpResponse, Boolean>() {
-                                public Boolean apply(HttpResponse response) {
-                                    return response != null && isRetryableError(response.getStatusCode());
-                                }
-                            })
-                            .isRetryableException(new Function<Exception, Boolean>() {
-                                public Boolean apply(Exception e) {
-                                    return e instanceof SocketTimeoutException;
-                                }
-                            })
-                            .build())
+                    .retryPolicy(createDefaultRetryPolicy())
                     .build());
             reference = defaultReference.get();
         }
         return reference;
     }
 
+    /**
+     * Creates the retry policy used by the default http clients: retry once, after
+     * {@link #RETRY_TIME_WAITING_PERIOD_MSEC}, on a retryable status code or a socket timeout.
+     *
+     * @return a new retry policy.
+     */
+    static IRetryPolicy<HttpResponse> createDefaultRetryPolicy() {
+        return StatusCodeAndExceptionRetry.builder()
+                .number(1)
+                .extensionFactor(2)
+                .isAcceptable(new Function<HttpResponse, Boolean>() {
+                    public Boolean apply(HttpResponse response) {
+                        return response != null && response.getStatusCode() < 400;
+                    }
+                })
+                .initialDelay(RETRY_TIME_WAITING_PERIOD_MSEC)
+                .isRetryable(new Function<HttpResponse, Boolean>() {
+                    public Boolean apply(HttpResponse response) {
+                        return response != null && isRetryableError(response.getStatusCode());
+                    }
+                })
+                .isRetryableException(new Function<Exception, Boolean>() {
+                    public Boolean apply(Exception e) {
+                        return e instanceof SocketTimeoutException;
+                    }
+                })
+                .build();
+    }
+
     /**
      * Record the beginning of an http request.
      */
-    private static void recordHttpTelemetryEventStart(@NonNull final String requestMethod,
-                                                      @NonNull final URL requestUrl,
-                                                      final String requestId) {
+    static void recordHttpTelemetryEventStart(@NonNull final String requestMethod,
+                                              @NonNull final URL requestUrl,
+                                              final String requestId) {
         Telemetry.emit(
                 new HttpStartEvent()
                         .putMethod(requestMethod)
@@ -169,7 +186,7 @@ public class UrlConnectionHttpClient extends AbstractHttpClient {
      *
      * @param response
      */
-    private static void recordHttpTelemetryEventEnd(final HttpResponse response) {
+    static void recordHttpTelemetryEventEnd(final HttpResponse response) {
         final HttpEndEvent httpEndEvent = new HttpEndEvent();
 
         if (null != response) {
@@ -197,11 +214,34 @@ public class UrlConnectionHttpClient extends AbstractHttpClient {
                                @NonNull final Map<String, String> requestHeaders,
                                final byte[] requestContent,
                                final SSLContext sslContext) throws IOException {
+        return send(httpMethod, requestUrl, requestHeaders, requestContent, sslContext, null);
+    }
+
+    /**
+     * Sends an HTTP request, handing the response stream to the supplied decoder if it accepts the
+     * response's status code, so that the body is never held as a String.
+     */
+    @Override
+    public HttpResponse method(@NonNull final HttpClient.HttpMethod httpMethod,
+                               @NonNull final URL requestUrl,
+                               @NonNull final Map<String, String> requestHeaders,
+                               final byte[] requestContent,
+                               final SSLContext sslContext,
+                               @NonNull final IResponseBodyDecoder<?> decoder) throws IOException {
+        return send(httpMethod, requestUrl, requestHeaders, requestContent, sslContext, decoder);
+    }
+
+    private HttpResponse send(@NonNull final HttpClient.HttpMethod httpMethod,
+                              @NonNull final URL requestUrl,
+                              @NonNull final Map<String, String> requestHeaders,
+                              final byte[] requestContent,
+                              final SSLContext sslContext,
+                              @Nullable final IResponseBodyDecoder<?> decoder) throws IOException {
         recordHttpTelemetryEventStart(httpMethod.name(), requestUrl, requestHeaders.get(CLIENT_REQUEST_ID));
         final HttpRequest request = constructHttpRequest(httpMethod, requestUrl, requestHeaders, requestContent, sslContext);
-        return retryPolicy.attempt(new Callable<HttpResponse>() {
+        return attempt(retryPolicy, requestUrl, new Callable<HttpResponse>() {
             public HttpResponse call() throws IOException {
-                return executeHttpSend(request, new Consumer<HttpResponse>() {
+                return executeHttpSend(request, decoder, new Consumer<HttpResponse>() {
                     @Override
                     public void accept(HttpResponse httpResponse) {
                         recordHttpTelemetryEventEnd(httpResponse);
@@ -211,6 +251,24 @@ public class UrlConnectionHttpClient extends AbstractHttpClient {
         });
     }
 
+    /**
+     * Runs the supplier under the retry policy, telling policies that track hosts separately
+     * which host the request goes to, and records how long it took with any retries.
+     */
+    static HttpResponse attempt(@NonNull final IRetryPolicy<HttpResponse> retryPolicy,
+                                @NonNull final URL requestUrl,
+                                @NonNull final Callable<HttpResponse> supplier) throws IOException {
+        final long startTime = System.nanoTime();
+        try {
+            if (retryPolicy instanceof IPerHostRetryPolicy) {
+                return ((IPerHostRetryPolicy<HttpResponse>) retryPolicy).attempt(requestUrl.getHost(), supplier);
+            }
+            return retryPolicy.attempt(supplier);
+        } finally {
+            sRequestLatency.recordSince(startTime);
+        }
+    }
+
     private static HttpRequest constructHttpRequest(@NonNull HttpClient.HttpMethod httpMethod,
                                                     @NonNull URL requestUrl,
                                                     @NonNull Map<String, String> requestHeaders,
@@ -282,7 +340,9 @@ public class UrlConnectionHttpClient extends AbstractHttpClient {
         }
     }
 
-    private HttpResponse executeHttpSend(HttpRequest request, Consumer<HttpResponse> completionCallback) throws IOException {
+    private HttpResponse executeHttpSend(HttpRequest request,
+                                         @Nullable final IResponseBodyDecoder<?> decoder,
+                                         Consumer<HttpResponse> completionCallback) throws IOException {
         final HttpURLConnection urlConnection = setupConnection(request);
 
         sendRequest(urlConnection, request.getRequestContent(), request.getRequestHeaders().get(HttpConstants.HeaderField.CONTENT_TYPE));
@@ -305,16 +365,26 @@ public class UrlConnectionHttpClient extends AbstractHttpClient {
             final int statusCode = urlConnection.getResponseCode();
             final Date date = new Date(urlConnection.getDate());
 
-            final String responseBody = responseStream == null
-                    ? ""
-                    : convertStreamToString(responseStream);
-
-            response = new HttpResponse(
-                    date,
-                    statusCode,
-                    responseBody,
-                    urlConnection.getHeaderFields()
-            );
+            if (responseStream != null && decoder != null && decoder.shouldDecode(statusCode)) {
+                response = new HttpResponse(
+                        date,
+                        statusCode,
+                        null,
+                        urlConnection.getHeaderFields(),
+                        decoder.decode(responseStream)
+                );
+            } else {
+                final String responseBody = responseStream == null
+                        ? ""
+                        : convertStreamToString(responseStream);
+
+                response = new HttpResponse(
+                        date,
+                        statusCode,
+                        responseBody,
+                        urlConnection.getHeaderFields()
+                );
+            }
         } finally {
             completionCallback.accept(response);
             safeCloseStream(responseStream);
@@ -25,9 +25,11 @@ package com.microsoft.identity.common.java.providers.microsoft.azureactivedirect
 import lombok.NonNull;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import com.google.gson.reflect.TypeToken;
 import com.microsoft.identity.common.java.authorities.Environment;
 import com.microsoft.identity.common.java.cache.HttpCache;
+import com.microsoft.identity.common.java.cache.PersistentMetadataCache;
 import com.microsoft.identity.common.java.interfaces.IPlatformComponents;
 import com.microsoft.identity.common.java.logging.Logger;
 import com.microsoft.identity.common.java.exception.ClientException;
@@ -38,6 +40,7 @@ import com.microsoft.identity.common.java.providers.IdentityProvider;
 import com.microsoft.identity.common.java.providers.oauth2.OAuth2StrategyParameters;
 import com.microsoft.identity.common.java.util.ObjectMapper;
 import com.microsoft.identity.common.java.util.StringUtil;
+import com.microsoft.identity.common.java.util.ThreadUtils;
 import com.microsoft.identity.common.java.util.CommonURIBuilder;
 
 import org.json.JSONException;
@@ -56,6 +59,11 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
 
 /**
  * Implements the IdentityProvider base class...
@@ -78,6 +86,12 @@ public class AzureActiveDirectory
     private static boolean sIsInitialized = false;
     private static Environment sEnvironment = Environment.Production;
     private static final HttpClient httpClient = UrlConnectionHttpClient.getDefaultInstance();
+    // Revalidations are de-duplicated per request URI, so one thread and a short queue suffice;
+    // anything beyond that is rejected and left for the next stale read to retry.
+    private static final int REVALIDATION_QUEUE_SIZE = 8;
+    private static final ExecutorService sBackgroundExecutor = ThreadUtils.getNamedThreadPoolExecutor(
+            1, 1, REVALIDATION_QUEUE_SIZE, 30, TimeUnit.SECONDS, "AzureActiveDirectory-revalidation"
+    );
 
     @Override
     public AzureActiveDirectoryOAuth2Strategy createOAuth2Strategy(@NonNull final AzureActiveDirectoryOAuth2Configuration config,
@@ -181,14 +195,59 @@ public class AzureActiveDirectory
         }
     }
 
+    /**
+     * Populates the cloud metadata from instance discovery.
+     * <p>
+     * A response persisted in the {@link PersistentMetadataCache} by an earlier process is used
+     * without a network request. If it is stale, it is still used and revalidated in the
+     * background; only a missing or expired response is fetched in-line.
+     */
     public static synchronized void performCloudDiscovery()
             throws IOException, URISyntaxException {
         final String methodName = ":performCloudDiscovery";
-        final URI instanceDiscoveryRequestUri = new CommonURIBuilder(getDefaultCloudUrl() + AAD_INSTANCE_DISCOVERY_ENDPOINT)
+        final URI instanceDiscoveryRequestUri = getInstanceDiscoveryRequestUri();
+        final String cacheKey = instanceDiscoveryRequestUri.toString();
+
+        final PersistentMetadataCache.Entry persisted = PersistentMetadataCache.read(cacheKey);
+        if (null != persisted) {
+            try {
+                Logger.info(TAG + methodName, "Using persisted instance discovery metadata.");
+                loadClouds(parseInstanceDiscoveryResponse(persisted.getBody()));
+
+                if (!persisted.isFresh()) {
+                    revalidateInBackground(instanceDiscoveryRequestUri);
+                }
+
+                return;
+            } catch (final JsonParseException e) {
+                Logger.warn(TAG + methodName, "Discarding unparseable persisted metadata.");
+                PersistentMetadataCache.remove(cacheKey);
+            }
+        }
+
+        final String body = fetchInstanceDiscoveryMetadata(instanceDiscoveryRequestUri);
+        if (null != body) {
+            loadClouds(parseInstanceDiscoveryResponse(body));
+            PersistentMetadataCache.write(cacheKey, body);
+        }
+    }
+
+    static URI getInstanceDiscoveryRequestUri() throws URISyntaxException {
+        return new CommonURIBuilder(getDefaultCloudUrl() + AAD_INSTANCE_DISCOVERY_ENDPOINT)
                 .setParameter(API_VERSION, API_VERSION_VALUE)
                 .setParameter(AUTHORIZATION_ENDPOINT, AUTHORIZATION_ENDPOINT_VALUE)
                 .build();
+    }
 
+    /**
+     * Requests the instance discovery document.
+     *
+     * @return The response body, or null if the request failed.
+     */
+    @Nullable
+    private static String fetchInstanceDiscoveryMetadata(@NonNull final URI instanceDiscoveryRequestUri)
+            throws IOException {
+        final String methodName = ":fetchInstanceDiscoveryMetadata";
         final HttpResponse response =
                 httpClient.get(new URL(instanceDiscoveryRequestUri.toString()),
                         new HashMap<String, String>(),
@@ -196,30 +255,100 @@ public class AzureActiveDirectory
 
         if (response.getStatusCode() >= HttpURLConnection.HTTP_BAD_REQUEST) {
             Logger.warn(TAG + methodName, "Error getting cloud information");
-        } else {
-            // Our request was successful. Flush the HTTP cache to disk. Should only happen once
-            // per app launch. Instance Discovery Metadata will be cached in-memory
-            // until the app is killed.
-            HttpCache.flush();
-
-            Logger.info(TAG + methodName, "Parsing response.");
-            AzureActiveDirectoryInstanceResponse instanceResponse =
-                    ObjectMapper.deserializeJsonStringToObject(
-                            response.getBody(),
-                            AzureActiveDirectoryInstanceResponse.class
-                    );
-            Logger.info(TAG + methodName, "Discovered ["
-                    + instanceResponse.getClouds().size() + "] clouds.");
-
-            for (final AzureActiveDirectoryCloud cloud : instanceResponse.getClouds()) {
-                cloud.setIsValidated(true); // Mark the deserialized Clouds as validated
-                for (final String alias : cloud.getHostAliases()) {
-                    sAadClouds.put(alias.toLowerCase(Locale.US), cloud);
-                }
+            return null;
+        }
+
+        // Our request was successful. Flush the HTTP cache to disk. Should only happen once
+        // per app launch. Instance Discovery Metadata is cached in-memory until the app is
+        // killed, and persisted until it expires.
+        HttpCache.flush();
+        return response.getBody();
+    }
+
+    /**
+     * Parses an instance discovery response.
+     *
+     * @throws JsonParseException If the response is malformed or lists no clouds.
+     */
+    @NonNull
+    private static AzureActiveDirectoryInstanceResponse parseInstanceDiscoveryResponse(@NonNull final String body) {
+        final String methodName = ":parseInstanceDiscoveryResponse";
+
+        Logger.info(TAG + methodName, "Parsing response.");
+        final AzureActiveDirectoryInstanceResponse instanceResponse =
+                ObjectMapper.deserializeJsonStringToObject(
+                        body,
+                        AzureActiveDirectoryInstanceResponse.class
+                );
+
+        if (null == instanceResponse || null == instanceResponse.getClouds()) {
+            throw new JsonParseException("Instance discovery response has no cloud metadata.");
+        }
+
+        return instanceResponse;
+    }
+
+    private static void loadClouds(@NonNull final AzureActiveDirectoryInstanceResponse instanceResponse) {
+        final String methodName = ":loadClouds";
+
+        Logger.info(TAG + methodName, "Discovered ["
+                + instanceResponse.getClouds().size() + "] clouds.");
+
+        for (final AzureActiveDirectoryCloud cloud : instanceResponse.getClouds()) {
+            cloud.setIsValidated(true); // Mark the deserialized Clouds as validated
+            for (final String alias : cloud.getHostAliases()) {
+                sAadClouds.put(alias.toLowerCase(Locale.US), cloud);
             }
+        }
+
+        sIsInitialized = true;
+    }
+
+    /**
+     * Refetches stale instance discovery metadata on a background thread, unless a refresh of it
+     * is already running. The network request is made without holding the class lock.
+     */
+    private static void revalidateInBackground(@NonNull final URI instanceDiscoveryRequestUri) {
+        final String methodName = ":revalidateInBackground";
+        final String cacheKey = instanceDiscoveryRequestUri.toString();
+
+        if (!PersistentMetadataCache.tryBeginRefresh(cacheKey)) {
+            return;
+        }
+
+        try {
+            sBackgroundExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final String body = fetchInstanceDiscoveryMetadata(instanceDiscoveryRequestUri);
+                        if (null != body) {
+                            applyRevalidatedMetadata(instanceDiscoveryRequestUri, body);
+                        }
+                    } catch (final IOException | URISyntaxException | JsonParseException e) {
+                        Logger.warn(TAG + methodName,
+                                "Failed to revalidate instance discovery metadata, keeping the stale copy.");
+                    } finally {
+                        PersistentMetadataCache.endRefresh(cacheKey);
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            PersistentMetadataCache.endRefresh(cacheKey);
+        }
+    }
+
+    private static synchronized void applyRevalidatedMetadata(@NonNull final URI instanceDiscoveryRequestUri,
+                                                              @NonNull final String body)
+            throws URISyntaxException {
+        // Parse before persisting, so a bad response never replaces a good one.
+        final AzureActiveDirectoryInstanceResponse instanceResponse = parseInstanceDiscoveryResponse(body);
 
-            sIsInitialized = true;
+        // Only apply it if the environment has not changed since the refresh started.
+        if (instanceDiscoveryRequestUri.equals(getInstanceDiscoveryRequestUri())) {
+            loadClouds(instanceResponse);
         }
+        PersistentMetadataCache.write(instanceDiscoveryRequestUri.toString(), body);
     }
 
     public static synchronized Set<String> getHosts() {
@@ -27,6 +27,7 @@ import com.microsoft.identity.common.java.authscheme.AbstractAuthenticationSchem
 import com.microsoft.identity.common.java.challengehandlers.PKeyAuthChallenge;
 import com.microsoft.identity.common.java.challengehandlers.PKeyAuthChallengeFactory;
 import com.microsoft.identity.common.java.commands.parameters.RopcTokenCommandParameters;
+import com.microsoft.identity.common.java.configuration.LibraryConfiguration;
 import com.microsoft.identity.common.java.crypto.IDevicePopManager;
 import com.microsoft.identity.common.java.exception.ArgumentException;
 import com.microsoft.identity.common.java.platform.Device;
@@ -63,12 +64,14 @@ import com.microsoft.identity.common.java.logging.DiagnosticContext;
 import com.microsoft.identity.common.java.net.HttpClient;
 import com.microsoft.identity.common.java.net.HttpConstants;
 import com.microsoft.identity.common.java.net.HttpResponse;
+import com.microsoft.identity.common.java.net.IResponseBodyDecoder;
 import com.microsoft.identity.common.java.net.UrlConnectionHttpClient;
 import com.microsoft.identity.common.java.util.ObjectMapper;
 import com.microsoft.identity.common.java.logging.Logger;
 import com.microsoft.identity.common.java.util.CommonURIBuilder;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
@@ -116,6 +119,20 @@ public class MicrosoftStsOAuth2Strategy
      */
     private static final String RESOURCE_DEFAULT_SCOPE = "/.default";
 
+    private static final IResponseBodyDecoder<MicrosoftStsTokenResponse> TOKEN_RESPONSE_DECODER =
+            new IResponseBodyDecoder<MicrosoftStsTokenResponse>() {
+                @Override
+                public boolean shouldDecode(final int statusCode) {
+                    // Error responses are kept as a String, see getTokenResultFromHttpResponse().
+                    return statusCode < HttpURLConnection.HTTP_BAD_REQUEST;
+                }
+
+                @Override
+                public MicrosoftStsTokenResponse decode(@NonNull final InputStream body) throws IOException {
+                    return ObjectMapper.deserializeJsonStreamToObject(body, MicrosoftStsTokenResponse.class);
+                }
+            };
+
     private final HttpClient httpClient = UrlConnectionHttpClient.getDefaultInstance();
 
     /**
@@ -576,6 +593,8 @@ public class MicrosoftStsOAuth2Strategy
                 );
             }
             tokenErrorResponse.setResponseBody(response.getBody());
+        } else if (response.getDecodedBody() instanceof MicrosoftStsTokenResponse) {
+            tokenResponse = (MicrosoftStsTokenResponse) response.getDecodedBody();
         } else {
             tokenResponse = ObjectMapper.deserializeJsonStringToObject(
                     getBodyFromSuccessfulResponse(response.getBody()),
@@ -613,6 +632,22 @@ public class MicrosoftStsOAuth2Strategy
         return result;
     }
 
+    /**
+     * Decodes successful token responses as they are read, when enabled by
+     * {@link LibraryConfiguration#isStreamingTokenResponseEnabled()}.
+     * <p>
+     * Decoded responses bypass {@link #getBodyFromSuccessfulResponse(String)}, so subclasses that
+     * override it must also override this method to return null.
+     */
+    @Override
+    protected IResponseBodyDecoder<?> getTokenResponseDecoder() {
+        if (!LibraryConfiguration.getInstance().isStreamingTokenResponseEnabled()) {
+            return null;
+        }
+
+        return TOKEN_RESPONSE_DECODER;
+    }
+
     protected String getBodyFromSuccessfulResponse(@NonNull final String responseBody) throws ClientException {
         return responseBody;
     }
@@ -28,14 +28,11 @@ import com.microsoft.identity.common.java.exception.ErrorStrings;
 import com.microsoft.identity.common.java.exception.ServiceException;
 import com.microsoft.identity.common.java.logging.Logger;
 import com.microsoft.identity.common.java.util.StringUtil;
-import com.nimbusds.jwt.JWT;
-import com.nimbusds.jwt.JWTClaimsSet;
-import com.nimbusds.jwt.JWTParser;
 
 import java.text.ParseException;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import lombok.EqualsAndHashCode;
 
@@ -225,16 +222,19 @@ public class IDToken {
         return mTokenClaims == null ? Collections.<String, Object>emptyMap() : Collections.unmodifiableMap(mTokenClaims);
     }
 
+    /**
+     * Gets the claims of the supplied JWT. The signature is not verified.
+     *
+     * @param rawIdToken raw ID token
+     * @return an unmodifiable map of the token's claims.
+     * @throws ServiceException if rawIdToken is malformed.
+     */
     public static Map<String, ?> parseJWT(@NonNull final String rawIdToken) throws ServiceException {
         final String methodName = ":getClaims(String)";
 
-        final Map<String, Object> result = new HashMap<>();
-
         try {
-            final JWT jwt = JWTParser.parse(rawIdToken);
-            final JWTClaimsSet claimsSet = jwt.getJWTClaimsSet();
-            result.putAll(claimsSet.getClaims());
-        } catch (ParseException e) {
+            return JwtClaimsDecoder.decodeClaims(rawIdToken);
+        } catch (final ParseException e) {
             Logger.error(
                     TAG + methodName,
                     "Failed to parse IdToken",
@@ -243,8 +243,32 @@ public class IDToken {
 
             throw new ServiceException("Failed to parse JWT", ErrorStrings.INVALID_JWT, e);
         }
+    }
+
+    /**
+     * Gets only the supplied claims of the supplied JWT, without building the values of the
+     * others. The signature is not verified.
+     *
+     * @param rawIdToken raw ID token
+     * @param claimNames the names of the claims to get.
+     * @return an unmodifiable map of those of the claims the token has.
+     * @throws ServiceException if rawIdToken is malformed.
+     */
+    public static Map<String, ?> parseJWT(@NonNull final String rawIdToken,
+                                          @NonNull final Set<String> claimNames) throws ServiceException {
+        final String methodName = ":getClaims(String, Set)";
+
+        try {
+            return JwtClaimsDecoder.decodeClaims(rawIdToken, claimNames);
+        } catch (final ParseException e) {
+            Logger.error(
+                    TAG + methodName,
+                    "Failed to parse IdToken",
+                    e
+            );
 
-        return result;
+            throw new ServiceException("Failed to parse JWT", ErrorStrings.INVALID_JWT, e);
+        }
     }
 
 }
@@ -0,0 +1,322 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.providers.oauth2;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.microsoft.identity.common.java.metrics.Counter;
+import com.microsoft.identity.common.java.metrics.LatencyHistogram;
+import com.microsoft.identity.common.java.metrics.MetricNames;
+import com.microsoft.identity.common.java.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import cz.msebera.android.httpclient.extras.Base64;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import lombok.NonNull;
+
+/**
+ * Reads the claims of a JWT without verifying its signature, by base64url-decoding the payload
+ * and streaming through its JSON.
+ * <p>
+ * Claim values have the types nimbus' JWTClaimsSet gives them: "exp", "iat" and "nbf" are
+ * {@link Date}s, "aud" is always a list of strings, integers are {@link Long}s (or
+ * {@link BigInteger}s if too large), decimals are {@link Double}s, and JSON objects and arrays
+ * are maps and lists. All returned maps and lists are unmodifiable, as they may be shared.
+ * <p>
+ * The claims of the most recently decoded tokens are cached, so decoding the same ID token again
+ * does not parse it again.
+ */
+final class JwtClaimsDecoder {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int CLAIMS_CACHE_SIZE = 16;
+
+    private static final String ALGORITHM = "alg";
+    private static final String AUDIENCE = "aud";
+    private static final String[] DATE_CLAIMS = {"exp", "iat", "nbf"};
+    private static final String[] STRING_CLAIMS = {"iss", "sub", "jti"};
+
+    // Keyed on the raw token itself, so that a hash collision can never return another token's claims.
+    private static final Map<String, Map<String, ?>> sClaimsCache =
+            new LinkedHashMap<String, Map<String, ?>>(CLAIMS_CACHE_SIZE + 1, .75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, Map<String, ?>> eldest) {
+                    return size() > CLAIMS_CACHE_SIZE;
+                }
+            };
+
+    private static final LatencyHistogram sParseLatency =
+            MetricsRegistry.getInstance().getHistogram(MetricNames.TOKEN_PARSE);
+
+    private static final Counter sCacheHits =
+            MetricsRegistry.getInstance().getCounter(MetricNames.TOKEN_PARSE_CACHE_HIT);
+
+    private JwtClaimsDecoder() {
+    }
+
+    /**
+     * Gets all the claims of the supplied JWT.
+     *
+     * @param rawJwt The JWT, in compact serialization.
+     * @return An unmodifiable map of the claims.
+     * @throws ParseException if the JWT is malformed.
+     */
+    static Map<String, ?> decodeClaims(@NonNull final String rawJwt) throws ParseException {
+        synchronized (sClaimsCache) {
+            final Map<String, ?> cached = sClaimsCache.get(rawJwt);
+            if (cached != null) {
+                sCacheHits.increment();
+                return cached;
+            }
+        }
+
+        final Map<String, ?> claims = decode(rawJwt, null);
+
+        synchronized (sClaimsCache) {
+            sClaimsCache.put(rawJwt, claims);
+        }
+
+        return claims;
+    }
+
+    /**
+     * Gets the supplied claims of the supplied JWT, skipping over the values of any others.
+     *
+     * @param rawJwt     The JWT, in compact serialization.
+     * @param claimNames The names of the claims to get.
+     * @return An unmodifiable map of those of the claims the token has.
+     * @throws ParseException if the JWT is malformed.
+     */
+    static Map<String, ?> decodeClaims(@NonNull final String rawJwt,
+                                       @NonNull final Set<String> claimNames) throws ParseException {
+        final Map<String, ?> cached;
+        synchronized (sClaimsCache) {
+            cached = sClaimsCache.get(rawJwt);
+        }
+
+        if (cached == null) {
+            return decode(rawJwt, claimNames);
+        }
+
+        sCacheHits.increment();
+
+        final Map<String, Object> claims = new LinkedHashMap<>();
+        for (final String claimName : claimNames) {
+            if (cached.containsKey(claimName)) {
+                claims.put(claimName, cached.get(claimName));
+            }
+        }
+        return Collections.unmodifiableMap(claims);
+    }
+
+    private static Map<String, ?> decode(@NonNull final String rawJwt,
+                                         @Nullable final Set<String> claimNames) throws ParseException {
+        final long startTime = System.nanoTime();
+        try {
+            return decodeUntimed(rawJwt, claimNames);
+        } finally {
+            sParseLatency.recordSince(startTime);
+        }
+    }
+
+    private static Map<String, ?> decodeUntimed(@NonNull final String rawJwt,
+                                                @Nullable final Set<String> claimNames) throws ParseException {
+        final int firstDot = rawJwt.indexOf('.');
+        final int secondDot = firstDot < 0 ? -1 : rawJwt.indexOf('.', firstDot + 1);
+        if (secondDot < 0) {
+            throw new ParseException("Invalid JWT serialization: Missing dot delimiter(s)", 0);
+        }
+        if (rawJwt.indexOf('.', secondDot + 1) >= 0) {
+            // Five parts: a JWE, whose claims cannot be read without decrypting it.
+            throw new ParseException("Encrypted JWTs are not supported", secondDot + 1);
+        }
+
+        final JsonReader header = newReader(rawJwt.substring(0, firstDot), 0);
+        final JsonReader payload = newReader(rawJwt.substring(firstDot + 1, secondDot), firstDot + 1);
+
+        try {
+            if (!hasTopLevelMember(header, ALGORITHM)) {
+                throw new ParseException("Missing \"" + ALGORITHM + "\" in header JSON object", 0);
+            }
+            return readClaims(payload, claimNames);
+        } catch (final IOException | IllegalStateException e) {
+            // JsonReader throws IllegalStateException when a value is not of the type expected.
+            final ParseException parseException = new ParseException("JWT is not valid JSON: " + e.getMessage(), 0);
+            parseException.initCause(e);
+            throw parseException;
+        }
+    }
+
+    private static JsonReader newReader(@NonNull final String base64UrlPart,
+                                        final int offset) throws ParseException {
+        final byte[] decoded;
+        try {
+            decoded = Base64.decode(base64UrlPart, Base64.URL_SAFE | Base64.NO_WRAP | Base64.NO_PADDING);
+        } catch (final IllegalArgumentException e) {
+            final ParseException parseException = new ParseException("JWT part is not valid base64url", offset);
+            parseException.initCause(e);
+            throw parseException;
+        }
+
+        return new JsonReader(new StringReader(new String(decoded, UTF_8)));
+    }
+
+    private static boolean hasTopLevelMember(@NonNull final JsonReader reader,
+                                             @NonNull final String name) throws IOException {
+        boolean found = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            found |= name.equals(reader.nextName());
+            reader.skipValue();
+        }
+        reader.endObject();
+        return found;
+    }
+
+    private static Map<String, ?> readClaims(@NonNull final JsonReader reader,
+                                             @Nullable final Set<String> claimNames)
+            throws IOException, ParseException {
+        final Map<String, Object> claims = new LinkedHashMap<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if (claimNames == null || claimNames.contains(name)) {
+                claims.put(name, toRegisteredClaimType(name, readValue(reader)));
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (reader.peek() != JsonToken.END_DOCUMENT) {
+            throw new ParseException("Unexpected content after JWT payload", 0);
+        }
+
+        return Collections.unmodifiableMap(claims);
+    }
+
+    @Nullable
+    private static Object readValue(@NonNull final JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                final Map<String, Object> object = new LinkedHashMap<>();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    object.put(reader.nextName(), readValue(reader));
+                }
+                reader.endObject();
+                return Collections.unmodifiableMap(object);
+            case BEGIN_ARRAY:
+                final List<Object> array = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    array.add(readValue(reader));
+                }
+                reader.endArray();
+                return Collections.unmodifiableList(array);
+            case STRING:
+                return reader.nextString();
+            case NUMBER:
+                return toNumber(reader.nextString());
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return null;
+            default:
+                throw new IOException("Unexpected JSON token " + reader.peek());
+        }
+    }
+
+    private static Number toNumber(@NonNull final String number) {
+        if (number.indexOf('.') >= 0 || number.indexOf('e') >= 0 || number.indexOf('E') >= 0) {
+            return Double.valueOf(number);
+        }
+
+        try {
+            return Long.valueOf(number);
+        } catch (final NumberFormatException e) {
+            return new BigInteger(number);
+        }
+    }
+
+    /**
+     * Checks and converts the values of the claims registered by RFC 7519, as nimbus does.
+     */
+    @Nullable
+    private static Object toRegisteredClaimType(@NonNull final String name,
+                                                @Nullable final Object value) throws ParseException {
+        if (value == null) {
+            return null;
+        }
+
+        for (final String dateClaim : DATE_CLAIMS) {
+            if (dateClaim.equals(name)) {
+                if (!(value instanceof Number)) {
+                    throw unexpectedType(name);
+                }
+                return new Date(((Number) value).longValue() * 1000L);
+            }
+        }
+
+        for (final String stringClaim : STRING_CLAIMS) {
+            if (stringClaim.equals(name) && !(value instanceof String)) {
+                throw unexpectedType(name);
+            }
+        }
+
+        if (AUDIENCE.equals(name)) {
+            if (value instanceof String) {
+                return Collections.singletonList(value);
+            }
+            if (!(value instanceof List)) {
+                throw unexpectedType(name);
+            }
+            for (final Object audience : (List<?>) value) {
+                if (!(audience instanceof String)) {
+                    throw new ParseException("JSON object member with key \"" + name + "\" is not an array of strings", 0);
+                }
+            }
+        }
+
+        return value;
+    }
+
+    private static ParseException unexpectedType(@NonNull final String name) {
+        return new ParseException("Unexpected type of JSON object member with key \"" + name + "\"", 0);
+    }
+}
@@ -35,9 +35,11 @@ import com.microsoft.identity.common.java.eststelemetry.EstsTelemetry;
 import com.microsoft.identity.common.java.exception.ClientException;
 import com.microsoft.identity.common.java.logging.DiagnosticContext;
 import com.microsoft.identity.common.java.logging.Logger;
+import com.microsoft.identity.common.java.net.AbstractHttpClient;
 import com.microsoft.identity.common.java.net.HttpClient;
 import com.microsoft.identity.common.java.net.HttpConstants;
 import com.microsoft.identity.common.java.net.HttpResponse;
+import com.microsoft.identity.common.java.net.IResponseBodyDecoder;
 import com.microsoft.identity.common.java.net.UrlConnectionHttpClient;
 import com.microsoft.identity.common.java.platform.Device;
 import com.microsoft.identity.common.java.providers.microsoft.MicrosoftTokenRequest;
@@ -224,12 +226,24 @@ public abstract class OAuth2Strategy
         }
 
         final URL requestUrl = new URL(getTokenEndpoint());
-        final HttpResponse response = httpClient.post(
-                requestUrl,
-                headers,
-                requestBody.getBytes(ObjectMapper.ENCODING_SCHEME),
-                null
-        );
+        final IResponseBodyDecoder<?> decoder = getTokenResponseDecoder();
+        final HttpResponse response;
+        if (decoder != null && httpClient instanceof AbstractHttpClient) {
+            response = ((AbstractHttpClient) httpClient).post(
+                    requestUrl,
+                    headers,
+                    requestBody.getBytes(ObjectMapper.ENCODING_SCHEME),
+                    null,
+                    decoder
+            );
+        } else {
+            response = httpClient.post(
+                    requestUrl,
+                    headers,
+                    requestBody.getBytes(ObjectMapper.ENCODING_SCHEME),
+                    null
+            );
+        }
 
         // Record the clock skew between *this device* and EVO...
         if (null != response.getDate()) {
@@ -458,6 +472,17 @@ public abstract class OAuth2Strategy
      */
     protected abstract void validateTokenRequest(GenericTokenRequest request);
 
+    /**
+     * Gets the decoder that reads the body of token responses straight from the connection, see
+     * {@link HttpResponse#getDecodedBody()}. Returns null by default, in which case the body is
+     * read into a String and parsed by {@link #getTokenResultFromHttpResponse(HttpResponse)}.
+     *
+     * @return the decoder, or null.
+     */
+    protected IResponseBodyDecoder<?> getTokenResponseDecoder() {
+        return null;
+    }
+
     /**
      * Abstract method for translating the HttpResponse to a TokenResponse.
      *
@@ -23,9 +23,12 @@
 package com.microsoft.identity.common.java.providers.oauth2;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.microsoft.identity.common.java.cache.PersistentMetadataCache;
 import com.microsoft.identity.common.java.exception.ServiceException;
 import com.microsoft.identity.common.java.util.StringUtil;
 import com.microsoft.identity.common.java.util.TaskCompletedCallbackWithError;
+import com.microsoft.identity.common.java.util.ThreadUtils;
 import com.microsoft.identity.common.java.net.HttpClient;
 import com.microsoft.identity.common.java.net.HttpResponse;
 import com.microsoft.identity.common.java.net.UrlConnectionHttpClient;
@@ -37,12 +40,15 @@ import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static com.microsoft.identity.common.java.exception.ServiceException.OPENID_PROVIDER_CONFIGURATION_FAILED_TO_LOAD;
 
+import edu.umd.cs.findbugs.annotations.Nullable;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import lombok.NonNull;
 
@@ -53,14 +59,32 @@ public class OpenIdProviderConfigurationClient {
 
     private static final String TAG = OpenIdProviderConfigurationClient.class.getSimpleName();
     private static final String sWellKnownConfig = "/.well-known/openid-configuration";
-    private static final ExecutorService sBackgroundExecutor = Executors.newCachedThreadPool();
-    private static final Map<URI, OpenIdProviderConfiguration> sConfigCache = new HashMap<>();
+    // Runs asynchronous loads and revalidations. Both are de-duplicated per configuration URL by
+    // the load locks, so a few threads and a short queue suffice; anything beyond that is rejected.
+    private static final int BACKGROUND_MAX_THREADS = 4;
+    private static final int BACKGROUND_QUEUE_SIZE = 16;
+    private static final ExecutorService sBackgroundExecutor = ThreadUtils.getNamedThreadPoolExecutor(
+            1, BACKGROUND_MAX_THREADS, BACKGROUND_QUEUE_SIZE, 30, TimeUnit.SECONDS, "OpenIdProviderConfigurationClient"
+    );
+    private static final ConcurrentMap<URI, CachedConfiguration> sConfigCache = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<URI, Object> sLoadLocks = new ConcurrentHashMap<>();
     private static final HttpClient httpClient = UrlConnectionHttpClient.getDefaultInstance();
 
     public interface OpenIdProviderConfigurationCallback
             extends TaskCompletedCallbackWithError<OpenIdProviderConfiguration, Exception> {
     }
 
+    private static final class CachedConfiguration {
+        private final OpenIdProviderConfiguration mConfiguration;
+        private final long mFetchedAtMillis;
+
+        CachedConfiguration(@NonNull final OpenIdProviderConfiguration configuration,
+                            final long fetchedAtMillis) {
+            mConfiguration = configuration;
+            mFetchedAtMillis = fetchedAtMillis;
+        }
+    }
+
     private final String mIssuer;
     private final Gson mGson = new Gson();
 
@@ -96,32 +120,54 @@ public class OpenIdProviderConfigurationClient {
 
     public void loadOpenIdProviderConfiguration(
             @NonNull final OpenIdProviderConfigurationCallback callback) {
-        sBackgroundExecutor.submit(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    callback.onTaskCompleted(loadOpenIdProviderConfiguration());
-                } catch (ServiceException e) {
-                    callback.onError(e);
+        try {
+            sBackgroundExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        callback.onTaskCompleted(loadOpenIdProviderConfiguration());
+                    } catch (ServiceException e) {
+                        callback.onError(e);
+                    }
                 }
-            }
-        });
+            });
+        } catch (final RejectedExecutionException e) {
+            callback.onError(new ServiceException(
+                    OPENID_PROVIDER_CONFIGURATION_FAILED_TO_LOAD,
+                    "Too many metadata requests in flight",
+                    e
+            ));
+        }
     }
 
     /**
      * Get OpenID provider configuration.
+     * <p>
+     * The configuration is served from memory or, after a process restart, from the
+     * {@link PersistentMetadataCache}. A stale copy is returned immediately and revalidated in the
+     * background; only a missing or expired copy is fetched from the network in-line. Concurrent
+     * loads of the same configuration share a single fetch.
      *
      * @return OpenIdProviderConfiguration
      */
-    public synchronized OpenIdProviderConfiguration loadOpenIdProviderConfiguration()
+    public OpenIdProviderConfiguration loadOpenIdProviderConfiguration()
             throws ServiceException {
         final String methodName = ":loadOpenIdProviderConfiguration";
 
+        final URI configUrl;
         try {
-            final URI configUrl = new URI(mIssuer + sWellKnownConfig);
+            configUrl = new URI(mIssuer + sWellKnownConfig);
+        } catch (final URISyntaxException e) {
+            throw new ServiceException(
+                    OPENID_PROVIDER_CONFIGURATION_FAILED_TO_LOAD,
+                    "IOException while requesting metadata",
+                    e
+            );
+        }
 
+        synchronized (getLoadLock(configUrl)) {
             // Check first for a cached copy...
-            final OpenIdProviderConfiguration cacheResult = sConfigCache.get(configUrl);
+            final CachedConfiguration cacheResult = getCachedConfiguration(configUrl);
 
             // If we found a result, return it...
             if (null != cacheResult) {
@@ -129,9 +175,77 @@ public class OpenIdProviderConfigurationClient {
                         TAG + methodName,
                         "Using cached metadata result."
                 );
-                return cacheResult;
+
+                if (!PersistentMetadataCache.isFresh(cacheResult.mFetchedAtMillis)) {
+                    revalidateInBackground(configUrl);
+                }
+
+                return cacheResult.mConfiguration;
+            }
+
+            return fetchConfiguration(configUrl);
+        }
+    }
+
+    /**
+     * Looks up the configuration in memory, then in the persistent cache. Copies past the
+     * {@link PersistentMetadataCache} expiry are discarded from either.
+     */
+    @Nullable
+    private CachedConfiguration getCachedConfiguration(@NonNull final URI configUrl) {
+        final String methodName = ":getCachedConfiguration";
+        final CachedConfiguration inMemory = sConfigCache.get(configUrl);
+
+        if (null != inMemory) {
+            if (!PersistentMetadataCache.isExpired(inMemory.mFetchedAtMillis)) {
+                return inMemory;
+            }
+
+            Logger.verbose(
+                    TAG + methodName,
+                    "Discarding expired metadata."
+            );
+            sConfigCache.remove(configUrl, inMemory);
+        }
+
+        final PersistentMetadataCache.Entry persisted =
+                PersistentMetadataCache.read(configUrl.toString());
+
+        if (null == persisted) {
+            return null;
+        }
+
+        try {
+            final OpenIdProviderConfiguration parsedConfig = parseMetadata(persisted.getBody());
+
+            if (null == parsedConfig) {
+                return null;
             }
 
+            Logger.verbose(
+                    TAG + methodName,
+                    "Loaded persisted metadata."
+            );
+
+            final CachedConfiguration cached =
+                    new CachedConfiguration(parsedConfig, persisted.getFetchedAtMillis());
+            sConfigCache.put(configUrl, cached);
+            return cached;
+        } catch (final JsonParseException e) {
+            Logger.warn(
+                    TAG + methodName,
+                    "Discarding unparseable persisted metadata."
+            );
+            PersistentMetadataCache.remove(configUrl.toString());
+            return null;
+        }
+    }
+
+    private OpenIdProviderConfiguration fetchConfiguration(@NonNull final URI configUrl)
+            throws ServiceException {
+        final String methodName = ":fetchConfiguration";
+
+        try {
             Logger.verbose(
                     TAG + methodName,
                     "Config URL is valid."
@@ -162,11 +276,11 @@ public class OpenIdProviderConfigurationClient {
                     providerConfigResponse.getBody()
             );
 
-            // Cache our config in memory for later
-            cacheConfiguration(configUrl, parsedConfig);
+            // Cache our config in memory and on disk for later
+            cacheConfiguration(configUrl, parsedConfig, providerConfigResponse.getBody());
 
             return parsedConfig;
-        } catch (IOException | URISyntaxException e) {
+        } catch (final IOException e) {
             throw new ServiceException(
                     OPENID_PROVIDER_CONFIGURATION_FAILED_TO_LOAD,
                     "IOException while requesting metadata",
@@ -175,9 +289,52 @@ public class OpenIdProviderConfigurationClient {
         }
     }
 
+    /**
+     * Refetches a stale configuration on the background executor, unless a refresh of it is
+     * already running. Failures are logged and the stale copy is kept.
+     */
+    private void revalidateInBackground(@NonNull final URI configUrl) {
+        final String methodName = ":revalidateInBackground";
+        final String key = configUrl.toString();
+
+        if (!PersistentMetadataCache.tryBeginRefresh(key)) {
+            return;
+        }
+
+        try {
+            sBackgroundExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        synchronized (getLoadLock(configUrl)) {
+                            fetchConfiguration(configUrl);
+                        }
+                    } catch (final ServiceException e) {
+                        Logger.warn(
+                                TAG + methodName,
+                                "Failed to revalidate metadata, keeping the stale copy."
+                        );
+                    } finally {
+                        PersistentMetadataCache.endRefresh(key);
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            PersistentMetadataCache.endRefresh(key);
+        }
+    }
+
+    private static Object getLoadLock(@NonNull final URI configUrl) {
+        final Object lock = new Object();
+        final Object existing = sLoadLocks.putIfAbsent(configUrl, lock);
+        return existing == null ? lock : existing;
+    }
+
     private void cacheConfiguration(@NonNull final URI configUrl,
-                                    @NonNull final OpenIdProviderConfiguration parsedConfig) {
-        sConfigCache.put(configUrl, parsedConfig);
+                                    @NonNull final OpenIdProviderConfiguration parsedConfig,
+                                    @NonNull final String body) {
+        sConfigCache.put(configUrl, new CachedConfiguration(parsedConfig, System.currentTimeMillis()));
+        PersistentMetadataCache.write(configUrl.toString(), body);
     }
 
     private OpenIdProviderConfiguration parseMetadata(@NonNull final String body) {
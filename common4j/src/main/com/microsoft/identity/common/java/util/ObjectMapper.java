@@ -26,6 +26,8 @@ import lombok.NonNull;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
 import com.google.gson.TypeAdapter;
 import com.google.gson.TypeAdapterFactory;
 import com.google.gson.reflect.TypeToken;
@@ -38,6 +40,8 @@ import com.microsoft.identity.common.java.commands.parameters.IHasExtraParameter
 import com.microsoft.identity.common.java.logging.Logger;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Type;
@@ -230,6 +234,26 @@ public final class ObjectMapper {
         return GSON.fromJson(json, objectClass);
     }
 
+    /**
+     * Deserialize a UTF-8 JSON stream to Object, without reading it into a String first.
+     *
+     * @param json        InputStream, not closed by this method
+     * @param objectClass object class
+     * @param <T>         type T
+     * @return object
+     * @throws IOException if the stream cannot be read, or does not hold a JSON value of the class.
+     */
+    public static <T> T deserializeJsonStreamToObject(@NonNull final InputStream json,
+                                                      @NonNull final Class<T> objectClass) throws IOException {
+        try {
+            return GSON.fromJson(new InputStreamReader(json, AuthenticationConstants.CHARSET_UTF8), objectClass);
+        } catch (final JsonIOException e) {
+            throw new IOException(e);
+        } catch (final JsonSyntaxException e) {
+            throw new IOException(e);
+        }
+    }
+
     /**
      * Method for serializing the contents of an object as a Url Encoded string.  Important to the implementation of
      * this method is the behavior of GSON which excludes null fields from the resulting JSON.  A TreeMap was used to
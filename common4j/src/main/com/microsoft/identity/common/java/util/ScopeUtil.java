@@ -0,0 +1,183 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.util;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+import lombok.NonNull;
+
+import static com.microsoft.identity.common.java.AuthenticationConstants.DEFAULT_SCOPES;
+
+/**
+ * Helper methods for matching space-delimited targets (scopes).
+ * <p>
+ * Scopes are compared case-insensitively, so the sets produced here are lowercased. Credential
+ * records are deserialized afresh on every cache read, so the normalized sets are cached here by
+ * target string rather than on the records; the same handful of targets repeats across every
+ * token in the cache. Individual scope strings are interned in a bounded dictionary as well.
+ */
+public final class ScopeUtil {
+
+    /**
+     * Upper bound on the number of distinct scopes kept in the intern dictionary. Scopes seen once
+     * the dictionary is full are still normalized, just not deduplicated.
+     */
+    private static final int MAX_INTERNED_SCOPES = 1024;
+
+    /**
+     * Upper bound on the number of distinct targets whose normalized scope sets are cached. Targets
+     * seen once the cache is full are still normalized, just not cached.
+     */
+    private static final int MAX_CACHED_TARGETS = 256;
+
+    private static final ConcurrentMap<String, String> sInternedScopes = new ConcurrentHashMap<>();
+
+    private static final ConcurrentMap<String, Set<String>> sNormalizedTargets = new ConcurrentHashMap<>();
+
+    private ScopeUtil() {
+        // Utility class.
+    }
+
+    /**
+     * Splits the supplied target on whitespace into an immutable set of lowercased, interned scopes.
+     * Default scopes are kept; use the comparison methods of this class to ignore them.
+     * <p>
+     * The returned set may be shared with other callers passing the same target.
+     *
+     * @param target The space-delimited target. May be null.
+     * @return The normalized scope set. Empty if the target is null or blank.
+     */
+    @NonNull
+    public static Set<String> toNormalizedScopeSet(@Nullable final String target) {
+        if (null == target) {
+            return Collections.emptySet();
+        }
+
+        final Set<String> cached = sNormalizedTargets.get(target);
+
+        if (null != cached) {
+            return cached;
+        }
+
+        final Set<String> scopes = parse(target);
+
+        if (sNormalizedTargets.size() >= MAX_CACHED_TARGETS) {
+            return scopes;
+        }
+
+        final Set<String> existing = sNormalizedTargets.putIfAbsent(target, scopes);
+        return null == existing ? scopes : existing;
+    }
+
+    @NonNull
+    private static Set<String> parse(@NonNull final String target) {
+        final Set<String> scopes = new HashSet<>();
+        final int length = target.length();
+        int start = -1;
+
+        for (int i = 0; i <= length; i++) {
+            final boolean isDelimiter = i == length || Character.isWhitespace(target.charAt(i));
+
+            if (isDelimiter && start >= 0) {
+                scopes.add(intern(target.substring(start, i).toLowerCase(Locale.ROOT)));
+                start = -1;
+            } else if (!isDelimiter && start < 0) {
+                start = i;
+            }
+        }
+
+        return scopes.isEmpty()
+                ? Collections.<String>emptySet()
+                : Collections.unmodifiableSet(scopes);
+    }
+
+    /**
+     * Returns true if the credential scopes contain every sought scope.
+     *
+     * @param credentialScopes  The normalized scopes of the credential.
+     * @param soughtScopes      The normalized scopes of the query.
+     * @param omitDefaultScopes True if the default scopes should not be considered.
+     * @return True if every (considered) sought scope is present in credentialScopes.
+     */
+    public static boolean containsAllScopes(@NonNull final Set<String> credentialScopes,
+                                            @NonNull final Set<String> soughtScopes,
+                                            final boolean omitDefaultScopes) {
+        for (final String scope : soughtScopes) {
+            if (omitDefaultScopes && DEFAULT_SCOPES.contains(scope)) {
+                continue;
+            }
+
+            if (!credentialScopes.contains(scope)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns true if the supplied scope sets share at least one scope.
+     *
+     * @param scopes1           The first normalized scope set.
+     * @param scopes2           The second normalized scope set.
+     * @param omitDefaultScopes True if the default scopes should not be considered.
+     * @return True if any (considered) scope is present in both sets.
+     */
+    public static boolean scopesIntersect(@NonNull final Set<String> scopes1,
+                                          @NonNull final Set<String> scopes2,
+                                          final boolean omitDefaultScopes) {
+        for (final String scope : scopes2) {
+            if (omitDefaultScopes && DEFAULT_SCOPES.contains(scope)) {
+                continue;
+            }
+
+            if (scopes1.contains(scope)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @NonNull
+    private static String intern(@NonNull final String scope) {
+        final String interned = sInternedScopes.get(scope);
+
+        if (null != interned) {
+            return interned;
+        }
+
+        if (sInternedScopes.size() >= MAX_INTERNED_SCOPES) {
+            return scope;
+        }
+
+        final String existing = sInternedScopes.putIfAbsent(scope, scope);
+        return null == existing ? scope : existing;
+    }
+}
@@ -78,21 +78,33 @@ public class ThreadUtils {
         if (queueSize > 0) {
             return new ThreadPoolExecutor(corePool, maxPool, keepAliveTime, keepAliveUnit,
                                           new ArrayBlockingQueue<Runnable>(queueSize),
-                                          getNamedThreadFactory(poolName, System.getSecurityManager()));
+                                          getNamedThreadFactory(poolName, System.getSecurityManager(), false));
         } else if (queueSize == 0) {
             return new ThreadPoolExecutor(corePool, maxPool, keepAliveTime, keepAliveUnit,
                                           new SynchronousQueue<Runnable>(),
-                                          getNamedThreadFactory(poolName, System.getSecurityManager()));
+                                          getNamedThreadFactory(poolName, System.getSecurityManager(), false));
         } else { // (queueSize < 0)
             return new ThreadPoolExecutor(corePool, maxPool, keepAliveTime, keepAliveUnit,
                                           new LinkedBlockingQueue<Runnable>(),
-                                          getNamedThreadFactory(poolName, System.getSecurityManager()));
+                                          getNamedThreadFactory(poolName, System.getSecurityManager(), false));
         }
     }
 
+    /**
+     * Construct a thread factory for daemon threads with the specified name, e.g. for timers that
+     * should not keep the process alive.
+     *
+     * @param poolName The name of the thread pool in use.
+     * @return A thread factory creating named daemon threads.
+     */
+    public static ThreadFactory getNamedDaemonThreadFactory(@NonNull final String poolName) {
+        return getNamedThreadFactory(poolName, System.getSecurityManager(), true);
+    }
+
     //Nice thought, but if you're using executors, you're using ThreadGroup whether you want to or not.
     @SuppressWarnings("PMD.AvoidThreadGroup")
-    private static ThreadFactory getNamedThreadFactory(@NonNull final String poolName, final SecurityManager securityManager) {
+    private static ThreadFactory getNamedThreadFactory(@NonNull final String poolName, final SecurityManager securityManager,
+                                                       final boolean daemon) {
         return new ThreadFactory() {
             private final String poolPrefix = poolName + "-";
             private final AtomicLong threadNumber = new AtomicLong(1);
@@ -102,6 +114,7 @@ public class ThreadUtils {
             @Override
             public Thread newThread(Runnable r) {
                 final Thread thread = new Thread(group, r, poolPrefix + threadNumber.getAndIncrement(), 0);
+                thread.setDaemon(daemon);
                 thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
                     @Override
                     public void uncaughtException(@NonNull final Thread t, @NonNull final Throwable e) {
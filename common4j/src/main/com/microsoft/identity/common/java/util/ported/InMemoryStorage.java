@@ -22,6 +22,9 @@
 //  THE SOFTWARE.
 package com.microsoft.identity.common.java.util.ported;
 
+import com.microsoft.identity.common.java.cache.ICompareAndSetNameValueStorage;
+import com.microsoft.identity.common.java.cache.IVersionedNameValueStorage;
+import com.microsoft.identity.common.java.cache.NameValueSnapshot;
 import com.microsoft.identity.common.java.interfaces.INameValueStorage;
 
 import java.util.HashMap;
@@ -29,6 +32,8 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import edu.umd.cs.findbugs.annotations.Nullable;
 import lombok.NonNull;
@@ -36,8 +41,10 @@ import lombok.NonNull;
 /**
  * A wrapper around Map
  */
-public class InMemoryStorage<T> implements INameValueStorage<T> {
-    private final Map<String, T> mMap = new ConcurrentHashMap<>();
+public class InMemoryStorage<T> implements INameValueStorage<T>, IVersionedNameValueStorage,
+        ICompareAndSetNameValueStorage<T> {
+    private final ConcurrentMap<String, T> mMap = new ConcurrentHashMap<>();
+    private final AtomicLong mVersion = new AtomicLong();
 
     @Nullable
     public T get(@NonNull final String key) {
@@ -52,21 +59,43 @@ public class InMemoryStorage<T> implements INameValueStorage<T> {
     public void put(@NonNull final String key,
                     @Nullable final T value) {
         if (value == null) {
-            mMap.remove(key);
+            remove(key);
             return;
         }
 
         mMap.put(key, value);
+        mVersion.incrementAndGet();
+    }
+
+    @Override
+    public boolean compareAndSet(@NonNull final String key,
+                                 @Nullable final T expectedValue,
+                                 @Nullable final T newValue) {
+        final boolean replaced;
+        if (expectedValue == null) {
+            replaced = newValue == null ? !mMap.containsKey(key) : mMap.putIfAbsent(key, newValue) == null;
+        } else if (newValue == null) {
+            replaced = mMap.remove(key, expectedValue);
+        } else {
+            replaced = mMap.replace(key, expectedValue, newValue);
+        }
+
+        if (replaced) {
+            mVersion.incrementAndGet();
+        }
+        return replaced;
     }
 
     @Override
     public void remove(@NonNull String name) {
         mMap.remove(name);
+        mVersion.incrementAndGet();
     }
 
     @Override
     public void clear() {
         mMap.clear();
+        mVersion.incrementAndGet();
     }
 
     @Override
@@ -76,7 +105,34 @@ public class InMemoryStorage<T> implements INameValueStorage<T> {
 
     @Override
     public Iterator<Map.Entry<String, T>> getAllFilteredByKey(Predicate<String> keyFilter) {
-        return null;
+        final Map<String, T> filtered = new HashMap<>();
+        for (final Map.Entry<String, T> entry : mMap.entrySet()) {
+            if (keyFilter.test(entry.getKey())) {
+                filtered.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return filtered.entrySet().iterator();
+    }
+
+    /**
+     * Entries written while the snapshot is being taken may or may not be included; the version
+     * is read first, so such a snapshot is never mistaken for a later one.
+     */
+    @Override
+    public @NonNull NameValueSnapshot<T> getSnapshot(@NonNull final Predicate<String> keyFilter) {
+        final long version = mVersion.get();
+        final Map<String, T> filtered = new HashMap<>();
+        for (final Map.Entry<String, T> entry : mMap.entrySet()) {
+            if (keyFilter.test(entry.getKey())) {
+                filtered.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return new NameValueSnapshot<>(version, filtered);
+    }
+
+    @Override
+    public long getVersion() {
+        return mVersion.get();
     }
 
     public int size() {
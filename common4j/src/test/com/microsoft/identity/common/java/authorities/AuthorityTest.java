@@ -0,0 +1,119 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.authorities;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link Authority#getAuthorityFromAuthorityUrl(String)}. Known authorities can only be
+ * added, so every test that configures one uses its own host.
+ */
+@RunWith(JUnit4.class)
+public class AuthorityTest {
+
+    @Test
+    public void testAadAuthority() {
+        final Authority authority = Authority.getAuthorityFromAuthorityUrl("https://login.microsoftonline.com/common");
+        assertTrue(authority instanceof AzureActiveDirectoryAuthority);
+
+        final AzureActiveDirectoryAudience audience = ((AzureActiveDirectoryAuthority) authority).getAudience();
+        assertEquals("https://login.microsoftonline.com", audience.getCloudUrl());
+        assertEquals("common", audience.getTenantId());
+    }
+
+    @Test
+    public void testB2CAuthorityFromPath() {
+        final Authority authority = Authority.getAuthorityFromAuthorityUrl("https://fabrikam.b2clogin.com/tfp/fabrikam/policy");
+        assertTrue(authority instanceof AzureActiveDirectoryB2CAuthority);
+        assertEquals("policy", ((AzureActiveDirectoryB2CAuthority) authority).getB2CPolicyName());
+    }
+
+    @Test
+    public void testAdfsAuthority() {
+        assertTrue(Authority.getAuthorityFromAuthorityUrl("https://fs.contoso.com/adfs")
+                instanceof ActiveDirectoryFederationServicesAuthority);
+    }
+
+    @Test
+    public void testNoPathIsUnknownAuthority() {
+        assertTrue(Authority.getAuthorityFromAuthorityUrl("https://login.microsoftonline.com")
+                instanceof UnknownAuthority);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidAuthorityUrl() {
+        Authority.getAuthorityFromAuthorityUrl("https://login.microsoftonline.com/com mon");
+    }
+
+    @Test
+    public void testRepeatedLookupsReturnNewInstances() {
+        final String url = "https://login.microsoftonline.com/organizations";
+        final Authority first = Authority.getAuthorityFromAuthorityUrl(url);
+        final Authority second = Authority.getAuthorityFromAuthorityUrl(url);
+        assertNotSame(first, second);
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void testConfiguredB2CHostWithoutTfpPath() {
+        Authority.addKnownAuthorities(Collections.<Authority>singletonList(
+                new AzureActiveDirectoryB2CAuthority("https://b2c.contoso.com/contoso/policy")));
+
+        // Hosts are matched case-insensitively.
+        final Authority authority = Authority.getAuthorityFromAuthorityUrl("https://B2C.contoso.com/contoso/other_policy");
+        assertTrue(authority instanceof AzureActiveDirectoryB2CAuthority);
+        assertEquals("other_policy", ((AzureActiveDirectoryB2CAuthority) authority).getB2CPolicyName());
+    }
+
+    @Test
+    public void testConfiguredHostMatchesPort() {
+        Authority.addKnownAuthorities(Collections.<Authority>singletonList(
+                new AzureActiveDirectoryB2CAuthority("https://b2c.fabrikam.com:8443/fabrikam/policy")));
+
+        assertTrue(Authority.getAuthorityFromAuthorityUrl("https://b2c.fabrikam.com:8443/fabrikam/policy")
+                instanceof AzureActiveDirectoryB2CAuthority);
+        assertTrue(Authority.getAuthorityFromAuthorityUrl("https://b2c.fabrikam.com/fabrikam/policy")
+                instanceof AzureActiveDirectoryAuthority);
+    }
+
+    @Test
+    public void testFirstConfiguredAuthorityForHostWins() {
+        final Authority aad = new AzureActiveDirectoryAuthority();
+        aad.mAuthorityUrlString = "https://login.woodgrove.com/woodgrove";
+        Authority.addKnownAuthorities(Arrays.asList(
+                aad,
+                new AzureActiveDirectoryB2CAuthority("https://login.woodgrove.com/woodgrove/policy")));
+
+        assertTrue(Authority.getAuthorityFromAuthorityUrl("https://login.woodgrove.com/woodgrove/policy")
+                instanceof AzureActiveDirectoryAuthority);
+    }
+}
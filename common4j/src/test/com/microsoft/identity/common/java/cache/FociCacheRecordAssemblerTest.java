@@ -0,0 +1,187 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.cache;
+
+import com.microsoft.identity.common.java.dto.AccountRecord;
+import com.microsoft.identity.common.java.dto.Credential;
+import com.microsoft.identity.common.java.dto.CredentialType;
+import com.microsoft.identity.common.java.dto.IdTokenRecord;
+import com.microsoft.identity.common.java.dto.RefreshTokenRecord;
+import com.microsoft.identity.common.java.util.ported.InMemoryStorage;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class FociCacheRecordAssemblerTest {
+
+    private static final String ENVIRONMENT = "login.microsoftonline.com";
+    private static final String CLIENT_ID_1 = "foci-client-1";
+    private static final String CLIENT_ID_2 = "foci-client-2";
+    private static final String HOME_ACCOUNT_ID_1 = "uid1.utid";
+    private static final String HOME_ACCOUNT_ID_2 = "uid2.utid";
+    private static final String REALM = "utid";
+    private static final String FAMILY_ID = "1";
+
+    private IAccountCredentialCache mCache;
+
+    @Before
+    public void setUp() {
+        mCache = new SharedPreferencesAccountCredentialCache(
+                new CacheKeyValueDelegate(),
+                new InMemoryStorage<String>()
+        );
+    }
+
+    @Test
+    public void testOneRecordPerAppAccountWithRefreshToken() {
+        mCache.saveAccount(createAccount(HOME_ACCOUNT_ID_1));
+        mCache.saveAccount(createAccount(HOME_ACCOUNT_ID_2));
+
+        // Account 1 is signed in to both apps, account 2 only to app 1.
+        saveTokens(HOME_ACCOUNT_ID_1, CLIENT_ID_1);
+        saveTokens(HOME_ACCOUNT_ID_1, CLIENT_ID_2);
+        saveTokens(HOME_ACCOUNT_ID_2, CLIENT_ID_1);
+
+        final List<ICacheRecord> records = new FociCacheRecordAssembler(mCache).assemble(Arrays.asList(
+                createMetadata(CLIENT_ID_1),
+                createMetadata(CLIENT_ID_2)
+        ));
+
+        assertEquals(3, records.size());
+        for (final ICacheRecord record : records) {
+            assertEquals(record.getAccount().getHomeAccountId(), record.getRefreshToken().getHomeAccountId());
+            assertEquals(record.getRefreshToken().getClientId(), record.getIdToken().getClientId());
+            assertEquals(CredentialType.IdToken.name(), record.getIdToken().getCredentialType());
+            assertNull(record.getV1IdToken());
+        }
+    }
+
+    @Test
+    public void testFamilyRefreshTokenBelongsToTheAppThatSavedItLast() {
+        mCache.saveAccount(createAccount(HOME_ACCOUNT_ID_1));
+
+        // Both apps save a family refresh token; they share one cache key, so app 2's replaces app 1's.
+        saveFamilyTokens(HOME_ACCOUNT_ID_1, CLIENT_ID_1);
+        saveFamilyTokens(HOME_ACCOUNT_ID_1, CLIENT_ID_2);
+
+        final List<ICacheRecord> records = new FociCacheRecordAssembler(mCache).assemble(Arrays.asList(
+                createMetadata(CLIENT_ID_1),
+                createMetadata(CLIENT_ID_2)
+        ));
+
+        assertEquals(1, records.size());
+        final ICacheRecord record = records.get(0);
+        assertEquals(HOME_ACCOUNT_ID_1, record.getAccount().getHomeAccountId());
+        assertEquals(FAMILY_ID, record.getRefreshToken().getFamilyId());
+        assertEquals(CLIENT_ID_2, record.getRefreshToken().getClientId());
+        assertEquals(CLIENT_ID_2, record.getIdToken().getClientId());
+    }
+
+    @Test
+    public void testAccountWithoutRefreshTokenIsSkipped() {
+        mCache.saveAccount(createAccount(HOME_ACCOUNT_ID_1));
+        mCache.saveCredential(createIdToken(HOME_ACCOUNT_ID_1, CLIENT_ID_1, CredentialType.IdToken));
+
+        final List<ICacheRecord> records = new FociCacheRecordAssembler(mCache)
+                .assemble(Collections.singletonList(createMetadata(CLIENT_ID_1)));
+
+        assertTrue(records.isEmpty());
+    }
+
+    @Test
+    public void testIdsAreMatchedIgnoringCase() {
+        mCache.saveAccount(createAccount(HOME_ACCOUNT_ID_1));
+        saveTokens(HOME_ACCOUNT_ID_1, CLIENT_ID_1);
+
+        final List<ICacheRecord> records = new FociCacheRecordAssembler(mCache)
+                .assemble(Collections.singletonList(createMetadata(CLIENT_ID_1.toUpperCase())));
+
+        assertEquals(1, records.size());
+    }
+
+    private void saveTokens(final String homeAccountId, final String clientId) {
+        final RefreshTokenRecord refreshToken = new RefreshTokenRecord();
+        // No family id, so that each app keeps its own refresh token under a distinct key.
+        populate(refreshToken, homeAccountId, clientId, CredentialType.RefreshToken);
+        mCache.saveCredential(refreshToken);
+        mCache.saveCredential(createIdToken(homeAccountId, clientId, CredentialType.IdToken));
+    }
+
+    private void saveFamilyTokens(final String homeAccountId, final String clientId) {
+        final RefreshTokenRecord refreshToken = new RefreshTokenRecord();
+        populate(refreshToken, homeAccountId, clientId, CredentialType.RefreshToken);
+        refreshToken.setFamilyId(FAMILY_ID);
+        mCache.saveCredential(refreshToken);
+        mCache.saveCredential(createIdToken(homeAccountId, clientId, CredentialType.IdToken));
+    }
+
+    private static IdTokenRecord createIdToken(final String homeAccountId,
+                                               final String clientId,
+                                               final CredentialType type) {
+        final IdTokenRecord idToken = new IdTokenRecord();
+        populate(idToken, homeAccountId, clientId, type);
+        idToken.setRealm(REALM);
+        return idToken;
+    }
+
+    private static void populate(final Credential credential,
+                                 final String homeAccountId,
+                                 final String clientId,
+                                 final CredentialType type) {
+        credential.setHomeAccountId(homeAccountId);
+        credential.setEnvironment(ENVIRONMENT);
+        credential.setClientId(clientId);
+        credential.setCredentialType(type.name());
+        credential.setSecret("secret");
+    }
+
+    private static AccountRecord createAccount(final String homeAccountId) {
+        final AccountRecord account = new AccountRecord();
+        account.setHomeAccountId(homeAccountId);
+        account.setEnvironment(ENVIRONMENT);
+        account.setRealm(REALM);
+        account.setLocalAccountId(homeAccountId);
+        account.setUsername(homeAccountId + "@contoso.com");
+        account.setAuthorityType("MSSTS");
+        return account;
+    }
+
+    private static BrokerApplicationMetadata createMetadata(final String clientId) {
+        final BrokerApplicationMetadata metadata = new BrokerApplicationMetadata();
+        metadata.setClientId(clientId);
+        metadata.setEnvironment(ENVIRONMENT);
+        metadata.setFoci("1");
+        return metadata;
+    }
+}
@@ -0,0 +1,179 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.cache;
+
+import com.google.gson.Gson;
+import com.microsoft.identity.common.components.SettablePlatformComponents;
+import com.microsoft.identity.common.java.interfaces.INameValueStorage;
+import com.microsoft.identity.common.java.interfaces.IPlatformComponents;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class NameValueStorageBrokerApplicationMetadataCacheTest {
+
+    private static final String CACHE_NAME = "com.microsoft.identity.app-meta-cache";
+    private static final String LEGACY_KEY = "app-meta-cache";
+    private static final String ENVIRONMENT = "login.microsoftonline.com";
+    private static final String FOCI_CLIENT_ID_1 = "foci-client-1";
+    private static final String FOCI_CLIENT_ID_2 = "foci-client-2";
+    private static final String NON_FOCI_CLIENT_ID = "non-foci-client";
+
+    private IPlatformComponents mComponents;
+    private NameValueStorageBrokerApplicationMetadataCache mCache;
+
+    @Before
+    public void setUp() {
+        mComponents = SettablePlatformComponents.builder().build();
+        mCache = new NameValueStorageBrokerApplicationMetadataCache(mComponents);
+        mCache.insert(createMetadata(FOCI_CLIENT_ID_1, 1001, "1"));
+        mCache.insert(createMetadata(FOCI_CLIENT_ID_2, 1002, "1"));
+        mCache.insert(createMetadata(NON_FOCI_CLIENT_ID, 1003, null));
+    }
+
+    @Test
+    public void testLookups() {
+        assertEquals(3, mCache.getAll().size());
+        assertEquals(
+                new HashSet<>(Arrays.asList(FOCI_CLIENT_ID_1, FOCI_CLIENT_ID_2, NON_FOCI_CLIENT_ID)),
+                mCache.getAllClientIds()
+        );
+        assertEquals(new HashSet<>(Arrays.asList(FOCI_CLIENT_ID_1, FOCI_CLIENT_ID_2)), mCache.getAllFociClientIds());
+        assertEquals(new HashSet<>(Arrays.asList(NON_FOCI_CLIENT_ID)), mCache.getAllNonFociClientIds());
+        assertEquals(2, mCache.getAllFociApplicationMetadata().size());
+        assertEquals(2, mCache.getFamilyApplicationMetadata("1").size());
+        assertTrue(mCache.getFamilyApplicationMetadata("2").isEmpty());
+
+        final BrokerApplicationMetadata metadata = mCache.getMetadata(FOCI_CLIENT_ID_1, ENVIRONMENT, 1001);
+        assertNotNull(metadata);
+        assertEquals("1", metadata.getFoci());
+        assertNull(mCache.getMetadata(FOCI_CLIENT_ID_1, ENVIRONMENT, 1002));
+    }
+
+    @Test
+    public void testReinsertUpdatesFamily() {
+        mCache.insert(createMetadata(NON_FOCI_CLIENT_ID, 1003, "1"));
+
+        assertTrue(mCache.getAllNonFociClientIds().isEmpty());
+        assertEquals(3, mCache.getFamilyApplicationMetadata("1").size());
+        assertEquals("1", mCache.getMetadata(NON_FOCI_CLIENT_ID, ENVIRONMENT, 1003).getFoci());
+    }
+
+    @Test
+    public void testRemoveIsVisibleToOtherInstances() {
+        final NameValueStorageBrokerApplicationMetadataCache other =
+                new NameValueStorageBrokerApplicationMetadataCache(mComponents);
+        assertNotNull(other.getMetadata(FOCI_CLIENT_ID_2, ENVIRONMENT, 1002));
+
+        mCache.remove(FOCI_CLIENT_ID_2.toUpperCase(), 1002);
+
+        assertNull(other.getMetadata(FOCI_CLIENT_ID_2, ENVIRONMENT, 1002));
+        assertEquals(1, other.getAllFociClientIds().size());
+    }
+
+    @Test
+    public void testClearIsVisible() {
+        mCache.clear();
+
+        assertTrue(mCache.getAll().isEmpty());
+        assertTrue(mCache.getAllClientIds().isEmpty());
+        assertNull(mCache.getMetadata(FOCI_CLIENT_ID_1, ENVIRONMENT, 1001));
+    }
+
+    @Test
+    public void testStoresAreNotShared() {
+        final NameValueStorageBrokerApplicationMetadataCache other =
+                new NameValueStorageBrokerApplicationMetadataCache(SettablePlatformComponents.builder().build());
+
+        assertTrue(other.getAll().isEmpty());
+        assertEquals(3, mCache.getAll().size());
+    }
+
+    @Test
+    public void testReturnedMetadataCannotChangeTheCache() {
+        final BrokerApplicationMetadata metadata = mCache.getMetadata(FOCI_CLIENT_ID_1, ENVIRONMENT, 1001);
+        metadata.setFoci(null);
+
+        final BrokerApplicationMetadata reloaded = mCache.getMetadata(FOCI_CLIENT_ID_1, ENVIRONMENT, 1001);
+        assertNotSame(metadata, reloaded);
+        assertEquals("1", reloaded.getFoci());
+    }
+
+    @Test
+    public void testEachEntryIsStoredUnderItsOwnKey() {
+        final INameValueStorage<String> storage = mComponents.getNameValueStore(CACHE_NAME, String.class);
+
+        int entryKeys = 0;
+        for (final String key : storage.keySet()) {
+            if (key.startsWith(LEGACY_KEY + "-entry-")) {
+                entryKeys++;
+            }
+        }
+
+        assertEquals(3, entryKeys);
+        assertNull(storage.get(LEGACY_KEY));
+    }
+
+    @Test
+    public void testSingleKeyLayoutIsMigrated() {
+        final IPlatformComponents components = SettablePlatformComponents.builder().build();
+        final INameValueStorage<String> storage = components.getNameValueStore(CACHE_NAME, String.class);
+        storage.put(LEGACY_KEY, new Gson().toJson(Arrays.asList(
+                createMetadata(FOCI_CLIENT_ID_1, 1001, "1"),
+                createMetadata(NON_FOCI_CLIENT_ID, 1003, null)
+        )));
+
+        final NameValueStorageBrokerApplicationMetadataCache cache =
+                new NameValueStorageBrokerApplicationMetadataCache(components);
+
+        assertEquals(2, cache.getAll().size());
+        assertEquals("1", cache.getMetadata(FOCI_CLIENT_ID_1, ENVIRONMENT, 1001).getFoci());
+        assertNull(storage.get(LEGACY_KEY));
+
+        cache.insert(createMetadata(FOCI_CLIENT_ID_2, 1002, "1"));
+        assertEquals(3, new NameValueStorageBrokerApplicationMetadataCache(components).getAll().size());
+    }
+
+    private static BrokerApplicationMetadata createMetadata(final String clientId,
+                                                            final int uid,
+                                                            final String foci) {
+        final BrokerApplicationMetadata metadata = new BrokerApplicationMetadata();
+        metadata.setClientId(clientId);
+        metadata.setEnvironment(ENVIRONMENT);
+        metadata.setUid(uid);
+        metadata.setFoci(foci);
+        return metadata;
+    }
+}
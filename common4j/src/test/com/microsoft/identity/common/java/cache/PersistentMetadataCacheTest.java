@@ -0,0 +1,135 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.cache;
+
+import com.microsoft.identity.common.java.util.ported.InMemoryStorage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class PersistentMetadataCacheTest {
+
+    private static final String KEY = "https://login.microsoftonline.com/common/v2.0/.well-known/openid-configuration";
+    private static final String BODY = "{\"issuer\":\"https://login.microsoftonline.com/{tenantid}/v2.0\"}";
+
+    private InMemoryStorage<String> mStorage;
+
+    @Before
+    public void setUp() {
+        mStorage = new InMemoryStorage<>();
+        PersistentMetadataCache.setStorage(mStorage);
+        PersistentMetadataCache.setExpiry(TimeUnit.HOURS.toMillis(1), TimeUnit.HOURS.toMillis(2));
+    }
+
+    @After
+    public void tearDown() {
+        PersistentMetadataCache.setStorage(null);
+        PersistentMetadataCache.setExpiry(
+                PersistentMetadataCache.DEFAULT_TIME_TO_LIVE_MILLIS,
+                PersistentMetadataCache.DEFAULT_STALE_WINDOW_MILLIS
+        );
+    }
+
+    @Test
+    public void testWriteThenReadIsFresh() {
+        PersistentMetadataCache.write(KEY, BODY);
+
+        final PersistentMetadataCache.Entry entry = PersistentMetadataCache.read(KEY);
+        assertNotNull(entry);
+        assertEquals(BODY, entry.getBody());
+        assertTrue(entry.isFresh());
+        assertFalse(entry.isExpired());
+    }
+
+    @Test
+    public void testEntryPastTimeToLiveIsStale() {
+        PersistentMetadataCache.write(KEY, BODY, System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(90));
+
+        final PersistentMetadataCache.Entry entry = PersistentMetadataCache.read(KEY);
+        assertNotNull(entry);
+        assertFalse(entry.isFresh());
+        assertFalse(entry.isExpired());
+    }
+
+    @Test
+    public void testEntryPastStaleWindowIsNotReturned() {
+        PersistentMetadataCache.write(KEY, BODY, System.currentTimeMillis() - TimeUnit.HOURS.toMillis(4));
+
+        assertNull(PersistentMetadataCache.read(KEY));
+    }
+
+    @Test
+    public void testExpiryOfInMemoryCopies() {
+        final long now = System.currentTimeMillis();
+
+        assertFalse(PersistentMetadataCache.isExpired(now - TimeUnit.MINUTES.toMillis(90)));
+        assertTrue(PersistentMetadataCache.isExpired(now - TimeUnit.HOURS.toMillis(4)));
+        assertTrue(PersistentMetadataCache.isExpired(now + TimeUnit.DAYS.toMillis(1)));
+    }
+
+    @Test
+    public void testEntryFromTheFutureIsNotReturned() {
+        PersistentMetadataCache.write(KEY, BODY, System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1));
+
+        assertNull(PersistentMetadataCache.read(KEY));
+    }
+
+    @Test
+    public void testUnreadableEntryIsDiscarded() {
+        mStorage.put(KEY, "not json");
+
+        assertNull(PersistentMetadataCache.read(KEY));
+        assertNull(mStorage.get(KEY));
+    }
+
+    @Test
+    public void testNothingIsPersistedWithoutStorage() {
+        PersistentMetadataCache.setStorage(null);
+        PersistentMetadataCache.write(KEY, BODY);
+
+        assertNull(PersistentMetadataCache.read(KEY));
+        assertTrue(mStorage.keySet().isEmpty());
+    }
+
+    @Test
+    public void testOnlyOneRefreshCanBeClaimedAtATime() {
+        assertTrue(PersistentMetadataCache.tryBeginRefresh(KEY));
+        assertFalse(PersistentMetadataCache.tryBeginRefresh(KEY));
+
+        PersistentMetadataCache.endRefresh(KEY);
+        assertTrue(PersistentMetadataCache.tryBeginRefresh(KEY));
+        PersistentMetadataCache.endRefresh(KEY);
+    }
+}
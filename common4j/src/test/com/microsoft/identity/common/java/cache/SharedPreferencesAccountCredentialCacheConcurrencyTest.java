@@ -0,0 +1,229 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.cache;
+
+import com.google.gson.JsonPrimitive;
+import com.microsoft.identity.common.java.dto.AccessTokenRecord;
+import com.microsoft.identity.common.java.dto.Credential;
+import com.microsoft.identity.common.java.dto.CredentialType;
+import com.microsoft.identity.common.java.util.ported.InMemoryStorage;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Multi-threaded stress tests for {@link SharedPreferencesAccountCredentialCache}. Each worker uses
+ * its own cache instance over the shared storage, as per-request token caches do.
+ */
+@RunWith(JUnit4.class)
+public class SharedPreferencesAccountCredentialCacheConcurrencyTest {
+
+    private static final String HOME_ACCOUNT_ID = "29f3807a-4fb0-42f2-a44a-236aa0cb3f97.0287f963-2d72-4363-9e3a-5705c5b0f031";
+    private static final String ENVIRONMENT = "login.microsoftonline.com";
+    private static final String CLIENT_ID = "0287f963-2d72-4363-9e3a-5705c5b0f031";
+    private static final String REALM = "3c62ac97-29eb-4aed-a3c8-add0298508d";
+    private static final String TARGET = "user.read user.write https://graph.windows.net";
+    private static final String SECRET = "3642fe2f-2c46-4824-9f27-e44b0e3e1278";
+
+    private static final int THREAD_COUNT = 8;
+    private static final int ITERATIONS = 200;
+
+    private CacheKeyValueDelegate mDelegate;
+    private InMemoryStorage<String> mStorage;
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() {
+        mDelegate = new CacheKeyValueDelegate();
+        mStorage = new InMemoryStorage<>();
+        mExecutor = Executors.newFixedThreadPool(THREAD_COUNT);
+    }
+
+    @Test
+    public void testConcurrentSavesToSameKeyKeepAllMergedFields() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<Void>> results = new ArrayList<>();
+
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            final int worker = i;
+            results.add(mExecutor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    final SharedPreferencesAccountCredentialCache cache = newCache();
+                    start.await();
+
+                    for (int j = 0; j < ITERATIONS; j++) {
+                        final AccessTokenRecord accessToken = createAccessToken(REALM);
+                        accessToken.getAdditionalFields().put(
+                                "field_" + worker + "_" + j,
+                                new JsonPrimitive(j)
+                        );
+                        cache.saveCredential(accessToken);
+                    }
+
+                    return null;
+                }
+            }));
+        }
+
+        start.countDown();
+        awaitAll(results);
+
+        // Every save merged the fields of the value it replaced, so none may have been lost.
+        final Credential saved = newCache().getCredential(mDelegate.generateCacheKey(createAccessToken(REALM)));
+        assertNotNull(saved);
+        assertEquals(THREAD_COUNT * ITERATIONS, saved.getAdditionalFields().size());
+    }
+
+    @Test
+    public void testConcurrentReadsAndWritesToDistinctKeys() throws Exception {
+        final AccessTokenRecord seeded = createAccessToken(REALM);
+        final String seededKey = mDelegate.generateCacheKey(seeded);
+        newCache().saveCredential(seeded);
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<Void>> results = new ArrayList<>();
+
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            final int worker = i;
+            results.add(mExecutor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    final SharedPreferencesAccountCredentialCache cache = newCache();
+                    start.await();
+
+                    for (int j = 0; j < ITERATIONS; j++) {
+                        cache.saveCredential(createAccessToken("realm-" + worker + "-" + (j % 10)));
+                        assertEquals(seeded, cache.getCredential(seededKey));
+                        assertTrue(cache.getCredentials().contains(seeded));
+                    }
+
+                    return null;
+                }
+            }));
+        }
+
+        start.countDown();
+        awaitAll(results);
+
+        assertEquals(THREAD_COUNT * 10 + 1, newCache().getCredentials().size());
+    }
+
+    @Test
+    public void testClearAllWhileWriting() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<Void>> results = new ArrayList<>();
+
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            final int worker = i;
+            results.add(mExecutor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    final SharedPreferencesAccountCredentialCache cache = newCache();
+                    start.await();
+
+                    for (int j = 0; j < ITERATIONS; j++) {
+                        if (worker == 0 && j % 20 == 0) {
+                            cache.clearAll();
+                        } else if (worker != 0) {
+                            cache.saveCredential(createAccessToken("realm-" + worker));
+                            assertOnlyWrittenCredentials(cache.getCredentials());
+                        }
+                    }
+
+                    return null;
+                }
+            }));
+        }
+
+        start.countDown();
+        awaitAll(results);
+
+        // Whatever survived the last clear is one complete credential per writer at most.
+        final List<Credential> credentials = newCache().getCredentials();
+        assertTrue(credentials.size() <= THREAD_COUNT - 1);
+        assertOnlyWrittenCredentials(credentials);
+
+        newCache().clearAll();
+        assertTrue(newCache().getCredentials().isEmpty());
+        assertEquals(0, mStorage.size());
+    }
+
+    /**
+     * Asserts that every credential was saved by a writer of {@link #testClearAllWhileWriting()},
+     * in full, and at most once.
+     */
+    private static void assertOnlyWrittenCredentials(final List<Credential> credentials) {
+        final Set<String> realms = new HashSet<>();
+
+        for (final Credential credential : credentials) {
+            final AccessTokenRecord accessToken = (AccessTokenRecord) credential;
+            assertTrue(accessToken.getRealm().startsWith("realm-"));
+            assertEquals(createAccessToken(accessToken.getRealm()), accessToken);
+            assertTrue(realms.add(accessToken.getRealm()));
+        }
+    }
+
+    private SharedPreferencesAccountCredentialCache newCache() {
+        return new SharedPreferencesAccountCredentialCache(mDelegate, mStorage);
+    }
+
+    private void awaitAll(final List<Future<Void>> results) throws Exception {
+        for (final Future<Void> result : results) {
+            // Rethrows any assertion failure from the worker.
+            result.get(60, TimeUnit.SECONDS);
+        }
+        mExecutor.shutdown();
+    }
+
+    private static AccessTokenRecord createAccessToken(final String realm) {
+        final AccessTokenRecord accessToken = new AccessTokenRecord();
+        accessToken.setHomeAccountId(HOME_ACCOUNT_ID);
+        accessToken.setEnvironment(ENVIRONMENT);
+        accessToken.setCredentialType(CredentialType.AccessToken.name());
+        accessToken.setClientId(CLIENT_ID);
+        accessToken.setRealm(realm);
+        accessToken.setTarget(TARGET);
+        accessToken.setCachedAt("0");
+        accessToken.setExpiresOn("0");
+        accessToken.setSecret(SECRET);
+        return accessToken;
+    }
+}
@@ -0,0 +1,470 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.cache;
+
+import com.microsoft.identity.common.java.dto.AccessTokenRecord;
+import com.microsoft.identity.common.java.dto.AccountRecord;
+import com.microsoft.identity.common.java.dto.Credential;
+import com.microsoft.identity.common.java.dto.CredentialType;
+import com.microsoft.identity.common.java.dto.IdTokenRecord;
+import com.microsoft.identity.common.java.dto.RefreshTokenRecord;
+import com.microsoft.identity.common.java.interfaces.INameValueStorage;
+import com.microsoft.identity.common.java.util.ported.InMemoryStorage;
+import com.microsoft.identity.common.java.util.ported.Predicate;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the in-memory index behind the lookups of {@link SharedPreferencesAccountCredentialCache}.
+ * Results are compared with those of a cache over the same entries whose storage does not track
+ * versions, and so always reads the storage.
+ */
+@RunWith(JUnit4.class)
+public class SharedPreferencesAccountCredentialCacheMemoryIndexTest {
+
+    private static final String HOME_ACCOUNT_ID = "29f3807a-4fb0-42f2-a44a-236aa0cb3f97.0287f963-2d72-4363-9e3a-5705c5b0f031";
+    private static final String HOME_ACCOUNT_ID_2 = "a1f3807a-4fb0-42f2-a44a-236aa0cb3f97.0287f963-2d72-4363-9e3a-5705c5b0f031";
+    private static final String ENVIRONMENT = "login.microsoftonline.com";
+    private static final String CLIENT_ID = "0287f963-2d72-4363-9e3a-5705c5b0f031";
+    private static final String REALM = "3c62ac97-29eb-4aed-a3c8-add0298508d";
+    private static final String REALM_2 = "20d3e9fa-982a-40bc-bea4-26bbe3fd332e";
+    private static final String TARGET = "user.read user.write https://graph.windows.net";
+    private static final String SECRET = "3642fe2f-2c46-4824-9f27-e44b0e3e1278";
+
+    private CacheKeyValueDelegate mDelegate;
+    private InMemoryStorage<String> mStorage;
+    private SharedPreferencesAccountCredentialCache mCache;
+    private SharedPreferencesAccountCredentialCache mReference;
+
+    @Before
+    public void setUp() {
+        mDelegate = new CacheKeyValueDelegate();
+        mStorage = new InMemoryStorage<>();
+        mCache = new SharedPreferencesAccountCredentialCache(mDelegate, mStorage);
+        mReference = new SharedPreferencesAccountCredentialCache(mDelegate, new UnversionedStorage(mStorage));
+    }
+
+    @Test
+    public void testSaveAndGetCredential() {
+        final AccessTokenRecord accessToken = createAccessToken(HOME_ACCOUNT_ID, REALM);
+        mCache.saveCredential(accessToken);
+
+        final String cacheKey = mDelegate.generateCacheKey(accessToken);
+        assertEquals(accessToken, mCache.getCredential(cacheKey));
+        assertTrue(mStorage.keySet().contains(cacheKey));
+    }
+
+    @Test
+    public void testLoadsExistingEntriesFromStorage() {
+        final AccessTokenRecord accessToken = createAccessToken(HOME_ACCOUNT_ID, REALM);
+        final AccountRecord account = createAccount(HOME_ACCOUNT_ID);
+        mStorage.put(mDelegate.generateCacheKey(accessToken), mDelegate.generateCacheValue(accessToken));
+        mStorage.put(mDelegate.generateCacheKey(account), mDelegate.generateCacheValue(account));
+
+        // mCache has not been accessed yet, so the index is populated from storage on first read.
+        assertEquals(1, mCache.getCredentials().size());
+        assertEquals(accessToken, mCache.getCredentials().get(0));
+        assertEquals(1, mCache.getAccounts().size());
+        assertEquals(account, mCache.getAccounts().get(0));
+    }
+
+    @Test
+    public void testIndexIsSharedAcrossInstancesOnSameStorage() {
+        final AccessTokenRecord accessToken = createAccessToken(HOME_ACCOUNT_ID, REALM);
+        mCache.saveCredential(accessToken);
+
+        final SharedPreferencesAccountCredentialCache otherCache =
+                new SharedPreferencesAccountCredentialCache(mDelegate, mStorage);
+        assertEquals(Collections.<Credential>singletonList(accessToken), otherCache.getCredentials());
+
+        assertTrue(otherCache.removeCredential(accessToken));
+        assertTrue(mCache.getCredentials().isEmpty());
+    }
+
+    @Test
+    public void testIndexIsSharedAcrossAdaptersOfOneStore() {
+        // Platform components hand out a new adapter over the same file on every call.
+        assertSame(
+                AccountCredentialCacheLocks.forStorage(mStorage),
+                AccountCredentialCacheLocks.forStorage(new AdapterStorage(mStorage))
+        );
+
+        final SharedPreferencesAccountCredentialCache cache1 =
+                new SharedPreferencesAccountCredentialCache(mDelegate, new AdapterStorage(mStorage));
+        final SharedPreferencesAccountCredentialCache cache2 =
+                new SharedPreferencesAccountCredentialCache(mDelegate, new AdapterStorage(mStorage));
+
+        final AccessTokenRecord accessToken = createAccessToken(HOME_ACCOUNT_ID, REALM);
+        cache1.saveCredential(accessToken);
+        assertEquals(Collections.<Credential>singletonList(accessToken), cache2.getCredentials());
+
+        assertTrue(cache2.removeCredential(accessToken));
+        assertTrue(cache1.getCredentials().isEmpty());
+        assertTrue(mCache.getCredentials().isEmpty());
+    }
+
+    @Test
+    public void testObservesWritesMadeDirectlyToStorage() {
+        mCache.saveCredential(createAccessToken(HOME_ACCOUNT_ID, REALM));
+        assertEquals(1, mCache.getCredentials().size());
+
+        final RefreshTokenRecord refreshToken = createRefreshToken(HOME_ACCOUNT_ID);
+        mStorage.put(mDelegate.generateCacheKey(refreshToken), mDelegate.generateCacheValue(refreshToken));
+
+        assertEquals(
+                Collections.<Credential>singletonList(refreshToken),
+                mCache.getCredentialsFilteredBy(HOME_ACCOUNT_ID, null, CredentialType.RefreshToken, null, null, null, null)
+        );
+
+        mStorage.clear();
+        assertTrue(mCache.getCredentials().isEmpty());
+    }
+
+    @Test
+    public void testReturnsCopiesOfIndexedRecords() {
+        final AccessTokenRecord accessToken = createAccessToken(HOME_ACCOUNT_ID, REALM);
+        mCache.saveCredential(accessToken);
+
+        final Credential first = mCache.getCredentials().get(0);
+        assertNotSame(accessToken, first);
+        first.setSecret("modified");
+
+        assertEquals(accessToken, mCache.getCredentials().get(0));
+        assertEquals(accessToken, mCache.getCredentialsFilteredBy(HOME_ACCOUNT_ID, null, null, null, null, null, null).get(0));
+    }
+
+    @Test
+    public void testFilteredLookupMatchesFullScan() {
+        mCache.saveCredential(createAccessToken(HOME_ACCOUNT_ID, REALM));
+        mCache.saveCredential(createAccessToken(HOME_ACCOUNT_ID, REALM_2));
+        mCache.saveCredential(createAccessToken(HOME_ACCOUNT_ID_2, REALM));
+        mCache.saveCredential(createRefreshToken(HOME_ACCOUNT_ID));
+        mCache.saveCredential(createRefreshToken(HOME_ACCOUNT_ID_2));
+        mCache.saveCredential(createIdToken(HOME_ACCOUNT_ID, REALM));
+
+        assertSameElements(
+                mReference.getCredentialsFilteredBy(HOME_ACCOUNT_ID, ENVIRONMENT, CredentialType.AccessToken, CLIENT_ID, REALM, TARGET, null),
+                mCache.getCredentialsFilteredBy(HOME_ACCOUNT_ID, ENVIRONMENT, CredentialType.AccessToken, CLIENT_ID, REALM, TARGET, null)
+        );
+        assertSameElements(
+                mReference.getCredentialsFilteredBy(HOME_ACCOUNT_ID.toUpperCase(), null, null, null, REALM, null, null),
+                mCache.getCredentialsFilteredBy(HOME_ACCOUNT_ID.toUpperCase(), null, null, null, REALM, null, null)
+        );
+        assertSameElements(
+                mReference.getCredentialsFilteredBy(null, null, null, null, REALM_2, null, null),
+                mCache.getCredentialsFilteredBy(null, null, null, null, REALM_2, null, null)
+        );
+        assertSameElements(
+                mReference.getCredentialsFilteredBy(null, ENVIRONMENT, CredentialType.RefreshToken, CLIENT_ID, null, null, null),
+                mCache.getCredentialsFilteredBy(null, ENVIRONMENT, CredentialType.RefreshToken, CLIENT_ID, null, null, null)
+        );
+        assertEquals(0, mCache.getCredentialsFilteredBy("unknown", null, null, null, null, null, null).size());
+    }
+
+    @Test
+    public void testGetCredentialsGroupedByType() {
+        final AccessTokenRecord accessToken = createAccessToken(HOME_ACCOUNT_ID, REALM);
+        final RefreshTokenRecord refreshToken = createRefreshToken(HOME_ACCOUNT_ID);
+        final IdTokenRecord idToken = createIdToken(HOME_ACCOUNT_ID, REALM);
+        mCache.saveCredential(accessToken);
+        mCache.saveCredential(refreshToken);
+        mCache.saveCredential(idToken);
+        mCache.saveCredential(createAccessToken(HOME_ACCOUNT_ID_2, REALM));
+        mCache.saveCredential(createRefreshToken(HOME_ACCOUNT_ID_2));
+
+        final Set<CredentialType> types = EnumSet.of(
+                CredentialType.AccessToken,
+                CredentialType.RefreshToken,
+                CredentialType.IdToken,
+                CredentialType.V1IdToken
+        );
+
+        for (final IAccountCredentialCache cache : Arrays.<IAccountCredentialCache>asList(mReference, mCache)) {
+            final Map<CredentialType, List<Credential>> grouped =
+                    cache.getCredentialsGroupedByType(HOME_ACCOUNT_ID, ENVIRONMENT, types, null);
+
+            assertEquals(types, grouped.keySet());
+            assertEquals(Collections.<Credential>singletonList(accessToken), grouped.get(CredentialType.AccessToken));
+            assertEquals(Collections.<Credential>singletonList(refreshToken), grouped.get(CredentialType.RefreshToken));
+            assertEquals(Collections.<Credential>singletonList(idToken), grouped.get(CredentialType.IdToken));
+            assertTrue(grouped.get(CredentialType.V1IdToken).isEmpty());
+        }
+    }
+
+    @Test
+    public void testRemoveCredentialUpdatesIndexAndStorage() {
+        final RefreshTokenRecord refreshToken = createRefreshToken(HOME_ACCOUNT_ID);
+        mCache.saveCredential(refreshToken);
+
+        assertTrue(mCache.removeCredential(refreshToken));
+        assertFalse(mCache.removeCredential(refreshToken));
+        assertTrue(mStorage.keySet().isEmpty());
+        assertEquals(0, mCache.getCredentialsFilteredBy(HOME_ACCOUNT_ID, null, CredentialType.RefreshToken, null, null, null, null).size());
+    }
+
+    @Test
+    public void testClearAll() {
+        mCache.saveAccount(createAccount(HOME_ACCOUNT_ID));
+        mCache.saveCredential(createRefreshToken(HOME_ACCOUNT_ID));
+
+        mCache.clearAll();
+
+        assertTrue(mCache.getAccounts().isEmpty());
+        assertTrue(mCache.getCredentials().isEmpty());
+        assertEquals(0, mStorage.size());
+    }
+
+    @Test
+    public void testFallsBackToStorageWhenVersionsAreUnknown() {
+        final AccessTokenRecord accessToken = createAccessToken(HOME_ACCOUNT_ID, REALM);
+        mReference.saveCredential(accessToken);
+
+        assertEquals(Collections.<Credential>singletonList(accessToken), mReference.getCredentials());
+
+        mStorage.clear();
+        assertTrue(mReference.getCredentials().isEmpty());
+    }
+
+    @Test
+    public void testLookupsDoNotReadTheWholeStorage() {
+        // Once the index is loaded, neither writes nor lookups read every entry, whatever the
+        // size of the cache.
+        assertEquals(0, countFullReadsAfterLoad(10));
+        assertEquals(0, countFullReadsAfterLoad(2000));
+    }
+
+    /**
+     * Fills a cache with the credentials of the supplied number of other accounts, then counts the
+     * reads of the whole storage made by saving and looking up the credentials of one account.
+     */
+    private int countFullReadsAfterLoad(final int otherAccountCount) {
+        final CountingStorage storage = new CountingStorage();
+        final SharedPreferencesAccountCredentialCache cache =
+                new SharedPreferencesAccountCredentialCache(mDelegate, storage);
+
+        for (int i = 0; i < otherAccountCount; i++) {
+            cache.saveCredential(createAccessToken("other-" + i + "." + REALM, REALM));
+        }
+        // Loads the index.
+        assertEquals(otherAccountCount, cache.getCredentials().size());
+        storage.mFullReads = 0;
+
+        final AccessTokenRecord accessToken = createAccessToken(HOME_ACCOUNT_ID, REALM);
+        cache.saveCredential(accessToken);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(
+                    Collections.<Credential>singletonList(accessToken),
+                    cache.getCredentialsFilteredBy(HOME_ACCOUNT_ID, ENVIRONMENT, CredentialType.AccessToken, CLIENT_ID, REALM, TARGET, null)
+            );
+        }
+        assertTrue(cache.removeCredential(accessToken));
+
+        return storage.mFullReads;
+    }
+
+    private static void assertSameElements(final List<Credential> expected, final List<Credential> actual) {
+        assertEquals(expected.size(), actual.size());
+        assertTrue(actual.containsAll(expected));
+    }
+
+    private static AccountRecord createAccount(final String homeAccountId) {
+        final AccountRecord account = new AccountRecord();
+        account.setHomeAccountId(homeAccountId);
+        account.setEnvironment(ENVIRONMENT);
+        account.setRealm(REALM);
+        account.setLocalAccountId("00000000-0000-0000-088f-0e042cc22ac0");
+        account.setUsername("user.foo@tenant.onmicrosoft.com");
+        account.setAuthorityType("MSSTS");
+        return account;
+    }
+
+    private static AccessTokenRecord createAccessToken(final String homeAccountId, final String realm) {
+        final AccessTokenRecord accessToken = new AccessTokenRecord();
+        accessToken.setHomeAccountId(homeAccountId);
+        accessToken.setEnvironment(ENVIRONMENT);
+        accessToken.setCredentialType(CredentialType.AccessToken.name());
+        accessToken.setClientId(CLIENT_ID);
+        accessToken.setRealm(realm);
+        accessToken.setTarget(TARGET);
+        accessToken.setCachedAt("0");
+        accessToken.setExpiresOn("0");
+        accessToken.setSecret(SECRET);
+        return accessToken;
+    }
+
+    private static RefreshTokenRecord createRefreshToken(final String homeAccountId) {
+        final RefreshTokenRecord refreshToken = new RefreshTokenRecord();
+        refreshToken.setHomeAccountId(homeAccountId);
+        refreshToken.setEnvironment(ENVIRONMENT);
+        refreshToken.setCredentialType(CredentialType.RefreshToken.name());
+        refreshToken.setClientId(CLIENT_ID);
+        refreshToken.setTarget(TARGET);
+        refreshToken.setSecret(SECRET);
+        return refreshToken;
+    }
+
+    private static IdTokenRecord createIdToken(final String homeAccountId, final String realm) {
+        final IdTokenRecord idToken = new IdTokenRecord();
+        idToken.setHomeAccountId(homeAccountId);
+        idToken.setEnvironment(ENVIRONMENT);
+        idToken.setCredentialType(CredentialType.IdToken.name());
+        idToken.setClientId(CLIENT_ID);
+        idToken.setRealm(realm);
+        idToken.setSecret(SECRET);
+        return idToken;
+    }
+
+    /**
+     * Counts the operations that read every entry of the storage.
+     */
+    private static class CountingStorage extends InMemoryStorage<String> {
+
+        private int mFullReads;
+
+        @Override
+        public Map<String, String> getAll() {
+            mFullReads++;
+            return super.getAll();
+        }
+
+        @Override
+        public Set<String> keySet() {
+            mFullReads++;
+            return super.keySet();
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, String>> getAllFilteredByKey(final Predicate<String> keyFilter) {
+            mFullReads++;
+            return super.getAllFilteredByKey(keyFilter);
+        }
+
+        @Override
+        public NameValueSnapshot<String> getSnapshot(final Predicate<String> keyFilter) {
+            mFullReads++;
+            return super.getSnapshot(keyFilter);
+        }
+    }
+
+    /**
+     * Delegates to another storage, but reports no versions, as multi-process stores do.
+     */
+    private static class UnversionedStorage implements INameValueStorage<String> {
+
+        private final INameValueStorage<String> mDelegate;
+
+        UnversionedStorage(final INameValueStorage<String> delegate) {
+            mDelegate = delegate;
+        }
+
+        @Override
+        public String get(final String name) {
+            return mDelegate.get(name);
+        }
+
+        @Override
+        public Map<String, String> getAll() {
+            return mDelegate.getAll();
+        }
+
+        @Override
+        public void put(final String name, final String value) {
+            mDelegate.put(name, value);
+        }
+
+        @Override
+        public void remove(final String name) {
+            mDelegate.remove(name);
+        }
+
+        @Override
+        public void clear() {
+            mDelegate.clear();
+        }
+
+        @Override
+        public Set<String> keySet() {
+            return mDelegate.keySet();
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, String>> getAllFilteredByKey(final Predicate<String> keyFilter) {
+            return mDelegate.getAllFilteredByKey(keyFilter);
+        }
+
+        @Override
+        public NameValueSnapshot<String> getSnapshot(final Predicate<String> keyFilter) {
+            return new NameValueSnapshot<>(
+                    NameValueSnapshot.UNKNOWN_VERSION,
+                    mDelegate.getSnapshot(keyFilter).getEntries()
+            );
+        }
+    }
+
+    /**
+     * A versioned adapter over another storage, as the platform components create per call.
+     */
+    private static class AdapterStorage extends UnversionedStorage
+            implements IBackedNameValueStorage, IVersionedNameValueStorage {
+
+        private final InMemoryStorage<String> mBackingStore;
+
+        AdapterStorage(final InMemoryStorage<String> backingStore) {
+            super(backingStore);
+            mBackingStore = backingStore;
+        }
+
+        @Override
+        public NameValueSnapshot<String> getSnapshot(final Predicate<String> keyFilter) {
+            return mBackingStore.getSnapshot(keyFilter);
+        }
+
+        @Override
+        public long getVersion() {
+            return mBackingStore.getVersion();
+        }
+
+        @Override
+        public Object getBackingStore() {
+            return mBackingStore;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.commands.parameters;
+
+import com.microsoft.identity.common.components.SettablePlatformComponents;
+import com.microsoft.identity.common.java.authorities.Authority;
+import com.microsoft.identity.common.java.authscheme.BearerAuthenticationSchemeInternal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+
+public class RopcTokenCommandParametersFingerprintTest {
+
+    private static final String AUTHORITY_URL = "https://login.microsoftonline.com/common";
+    private static final String CLIENT_ID = "0287f963-2d72-4363-9e3a-5705c5b0f031";
+    private static final String USERNAME = "user.foo@tenant.onmicrosoft.com";
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Test
+    public void testFingerprintDoesNotContainPassword() {
+        Assert.assertFalse(fingerprint(getParameters(PASSWORD)).contains(PASSWORD));
+    }
+
+    @Test
+    public void testFingerprintDistinguishesPasswords() {
+        Assert.assertEquals(fingerprint(getParameters(PASSWORD)), fingerprint(getParameters(PASSWORD)));
+        Assert.assertNotEquals(fingerprint(getParameters(PASSWORD)), fingerprint(getParameters(PASSWORD + "!")));
+        Assert.assertNotEquals(fingerprint(getParameters(PASSWORD)), fingerprint(getParameters(null)));
+    }
+
+    private static String fingerprint(final CommandParameters parameters) {
+        final StringBuilder builder = new StringBuilder();
+        parameters.appendRequestFingerprint(builder);
+        return builder.toString();
+    }
+
+    private static RopcTokenCommandParameters getParameters(final String password) {
+        return RopcTokenCommandParameters.builder()
+                .platformComponents(SettablePlatformComponents.builder().build())
+                .authority(Authority.getAuthorityFromAuthorityUrl(AUTHORITY_URL))
+                .clientId(CLIENT_ID)
+                .authenticationScheme(new BearerAuthenticationSchemeInternal())
+                .scopes(new HashSet<>(Collections.singletonList("user.read")))
+                .username(USERNAME)
+                .password(password)
+                .build();
+    }
+}
@@ -0,0 +1,120 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.commands.parameters;
+
+import com.microsoft.identity.common.components.SettablePlatformComponents;
+import com.microsoft.identity.common.java.authorities.Authority;
+import com.microsoft.identity.common.java.authscheme.BearerAuthenticationSchemeInternal;
+import com.microsoft.identity.common.java.dto.AccountRecord;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.UUID;
+
+public class SilentTokenCommandParametersFingerprintTest {
+
+    private static final String AUTHORITY_URL = "https://login.microsoftonline.com/common";
+    private static final String CLIENT_ID = "0287f963-2d72-4363-9e3a-5705c5b0f031";
+    private static final String REDIRECT_URI = "msauth://com.microsoft.identity.client.sample.local/signature";
+
+    @Test
+    public void testFingerprintIgnoresCorrelationIdAndScopeOrder() {
+        final SilentTokenCommandParameters first = getParameters(false, "user.read", "mail.read")
+                .correlationId(UUID.randomUUID().toString())
+                .build();
+        final SilentTokenCommandParameters second = getParameters(false, "mail.read", "user.read")
+                .correlationId(UUID.randomUUID().toString())
+                .build();
+
+        Assert.assertEquals(fingerprint(first), fingerprint(second));
+    }
+
+    @Test
+    public void testFingerprintDistinguishesForceRefresh() {
+        Assert.assertNotEquals(
+                fingerprint(getParameters(false, "user.read").build()),
+                fingerprint(getParameters(true, "user.read").build())
+        );
+    }
+
+    @Test
+    public void testFingerprintDistinguishesClaimsAndAccount() {
+        final String base = fingerprint(getParameters(false, "user.read").build());
+
+        Assert.assertNotEquals(base, fingerprint(getParameters(false, "user.read")
+                .claimsRequestJson("{\"access_token\":{\"deviceid\":{\"essential\":true}}}")
+                .build()));
+
+        final AccountRecord otherAccount = getAccount();
+        otherAccount.setHomeAccountId("a1f3807a-4fb0-42f2-a44a-236aa0cb3f97.0287f963-2d72-4363-9e3a-5705c5b0f031");
+        Assert.assertNotEquals(base, fingerprint(getParameters(false, "user.read")
+                .account(otherAccount)
+                .build()));
+    }
+
+    @Test
+    public void testFingerprintValuesCannotCollideAcrossFields() {
+        final SilentTokenCommandParameters first = getParameters(false, "user.read")
+                .applicationName("a;b")
+                .applicationVersion("c")
+                .build();
+        final SilentTokenCommandParameters second = getParameters(false, "user.read")
+                .applicationName("a")
+                .applicationVersion("b;c")
+                .build();
+
+        Assert.assertNotEquals(fingerprint(first), fingerprint(second));
+    }
+
+    private static String fingerprint(final CommandParameters parameters) {
+        final StringBuilder builder = new StringBuilder();
+        parameters.appendRequestFingerprint(builder);
+        return builder.toString();
+    }
+
+    private static SilentTokenCommandParameters.SilentTokenCommandParametersBuilder<?, ?> getParameters(
+            final boolean forceRefresh, final String... scopes) {
+        return SilentTokenCommandParameters.builder()
+                .platformComponents(SettablePlatformComponents.builder().build())
+                .authority(Authority.getAuthorityFromAuthorityUrl(AUTHORITY_URL))
+                .clientId(CLIENT_ID)
+                .redirectUri(REDIRECT_URI)
+                .authenticationScheme(new BearerAuthenticationSchemeInternal())
+                .scopes(new LinkedHashSet<>(Arrays.asList(scopes)))
+                .account(getAccount())
+                .forceRefresh(forceRefresh);
+    }
+
+    private static AccountRecord getAccount() {
+        final AccountRecord account = new AccountRecord();
+        account.setHomeAccountId("29f3807a-4fb0-42f2-a44a-236aa0cb3f97.0287f963-2d72-4363-9e3a-5705c5b0f031");
+        account.setEnvironment("login.microsoftonline.com");
+        account.setRealm("3c62ac97-29eb-4aed-a3c8-add0298508d");
+        account.setLocalAccountId("00000000-0000-0000-088f-0e042cc22ac0");
+        account.setUsername("user.foo@tenant.onmicrosoft.com");
+        return account;
+    }
+}
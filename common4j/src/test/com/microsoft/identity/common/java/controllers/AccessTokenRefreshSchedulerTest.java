@@ -0,0 +1,188 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+package com.microsoft.identity.common.java.controllers;
+
+import com.microsoft.identity.common.components.SettablePlatformComponents;
+import com.microsoft.identity.common.java.commands.BaseCommand;
+import com.microsoft.identity.common.java.commands.EmptyCommandCallback;
+import com.microsoft.identity.common.java.commands.parameters.CommandParameters;
+import com.microsoft.identity.common.java.dto.AccessTokenRecord;
+import com.microsoft.identity.common.java.dto.CredentialType;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import lombok.NonNull;
+
+public class AccessTokenRefreshSchedulerTest {
+
+    private ScheduledExecutorService mTimer;
+    private BlockingQueue<BaseCommand<?>> mSubmitted;
+    private AccessTokenRefreshScheduler mScheduler;
+
+    @Before
+    public void setUp() {
+        mTimer = Executors.newSingleThreadScheduledExecutor();
+        mSubmitted = new LinkedBlockingQueue<>();
+        mScheduler = new AccessTokenRefreshScheduler(
+                mTimer,
+                new AccessTokenRefreshScheduler.ICommandSubmitter() {
+                    @Override
+                    public void submit(@NonNull final BaseCommand<?> command) {
+                        mSubmitted.add(command);
+                    }
+                },
+                // No jitter, so that due refreshes fire immediately.
+                new Random() {
+                    @Override
+                    public double nextDouble() {
+                        return 0;
+                    }
+                },
+                2
+        );
+    }
+
+    @After
+    public void tearDown() {
+        mTimer.shutdownNow();
+    }
+
+    @Test
+    public void testDueRefreshIsSubmitted() throws Exception {
+        final long nowSeconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        final BaseCommand<?> command = createCommand();
+
+        // refresh_on has passed, the token is still valid: refresh right away.
+        Assert.assertTrue(mScheduler.schedule(createAccessToken("realm", nowSeconds - 1, nowSeconds + 1), command));
+
+        Assert.assertSame(command, mSubmitted.poll(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, mScheduler.getPendingRefreshCount());
+    }
+
+    @Test
+    public void testExpiredTokenIsNotScheduled() {
+        final long nowSeconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+
+        Assert.assertFalse(mScheduler.schedule(createAccessToken("realm", nowSeconds - 20, nowSeconds - 10), createCommand()));
+        Assert.assertEquals(0, mScheduler.getPendingRefreshCount());
+    }
+
+    @Test
+    public void testSameTokenIsScheduledOnce() {
+        final long nowSeconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        final AccessTokenRecord accessToken = createAccessToken("realm", nowSeconds + 3600, nowSeconds + 7200);
+
+        Assert.assertTrue(mScheduler.schedule(accessToken, createCommand()));
+        Assert.assertTrue(mScheduler.schedule(accessToken, createCommand()));
+        Assert.assertTrue(mScheduler.schedule(createAccessToken("other-realm", nowSeconds + 3600, nowSeconds + 7200), createCommand()));
+        Assert.assertEquals(2, mScheduler.getPendingRefreshCount());
+
+        mScheduler.cancelAll();
+        Assert.assertEquals(0, mScheduler.getPendingRefreshCount());
+    }
+
+    @Test
+    public void testCancelDropsOnlyTheAccountsRefreshes() {
+        final long nowSeconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        final AccessTokenRecord otherAccountToken = createAccessToken("realm", nowSeconds + 3600, nowSeconds + 7200);
+        otherAccountToken.setHomeAccountId("other-home-account-id");
+
+        Assert.assertTrue(mScheduler.schedule(createAccessToken("realm", nowSeconds + 3600, nowSeconds + 7200), createCommand()));
+        Assert.assertTrue(mScheduler.schedule(createAccessToken("other-realm", nowSeconds + 3600, nowSeconds + 7200), createCommand()));
+        Assert.assertTrue(mScheduler.schedule(otherAccountToken, createCommand()));
+
+        Assert.assertEquals(2, mScheduler.cancel(
+                "0287f963-2d72-4363-9e3a-5705c5b0f031",
+                "29F3807A-4FB0-42F2-A44A-236AA0CB3F97.0287F963-2D72-4363-9E3A-5705C5B0F031"
+        ));
+        Assert.assertEquals(1, mScheduler.getPendingRefreshCount());
+
+        Assert.assertEquals(1, mScheduler.cancel("0287f963-2d72-4363-9e3a-5705c5b0f031", null));
+        Assert.assertEquals(0, mScheduler.getPendingRefreshCount());
+    }
+
+    @Test
+    public void testRefreshesAreRateLimited() throws Exception {
+        final long nowSeconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(mScheduler.schedule(createAccessToken("realm" + i, nowSeconds - 1, nowSeconds + 3600), createCommand()));
+        }
+
+        Assert.assertNotNull(mSubmitted.poll(5, TimeUnit.SECONDS));
+        Assert.assertNotNull(mSubmitted.poll(5, TimeUnit.SECONDS));
+
+        // The third is over the budget of 2 per minute, so it is deferred rather than submitted.
+        Assert.assertNull(mSubmitted.poll(500, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(1, mScheduler.getPendingRefreshCount());
+    }
+
+    private static BaseCommand<?> createCommand() {
+        final CommandParameters parameters = CommandParameters.builder()
+                .platformComponents(SettablePlatformComponents.builder().build())
+                .build();
+
+        return new BaseCommand<Void>(
+                parameters,
+                Collections.<BaseController>emptyList(),
+                new EmptyCommandCallback<Void, Exception>(),
+                "test"
+        ) {
+            @Override
+            public Void execute() {
+                return null;
+            }
+
+            @Override
+            public boolean isEligibleForEstsTelemetry() {
+                return false;
+            }
+        };
+    }
+
+    private static AccessTokenRecord createAccessToken(final String realm,
+                                                       final long refreshOnSeconds,
+                                                       final long expiresOnSeconds) {
+        final AccessTokenRecord accessToken = new AccessTokenRecord();
+        accessToken.setHomeAccountId("29f3807a-4fb0-42f2-a44a-236aa0cb3f97.0287f963-2d72-4363-9e3a-5705c5b0f031");
+        accessToken.setEnvironment("login.microsoftonline.com");
+        accessToken.setCredentialType(CredentialType.AccessToken.name());
+        accessToken.setClientId("0287f963-2d72-4363-9e3a-5705c5b0f031");
+        accessToken.setRealm(realm);
+        accessToken.setTarget("user.read");
+        accessToken.setRefreshOn(String.valueOf(refreshOnSeconds));
+        accessToken.setExpiresOn(String.valueOf(expiresOnSeconds));
+        return accessToken;
+    }
+}
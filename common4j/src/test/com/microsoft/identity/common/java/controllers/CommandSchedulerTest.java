@@ -0,0 +1,128 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+package com.microsoft.identity.common.java.controllers;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class CommandSchedulerTest {
+
+    private CommandScheduler mScheduler;
+    private final CountDownLatch mRelease = new CountDownLatch(1);
+
+    @Before
+    public void setUp() {
+        final Map<CommandLane, CommandLaneConfiguration> configurations = new EnumMap<>(CommandLane.class);
+        configurations.put(CommandLane.BACKGROUND_REFRESH, CommandLaneConfiguration.builder()
+                .corePoolSize(1)
+                .maxPoolSize(1)
+                .queueCapacity(1)
+                .build());
+        mScheduler = new CommandScheduler(configurations);
+    }
+
+    @After
+    public void tearDown() {
+        mRelease.countDown();
+        mScheduler.shutdownNow();
+    }
+
+    @Test
+    public void testSaturatedLaneRejects() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        mScheduler.execute(CommandLane.BACKGROUND_REFRESH, block(started));
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        mScheduler.execute(CommandLane.BACKGROUND_REFRESH, block(new CountDownLatch(1)));
+        Assert.assertEquals(1, mScheduler.getQueueDepth(CommandLane.BACKGROUND_REFRESH));
+
+        try {
+            mScheduler.execute(CommandLane.BACKGROUND_REFRESH, block(new CountDownLatch(1)));
+            Assert.fail("Expected the saturated lane to reject the task.");
+        } catch (final RejectedExecutionException e) {
+            Assert.assertEquals(1, mScheduler.getRejectedCount(CommandLane.BACKGROUND_REFRESH));
+        }
+    }
+
+    @Test
+    public void testSaturatedLaneDoesNotBlockOtherLanes() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        mScheduler.execute(CommandLane.BACKGROUND_REFRESH, block(started));
+        mScheduler.execute(CommandLane.BACKGROUND_REFRESH, block(new CountDownLatch(1)));
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        final CountDownLatch foregroundRan = new CountDownLatch(1);
+        mScheduler.execute(CommandLane.FOREGROUND_SILENT, new Runnable() {
+            @Override
+            public void run() {
+                foregroundRan.countDown();
+            }
+        });
+
+        Assert.assertTrue(foregroundRan.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, mScheduler.getQueueDepth(CommandLane.FOREGROUND_SILENT));
+        Assert.assertEquals(0, mScheduler.getRejectedCount(CommandLane.FOREGROUND_SILENT));
+    }
+
+    @Test
+    public void testWaitTimeIsRecorded() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        mScheduler.execute(CommandLane.BACKGROUND_REFRESH, block(started));
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        final CountDownLatch queuedRan = new CountDownLatch(1);
+        mScheduler.execute(CommandLane.BACKGROUND_REFRESH, new Runnable() {
+            @Override
+            public void run() {
+                queuedRan.countDown();
+            }
+        });
+
+        Thread.sleep(50);
+        mRelease.countDown();
+        Assert.assertTrue(queuedRan.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(mScheduler.getMaxWaitTimeMillis(CommandLane.BACKGROUND_REFRESH) >= 50);
+    }
+
+    private Runnable block(final CountDownLatch started) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    mRelease.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+}
@@ -32,6 +32,8 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import static com.microsoft.identity.common.java.AuthenticationConstants.ENCODING_UTF8;
 import static com.microsoft.identity.common.java.crypto.MockData.PREDEFINED_KEY;
@@ -243,4 +245,44 @@ public class StorageEncryptionManagerTest {
             Assert.assertEquals(((ClientException)e.getSuppressedException().get(0)).getErrorCode(), DATA_MALFORMED);
         }
     }
+
+    @Test
+    public void testEncryptAll() throws ClientException {
+        final StorageEncryptionManager manager = new MockStorageEncryptionManager(PREDEFINED_KEY_IV, new MockAES256KeyLoader(PREDEFINED_KEY, PREDEFINED_KEY_IDENTIFIER));
+        final List<byte[]> encrypted = manager.encryptAll(Arrays.asList(
+                TEXT_TO_BE_ENCRYPTED_WITH_PREDEFINED_KEY,
+                TEXT_TO_BE_ENCRYPTED_WITH_PREDEFINED_KEY));
+
+        Assert.assertEquals(2, encrypted.size());
+        Assert.assertArrayEquals(TEXT_ENCRYPTED_BY_PREDEFINED_KEY, encrypted.get(0));
+        Assert.assertArrayEquals(TEXT_ENCRYPTED_BY_PREDEFINED_KEY, encrypted.get(1));
+        Assert.assertTrue(manager.encryptAll(Collections.<byte[]>emptyList()).isEmpty());
+    }
+
+    @Test
+    public void testDecryptAll() throws ClientException {
+        final StorageEncryptionManager manager = new MockStorageEncryptionManager(PREDEFINED_KEY_IV, new MockAES256KeyLoader(PREDEFINED_KEY, PREDEFINED_KEY_IDENTIFIER));
+        final List<byte[]> decrypted = manager.decryptAll(Arrays.asList(
+                TEXT_ENCRYPTED_BY_PREDEFINED_KEY,
+                TEXT_TO_BE_ENCRYPTED_WITH_PREDEFINED_KEY));
+
+        Assert.assertEquals(2, decrypted.size());
+        Assert.assertArrayEquals(TEXT_TO_BE_ENCRYPTED_WITH_PREDEFINED_KEY, decrypted.get(0));
+        // Not encrypted, so returned as is.
+        Assert.assertArrayEquals(TEXT_TO_BE_ENCRYPTED_WITH_PREDEFINED_KEY, decrypted.get(1));
+    }
+
+    @Test
+    public void testAlternatingKeysOnOneThread() throws ClientException {
+        // Ciphers and Macs are reused by the thread, so each use must pick up its own key.
+        final StorageEncryptionManager manager = new MockStorageEncryptionManager(PREDEFINED_KEY_IV, new MockAES256KeyLoader(PREDEFINED_KEY, PREDEFINED_KEY_IDENTIFIER));
+        final StorageEncryptionManager manager_2 = new MockStorageEncryptionManager(ANDROID_WRAPPED_KEY_IV, new MockAES256KeyLoader(ANDROID_WRAPPED_KEY, ANDROID_WRAPPED_KEY_IDENTIFIER));
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertArrayEquals(TEXT_ENCRYPTED_BY_PREDEFINED_KEY, manager.encrypt(TEXT_TO_BE_ENCRYPTED_WITH_PREDEFINED_KEY));
+            Assert.assertArrayEquals(TEXT_ENCRYPTED_BY_ANDROID_WRAPPED_KEY, manager_2.encrypt(TEXT_TO_BE_ENCRYPTED_WITH_ANDROID_WRAPPED_KEY));
+            Assert.assertArrayEquals(TEXT_TO_BE_ENCRYPTED_WITH_PREDEFINED_KEY, manager.decrypt(TEXT_ENCRYPTED_BY_PREDEFINED_KEY));
+            Assert.assertArrayEquals(TEXT_TO_BE_ENCRYPTED_WITH_ANDROID_WRAPPED_KEY, manager_2.decrypt(TEXT_ENCRYPTED_BY_ANDROID_WRAPPED_KEY));
+        }
+    }
 }
@@ -24,7 +24,10 @@ package com.microsoft.identity.common.java.dto;
 
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -63,6 +66,16 @@ public class AccessTokenTest {
         }
     }
 
+    @Test
+    public void testNormalizedTargetScopesFollowTarget() {
+        final AccessTokenRecord accessToken = new AccessTokenRecord();
+        accessToken.setTarget("User.Read  Mail.Read");
+        assertEquals(new HashSet<>(Arrays.asList("user.read", "mail.read")), accessToken.getNormalizedTargetScopes());
+
+        accessToken.setTarget("Calendars.Read");
+        assertEquals(Collections.singleton("calendars.read"), accessToken.getNormalizedTargetScopes());
+    }
+
     private String getCurrentTimeStr() {
         return String.valueOf(
                 Calendar
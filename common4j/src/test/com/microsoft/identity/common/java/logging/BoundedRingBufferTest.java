@@ -0,0 +1,124 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.logging;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+public class BoundedRingBufferTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityMustBeAPowerOfTwo() {
+        new BoundedRingBuffer<String>(100);
+    }
+
+    @Test
+    public void offerFailsWhenFull() {
+        final BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(4);
+
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(buffer.offer(i));
+        }
+        Assert.assertFalse(buffer.offer(4));
+
+        Assert.assertEquals(Integer.valueOf(0), buffer.poll());
+        Assert.assertTrue(buffer.offer(4));
+    }
+
+    @Test
+    public void pollReturnsElementsInOrderAcrossLaps() {
+        final BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(4);
+
+        for (int i = 0; i < 20; i++) {
+            Assert.assertTrue(buffer.offer(i));
+            Assert.assertEquals(Integer.valueOf(i), buffer.poll());
+        }
+
+        Assert.assertNull(buffer.poll());
+        Assert.assertTrue(buffer.isEmpty());
+    }
+
+    @Test(timeout = 10000)
+    public void concurrentProducersLoseNothing() throws InterruptedException {
+        final int producerCount = 4;
+        final int perProducer = 10000;
+        final BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(64);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> producers = new ArrayList<>();
+
+        for (int p = 0; p < producerCount; p++) {
+            final int producer = p;
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (final InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < perProducer; i++) {
+                        final int value = producer * perProducer + i;
+                        while (!buffer.offer(value)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+            producers.add(thread);
+            thread.start();
+        }
+
+        start.countDown();
+
+        final Set<Integer> received = new HashSet<>();
+        final int[] lastPerProducer = new int[producerCount];
+        Arrays.fill(lastPerProducer, -1);
+
+        while (received.size() < producerCount * perProducer) {
+            final Integer value = buffer.poll();
+            if (value == null) {
+                Thread.yield();
+                continue;
+            }
+
+            Assert.assertTrue(received.add(value));
+
+            // Elements from a single producer keep their order.
+            final int producer = value / perProducer;
+            Assert.assertTrue(value % perProducer > lastPerProducer[producer]);
+            lastPerProducer[producer] = value % perProducer;
+        }
+
+        for (final Thread producer : producers) {
+            producer.join();
+        }
+        Assert.assertNull(buffer.poll());
+    }
+}
@@ -27,6 +27,8 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 
 import lombok.SneakyThrows;
@@ -197,6 +199,93 @@ public class LoggerTest {
         Assert.assertNotEquals(threadName_2[0], threadName_1);
     }
 
+    @Test(timeout = TEST_TIME_OUT_IN_MILLISECONDS * 5)
+    public void logManyMessages_deliveredInOrder() throws InterruptedException {
+        final int messageCount = 2000;
+        final CountDownLatch countDownLatch = new CountDownLatch(messageCount);
+        final List<String> received = new ArrayList<>();
+
+        Logger.setOverflowPolicy(Logger.OverflowPolicy.BLOCK);
+        Logger.setLogger("TEST", new ILoggerCallback() {
+            @Override
+            public void log(String tag, Logger.LogLevel logLevel, String message, boolean containsPII) {
+                received.add(message);
+                countDownLatch.countDown();
+            }
+        });
+
+        for (int i = 0; i < messageCount; i++) {
+            Logger.info(tag, correlationId, message + "#" + i + ";");
+        }
+        countDownLatch.await();
+
+        Assert.assertEquals(messageCount, received.size());
+        for (int i = 0; i < messageCount; i++) {
+            Assert.assertTrue(received.get(i).contains(message + "#" + i + ";"));
+        }
+    }
+
+    @Test(timeout = TEST_TIME_OUT_IN_MILLISECONDS * 10)
+    public void logWithBlockPolicy_dropsAfterTimeoutWhenLoggerStalls() throws InterruptedException {
+        final CountDownLatch stalled = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch droppedReported = new CountDownLatch(1);
+        final CountDownLatch drained = new CountDownLatch(1);
+
+        Logger.setOverflowPolicy(Logger.OverflowPolicy.BLOCK);
+        Logger.setLogger("TEST", new ILoggerCallback() {
+            @SneakyThrows
+            @Override
+            public void log(String tag, Logger.LogLevel logLevel, String message, boolean containsPII) {
+                if (message.contains("Dropped [")) {
+                    droppedReported.countDown();
+                }
+                if (message.contains("last;")) {
+                    drained.countDown();
+                }
+                stalled.countDown();
+                release.await();
+            }
+        });
+
+        Logger.info(tag, correlationId, message);
+        stalled.await();
+
+        // Fill the buffer while the drain thread is stuck in the callback, plus a few records
+        // that each wait out the block timeout and are then dropped.
+        for (int i = 0; i < 4096 + 3; i++) {
+            Logger.info(tag, correlationId, message + "#" + i + ";");
+        }
+        release.countDown();
+
+        droppedReported.await();
+
+        // Let the backlog drain so that it does not leak into other tests.
+        Logger.info(tag, correlationId, "last;");
+        drained.await();
+    }
+
+    @Test
+    public void isLoggable() {
+        Assert.assertFalse("Nothing is loggable without a logger",
+                Logger.isLoggable(Logger.LogLevel.ERROR, false));
+
+        Logger.setLogger("TEST", new ILoggerCallback() {
+            @Override
+            public void log(String tag, Logger.LogLevel logLevel, String message, boolean containsPII) {
+            }
+        });
+        Logger.setLogLevel(Logger.LogLevel.INFO);
+
+        Assert.assertTrue(Logger.isLoggable(Logger.LogLevel.ERROR, false));
+        Assert.assertTrue(Logger.isLoggable(Logger.LogLevel.INFO, false));
+        Assert.assertFalse(Logger.isLoggable(Logger.LogLevel.VERBOSE, false));
+        Assert.assertFalse(Logger.isLoggable(Logger.LogLevel.INFO, true));
+
+        Logger.setAllowPii(true);
+        Assert.assertTrue(Logger.isLoggable(Logger.LogLevel.INFO, true));
+    }
+
     private interface IOperationToTest {
         void execute();
     }
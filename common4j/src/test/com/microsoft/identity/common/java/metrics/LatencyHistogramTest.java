@@ -0,0 +1,147 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.metrics;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link LatencyHistogram}.
+ */
+@RunWith(JUnit4.class)
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketBoundsCoverEveryValue() {
+        final long[] values = {0, 1, 15, 16, 17, 31, 32, 1000, 123456789L, Long.MAX_VALUE / 3, Long.MAX_VALUE};
+
+        for (final long value : values) {
+            final int index = LatencyHistogram.getBucketIndex(value);
+            assertTrue(LatencyHistogram.getBucketLowerBound(index) <= value);
+            assertTrue(LatencyHistogram.getBucketUpperBound(index) >= value);
+        }
+    }
+
+    @Test
+    public void testBucketsAreContiguous() {
+        for (int i = 1; i < 500; i++) {
+            assertEquals(
+                    LatencyHistogram.getBucketUpperBound(i - 1) + 1,
+                    LatencyHistogram.getBucketLowerBound(i)
+            );
+            assertEquals(i, LatencyHistogram.getBucketIndex(LatencyHistogram.getBucketLowerBound(i)));
+        }
+    }
+
+    @Test
+    public void testPercentilesWithinBucketPrecision() {
+        final LatencyHistogram histogram = new LatencyHistogram("test");
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i, TimeUnit.MICROSECONDS);
+        }
+
+        final HistogramSnapshot snapshot = histogram.getSnapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(1), snapshot.getMinNanos());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(1000), snapshot.getMaxNanos());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(1001) / 2, snapshot.getMeanNanos());
+
+        assertWithinPrecision(TimeUnit.MICROSECONDS.toNanos(500), snapshot.getValueAtPercentileNanos(50));
+        assertWithinPrecision(TimeUnit.MICROSECONDS.toNanos(990), snapshot.getValueAtPercentileNanos(99));
+        assertEquals(snapshot.getMaxNanos(), snapshot.getValueAtPercentileNanos(100));
+    }
+
+    @Test
+    public void testNegativeDurationRecordedAsZero() {
+        final LatencyHistogram histogram = new LatencyHistogram("test");
+        histogram.record(-5);
+
+        final HistogramSnapshot snapshot = histogram.getSnapshot();
+        assertEquals(1, snapshot.getCount());
+        assertEquals(0, snapshot.getMaxNanos());
+    }
+
+    @Test
+    public void testConcurrentRecordingKeepsEveryValue() throws Exception {
+        final int threadCount = 8;
+        final int iterations = 10000;
+        final LatencyHistogram histogram = new LatencyHistogram("test");
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<Void>> results = new ArrayList<>();
+
+        for (int i = 0; i < threadCount; i++) {
+            final int worker = i;
+            results.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    start.await();
+                    for (int j = 0; j < iterations; j++) {
+                        histogram.record(worker * iterations + j);
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        start.countDown();
+        for (final Future<Void> result : results) {
+            result.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        final HistogramSnapshot snapshot = histogram.getSnapshot();
+        assertEquals(threadCount * iterations, snapshot.getCount());
+        assertEquals(0, snapshot.getMinNanos());
+        assertEquals(threadCount * iterations - 1, snapshot.getMaxNanos());
+    }
+
+    @Test
+    public void testReset() {
+        final LatencyHistogram histogram = new LatencyHistogram("test");
+        histogram.record(100);
+        histogram.reset();
+
+        final HistogramSnapshot snapshot = histogram.getSnapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getValueAtPercentileNanos(50));
+    }
+
+    private static void assertWithinPrecision(final long expected, final long actual) {
+        final long tolerance = expected / LatencyHistogram.SUB_BUCKET_COUNT;
+        assertTrue("Expected " + expected + " but was " + actual, Math.abs(expected - actual) <= tolerance);
+    }
+}
@@ -0,0 +1,108 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.metrics;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import lombok.NonNull;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for {@link MetricsRegistry}.
+ */
+@RunWith(JUnit4.class)
+public class MetricsRegistryTest {
+
+    private static final String COUNTER_NAME = "test.counter";
+    private static final String HISTOGRAM_NAME = "test.histogram";
+
+    @After
+    public void tearDown() {
+        MetricsRegistry.getInstance().setExporter(null);
+        MetricsRegistry.getInstance().reset();
+    }
+
+    @Test
+    public void testSameNameReturnsSameMetric() {
+        final MetricsRegistry registry = MetricsRegistry.getInstance();
+        assertSame(registry.getCounter(COUNTER_NAME), registry.getCounter(COUNTER_NAME));
+        assertSame(registry.getHistogram(HISTOGRAM_NAME), registry.getHistogram(HISTOGRAM_NAME));
+    }
+
+    @Test
+    public void testExporterReceivesSnapshot() {
+        final MetricsRegistry registry = MetricsRegistry.getInstance();
+        registry.getCounter(COUNTER_NAME).add(3);
+        registry.getHistogram(HISTOGRAM_NAME).record(42);
+
+        final AtomicReference<MetricsSnapshot> exported = new AtomicReference<>();
+        registry.setExporter(new IMetricsExporter() {
+            @Override
+            public void onExport(@NonNull final MetricsSnapshot snapshot) {
+                exported.set(snapshot);
+            }
+        });
+        registry.export();
+
+        final MetricsSnapshot snapshot = exported.get();
+        assertNotNull(snapshot);
+        assertEquals(Long.valueOf(3), snapshot.getCounters().get(COUNTER_NAME));
+        assertEquals(1, snapshot.getHistograms().get(HISTOGRAM_NAME).getCount());
+        assertEquals(42, snapshot.getHistograms().get(HISTOGRAM_NAME).getMaxNanos());
+    }
+
+    @Test
+    public void testFailingExporterIsSwallowed() {
+        final MetricsRegistry registry = MetricsRegistry.getInstance();
+        registry.setExporter(new IMetricsExporter() {
+            @Override
+            public void onExport(@NonNull final MetricsSnapshot snapshot) {
+                throw new IllegalStateException("exporter failure");
+            }
+        });
+        registry.export();
+    }
+
+    @Test
+    public void testResetKeepsRegisteredMetrics() {
+        final MetricsRegistry registry = MetricsRegistry.getInstance();
+        final Counter counter = registry.getCounter(COUNTER_NAME);
+        counter.increment();
+        registry.getHistogram(HISTOGRAM_NAME).record(1);
+
+        registry.reset();
+
+        assertSame(counter, registry.getCounter(COUNTER_NAME));
+        assertEquals(0, counter.getCount());
+        assertEquals(Long.valueOf(0), registry.getSnapshot().getCounters().get(COUNTER_NAME));
+        assertEquals(0, registry.getSnapshot().getHistograms().get(HISTOGRAM_NAME).getCount());
+    }
+}
@@ -0,0 +1,324 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.net;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cz.msebera.android.httpclient.client.utils.DateUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link AdaptiveRetryPolicy}.
+ */
+@RunWith(JUnit4.class)
+public class AdaptiveRetryPolicyTest {
+
+    private static final String HOST = "login.microsoftonline.com";
+
+    private static AdaptiveRetryPolicy.AdaptiveRetryPolicyBuilder fastPolicy() {
+        return AdaptiveRetryPolicy.builder()
+                .baseDelayMs(1)
+                .maxDelayMs(5)
+                .openCircuitMs(200);
+    }
+
+    @Test
+    public void testRetriesServerErrorThenSucceeds() throws Exception {
+        final CountingSupplier supplier = new CountingSupplier(500, 503, 200);
+        final HttpResponse response = fastPolicy().build().attempt(HOST, supplier);
+        assertEquals(200, response.getStatusCode());
+        assertEquals(3, supplier.getCount());
+    }
+
+    @Test
+    public void testReturnsLastResponseWhenRetriesExhausted() throws Exception {
+        final CountingSupplier supplier = new CountingSupplier(500, 500, 500, 500);
+        final HttpResponse response = fastPolicy().maxRetries(2).build().attempt(HOST, supplier);
+        assertEquals(500, response.getStatusCode());
+        assertEquals(3, supplier.getCount());
+    }
+
+    @Test
+    public void testDoesNotRetryClientError() throws Exception {
+        final CountingSupplier supplier = new CountingSupplier(400, 200);
+        final HttpResponse response = fastPolicy().build().attempt(HOST, supplier);
+        assertEquals(400, response.getStatusCode());
+        assertEquals(1, supplier.getCount());
+    }
+
+    @Test
+    public void testHonorsRetryAfterSeconds() throws Exception {
+        final CountingSupplier supplier = new CountingSupplier(429, 200);
+        supplier.setRetryAfter("1");
+
+        final long start = System.currentTimeMillis();
+        final HttpResponse response = fastPolicy().build().attempt(HOST, supplier);
+        assertEquals(200, response.getStatusCode());
+        assertTrue(System.currentTimeMillis() - start >= 900);
+    }
+
+    @Test
+    public void testDoesNotWaitForLongRetryAfter() throws Exception {
+        final CountingSupplier supplier = new CountingSupplier(503, 200);
+        supplier.setRetryAfter("120");
+
+        final HttpResponse response = fastPolicy().build().attempt(HOST, supplier);
+        assertEquals(503, response.getStatusCode());
+        assertEquals(1, supplier.getCount());
+    }
+
+    @Test
+    public void testWaitsAreCutShortToTheTimeLeft() throws Exception {
+        final CountingSupplier supplier = new CountingSupplier(500, 500, 500, 200);
+
+        final long start = System.currentTimeMillis();
+        final HttpResponse response = fastPolicy()
+                .baseDelayMs(5000)
+                .maxDelayMs(5000)
+                .maxTotalTimeMs(200)
+                .build()
+                .attempt(HOST, supplier);
+
+        // The first wait is cut to the 200 ms left, after which there is no time to wait for the
+        // last retry, which would have succeeded.
+        assertEquals(500, response.getStatusCode());
+        assertTrue(supplier.getCount() < 4);
+        assertTrue(System.currentTimeMillis() - start < 2000);
+    }
+
+    @Test
+    public void testDoesNotWaitForRetryAfterPastTheTimeLeft() throws Exception {
+        final CountingSupplier supplier = new CountingSupplier(429, 200);
+        supplier.setRetryAfter("5");
+
+        final HttpResponse response = fastPolicy().maxTotalTimeMs(1000).build().attempt(HOST, supplier);
+        assertEquals(429, response.getStatusCode());
+        assertEquals(1, supplier.getCount());
+    }
+
+    @Test
+    public void testParsesRetryAfter() {
+        assertEquals(-1, AdaptiveRetryPolicy.getRetryAfterMs(responseWithRetryAfter(null)));
+        assertEquals(-1, AdaptiveRetryPolicy.getRetryAfterMs(responseWithRetryAfter("soon")));
+        assertEquals(3000, AdaptiveRetryPolicy.getRetryAfterMs(responseWithRetryAfter("3")));
+
+        final Date date = new Date(System.currentTimeMillis() + 60000);
+        final long fromDate = AdaptiveRetryPolicy.getRetryAfterMs(responseWithRetryAfter(DateUtils.formatDate(date)));
+        assertTrue(fromDate > 55000 && fromDate <= 60000);
+
+        final Date past = new Date(System.currentTimeMillis() - 60000);
+        assertEquals(0, AdaptiveRetryPolicy.getRetryAfterMs(responseWithRetryAfter(DateUtils.formatDate(past))));
+    }
+
+    @Test
+    public void testRetriesRetryableException() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        final HttpResponse response = fastPolicy().build().attempt(HOST, new Callable<HttpResponse>() {
+            @Override
+            public HttpResponse call() throws Exception {
+                if (count.getAndIncrement() == 0) {
+                    throw new SocketTimeoutException();
+                }
+                return new HttpResponse(200, "", null);
+            }
+        });
+        assertEquals(200, response.getStatusCode());
+        assertEquals(2, count.get());
+    }
+
+    @Test(expected = RetryFailedException.class)
+    public void testWrapsNonIoException() throws Exception {
+        fastPolicy().build().attempt(HOST, new Callable<HttpResponse>() {
+            @Override
+            public HttpResponse call() throws Exception {
+                throw new IllegalStateException();
+            }
+        });
+    }
+
+    @Test
+    public void testStopsRetryingWhenBudgetSpent() throws Exception {
+        final AdaptiveRetryPolicy policy = fastPolicy()
+                .failureThreshold(Integer.MAX_VALUE)
+                .retryBudget(new AdaptiveRetryPolicy.RetryBudget(2, 0.5))
+                .build();
+
+        // Spends both tokens.
+        CountingSupplier supplier = new CountingSupplier(500, 500, 500);
+        policy.attempt(HOST, supplier);
+        assertEquals(3, supplier.getCount());
+
+        supplier = new CountingSupplier(500, 200);
+        assertEquals(500, policy.attempt(HOST, supplier).getStatusCode());
+        assertEquals(1, supplier.getCount());
+
+        // Two successes earn back one retry.
+        policy.attempt(HOST, new CountingSupplier(200));
+        policy.attempt(HOST, new CountingSupplier(200));
+        supplier = new CountingSupplier(500, 200);
+        assertEquals(200, policy.attempt(HOST, supplier).getStatusCode());
+        assertEquals(2, supplier.getCount());
+    }
+
+    @Test
+    public void testCircuitOpensAndRecovers() throws Exception {
+        final AdaptiveRetryPolicy policy = fastPolicy()
+                .maxRetries(0)
+                .failureThreshold(2)
+                .build();
+
+        policy.attempt(HOST, new CountingSupplier(503));
+        policy.attempt(HOST, new CountingSupplier(503));
+
+        final CountingSupplier blocked = new CountingSupplier(200);
+        try {
+            policy.attempt(HOST, blocked);
+            fail("Expected the circuit to be open.");
+        } catch (final CircuitOpenException e) {
+            assertEquals(0, blocked.getCount());
+        }
+
+        Thread.sleep(250);
+
+        final CountingSupplier probe = new CountingSupplier(200);
+        assertEquals(200, policy.attempt(HOST, probe).getStatusCode());
+        assertEquals(1, probe.getCount());
+        assertEquals(200, policy.attempt(HOST, new CountingSupplier(200)).getStatusCode());
+    }
+
+    @Test
+    public void testFailedProbeReopensCircuit() throws Exception {
+        final AdaptiveRetryPolicy policy = fastPolicy()
+                .maxRetries(0)
+                .failureThreshold(1)
+                .build();
+
+        policy.attempt(HOST, new CountingSupplier(500));
+        Thread.sleep(250);
+        assertEquals(500, policy.attempt(HOST, new CountingSupplier(500)).getStatusCode());
+
+        try {
+            policy.attempt(HOST, new CountingSupplier(200));
+            fail("Expected the circuit to be open.");
+        } catch (final CircuitOpenException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testCircuitsArePerHost() throws Exception {
+        final AdaptiveRetryPolicy policy = fastPolicy()
+                .maxRetries(0)
+                .failureThreshold(1)
+                .build();
+
+        policy.attempt(HOST, new CountingSupplier(500));
+        assertEquals(200, policy.attempt("login.microsoftonline.us", new CountingSupplier(200)).getStatusCode());
+
+        try {
+            policy.attempt(HOST, new CountingSupplier(200));
+            fail("Expected the circuit to be open.");
+        } catch (final CircuitOpenException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testClientPassesRequestHost() throws Exception {
+        final CountingSupplier supplier = new CountingSupplier(200);
+        final String[] hosts = new String[1];
+        UrlConnectionHttpClient.attempt(new IPerHostRetryPolicy<HttpResponse>() {
+            @Override
+            public HttpResponse attempt(final String host, final Callable<HttpResponse> s) throws IOException {
+                hosts[0] = host;
+                return attempt(s);
+            }
+
+            @Override
+            public HttpResponse attempt(final Callable<HttpResponse> s) throws IOException {
+                try {
+                    return s.call();
+                } catch (final Exception e) {
+                    throw new IOException(e);
+                }
+            }
+        }, new URL("https://" + HOST + "/common/oauth2/v2.0/token"), supplier);
+        assertEquals(HOST, hosts[0]);
+    }
+
+    private static HttpResponse responseWithRetryAfter(final String retryAfter) {
+        final Map<String, List<String>> headers = new HashMap<>();
+        if (retryAfter != null) {
+            headers.put("retry-after", Collections.singletonList(retryAfter));
+        }
+        return new HttpResponse(503, "", headers);
+    }
+
+    /**
+     * Returns responses with the given status codes in turn, repeating the last one.
+     */
+    private static class CountingSupplier implements Callable<HttpResponse> {
+        private final int[] mStatusCodes;
+        private final AtomicInteger mCount = new AtomicInteger();
+        private String mRetryAfter;
+
+        CountingSupplier(final int... statusCodes) {
+            mStatusCodes = statusCodes;
+        }
+
+        void setRetryAfter(final String retryAfter) {
+            mRetryAfter = retryAfter;
+        }
+
+        int getCount() {
+            return mCount.get();
+        }
+
+        @Override
+        public HttpResponse call() {
+            final int index = Math.min(mCount.getAndIncrement(), mStatusCodes.length - 1);
+            final int statusCode = mStatusCodes[index];
+            if (mRetryAfter != null && statusCode >= 400) {
+                return new HttpResponse(statusCode, "", Collections.singletonMap(
+                        HttpConstants.HeaderField.RETRY_AFTER, Collections.singletonList(mRetryAfter)));
+            }
+            return new HttpResponse(statusCode, "", null);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.net;
+
+import com.microsoft.identity.common.java.net.util.StubHttpsServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link PooledConnectionHttpClient}, against a local {@link StubHttpsServer}.
+ */
+@RunWith(JUnit4.class)
+public class PooledConnectionHttpClientTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private StubHttpsServer mServer;
+    private SSLContext mSslContext;
+    private PooledConnectionHttpClient mClient;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new StubHttpsServer();
+        mSslContext = StubHttpsServer.createClientSslContext();
+        mClient = PooledConnectionHttpClient.builder()
+                .maxConnectionsPerHost(2)
+                .build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mClient.close();
+        mServer.close();
+    }
+
+    @Test
+    public void testSequentialRequestsReuseOneConnection() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            final HttpResponse response = mClient.get(
+                    mServer.getUrl("/get"),
+                    Collections.<String, String>emptyMap(),
+                    mSslContext
+            );
+            assertEquals(200, response.getStatusCode());
+        }
+
+        assertEquals(1, mServer.getAcceptedConnections());
+    }
+
+    @Test
+    public void testPostSendsBodyAndHeaders() throws Exception {
+        final Map<String, String> headers = new HashMap<>();
+        headers.put(HttpConstants.HeaderField.CONTENT_TYPE, "application/x-www-form-urlencoded");
+        headers.put("client-request-id", "1234");
+
+        final HttpResponse response = mClient.post(
+                mServer.getUrl("/token"),
+                headers,
+                "grant_type=refresh_token".getBytes(UTF8),
+                mSslContext
+        );
+
+        assertEquals(200, response.getStatusCode());
+        assertEquals("grant_type=refresh_token", response.getBody());
+        assertEquals(Arrays.asList("text/plain; charset=utf-8"), response.getHeaders().get("content-type"));
+
+        final Map<String, String> received = mServer.getLastRequestHeaders();
+        assertEquals("application/x-www-form-urlencoded", received.get("content-type"));
+        assertEquals("1234", received.get("client-request-id"));
+        assertEquals("24", received.get("content-length"));
+    }
+
+    @Test
+    public void testDecoderReadsBodyFromConnection() throws Exception {
+        final IResponseBodyDecoder<Integer> firstByteDecoder = new IResponseBodyDecoder<Integer>() {
+            @Override
+            public boolean shouldDecode(final int statusCode) {
+                return statusCode == 200;
+            }
+
+            @Override
+            public Integer decode(final InputStream body) throws IOException {
+                // Leaves the rest unread, which must not keep the connection from being reused.
+                return body.read();
+            }
+        };
+
+        for (int i = 0; i < 2; i++) {
+            final HttpResponse response = mClient.post(
+                    mServer.getUrl("/token"),
+                    Collections.<String, String>emptyMap(),
+                    "abc".getBytes(UTF8),
+                    mSslContext,
+                    firstByteDecoder
+            );
+            assertEquals(null, response.getBody());
+            assertEquals((int) 'a', response.getDecodedBody());
+        }
+
+        assertEquals(1, mServer.getAcceptedConnections());
+    }
+
+    @Test
+    public void testErrorResponseKeepsConnection() throws Exception {
+        final HttpResponse notFound = mClient.get(
+                mServer.getUrl("/missing"),
+                Collections.<String, String>emptyMap(),
+                mSslContext
+        );
+        assertEquals(404, notFound.getStatusCode());
+        assertEquals(StubHttpsServer.NOT_FOUND_BODY, notFound.getBody());
+
+        mClient.get(mServer.getUrl("/get"), Collections.<String, String>emptyMap(), mSslContext);
+        assertEquals(1, mServer.getAcceptedConnections());
+    }
+
+    @Test
+    public void testNewConnectionResumesTlsSession() throws Exception {
+        // A TLS 1.2 session keeps its id when resumed, which the server counts.
+        final PooledConnectionHttpClient client = PooledConnectionHttpClient.builder()
+                .supportedSslProtocol(Collections.singletonList("TLSv1.2"))
+                .build();
+
+        // The server closes the connection after each of these, so each request opens a new one.
+        for (int i = 0; i < 3; i++) {
+            client.get(mServer.getUrl("/close"), Collections.<String, String>emptyMap(), mSslContext);
+        }
+
+        client.close();
+
+        assertEquals(3, mServer.getAcceptedConnections());
+        assertEquals(1, mServer.getSessionCount());
+    }
+
+    @Test
+    public void testConnectionsPerHostAreLimited() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(6);
+        try {
+            final List<Future<HttpResponse>> results = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                results.add(executor.submit(new Callable<HttpResponse>() {
+                    @Override
+                    public HttpResponse call() throws Exception {
+                        return mClient.get(
+                                mServer.getUrl("/slow"),
+                                Collections.<String, String>emptyMap(),
+                                mSslContext
+                        );
+                    }
+                }));
+            }
+
+            for (final Future<HttpResponse> result : results) {
+                assertEquals(200, result.get(30, TimeUnit.SECONDS).getStatusCode());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(mServer.getAcceptedConnections() <= 2);
+    }
+}
@@ -33,7 +33,9 @@ import org.junit.Test;
 import org.mockito.InOrder;
 import org.mockito.Mockito;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
@@ -411,6 +413,53 @@ public final class UrlConnectionHttpClientTest {
         testHttpMethodSucceed(HttpTestMethod.PATCH, true, false);
     }
 
+    /**
+     * Verify that a decoder reads the body of a successful response from the stream, and the
+     * response carries no raw body.
+     */
+    @Test
+    public void testHttpPostDecodesSuccessfulBody() throws Exception {
+        final HttpURLConnection mockedSuccessConnection = MockConnection.getMockedConnectionWithSuccessResponse();
+        mockRequestBody(mockedSuccessConnection);
+        HttpUrlConnectionFactory.addMockedConnection(mockedSuccessConnection);
+
+        final HttpResponse response = sNoRetryClient.post(
+                getRequestUrl(),
+                Collections.<String, String>emptyMap(),
+                new byte[0],
+                null,
+                new StringDecoder()
+        );
+
+        assertEquals(HttpURLConnection.HTTP_OK, response.getStatusCode());
+        assertEquals(null, response.getBody());
+        assertEquals(ResponseBody.SUCCESS, response.getDecodedBody());
+        Mockito.verify(mockedSuccessConnection).getInputStream();
+    }
+
+    /**
+     * Verify that the body of a response the decoder does not accept is read as a String.
+     */
+    @Test
+    public void testHttpPostDoesNotDecodeErrorBody() throws Exception {
+        final HttpURLConnection mockedFailureConnection =
+                MockConnection.getMockedConnectionWithFailureResponse(HttpURLConnection.HTTP_BAD_REQUEST);
+        mockRequestBody(mockedFailureConnection);
+        HttpUrlConnectionFactory.addMockedConnection(mockedFailureConnection);
+
+        final HttpResponse response = sNoRetryClient.post(
+                getRequestUrl(),
+                Collections.<String, String>emptyMap(),
+                new byte[0],
+                null,
+                new StringDecoder()
+        );
+
+        assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, response.getStatusCode());
+        assertEquals(ResponseBody.GENERIC_ERROR, response.getBody());
+        assertEquals(null, response.getDecodedBody());
+    }
+
     /**
      * Verify that when an HTTP method succeeds, no retry happens.
      */
@@ -1100,6 +1149,24 @@ public final class UrlConnectionHttpClientTest {
         );
     }
 
+    private static final class StringDecoder implements IResponseBodyDecoder<String> {
+        @Override
+        public boolean shouldDecode(final int statusCode) {
+            return statusCode < HttpURLConnection.HTTP_BAD_REQUEST;
+        }
+
+        @Override
+        public String decode(final InputStream body) throws IOException {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[256];
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), UTF8);
+        }
+    }
+
     private void mockRequestBody(final HttpURLConnection mockedConnection) throws IOException {
         Mockito.when(mockedConnection.getOutputStream())
                 .thenReturn(Mockito.mock(OutputStream.class));
@@ -0,0 +1,262 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.net.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+
+import cz.msebera.android.httpclient.extras.Base64;
+
+/**
+ * A minimal HTTP/1.1 server over TLS on the loopback interface, for testing connection reuse.
+ * <p>
+ * Connections are kept alive across requests. Every request is answered with a 200 and its own
+ * body, except for the paths below:
+ * <ul>
+ * <li>{@code /missing} gets a 404.</li>
+ * <li>{@code /close} is answered with {@code Connection: close}, and the connection is closed.</li>
+ * <li>{@code /slow} is answered after {@link #SLOW_RESPONSE_DELAY_MS}.</li>
+ * </ul>
+ * The certificate is self-signed for 127.0.0.1; {@link #createClientSslContext()} trusts it.
+ */
+public class StubHttpsServer implements Closeable {
+
+    public static final long SLOW_RESPONSE_DELAY_MS = 200;
+    public static final String NOT_FOUND_BODY = "not found";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    // PKCS12 key store holding a self-signed EC certificate for CN=localhost, IP:127.0.0.1,
+    // valid until 2125.
+    private static final String KEY_STORE =
+            "MIID/AIBAzCCA6YGCSqGSIb3DQEHAaCCA5cEggOTMIIDjzCCASYGCSqGSIb3DQEHAaCCARcEggETMIIBDzCCAQsGCyqGSIb3" +
+            "DQEMCgECoIG9MIG6MGYGCSqGSIb3DQEFDTBZMDgGCSqGSIb3DQEFDDArBBTQ8npkdvd7NO1Fj+uJw2oUgbhmXwICJxACASAw" +
+            "DAYIKoZIhvcNAgkFADAdBglghkgBZQMEASoEEKeBeUKdo+eKu4R7UTDWhE8EUAN6hSqNoNPngPH7j7k/j+mXn+4Zy/gySUm3" +
+            "KvPIP9fKTfvEl6Uq21f9qsHad7bMQHbza4nCMq0JZ0gLLnL6OXD/mHW5UHRotObx4A7BsrtpMTwwFwYJKoZIhvcNAQkUMQoe" +
+            "CABzAHQAdQBiMCEGCSqGSIb3DQEJFTEUBBJUaW1lIDE3OTIxOTgzNjk5NDAwggJhBgkqhkiG9w0BBwagggJSMIICTgIBADCC" +
+            "AkcGCSqGSIb3DQEHATBmBgkqhkiG9w0BBQ0wWTA4BgkqhkiG9w0BBQwwKwQUc+Gz4MAsKS54lZGUR+1FibagV6kCAicQAgEg" +
+            "MAwGCCqGSIb3DQIJBQAwHQYJYIZIAWUDBAEqBBC0pbafpHcPcM3/C4UEd6g/gIIB0IrlT+uNLKh+82qFPgvcsugYGCsh0rSd" +
+            "1ZeunJlM9aIEw+EgoBs5cJQUiL/ZbUdGEpgy+OKP7D4CvYEan54lnJ+ykfQohq9SjlCZje9xL5OJXMNCkrYQDupejoBGk3Cu" +
+            "iqJVggTIhdSIM9AgZO2deyR410NL3lr0WGPaiwxElZqFTDVAxk0aipICVp8qY9uSLOY3R816sGXzYZbvaXJVP2db6aXAzavv" +
+            "rJOesm9rz0tuwLEOn+27twrZP4DOUfCgs/EFTFbJzuAt8uS3cFQ0ryHwKvRHQl2ZfsU6bM2T2nH4EmlLUjyarTdJoOF3k+lz" +
+            "aiSnKBwA8D09pr4XOMsJFb1+iuyL1pe1hyEJ5VGxafu7uXH9yejQ4zcd2dwS5gheb7nxcNAG8ZUaOy06nwc866FlpDogPz4q" +
+            "lxGb++1q8zxYQFtImy/Zr1PC9LO1EMi0/FLCPbwSOxUJC1xLposoIGITJSZn/XgwSjpDLngP+nnnbDTxYmsG9EFp29p2tR1c" +
+            "6sc7XvEfcYObG46KEzD/lWiCzJTCKhAM2iy6tZ/3wPKnhQlTav57sX65SxkxwyKe/eQpkVa7eii7Ltn189lXMAx0QpAmX37x" +
+            "MsiuEqmgEj4yME0wMTANBglghkgBZQMEAgEFAAQgnFPnXzDv6yJevJkds3bj2eGtCjEzC1fmWdu5mUvKhOIEFCJoSodU5hPJ" +
+            "Qk5LNeIJPTelhINdAgInEA==";
+
+    private final SSLServerSocket mServerSocket;
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+    private final AtomicInteger mAcceptedConnections = new AtomicInteger();
+    private final Set<String> mSessionIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Map<String, String> mLastRequestHeaders = new ConcurrentHashMap<>();
+
+    public StubHttpsServer() throws Exception {
+        final KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(loadKeyStore(), PASSWORD);
+
+        final SSLContext serverContext = SSLContext.getInstance("TLS");
+        serverContext.init(keyManagerFactory.getKeyManagers(), null, null);
+
+        mServerSocket = (SSLServerSocket) serverContext.getServerSocketFactory()
+                .createServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop();
+            }
+        });
+    }
+
+    /**
+     * @return an {@link SSLContext} trusting only this server's certificate.
+     */
+    public static SSLContext createClientSslContext() throws Exception {
+        final TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(loadKeyStore());
+
+        final SSLContext clientContext = SSLContext.getInstance("TLS");
+        clientContext.init(null, trustManagerFactory.getTrustManagers(), null);
+        return clientContext;
+    }
+
+    public URL getUrl(final String path) throws IOException {
+        return new URL("https://127.0.0.1:" + mServerSocket.getLocalPort() + path);
+    }
+
+    /**
+     * @return the number of TCP connections accepted so far.
+     */
+    public int getAcceptedConnections() {
+        return mAcceptedConnections.get();
+    }
+
+    /**
+     * @return the number of distinct TLS sessions negotiated so far. A resumed session is not
+     * counted again.
+     */
+    public int getSessionCount() {
+        return mSessionIds.size();
+    }
+
+    /**
+     * @return the headers of the last request received, with lower-cased names.
+     */
+    public Map<String, String> getLastRequestHeaders() {
+        return new HashMap<>(mLastRequestHeaders);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mExecutor.shutdownNow();
+        mServerSocket.close();
+    }
+
+    private static KeyStore loadKeyStore() throws Exception {
+        final KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(new ByteArrayInputStream(Base64.decode(KEY_STORE, Base64.DEFAULT)), PASSWORD);
+        return keyStore;
+    }
+
+    private void acceptLoop() {
+        while (!mServerSocket.isClosed()) {
+            try {
+                final SSLSocket socket = (SSLSocket) mServerSocket.accept();
+                mAcceptedConnections.incrementAndGet();
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(socket);
+                    }
+                });
+            } catch (final IOException e) {
+                // The server socket was closed.
+                return;
+            }
+        }
+    }
+
+    private void serve(final SSLSocket socket) {
+        try {
+            socket.startHandshake();
+            mSessionIds.add(Arrays.toString(socket.getSession().getId()));
+
+            final InputStream in = new BufferedInputStream(socket.getInputStream());
+            final OutputStream out = socket.getOutputStream();
+
+            String requestLine;
+            while ((requestLine = readLine(in)) != null) {
+                final Map<String, String> headers = new HashMap<>();
+                String line;
+                while ((line = readLine(in)) != null && !line.isEmpty()) {
+                    final int separator = line.indexOf(':');
+                    headers.put(line.substring(0, separator).trim().toLowerCase(Locale.US), line.substring(separator + 1).trim());
+                }
+                mLastRequestHeaders.clear();
+                mLastRequestHeaders.putAll(headers);
+
+                final String contentLength = headers.get("content-length");
+                final byte[] requestBody = new byte[contentLength == null ? 0 : Integer.parseInt(contentLength)];
+                for (int read = 0; read < requestBody.length; ) {
+                    final int count = in.read(requestBody, read, requestBody.length - read);
+                    if (count < 0) {
+                        return;
+                    }
+                    read += count;
+                }
+
+                final String path = requestLine.split(" ")[1];
+                if ("/slow".equals(path)) {
+                    Thread.sleep(SLOW_RESPONSE_DELAY_MS);
+                }
+
+                final boolean close = "/close".equals(path);
+                final boolean missing = "/missing".equals(path);
+                final byte[] responseBody = missing ? NOT_FOUND_BODY.getBytes(UTF8) : requestBody;
+
+                final ByteArrayOutputStream response = new ByteArrayOutputStream();
+                response.write(((missing ? "HTTP/1.1 404 Not Found" : "HTTP/1.1 200 OK") + "\r\n"
+                        + "Content-Type: text/plain; charset=utf-8\r\n"
+                        + "Content-Length: " + responseBody.length + "\r\n"
+                        + (close ? "Connection: close\r\n" : "")
+                        + "\r\n").getBytes(UTF8));
+                response.write(responseBody);
+                out.write(response.toByteArray());
+                out.flush();
+
+                if (close) {
+                    return;
+                }
+            }
+        } catch (final IOException e) {
+            // The client went away.
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                socket.close();
+            } catch (final IOException ignored) {
+            }
+        }
+    }
+
+    private static String readLine(final InputStream in) throws IOException {
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                final byte[] bytes = line.toByteArray();
+                final int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+                return new String(bytes, 0, length, UTF8);
+            }
+            line.write(b);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,87 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.providers.microsoft.azureactivedirectory;
+
+import com.microsoft.identity.common.java.authorities.Environment;
+import com.microsoft.identity.common.java.cache.PersistentMetadataCache;
+import com.microsoft.identity.common.java.util.ported.InMemoryStorage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.net.URL;
+
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class AzureActiveDirectoryPersistedMetadataTest {
+
+    private static final String PERSISTED_ALIAS = "login.persisted-metadata.example";
+
+    private static final String INSTANCE_DISCOVERY_RESPONSE = "{"
+            + "\"tenant_discovery_endpoint\":\"https://login.microsoftonline.com/common/.well-known/openid-configuration\","
+            + "\"api-version\":\"1.1\","
+            + "\"metadata\":[{"
+            + "\"preferred_network\":\"" + PERSISTED_ALIAS + "\","
+            + "\"preferred_cache\":\"" + PERSISTED_ALIAS + "\","
+            + "\"aliases\":[\"" + PERSISTED_ALIAS + "\"]"
+            + "}]}";
+
+    @Before
+    public void setUp() {
+        PersistentMetadataCache.setStorage(new InMemoryStorage<String>());
+        resetInitialization();
+    }
+
+    @After
+    public void tearDown() {
+        PersistentMetadataCache.setStorage(null);
+        resetInitialization();
+    }
+
+    @Test
+    public void testPerformCloudDiscoveryUsesFreshPersistedMetadata() throws Exception {
+        PersistentMetadataCache.write(
+                AzureActiveDirectory.getInstanceDiscoveryRequestUri().toString(),
+                INSTANCE_DISCOVERY_RESPONSE
+        );
+
+        // The alias only exists in the persisted response, so finding it shows no request was made.
+        AzureActiveDirectory.performCloudDiscovery();
+
+        assertTrue(AzureActiveDirectory.isInitialized());
+        assertTrue(AzureActiveDirectory.isValidCloudHost(new URL("https://" + PERSISTED_ALIAS + "/common")));
+    }
+
+    private static void resetInitialization() {
+        // Switching environments clears the initialized flag.
+        final Environment environment = AzureActiveDirectory.getEnvironment();
+        AzureActiveDirectory.setEnvironment(
+                environment == Environment.Production ? Environment.PreProduction : Environment.Production
+        );
+        AzureActiveDirectory.setEnvironment(environment);
+    }
+}
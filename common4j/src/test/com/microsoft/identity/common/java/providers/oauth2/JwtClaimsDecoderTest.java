@@ -0,0 +1,178 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.providers.oauth2;
+
+import com.microsoft.identity.common.java.exception.ServiceException;
+import com.microsoft.identity.common.java.util.StringUtil;
+import com.nimbusds.jwt.JWTParser;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public class JwtClaimsDecoderTest {
+
+    private static final String HEADER = "{\"alg\":\"RS256\",\"typ\":\"JWT\"}";
+
+    private static final String PAYLOAD = "{"
+            + "\"aud\":\"0287f963-2d72-4363-9e3a-5705c5b0f031\","
+            + "\"iss\":\"https://login.microsoftonline.com/3c62ac97-29eb-4aed-a3c8-add0298508d/v2.0\","
+            + "\"iat\":1600000000,\"nbf\":1600000000,\"exp\":1600003600,"
+            + "\"name\":\"Mr. Stuff \\u00e9\",\"oid\":\"29f3807a-4fb0-42f2-a44a-236aa0cb3f97\","
+            + "\"preferred_username\":\"user@contoso.com\",\"sub\":\"subject\",\"ver\":\"2.0\","
+            + "\"small\":1,\"big\":12345678901,\"huge\":123456789012345678901234567890,\"decimal\":1.25,"
+            + "\"flag\":true,\"nothing\":null,"
+            + "\"array\":[1,\"a\",{\"x\":2}],\"object\":{\"k\":[1,2]}"
+            + "}";
+
+    private static String token(final String header, final String payload) {
+        return StringUtil.encodeUrlSafeString(header) + "." + StringUtil.encodeUrlSafeString(payload) + ".signature";
+    }
+
+    @Test
+    public void testClaimsMatchNimbus() throws Exception {
+        final String rawToken = token(HEADER, PAYLOAD);
+        final Map<String, Object> expected = JWTParser.parse(rawToken).getJWTClaimsSet().getClaims();
+        final Map<String, ?> actual = JwtClaimsDecoder.decodeClaims(rawToken);
+
+        assertEquals(expected.keySet(), actual.keySet());
+        for (final Map.Entry<String, Object> claim : expected.entrySet()) {
+            final Object expectedValue = claim.getValue();
+            final Object actualValue = actual.get(claim.getKey());
+            assertEquals(claim.getKey(), expectedValue, actualValue);
+            if (expectedValue instanceof Map) {
+                assertTrue(claim.getKey(), actualValue instanceof Map);
+            } else if (expectedValue instanceof List) {
+                assertTrue(claim.getKey(), actualValue instanceof List);
+            } else if (expectedValue != null) {
+                assertEquals(claim.getKey(), expectedValue.getClass(), actualValue.getClass());
+            }
+        }
+    }
+
+    @Test
+    public void testRegisteredClaimTypes() throws Exception {
+        final Map<String, ?> claims = JwtClaimsDecoder.decodeClaims(token(HEADER, PAYLOAD));
+        assertEquals(new Date(1600003600000L), claims.get("exp"));
+        assertEquals(Collections.singletonList("0287f963-2d72-4363-9e3a-5705c5b0f031"), claims.get("aud"));
+        assertEquals(1L, claims.get("small"));
+        assertEquals(1.25, claims.get("decimal"));
+        assertEquals("Mr. Stuff \u00e9", claims.get("name"));
+        assertTrue(claims.containsKey("nothing"));
+    }
+
+    @Test
+    public void testUnsecuredJwt() throws Exception {
+        final String rawToken = StringUtil.encodeUrlSafeString("{\"alg\":\"none\"}") + "."
+                + StringUtil.encodeUrlSafeString("{\"sub\":\"subject\"}") + ".";
+        assertEquals("subject", JwtClaimsDecoder.decodeClaims(rawToken).get("sub"));
+    }
+
+    @Test
+    public void testRepeatedDecodeIsCached() throws Exception {
+        final String rawToken = token(HEADER, PAYLOAD.replace("subject", "cached"));
+        assertSame(JwtClaimsDecoder.decodeClaims(rawToken), JwtClaimsDecoder.decodeClaims(rawToken));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testClaimsAreUnmodifiable() throws Exception {
+        final Map<String, ?> claims = JwtClaimsDecoder.decodeClaims(token(HEADER, PAYLOAD));
+        ((List<?>) claims.get("array")).clear();
+    }
+
+    @Test
+    public void testRequestedClaimsOnly() throws Exception {
+        final String rawToken = token(HEADER, PAYLOAD.replace("subject", "requested"));
+        final Map<String, ?> claims = JwtClaimsDecoder.decodeClaims(
+                rawToken,
+                new HashSet<>(Arrays.asList("oid", "exp", "missing"))
+        );
+
+        assertEquals(new HashSet<>(Arrays.asList("oid", "exp")), claims.keySet());
+        assertEquals("29f3807a-4fb0-42f2-a44a-236aa0cb3f97", claims.get("oid"));
+        assertEquals(new Date(1600003600000L), claims.get("exp"));
+
+        // Served from the cache once the whole token has been decoded.
+        JwtClaimsDecoder.decodeClaims(rawToken);
+        assertEquals(claims, JwtClaimsDecoder.decodeClaims(rawToken, new HashSet<>(Arrays.asList("oid", "exp", "missing"))));
+    }
+
+    @Test
+    public void testMalformedTokens() {
+        final String[] malformed = {
+                "abc",
+                "abc.def",
+                token(HEADER, PAYLOAD) + ".a.b",
+                StringUtil.encodeUrlSafeString(HEADER) + ".!!!.signature",
+                token("{}", PAYLOAD),
+                token("[]", PAYLOAD),
+                token(HEADER, "[1]"),
+                token(HEADER, "{\"sub\":\"a\"} trailing"),
+                token(HEADER, "{\"sub\":"),
+                token(HEADER, "{\"exp\":\"tomorrow\"}"),
+                token(HEADER, "{\"sub\":1}"),
+                token(HEADER, "{\"aud\":[\"a\",1]}"),
+        };
+
+        for (final String rawToken : malformed) {
+            try {
+                JwtClaimsDecoder.decodeClaims(rawToken);
+                fail("Expected a ParseException for " + rawToken);
+            } catch (final ParseException e) {
+                // Expected.
+            }
+        }
+    }
+
+    @Test
+    public void testIdTokenWrapsParseException() {
+        try {
+            new IDToken("not.a.jwt");
+            fail("Expected a ServiceException.");
+        } catch (final ServiceException e) {
+            assertTrue(e.getCause() instanceof ParseException);
+        }
+    }
+
+    @Test
+    public void testIdTokenClaims() throws Exception {
+        final IDToken idToken = new IDToken(token(HEADER, PAYLOAD));
+        assertEquals("user@contoso.com", idToken.getTokenClaims().get(IDToken.PREFERRED_USERNAME));
+        assertFalse(idToken.getTokenClaims().isEmpty());
+    }
+}
@@ -33,6 +33,8 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.Iterator;
 import java.util.Map;
@@ -164,4 +166,29 @@ public class ObjectMapperTest {
         Assert.assertFalse(iterator.hasNext());
     }
 
+    @Test
+    public void test_JsonStreamToObject() throws IOException {
+        final TokenResponse tr = ObjectMapper.deserializeJsonStreamToObject(
+                new ByteArrayInputStream(JSON_TOKEN_REQUEST.getBytes("UTF-8")),
+                TokenResponse.class
+        );
+
+        Assert.assertEquals("idtokenval", tr.getIdToken());
+        final Iterator<Map.Entry<String, String>> iterator = tr.getExtraParameters().iterator();
+        Map.Entry<String, String> param = iterator.next();
+        Assert.assertEquals("client_id", param.getKey());
+        Assert.assertEquals(CLIENT_ID, param.getValue());
+        param = iterator.next();
+        Assert.assertEquals("other_param", param.getKey());
+        Assert.assertEquals("other_value", param.getValue());
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test(expected = IOException.class)
+    public void test_JsonStreamToObjectMalformed() throws IOException {
+        ObjectMapper.deserializeJsonStreamToObject(
+                new ByteArrayInputStream(JSON_TOKEN_REQUEST_MALFORMED.getBytes("UTF-8")),
+                TokenResponse.class
+        );
+    }
 }
@@ -0,0 +1,83 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.identity.common.java.util;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class ScopeUtilTest {
+
+    @Test
+    public void testToNormalizedScopeSet() {
+        assertEquals(
+                new HashSet<>(Arrays.asList("user.read", "https://graph.windows.net", "openid")),
+                ScopeUtil.toNormalizedScopeSet("  User.Read\thttps://graph.windows.net  openid ")
+        );
+        assertTrue(ScopeUtil.toNormalizedScopeSet(null).isEmpty());
+        assertTrue(ScopeUtil.toNormalizedScopeSet("   ").isEmpty());
+    }
+
+    @Test
+    public void testScopesAreInterned() {
+        final String scope1 = ScopeUtil.toNormalizedScopeSet(new String("Mail.Read")).iterator().next();
+        final String scope2 = ScopeUtil.toNormalizedScopeSet(new String("mail.read")).iterator().next();
+        assertSame(scope1, scope2);
+    }
+
+    @Test
+    public void testNormalizedSetsAreReusedForTheSameTarget() {
+        final Set<String> scopes1 = ScopeUtil.toNormalizedScopeSet(new String("openid Calendars.Read"));
+        final Set<String> scopes2 = ScopeUtil.toNormalizedScopeSet(new String("openid Calendars.Read"));
+        assertSame(scopes1, scopes2);
+    }
+
+    @Test
+    public void testContainsAllScopes() {
+        final Set<String> credentialScopes = ScopeUtil.toNormalizedScopeSet("user.read user.write");
+
+        assertTrue(ScopeUtil.containsAllScopes(credentialScopes, ScopeUtil.toNormalizedScopeSet("USER.READ"), true));
+        assertTrue(ScopeUtil.containsAllScopes(credentialScopes, ScopeUtil.toNormalizedScopeSet("user.read openid profile"), true));
+        assertFalse(ScopeUtil.containsAllScopes(credentialScopes, ScopeUtil.toNormalizedScopeSet("user.read openid"), false));
+        assertFalse(ScopeUtil.containsAllScopes(credentialScopes, ScopeUtil.toNormalizedScopeSet("mail.read"), true));
+    }
+
+    @Test
+    public void testScopesIntersect() {
+        final Set<String> scopes = ScopeUtil.toNormalizedScopeSet("user.read openid");
+
+        assertTrue(ScopeUtil.scopesIntersect(scopes, ScopeUtil.toNormalizedScopeSet("mail.read User.Read"), true));
+        assertFalse(ScopeUtil.scopesIntersect(scopes, ScopeUtil.toNormalizedScopeSet("mail.read openid"), true));
+        assertTrue(ScopeUtil.scopesIntersect(scopes, ScopeUtil.toNormalizedScopeSet("mail.read openid"), false));
+    }
+}